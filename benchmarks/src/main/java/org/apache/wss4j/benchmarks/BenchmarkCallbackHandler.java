@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.UnsupportedCallbackException;
+
+import org.apache.wss4j.common.ext.WSPasswordCallback;
+import org.apache.wss4j.common.saml.SAMLCallback;
+import org.apache.wss4j.common.saml.bean.AttributeBean;
+import org.apache.wss4j.common.saml.bean.AttributeStatementBean;
+import org.apache.wss4j.common.saml.bean.AuthenticationStatementBean;
+import org.apache.wss4j.common.saml.bean.ConditionsBean;
+import org.apache.wss4j.common.saml.bean.SubjectBean;
+import org.apache.wss4j.common.saml.bean.Version;
+import org.apache.wss4j.common.saml.builder.SAML2Constants;
+
+/**
+ * A CallbackHandler for the benchmarks. It supplies the (single) password of the keys and of the
+ * UsernameToken user, and creates a SAML 2.0 bearer Assertion signed by the transmitter.
+ */
+public class BenchmarkCallbackHandler implements CallbackHandler {
+
+    private final int attributeValues;
+
+    public BenchmarkCallbackHandler() {
+        this(0);
+    }
+
+    /**
+     * @param attributeValues the number of (100 character) values of an Attribute that is added
+     * to the Assertion, to increase its size. No AttributeStatement is added if this is 0.
+     */
+    public BenchmarkCallbackHandler(int attributeValues) {
+        this.attributeValues = attributeValues;
+    }
+
+    public void handle(Callback[] callbacks) throws IOException, UnsupportedCallbackException {
+        for (Callback callback : callbacks) {
+            if (callback instanceof WSPasswordCallback) {
+                ((WSPasswordCallback) callback).setPassword(BenchmarkSupport.PASSWORD);
+            } else if (callback instanceof SAMLCallback) {
+                handleSAMLCallback((SAMLCallback) callback);
+            } else {
+                throw new UnsupportedCallbackException(callback, "Unrecognized Callback");
+            }
+        }
+    }
+
+    private void handleSAMLCallback(SAMLCallback callback) throws IOException {
+        callback.setSamlVersion(Version.SAML_20);
+        callback.setIssuer("www.example.com");
+
+        SubjectBean subjectBean =
+            new SubjectBean(
+                "uid=joe,ou=people,ou=saml-demo,o=example.com", "www.example.com",
+                SAML2Constants.CONF_BEARER
+            );
+        callback.setSubject(subjectBean);
+
+        AuthenticationStatementBean authBean = new AuthenticationStatementBean();
+        authBean.setSubject(subjectBean);
+        authBean.setAuthenticationMethod("Password");
+        callback.setAuthenticationStatementData(Collections.singletonList(authBean));
+
+        if (attributeValues > 0) {
+            List<Object> values = new ArrayList<>(attributeValues);
+            for (int i = 0; i < attributeValues; i++) {
+                values.add(String.format("%-100s", "value-" + i).replace(' ', 'x'));
+            }
+            AttributeBean attributeBean = new AttributeBean();
+            attributeBean.setQualifiedName("http://www.example.com/claims/roles");
+            attributeBean.setAttributeValues(values);
+            AttributeStatementBean attributeStatementBean = new AttributeStatementBean();
+            attributeStatementBean.setSubject(subjectBean);
+            attributeStatementBean.setSamlAttributes(Collections.singletonList(attributeBean));
+            callback.setAttributeStatementData(Collections.singletonList(attributeStatementBean));
+        }
+
+        ConditionsBean conditions = new ConditionsBean();
+        conditions.setTokenPeriodMinutes(60);
+        callback.setConditions(conditions);
+
+        try {
+            callback.setIssuerCrypto(BenchmarkSupport.getCrypto());
+        } catch (Exception ex) {
+            throw new IOException(ex);
+        }
+        callback.setIssuerKeyName(BenchmarkSupport.SENDER);
+        callback.setIssuerKeyPassword(BenchmarkSupport.PASSWORD);
+        callback.setSignAssertion(true);
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The main class of the benchmarks jar. It accepts the usual JMH command line options, and adds
+ * the GC profiler, so that the allocation rate ("gc.alloc.rate.norm", the bytes allocated per
+ * operation) is reported next to the throughput of every benchmark. Pass "-Dwss4j.benchmarks.gc=false"
+ * to run without the GC profiler.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+        // complete
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        if (commandLineOptions.shouldHelp() || commandLineOptions.shouldList()
+            || commandLineOptions.shouldListProfilers() || commandLineOptions.shouldListResultFormats()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        OptionsBuilder optionsBuilder = new OptionsBuilder();
+        optionsBuilder.parent(commandLineOptions);
+        if (Boolean.parseBoolean(System.getProperty("wss4j.benchmarks.gc", "true"))) {
+            optionsBuilder.addProfiler(GCProfiler.class);
+        }
+        Options options = optionsBuilder.build();
+        new Runner(options).run();
+    }
+}
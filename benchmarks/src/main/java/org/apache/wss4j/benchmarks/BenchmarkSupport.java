@@ -0,0 +1,168 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.transform.OutputKeys;
+import javax.xml.transform.Transformer;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+
+import org.apache.wss4j.common.crypto.Merlin;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.w3c.dom.Document;
+
+/**
+ * Shared fixtures for the benchmarks. The keys and certificates are generated when they are first
+ * used, rather than being read from a keystore in the repository, so that they never expire. A
+ * CA issues the certificate of the "transmitter" (the sender of a message) and of the "receiver".
+ * Both private keys, and the CA certificate, are stored in a single keystore, which is used for
+ * all of the outbound and inbound processing.
+ */
+public final class BenchmarkSupport {
+
+    public static final String PASSWORD = "security";
+    public static final String SENDER = "transmitter";
+    public static final String RECIPIENT = "receiver";
+    public static final String USERNAME = "wernerd";
+    public static final String NAMESPACE = "http://www.example.net/WSDLService";
+    public static final String SOAP_ACTION = "urn:echo";
+
+    private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY =
+        DocumentBuilderFactory.newInstance();
+
+    private static Merlin crypto;
+
+    static {
+        DOCUMENT_BUILDER_FACTORY.setNamespaceAware(true);
+    }
+
+    private BenchmarkSupport() {
+        // complete
+    }
+
+    /**
+     * @return a Merlin instance holding the keys of the transmitter and receiver, and trusting
+     * the CA that issued them
+     */
+    public static synchronized Merlin getCrypto() throws Exception {
+        if (crypto == null) {
+            KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+            keyPairGenerator.initialize(2048);
+            KeyPair caKeyPair = keyPairGenerator.generateKeyPair();
+            X500Name caName = new X500Name("CN=Benchmark CA, OU=WSS4J, O=Apache, C=IE");
+            ContentSigner signer = new JcaContentSignerBuilder("SHA256withRSA").build(caKeyPair.getPrivate());
+
+            X509v3CertificateBuilder caBuilder =
+                createBuilder(caName, 1L, caName, caKeyPair);
+            caBuilder.addExtension(Extension.basicConstraints, true, new BasicConstraints(true));
+            X509Certificate caCert = new JcaX509CertificateConverter().getCertificate(caBuilder.build(signer));
+
+            KeyStore keyStore = KeyStore.getInstance("JKS");
+            keyStore.load(null, null);
+            keyStore.setCertificateEntry("ca", caCert);
+            long serial = 2L;
+            for (String alias : new String[] {SENDER, RECIPIENT}) {
+                KeyPair keyPair = keyPairGenerator.generateKeyPair();
+                X509v3CertificateBuilder builder =
+                    createBuilder(caName, serial++, new X500Name("CN=" + alias + ", OU=WSS4J, O=Apache, C=IE"), keyPair);
+                X509Certificate cert = new JcaX509CertificateConverter().getCertificate(builder.build(signer));
+                keyStore.setKeyEntry(
+                    alias, keyPair.getPrivate(), PASSWORD.toCharArray(), new Certificate[] {cert, caCert}
+                );
+            }
+
+            Merlin merlin = new Merlin();
+            merlin.setKeyStore(keyStore);
+            merlin.setTrustStore(keyStore);
+            crypto = merlin;
+        }
+        return crypto;
+    }
+
+    private static X509v3CertificateBuilder createBuilder(
+        X500Name issuer, long serial, X500Name subject, KeyPair keyPair
+    ) {
+        Date notBefore = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1));
+        Date notAfter = new Date(notBefore.getTime() + TimeUnit.DAYS.toMillis(366));
+        return new JcaX509v3CertificateBuilder(
+            issuer, BigInteger.valueOf(serial), notBefore, notAfter, subject, keyPair.getPublic()
+        );
+    }
+
+    /**
+     * Create a SOAP 1.1 message, the Body of which holds an "echo" element with the given
+     * number of "item" children (of about 100 bytes each).
+     */
+    public static String createMessage(int items) {
+        StringBuilder sb = new StringBuilder(256 + items * 100);
+        sb.append("<soap:Envelope xmlns:soap=\"http://schemas.xmlsoap.org/soap/envelope/\">");
+        sb.append("<soap:Header></soap:Header><soap:Body>");
+        sb.append("<ns:echo xmlns:ns=\"").append(NAMESPACE).append("\">");
+        for (int i = 0; i < items; i++) {
+            sb.append("<ns:item id=\"").append(i).append("\">");
+            sb.append("The quick brown fox jumps over the lazy dog ").append(i);
+            sb.append("</ns:item>");
+        }
+        sb.append("</ns:echo></soap:Body></soap:Envelope>");
+        return sb.toString();
+    }
+
+    public static DocumentBuilder newDocumentBuilder() throws Exception {
+        return DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+    }
+
+    public static Document parse(DocumentBuilder documentBuilder, byte[] message) throws Exception {
+        return documentBuilder.parse(new ByteArrayInputStream(message));
+    }
+
+    public static byte[] serialize(Document document) throws Exception {
+        Transformer transformer = TransformerFactory.newInstance().newTransformer();
+        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "yes");
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        transformer.transform(new DOMSource(document), new StreamResult(baos));
+        return baos.toByteArray();
+    }
+
+    public static byte[] toBytes(String message) {
+        return message.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,114 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wss4j.common.cache.ConcurrentReplayCache;
+import org.apache.wss4j.common.cache.FileReplayCache;
+import org.apache.wss4j.common.cache.MemoryReplayCache;
+import org.apache.wss4j.common.cache.ReplayCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the replay caches under contention. "addIfAbsent" adds a new (unique) identifier, as
+ * is done for every Nonce or Timestamp that is received, and "contains" looks up one of a set of
+ * identifiers that were added in the setup. The identifiers added by "addIfAbsent" are cached for
+ * one second, so that the size of the caches stays bounded.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class ReplayCacheBenchmark {
+
+    private static final int PRELOADED = 10000;
+
+    @Param({"memory", "concurrent", "file"})
+    private String cacheType;
+
+    private final AtomicLong counter = new AtomicLong();
+    private ReplayCache replayCache;
+    private File directory;
+
+    @Setup
+    public void setup() throws IOException {
+        if ("memory".equals(cacheType)) {
+            replayCache = new MemoryReplayCache();
+        } else if ("concurrent".equals(cacheType)) {
+            replayCache =
+                new ConcurrentReplayCache(
+                    ConcurrentReplayCache.DEFAULT_MAX_SIZE,
+                    ConcurrentReplayCache.OverflowPolicy.EVICT_EARLIEST_EXPIRY, 1L
+                );
+        } else {
+            directory = Files.createTempDirectory("wss4j-replay-benchmark").toFile();
+            replayCache = new FileReplayCache(directory, 64 * 1024 * 1024, 1L);
+        }
+        for (int i = 0; i < PRELOADED; i++) {
+            replayCache.add("preloaded-" + i, 3600L);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        replayCache.close();
+        if (directory != null) {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    Files.deleteIfExists(file.toPath());
+                }
+            }
+            Files.deleteIfExists(directory.toPath());
+        }
+    }
+
+    @Benchmark
+    public boolean addIfAbsent() {
+        return replayCache.addIfAbsent("id-" + counter.incrementAndGet(), 1L);
+    }
+
+    @Benchmark
+    public boolean contains() {
+        return replayCache.contains("preloaded-" + ThreadLocalRandom.current().nextInt(PRELOADED));
+    }
+
+}
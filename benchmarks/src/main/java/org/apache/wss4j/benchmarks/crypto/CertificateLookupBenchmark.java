@@ -0,0 +1,150 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks.crypto;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wss4j.common.crypto.CryptoType;
+import org.apache.wss4j.common.crypto.Merlin;
+import org.apache.wss4j.common.crypto.WSProviderConfig;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.SubjectKeyIdentifier;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the Merlin certificate lookups using a linear search over the truststore aliases
+ * against the indexed lookups (Merlin.CERT_INDEX), for truststores of different sizes. The
+ * certificate to be found is in the middle of the truststore.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CertificateLookupBenchmark {
+
+    @Param({"10", "1000", "10000"})
+    private int aliases;
+
+    @Param({"false", "true"})
+    private boolean certIndex;
+
+    private Merlin crypto;
+    private CryptoType issuerSerial;
+    private CryptoType thumbprint;
+    private CryptoType ski;
+    private CryptoType subjectDN;
+
+    @Setup
+    public void setup() throws Exception {
+        WSProviderConfig.init();
+
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(1024);
+        KeyPair keyPair = keyPairGenerator.generateKeyPair();
+        X500Name issuer = new X500Name("CN=Benchmark CA, OU=WSS4J, O=Apache, C=IE");
+        ContentSigner signer = new JcaContentSignerBuilder("SHA256withRSA").build(keyPair.getPrivate());
+        JcaX509CertificateConverter converter = new JcaX509CertificateConverter();
+        Date notBefore = new Date();
+        Date notAfter = new Date(notBefore.getTime() + TimeUnit.DAYS.toMillis(365));
+
+        KeyStore trustStore = KeyStore.getInstance("JKS");
+        trustStore.load(null, null);
+        X509Certificate target = null;
+        for (int i = 0; i < aliases; i++) {
+            // Each partner cert shares the key, but has a distinct serial number, subject and SKI
+            X509v3CertificateBuilder builder =
+                new JcaX509v3CertificateBuilder(
+                    issuer, BigInteger.valueOf(i + 1L), notBefore, notAfter,
+                    new X500Name("CN=Partner " + i + ", OU=WSS4J, O=Apache, C=IE"),
+                    keyPair.getPublic()
+                );
+            builder.addExtension(
+                Extension.subjectKeyIdentifier, false,
+                new SubjectKeyIdentifier(
+                    MessageDigest.getInstance("SHA-1").digest(BigInteger.valueOf(i).toByteArray())
+                )
+            );
+            X509Certificate cert = converter.getCertificate(builder.build(signer));
+            trustStore.setCertificateEntry("partner" + i, cert);
+            if (i == aliases / 2) {
+                target = cert;
+            }
+        }
+
+        crypto = new Merlin();
+        crypto.setCertIndex(certIndex);
+        crypto.setTrustStore(trustStore);
+
+        issuerSerial = new CryptoType(CryptoType.TYPE.ISSUER_SERIAL);
+        issuerSerial.setIssuerSerial(target.getIssuerX500Principal().getName(), target.getSerialNumber());
+        thumbprint = new CryptoType(CryptoType.TYPE.THUMBPRINT_SHA1);
+        thumbprint.setBytes(MessageDigest.getInstance("SHA-1").digest(target.getEncoded()));
+        ski = new CryptoType(CryptoType.TYPE.SKI_BYTES);
+        ski.setBytes(crypto.getSKIBytesFromCert(target));
+        subjectDN = new CryptoType(CryptoType.TYPE.SUBJECT_DN);
+        subjectDN.setSubjectDN(target.getSubjectX500Principal().getName());
+    }
+
+    @Benchmark
+    public X509Certificate[] issuerSerial() throws Exception {
+        return crypto.getX509Certificates(issuerSerial);
+    }
+
+    @Benchmark
+    public X509Certificate[] thumbprint() throws Exception {
+        return crypto.getX509Certificates(thumbprint);
+    }
+
+    @Benchmark
+    public X509Certificate[] ski() throws Exception {
+        return crypto.getX509Certificates(ski);
+    }
+
+    @Benchmark
+    public X509Certificate[] subjectDN() throws Exception {
+        return crypto.getX509Certificates(subjectDN);
+    }
+
+}
@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks.derivedkey;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wss4j.common.derivedKey.P_SHA1;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Derives keys of different lengths and offsets with P_SHA1, as is done for every DerivedKeyToken
+ * of a SecureConversation or UsernameToken derived key.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PSha1Benchmark {
+
+    @Param({"16", "32", "64"})
+    private int keyLength;
+
+    @Param({"0", "64"})
+    private int offset;
+
+    private final P_SHA1 pSha1 = new P_SHA1();
+    private byte[] secret;
+    private byte[] seed;
+
+    @Setup
+    public void setup() {
+        SecureRandom random = new SecureRandom();
+        secret = new byte[32];
+        random.nextBytes(secret);
+        // The label and the nonce of a DerivedKeyToken
+        seed = new byte[16 + "WS-SecureConversationWS-SecureConversation".length()];
+        random.nextBytes(seed);
+    }
+
+    @Benchmark
+    public byte[] createKey() throws Exception {
+        return pSha1.createKey(secret, seed, offset, keyLength);
+    }
+
+}
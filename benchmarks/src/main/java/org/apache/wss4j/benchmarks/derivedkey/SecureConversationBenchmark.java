@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.benchmarks.derivedkey;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.UnsupportedCallbackException;
+import javax.xml.parsers.DocumentBuilder;
+
+import org.apache.wss4j.benchmarks.BenchmarkSupport;
+import org.apache.wss4j.common.cache.SecurityContextTokenCache;
+import org.apache.wss4j.common.ext.WSPasswordCallback;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.engine.WSSecurityEngine;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.handler.WSHandlerResult;
+import org.apache.wss4j.dom.message.WSSecDKEncrypt;
+import org.apache.wss4j.dom.message.WSSecDKSign;
+import org.apache.wss4j.dom.message.WSSecHeader;
+import org.apache.wss4j.dom.message.WSSecSecurityContextToken;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+/**
+ * Processes a message of a SecureConversation: a SecurityContextToken, and a signature and an
+ * encrypted Body with keys derived from its secret. Each operation parses and processes the
+ * message, with and without a SecurityContextTokenCache, which holds the secret of the
+ * SecurityContextToken after the first message. The keys are derived for every message.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SecureConversationBenchmark {
+
+    @Param({"false", "true"})
+    private boolean securityContextTokenCache;
+
+    private DocumentBuilder documentBuilder;
+    private byte[] message;
+    private CallbackHandler callbackHandler;
+    private SecurityContextTokenCache cache;
+
+    @Setup
+    public void setup() throws Exception {
+        WSSConfig.init();
+        documentBuilder = BenchmarkSupport.newDocumentBuilder();
+        Document document =
+            BenchmarkSupport.parse(documentBuilder, BenchmarkSupport.toBytes(BenchmarkSupport.createMessage(1)));
+        WSSecHeader secHeader = new WSSecHeader(document);
+        secHeader.insertSecurityHeader();
+
+        WSSecSecurityContextToken sctBuilder = new WSSecSecurityContextToken();
+        sctBuilder.prepare(document, BenchmarkSupport.getCrypto());
+        byte[] secret = WSSecurityUtil.generateNonce(32);
+        callbackHandler = new SecretCallbackHandler(sctBuilder.getIdentifier(), secret);
+
+        WSSecDKSign sigBuilder = new WSSecDKSign();
+        sigBuilder.setExternalKey(secret, sctBuilder.getSctId());
+        sigBuilder.setSignatureAlgorithm(WSConstants.HMAC_SHA1);
+        sigBuilder.build(document, secHeader);
+
+        WSSecDKEncrypt encrBuilder = new WSSecDKEncrypt();
+        encrBuilder.setSymmetricEncAlgorithm(WSConstants.AES_128);
+        encrBuilder.setExternalKey(secret, sctBuilder.getSctId());
+        encrBuilder.build(document, secHeader);
+
+        sctBuilder.prependSCTElementToHeader(document, secHeader);
+        message = BenchmarkSupport.serialize(document);
+
+        if (securityContextTokenCache) {
+            cache = new SecurityContextTokenCache();
+        }
+    }
+
+    @Benchmark
+    public WSHandlerResult process() throws Exception {
+        Document document = BenchmarkSupport.parse(documentBuilder, message);
+        RequestData requestData = new RequestData();
+        requestData.setCallbackHandler(callbackHandler);
+        requestData.setSecurityContextTokenCache(cache);
+        return new WSSecurityEngine().processSecurityHeader(document, requestData);
+    }
+
+    /**
+     * Supplies the secret of the SecurityContextToken.
+     */
+    private static final class SecretCallbackHandler implements CallbackHandler {
+
+        private final String identifier;
+        private final byte[] secret;
+
+        SecretCallbackHandler(String identifier, byte[] secret) {
+            this.identifier = identifier;
+            this.secret = secret;
+        }
+
+        public void handle(Callback[] callbacks) throws IOException, UnsupportedCallbackException {
+            for (Callback callback : callbacks) {
+                if (callback instanceof WSPasswordCallback) {
+                    WSPasswordCallback passwordCallback = (WSPasswordCallback) callback;
+                    if (identifier.equals(passwordCallback.getIdentifier())) {
+                        passwordCallback.setKey(secret);
+                    }
+                } else {
+                    throw new UnsupportedCallbackException(callback, "Unrecognized Callback");
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks.dom;
+
+import org.apache.wss4j.benchmarks.ActionSet;
+import org.apache.wss4j.benchmarks.BenchmarkCallbackHandler;
+import org.apache.wss4j.benchmarks.BenchmarkSupport;
+import org.apache.wss4j.common.WSEncryptionPart;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.saml.SAMLCallback;
+import org.apache.wss4j.common.saml.SAMLUtil;
+import org.apache.wss4j.common.saml.SamlAssertionWrapper;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.message.WSSecEncrypt;
+import org.apache.wss4j.dom.message.WSSecHeader;
+import org.apache.wss4j.dom.message.WSSecSAMLToken;
+import org.apache.wss4j.dom.message.WSSecSignature;
+import org.apache.wss4j.dom.message.WSSecTimestamp;
+import org.apache.wss4j.dom.message.WSSecUsernameToken;
+import org.w3c.dom.Document;
+
+/**
+ * Applies an ActionSet to a SOAP message with the DOM API, and creates the RequestData to process
+ * the secured message.
+ */
+final class DOMSecurity {
+
+    private DOMSecurity() {
+        // complete
+    }
+
+    static Document secure(Document document, ActionSet actionSet) throws Exception {
+        Crypto crypto = BenchmarkSupport.getCrypto();
+        WSSecHeader secHeader = new WSSecHeader(document);
+        secHeader.insertSecurityHeader();
+
+        switch (actionSet) {
+        case TIMESTAMP_SIGNATURE_ENCRYPT:
+            WSSecTimestamp timestamp = new WSSecTimestamp();
+            timestamp.setTimeToLive(3600);
+            timestamp.build(document, secHeader);
+
+            WSSecSignature signature = new WSSecSignature();
+            signature.setUserInfo(BenchmarkSupport.SENDER, BenchmarkSupport.PASSWORD);
+            signature.setKeyIdentifierType(WSConstants.BST_DIRECT_REFERENCE);
+            signature.getParts().add(new WSEncryptionPart("Timestamp", WSConstants.WSU_NS, ""));
+            signature.getParts().add(new WSEncryptionPart("Body", WSConstants.URI_SOAP11_ENV, ""));
+            signature.build(document, crypto, secHeader);
+
+            WSSecEncrypt encrypt = new WSSecEncrypt();
+            encrypt.setUserInfo(BenchmarkSupport.RECIPIENT);
+            encrypt.setKeyIdentifierType(WSConstants.ISSUER_SERIAL);
+            encrypt.build(document, crypto, secHeader);
+            break;
+        case USERNAME_TOKEN:
+            WSSecUsernameToken usernameToken = new WSSecUsernameToken();
+            usernameToken.setUserInfo(BenchmarkSupport.USERNAME, BenchmarkSupport.PASSWORD);
+            usernameToken.setPasswordType(WSConstants.PASSWORD_DIGEST);
+            usernameToken.addNonce();
+            usernameToken.addCreated();
+            usernameToken.build(document, secHeader);
+            break;
+        case SAML:
+            SAMLCallback samlCallback = new SAMLCallback();
+            SAMLUtil.doSAMLCallback(new BenchmarkCallbackHandler(), samlCallback);
+            SamlAssertionWrapper samlAssertion = new SamlAssertionWrapper(samlCallback);
+            samlAssertion.signAssertion(
+                samlCallback.getIssuerKeyName(), samlCallback.getIssuerKeyPassword(),
+                samlCallback.getIssuerCrypto(), samlCallback.isSendKeyValue()
+            );
+            WSSecSAMLToken samlToken = new WSSecSAMLToken();
+            samlToken.build(document, samlAssertion, secHeader);
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown action set " + actionSet);
+        }
+        return document;
+    }
+
+    static RequestData createRequestData() throws Exception {
+        Crypto crypto = BenchmarkSupport.getCrypto();
+        RequestData requestData = new RequestData();
+        requestData.setCallbackHandler(new BenchmarkCallbackHandler());
+        requestData.setSigVerCrypto(crypto);
+        requestData.setDecCrypto(crypto);
+        requestData.setUtTTL(3600);
+        return requestData;
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks.policy;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilder;
+
+import org.apache.wss4j.benchmarks.ActionSet;
+import org.apache.wss4j.benchmarks.BenchmarkSupport;
+import org.apache.wss4j.benchmarks.stax.StAXSecurity;
+import org.apache.wss4j.common.WSSPolicyException;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.policy.stax.OperationPolicy;
+import org.apache.wss4j.policy.stax.enforcer.PolicyEnforcer;
+import org.apache.wss4j.policy.stax.enforcer.PolicyEnforcerFactory;
+import org.apache.wss4j.policy.stax.enforcer.PolicyInputProcessor;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.setup.WSSec;
+import org.apache.xml.security.stax.securityEvent.SecurityEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+
+/**
+ * Enforces the policy of benchmark.wsdl. The SecurityEvents of a message secured with the
+ * TIMESTAMP_SIGNATURE_ENCRYPT action set are recorded once in the setup. Each operation creates
+ * a PolicyEnforcer for the operation, as is done for every message, passes the SecurityEvents
+ * to it, and then checks that the policy is satisfied.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PolicyEnforcerBenchmark {
+
+    @Param({"1", "100"})
+    private int bodyItems;
+
+    private PolicyEnforcerFactory policyEnforcerFactory;
+    private final List<SecurityEvent> securityEvents = new ArrayList<>();
+
+    @Setup
+    public void setup() throws Exception {
+        WSSec.init();
+        DocumentBuilder documentBuilder = BenchmarkSupport.newDocumentBuilder();
+        Document wsdl;
+        try (InputStream inputStream =
+            PolicyEnforcerBenchmark.class.getClassLoader().getResourceAsStream("benchmark.wsdl")) {
+            wsdl = documentBuilder.parse(inputStream);
+        }
+        policyEnforcerFactory = PolicyEnforcerFactory.newInstance(wsdl);
+
+        byte[] message =
+            StAXSecurity.secure(
+                StAXSecurity.createOutboundWSSec(ActionSet.TIMESTAMP_SIGNATURE_ENCRYPT),
+                BenchmarkSupport.toBytes(BenchmarkSupport.createMessage(bodyItems))
+            );
+        // The PolicyInputProcessor creates the SecurityEvents for the required elements and parts,
+        // and passes them directly to the PolicyEnforcer rather than to the SecurityEventListener
+        PolicyEnforcer recorder = new RecordingPolicyEnforcer(securityEvents);
+        WSSSecurityProperties inboundProperties = StAXSecurity.createInboundProperties();
+        inboundProperties.addInputProcessor(new PolicyInputProcessor(recorder, inboundProperties));
+        StAXSecurity.process(WSSec.getInboundWSSec(inboundProperties), message, recorder);
+
+        // Check that the recorded SecurityEvents satisfy the policy
+        enforce();
+    }
+
+    @Benchmark
+    public PolicyEnforcer enforce() throws Exception {
+        PolicyEnforcer policyEnforcer =
+            policyEnforcerFactory.newPolicyEnforcer(BenchmarkSupport.SOAP_ACTION, false, null, 0);
+        for (SecurityEvent securityEvent : securityEvents) {
+            policyEnforcer.registerSecurityEvent(securityEvent);
+        }
+        policyEnforcer.doFinal();
+        return policyEnforcer;
+    }
+
+    /**
+     * A PolicyEnforcer that only records the SecurityEvents passed to it.
+     */
+    private static final class RecordingPolicyEnforcer extends PolicyEnforcer {
+
+        private final List<SecurityEvent> securityEvents;
+
+        RecordingPolicyEnforcer(List<SecurityEvent> securityEvents) throws WSSPolicyException {
+            super(Collections.<OperationPolicy>emptyList(), null, false, null, 0);
+            this.securityEvents = securityEvents;
+        }
+
+        @Override
+        public synchronized void registerSecurityEvent(SecurityEvent securityEvent) throws WSSecurityException {
+            securityEvents.add(securityEvent);
+        }
+
+        @Override
+        public void doFinal() {
+            // nothing to verify
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks.stax;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wss4j.benchmarks.BenchmarkCallbackHandler;
+import org.apache.wss4j.benchmarks.BenchmarkSupport;
+import org.apache.wss4j.common.cache.VerifiedAssertionCache;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.setup.InboundWSSec;
+import org.apache.wss4j.stax.setup.WSSec;
+import org.apache.xml.security.stax.ext.XMLSecurityConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Processes a SOAP message holding a signed SAML 2.0 Assertion of (about) the given size in
+ * kilobytes, by reading it through an InboundWSSec. The Assertion is converted to a DOM and then
+ * unmarshalled by OpenSAML. With "verifiedAssertionCache" the signature of the (identical)
+ * Assertion is only verified once, so that the conversion of the Assertion dominates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SAMLTokenInputBenchmark {
+
+    // The size of a signed Assertion without an AttributeStatement, and of an AttributeValue
+    private static final int ASSERTION_SIZE = 3500;
+    private static final int ATTRIBUTE_VALUE_SIZE = 167;
+
+    @Param({"5", "20", "50"})
+    private int assertionKilobytes;
+
+    @Param({"false", "true"})
+    private boolean verifiedAssertionCache;
+
+    private InboundWSSec inboundWSSec;
+    private byte[] message;
+
+    @Setup
+    public void setup() throws Exception {
+        WSSec.init();
+        int attributeValues = Math.max(0, assertionKilobytes * 1024 - ASSERTION_SIZE) / ATTRIBUTE_VALUE_SIZE;
+
+        WSSSecurityProperties outboundProperties = new WSSSecurityProperties();
+        outboundProperties.setCallbackHandler(new BenchmarkCallbackHandler());
+        outboundProperties.setSamlCallbackHandler(new BenchmarkCallbackHandler(attributeValues));
+        outboundProperties.setActions(
+            Collections.<XMLSecurityConstants.Action>singletonList(WSSConstants.SAML_TOKEN_UNSIGNED)
+        );
+        byte[] plainMessage = BenchmarkSupport.toBytes(BenchmarkSupport.createMessage(1));
+        message = StAXSecurity.secure(WSSec.getOutboundWSSec(outboundProperties), plainMessage);
+
+        WSSSecurityProperties inboundProperties = StAXSecurity.createInboundProperties();
+        if (verifiedAssertionCache) {
+            inboundProperties.setVerifiedAssertionCache(new VerifiedAssertionCache());
+        }
+        inboundWSSec = WSSec.getInboundWSSec(inboundProperties);
+    }
+
+    @Benchmark
+    public int process() throws Exception {
+        return StAXSecurity.process(inboundWSSec, message, null);
+    }
+
+}
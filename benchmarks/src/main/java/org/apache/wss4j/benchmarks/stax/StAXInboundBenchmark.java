@@ -0,0 +1,74 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks.stax;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wss4j.benchmarks.ActionSet;
+import org.apache.wss4j.benchmarks.BenchmarkSupport;
+import org.apache.wss4j.stax.setup.InboundWSSec;
+import org.apache.wss4j.stax.setup.WSSec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Processes a secured SOAP message by reading it through an InboundWSSec. The message is secured
+ * once in the setup (with the StAX API), and the InboundWSSec is reused for every message.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StAXInboundBenchmark {
+
+    @Param({"1", "100", "1000"})
+    private int bodyItems;
+
+    @Param
+    private ActionSet actionSet;
+
+    private InboundWSSec inboundWSSec;
+    private byte[] message;
+
+    @Setup
+    public void setup() throws Exception {
+        WSSec.init();
+        byte[] plainMessage = BenchmarkSupport.toBytes(BenchmarkSupport.createMessage(bodyItems));
+        message = StAXSecurity.secure(StAXSecurity.createOutboundWSSec(actionSet), plainMessage);
+        inboundWSSec = StAXSecurity.createInboundWSSec();
+    }
+
+    @Benchmark
+    public int process() throws Exception {
+        return StAXSecurity.process(inboundWSSec, message, null);
+    }
+
+}
@@ -0,0 +1,207 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.benchmarks.stax;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.wss4j.benchmarks.ActionSet;
+import org.apache.wss4j.benchmarks.BenchmarkCallbackHandler;
+import org.apache.wss4j.benchmarks.BenchmarkSupport;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
+import org.apache.wss4j.stax.setup.InboundWSSec;
+import org.apache.wss4j.stax.setup.OutboundWSSec;
+import org.apache.wss4j.stax.setup.WSSec;
+import org.apache.xml.security.stax.ext.SecurePart;
+import org.apache.xml.security.stax.ext.XMLSecurityConstants;
+import org.apache.xml.security.stax.securityEvent.SecurityEvent;
+import org.apache.xml.security.stax.securityEvent.SecurityEventListener;
+
+/**
+ * Creates the WSSSecurityProperties for an ActionSet, and secures and processes messages with
+ * the streaming (StAX) API.
+ */
+public final class StAXSecurity {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_COALESCING, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    }
+
+    private StAXSecurity() {
+        // complete
+    }
+
+    public static OutboundWSSec createOutboundWSSec(ActionSet actionSet) throws Exception {
+        Crypto crypto = BenchmarkSupport.getCrypto();
+        WSSSecurityProperties properties = new WSSSecurityProperties();
+        properties.setCallbackHandler(new BenchmarkCallbackHandler());
+        List<XMLSecurityConstants.Action> actions = new ArrayList<>();
+
+        switch (actionSet) {
+        case TIMESTAMP_SIGNATURE_ENCRYPT:
+            actions.add(WSSConstants.TIMESTAMP);
+            actions.add(WSSConstants.SIGNATURE);
+            actions.add(WSSConstants.ENCRYPT);
+            properties.setTimestampTTL(3600);
+            properties.setSignatureCrypto(crypto);
+            properties.setSignatureUser(BenchmarkSupport.SENDER);
+            properties.setSignatureKeyIdentifier(WSSecurityTokenConstants.KEYIDENTIFIER_SECURITY_TOKEN_DIRECT_REFERENCE);
+            properties.addSignaturePart(new SecurePart(WSSConstants.TAG_WSU_TIMESTAMP, SecurePart.Modifier.Element));
+            properties.addSignaturePart(new SecurePart(WSSConstants.TAG_SOAP11_BODY, SecurePart.Modifier.Element));
+            properties.setEncryptionCrypto(crypto);
+            properties.setEncryptionUser(BenchmarkSupport.RECIPIENT);
+            properties.setEncryptionKeyIdentifier(WSSecurityTokenConstants.KeyIdentifier_IssuerSerial);
+            break;
+        case USERNAME_TOKEN:
+            actions.add(WSSConstants.USERNAMETOKEN);
+            properties.setTokenUser(BenchmarkSupport.USERNAME);
+            properties.setUsernameTokenPasswordType(WSSConstants.UsernameTokenPasswordType.PASSWORD_DIGEST);
+            break;
+        case SAML:
+            actions.add(WSSConstants.SAML_TOKEN_UNSIGNED);
+            properties.setSamlCallbackHandler(new BenchmarkCallbackHandler());
+            break;
+        default:
+            throw new IllegalArgumentException("Unknown action set " + actionSet);
+        }
+        properties.setActions(actions);
+        return WSSec.getOutboundWSSec(properties);
+    }
+
+    public static InboundWSSec createInboundWSSec() throws Exception {
+        return WSSec.getInboundWSSec(createInboundProperties());
+    }
+
+    public static WSSSecurityProperties createInboundProperties() throws Exception {
+        Crypto crypto = BenchmarkSupport.getCrypto();
+        WSSSecurityProperties properties = new WSSSecurityProperties();
+        properties.setCallbackHandler(new BenchmarkCallbackHandler());
+        properties.setSignatureVerificationCrypto(crypto);
+        properties.setDecryptionCrypto(crypto);
+        properties.setUtTTL(3600);
+        return properties;
+    }
+
+    /**
+     * Secure the given (plain) message by streaming it through the OutboundWSSec.
+     */
+    public static byte[] secure(OutboundWSSec outboundWSSec, byte[] message) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(message.length * 2 + 8192);
+        XMLStreamWriter writer =
+            outboundWSSec.processOutMessage(
+                baos, StandardCharsets.UTF_8.name(), new ArrayList<SecurityEvent>()
+            );
+        XMLStreamReader reader = createReader(message);
+        copy(reader, writer);
+        writer.close();
+        reader.close();
+        return baos.toByteArray();
+    }
+
+    /**
+     * Process the given (secured) message by reading it to the end through the InboundWSSec.
+     * @param securityEventListener the listener to which the SecurityEvents are passed, or null
+     * @return the number of events read from the message
+     */
+    public static int process(
+        InboundWSSec inboundWSSec, byte[] message, SecurityEventListener securityEventListener
+    ) throws Exception {
+        XMLStreamReader reader =
+            inboundWSSec.processInMessage(
+                createReader(message), new ArrayList<SecurityEvent>(), securityEventListener
+            );
+        int events = 0;
+        while (reader.hasNext()) {
+            reader.next();
+            events++;
+        }
+        reader.close();
+        return events;
+    }
+
+    private static XMLStreamReader createReader(byte[] message) throws XMLStreamException {
+        return XML_INPUT_FACTORY.createXMLStreamReader(
+            new ByteArrayInputStream(message), StandardCharsets.UTF_8.name()
+        );
+    }
+
+    private static void copy(XMLStreamReader reader, XMLStreamWriter writer) throws XMLStreamException {
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+            case XMLStreamConstants.START_ELEMENT:
+                String prefix = reader.getPrefix();
+                String namespaceURI = reader.getNamespaceURI();
+                if (namespaceURI == null || namespaceURI.isEmpty()) {
+                    writer.writeStartElement(reader.getLocalName());
+                } else {
+                    writer.writeStartElement(prefix == null ? "" : prefix, reader.getLocalName(), namespaceURI);
+                }
+                for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                    String nsPrefix = reader.getNamespacePrefix(i);
+                    if (nsPrefix == null) {
+                        writer.writeDefaultNamespace(reader.getNamespaceURI(i));
+                    } else {
+                        writer.writeNamespace(nsPrefix, reader.getNamespaceURI(i));
+                    }
+                }
+                for (int i = 0; i < reader.getAttributeCount(); i++) {
+                    String attributeNS = reader.getAttributeNamespace(i);
+                    if (attributeNS == null || attributeNS.isEmpty()) {
+                        writer.writeAttribute(reader.getAttributeLocalName(i), reader.getAttributeValue(i));
+                    } else {
+                        writer.writeAttribute(
+                            reader.getAttributePrefix(i), attributeNS,
+                            reader.getAttributeLocalName(i), reader.getAttributeValue(i)
+                        );
+                    }
+                }
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                writer.writeEndElement();
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.SPACE:
+                writer.writeCharacters(reader.getText());
+                break;
+            case XMLStreamConstants.END_DOCUMENT:
+                writer.writeEndDocument();
+                break;
+            default:
+                break;
+            }
+        }
+        writer.flush();
+    }
+}
@@ -30,6 +30,7 @@ import java.security.Principal;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.crypto.SecretKey;
 import javax.security.auth.callback.Callback;
@@ -58,6 +59,7 @@ import org.apache.directory.server.core.integ.FrameworkRunner;
 import org.apache.directory.server.core.kerberos.KeyDerivationInterceptor;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.kerberos.KerberosContextAndServiceNameCallback;
+import org.apache.wss4j.common.kerberos.KerberosServiceCredentialManager;
 import org.apache.wss4j.common.spnego.SpnegoTokenContext;
 import org.apache.wss4j.common.token.BinarySecurity;
 import org.apache.wss4j.common.util.KeyUtils;
@@ -266,6 +268,59 @@ public class KerberosTest extends AbstractLdapTestUnit {
         Assert.assertTrue(principal.getName().contains("alice"));
     }
 
+    /**
+     * Process a number of Kerberos tokens with a KerberosTokenValidator that shares the service
+     * credentials with a KerberosServiceCredentialManager. The service only logs in once.
+     */
+    @Test
+    public void testKerberosProcessingSharedServiceCredentials() throws Exception {
+        if (!runTests) {
+            System.out.println("Skipping test because kerberos server could not be started");
+            return;
+        }
+
+        final AtomicInteger serviceLogins = new AtomicInteger();
+        CallbackHandler callbackHandler = new CallbackHandler() {
+            @Override
+            public void handle(Callback[] callbacks) throws IOException, UnsupportedCallbackException {
+                PasswordCallback passwordCallback = (PasswordCallback)callbacks[0];
+                if (passwordCallback.getPrompt().contains("alice")) {
+                    passwordCallback.setPassword("alice".toCharArray());
+                } else if (passwordCallback.getPrompt().contains("bob")) {
+                    serviceLogins.incrementAndGet();
+                    passwordCallback.setPassword("bob".toCharArray());
+                }
+            }
+        };
+
+        WSSConfig wssConfig = WSSConfig.getNewInstance();
+        KerberosTokenValidator validator = new KerberosTokenValidator();
+        validator.setContextName("bob");
+        validator.setServiceName("bob@service.ws.apache.org");
+        validator.setServiceCredentialManager(new KerberosServiceCredentialManager());
+        wssConfig.setValidator(WSConstants.BINARY_TOKEN, validator);
+        WSSecurityEngine secEngine = new WSSecurityEngine();
+        secEngine.setWssConfig(wssConfig);
+
+        for (int i = 0; i < 3; i++) {
+            Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+            WSSecHeader secHeader = new WSSecHeader(doc);
+            secHeader.insertSecurityHeader();
+
+            KerberosSecurity bst = new KerberosSecurity(doc);
+            bst.retrieveServiceTicket("alice", callbackHandler, "bob@service.ws.apache.org");
+            WSSecurityUtil.prependChildElement(secHeader.getSecurityHeader(), bst.getElement());
+
+            WSHandlerResult results =
+                secEngine.processSecurityHeader(doc, null, callbackHandler, null);
+            WSSecurityEngineResult actionResult =
+                results.getActionResults().get(WSConstants.BST).get(0);
+            Principal principal = (Principal)actionResult.get(WSSecurityEngineResult.TAG_PRINCIPAL);
+            Assert.assertTrue(principal.getName().contains("alice"));
+        }
+        Assert.assertEquals(1, serviceLogins.get());
+    }
+
     /**
      * Get and validate a SPNEGO token.
      */
@@ -303,6 +358,45 @@ public class KerberosTest extends AbstractLdapTestUnit {
         Assert.assertTrue(spnegoToken.isEstablished());
     }
 
+    /**
+     * Validate SPNEGO tokens with service credentials shared by a KerberosServiceCredentialManager.
+     */
+    @Test
+    public void testSpnegoSharedServiceCredentials() throws Exception {
+        if (!runTests) {
+            System.out.println("Skipping test because kerberos server could not be started");
+            return;
+        }
+
+        final AtomicInteger serviceLogins = new AtomicInteger();
+        CallbackHandler callbackHandler = new CallbackHandler() {
+            @Override
+            public void handle(Callback[] callbacks) throws IOException, UnsupportedCallbackException {
+                PasswordCallback passwordCallback = (PasswordCallback)callbacks[0];
+                if (passwordCallback.getPrompt().contains("alice")) {
+                    passwordCallback.setPassword("alice".toCharArray());
+                } else if (passwordCallback.getPrompt().contains("bob")) {
+                    serviceLogins.incrementAndGet();
+                    passwordCallback.setPassword("bob".toCharArray());
+                }
+            }
+        };
+
+        KerberosServiceCredentialManager serviceCredentialManager = new KerberosServiceCredentialManager();
+        for (int i = 0; i < 2; i++) {
+            SpnegoTokenContext spnegoToken = new SpnegoTokenContext();
+            spnegoToken.retrieveServiceTicket("alice", callbackHandler, "bob@service.ws.apache.org");
+            byte[] token = spnegoToken.getToken();
+            Assert.assertNotNull(token);
+
+            spnegoToken = new SpnegoTokenContext();
+            spnegoToken.setServiceCredentialManager(serviceCredentialManager);
+            spnegoToken.validateServiceTicket("bob", callbackHandler, "bob@service.ws.apache.org", token);
+            Assert.assertTrue(spnegoToken.isEstablished());
+        }
+        Assert.assertEquals(1, serviceLogins.get());
+    }
+
     /**
      * Various unit tests for a kerberos client
      */
@@ -883,6 +883,67 @@ public class ConfigurationConstants {
      */
     public static final String PASSWORD_ENCRYPTOR_INSTANCE = "passwordEncryptorInstance";
 
+    /**
+     * This holds a reference to a java.util.concurrent.Executor instance, which is used to verify
+     * the digests of the attachment ("cid:") references of a received Signature concurrently.
+     * References to the SOAP message itself are always verified on the calling thread. The
+     * attachment CallbackHandler must be thread-safe if an Executor is configured.
+     *
+     * The default is to verify all references on the calling thread.
+     */
+    public static final String REFERENCE_DIGEST_EXECUTOR_INSTANCE = "referenceDigestExecutorInstance";
+
+    /**
+     * This holds a reference to a DecryptedKeyCache instance, which is used to cache the symmetric
+     * keys that are unwrapped from a received EncryptedKey with the private key of the decryption
+     * Crypto. A wrapped key that is received again is then looked up by the SHA-1 digest of its
+     * CipherValue, instead of being unwrapped again.
+     *
+     * The default is not to cache unwrapped keys.
+     */
+    public static final String DECRYPTED_KEY_CACHE_INSTANCE = "decryptedKeyCacheInstance";
+
+    /**
+     * This holds a reference to a SessionKeyCache instance, which is used to reuse a generated
+     * symmetric (session) key, and the EncryptedKey that wraps it, for the following messages to
+     * the same recipient. A session key is rotated after a maximum age or number of messages,
+     * as configured on the SessionKeyCache.
+     *
+     * The default is to generate (and wrap) a new session key for every message.
+     */
+    public static final String SESSION_KEY_CACHE_INSTANCE = "sessionKeyCacheInstance";
+
+    /**
+     * This holds a reference to a java.util.concurrent.Executor instance, which is used to
+     * encrypt the elements of a message in parallel. The elements are still serialized, and
+     * replaced by their EncryptedData elements, on the thread that secures the message and in the
+     * order of the encryption parts, so that the output is the same as for a sequential encryption.
+     *
+     * The default is to encrypt the elements one after another on the calling thread.
+     */
+    public static final String ENCRYPTION_EXECUTOR_INSTANCE = "encryptionExecutorInstance";
+
+    /**
+     * This holds a reference to a VerifiedAssertionCache instance, which is used to cache the
+     * signed SAML Assertions whose signature has been verified, and whose signing key has been
+     * trusted. The signature and trust verification is skipped for a received Assertion that is
+     * identical to a cached Assertion. The conditions, audience restriction and one-time use
+     * checks are still performed.
+     *
+     * The default is to verify the signature of every received Assertion.
+     */
+    public static final String VERIFIED_ASSERTION_CACHE_INSTANCE = "verifiedAssertionCacheInstance";
+
+    /**
+     * This holds a reference to a SecurityContextTokenCache instance, which is used to cache the
+     * secrets of the SecurityContextTokens that were obtained from the CallbackHandler. The secret
+     * of a SecurityContextToken is only requested once for a conversation, until the cached secret
+     * expires. A SecurityContextToken that is cancelled must be removed from the cache.
+     *
+     * The default is to request the secret for every message.
+     */
+    public static final String SECURITY_CONTEXT_TOKEN_CACHE_INSTANCE = "securityContextTokenCacheInstance";
+
     /**
      * This controls the deriving token from which DerivedKeyTokens derive keys from.
      * Valid values are:
@@ -0,0 +1,420 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.lang.ref.WeakReference;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+
+/**
+ * An in-memory ReplayCache implementation designed for a high level of concurrency. The
+ * identifiers are spread over a number of ConcurrentHashMap shards, each mapping an identifier
+ * to its expiry time in milliseconds. No global lock is taken on any operation: expired entries
+ * are ignored (and removed) when they are looked up, and are otherwise purged by a background
+ * sweeper task, rather than on every call to "contains".
+ *
+ * The number of identifiers stored is bounded by a maximum size. When the cache is full, expired
+ * entries are purged first, although this inline purge runs at most once per sweep interval so
+ * that a flood of new identifiers does not scan the whole cache on every call. If the cache is
+ * still full, the OverflowPolicy decides what happens: either the new identifier is rejected (the
+ * default), or an entry of its shard that expires soon is evicted to make room for it. Every
+ * rejected identifier is reported to the SecurityMetrics, but a warning is logged at most once per
+ * sweep interval, so that a flood of new identifiers does not flood the log as well.
+ *
+ * The default TTL is 5 minutes and the max TTL is 1 hour, as for the MemoryReplayCache.
+ */
+public class ConcurrentReplayCache implements ReplayCache {
+
+    public static final long DEFAULT_TTL = 60L * 5L;
+    public static final long MAX_TTL = DEFAULT_TTL * 12L;
+    public static final int DEFAULT_MAX_SIZE = 1000000;
+    public static final long DEFAULT_SWEEP_INTERVAL = 60L;
+
+    /**
+     * What to do when an identifier is added to a full cache.
+     */
+    public enum OverflowPolicy {
+        /**
+         * The identifier is not stored. "addIfAbsent" returns false, so that a caller treats the
+         * identifier as a replay rather than accepting it without replay protection.
+         */
+        REJECT,
+
+        /**
+         * The entry that expires soonest, out of a bounded sample of the entries of the shard of
+         * the new identifier, is evicted to make room for the new identifier.
+         */
+        EVICT_EARLIEST_EXPIRY
+    }
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(ConcurrentReplayCache.class);
+
+    private static final int EVICTION_SAMPLE_SIZE = 16;
+
+    private static final ScheduledExecutorService SWEEPER =
+        Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "wss4j-replay-cache-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    private final ConcurrentMap<String, Long>[] shards;
+    private final int shardMask;
+    private final int maxSize;
+    private final OverflowPolicy overflowPolicy;
+    private final long sweepIntervalMillis;
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicLong lastSweep = new AtomicLong();
+    private final AtomicLong lastOverflowWarning = new AtomicLong();
+    private final AtomicLong rejectedSinceWarning = new AtomicLong();
+    private volatile ScheduledFuture<?> sweeperTask;
+
+    public ConcurrentReplayCache() {
+        this(DEFAULT_MAX_SIZE, OverflowPolicy.REJECT, DEFAULT_SWEEP_INTERVAL);
+    }
+
+    /**
+     * @param maxSize the maximum number of identifiers to store
+     * @param overflowPolicy what to do when an identifier is added to a full cache
+     * @param sweepInterval the interval in seconds between two purges of the expired entries
+     */
+    public ConcurrentReplayCache(int maxSize, OverflowPolicy overflowPolicy, long sweepInterval) {
+        this(maxSize, overflowPolicy, sweepInterval, Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    /**
+     * @param maxSize the maximum number of identifiers to store
+     * @param overflowPolicy what to do when an identifier is added to a full cache
+     * @param sweepInterval the interval in seconds between two purges of the expired entries
+     * @param concurrencyLevel the estimated number of concurrently updating threads, which is
+     * rounded up to a power of two to give the number of shards
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentReplayCache(
+        int maxSize, OverflowPolicy overflowPolicy, long sweepInterval, int concurrencyLevel
+    ) {
+        if (maxSize <= 0 || sweepInterval <= 0L || concurrencyLevel <= 0) {
+            throw new IllegalArgumentException(
+                "The size, sweep interval and concurrency level of the cache must be positive"
+            );
+        }
+        if (overflowPolicy == null) {
+            throw new IllegalArgumentException("An overflow policy must be specified");
+        }
+        this.maxSize = maxSize;
+        this.overflowPolicy = overflowPolicy;
+        sweepIntervalMillis = TimeUnit.SECONDS.toMillis(sweepInterval);
+
+        int shardCount = 1;
+        while (shardCount < concurrencyLevel && shardCount < 1 << 16) {
+            shardCount <<= 1;
+        }
+        shards = new ConcurrentMap[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new ConcurrentHashMap<>();
+        }
+        shardMask = shardCount - 1;
+
+        sweeperTask =
+            SWEEPER.scheduleWithFixedDelay(
+                new Sweeper(this), sweepInterval, sweepInterval, TimeUnit.SECONDS
+            );
+    }
+
+    /**
+     * Add the given identifier to the cache. It will be cached for a default amount of time.
+     * @param identifier The identifier to be added
+     */
+    public void add(String identifier) {
+        add(identifier, DEFAULT_TTL);
+    }
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time
+     * @param identifier The identifier to be added
+     * @param timeToLive The length of time to cache the Identifier in seconds
+     */
+    public void add(String identifier, long timeToLive) {
+        if (identifier == null || "".equals(identifier)) {
+            return;
+        }
+
+        long expiry = getExpiry(timeToLive);
+        ConcurrentMap<String, Long> shard = getShard(identifier);
+        Long previous = shard.get(identifier);
+        // Refresh the expiry of an existing entry, without changing the size
+        if (previous != null && shard.replace(identifier, previous, expiry)) {
+            return;
+        }
+        addIfAbsent(identifier, expiry, shard);
+    }
+
+    /**
+     * Add the given identifier to the cache, unless it is already contained in the cache. It will
+     * be cached for a default amount of time. The check and the addition are atomic.
+     * @param identifier The identifier to be added
+     * @return true if the identifier was added, false if it was already contained in the cache
+     * (or if it could not be stored in a full cache with the OverflowPolicy.REJECT policy)
+     */
+    public boolean addIfAbsent(String identifier) {
+        return addIfAbsent(identifier, DEFAULT_TTL);
+    }
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time, unless it is
+     * already contained in the cache. The check and the addition are atomic.
+     * @param identifier The identifier to be added
+     * @param timeToLive The length of time to cache the Identifier in seconds
+     * @return true if the identifier was added, false if it was already contained in the cache
+     * (or if it could not be stored in a full cache with the OverflowPolicy.REJECT policy)
+     */
+    public boolean addIfAbsent(String identifier, long timeToLive) {
+        if (identifier == null || "".equals(identifier)) {
+            return true;
+        }
+        return addIfAbsent(identifier, getExpiry(timeToLive), getShard(identifier));
+    }
+
+    private boolean addIfAbsent(String identifier, long expiry, ConcurrentMap<String, Long> shard) {
+        while (true) {
+            Long existing = shard.get(identifier);
+            if (existing != null) {
+                if (existing > System.currentTimeMillis()) {
+                    return false;
+                }
+                // The existing entry has expired, so take it over
+                if (shard.replace(identifier, existing, expiry)) {
+                    return true;
+                }
+                continue;
+            }
+
+            if (!reserve(shard)) {
+                reject(System.currentTimeMillis());
+                return false;
+            }
+            if (shard.putIfAbsent(identifier, expiry) == null) {
+                return true;
+            }
+            // Another thread added the same identifier in the meantime
+            size.decrementAndGet();
+        }
+    }
+
+    /**
+     * Reserve room for a new entry in the given shard, applying the OverflowPolicy if necessary.
+     */
+    private boolean reserve(ConcurrentMap<String, Long> shard) {
+        if (size.incrementAndGet() <= maxSize) {
+            return true;
+        }
+        size.decrementAndGet();
+
+        if (sweepIfDue(System.currentTimeMillis())) {
+            if (size.incrementAndGet() <= maxSize) {
+                return true;
+            }
+            size.decrementAndGet();
+        }
+
+        if (overflowPolicy == OverflowPolicy.EVICT_EARLIEST_EXPIRY && evictEarliest(shard)) {
+            // The slot of the evicted entry is handed over to the new entry
+            size.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Purge the expired entries, unless they were already purged within the last sweep interval.
+     * Only one of the threads that find the cache full wins the race to purge it.
+     */
+    private boolean sweepIfDue(long now) {
+        long last = lastSweep.get();
+        if (now - last < sweepIntervalMillis || !lastSweep.compareAndSet(last, now)) {
+            return false;
+        }
+        sweep(now);
+        return true;
+    }
+
+    private void reject(long now) {
+        SecurityMetrics.cacheRejection("ConcurrentReplayCache");
+        rejectedSinceWarning.incrementAndGet();
+        long last = lastOverflowWarning.get();
+        if (now - last >= sweepIntervalMillis && lastOverflowWarning.compareAndSet(last, now)) {
+            warnOverflow(rejectedSinceWarning.getAndSet(0L));
+        } else {
+            LOG.debug("The replay cache is full, rejecting identifier");
+        }
+    }
+
+    /**
+     * Log that the cache is full. This is called at most once per sweep interval.
+     * @param rejected the number of identifiers that were rejected since the last warning
+     */
+    protected void warnOverflow(long rejected) {
+        LOG.warn("The replay cache is full, {} identifier(s) rejected since the last warning", rejected);
+    }
+
+    private boolean evictEarliest(ConcurrentMap<String, Long> shard) {
+        while (true) {
+            // Only a bounded sample of the shard is examined, so that eviction takes constant time
+            Map.Entry<String, Long> earliest = null;
+            Iterator<Map.Entry<String, Long>> iterator = shard.entrySet().iterator();
+            for (int i = 0; i < EVICTION_SAMPLE_SIZE && iterator.hasNext(); i++) {
+                Map.Entry<String, Long> entry = iterator.next();
+                if (earliest == null || entry.getValue() < earliest.getValue()) {
+                    earliest = entry;
+                }
+            }
+            if (earliest == null) {
+                return false;
+            }
+            if (remove(shard, earliest.getKey(), earliest.getValue())) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Return true if the given identifier is contained in the cache
+     * @param identifier The identifier to check
+     */
+    public boolean contains(String identifier) {
+        if (identifier == null || "".equals(identifier)) {
+            return false;
+        }
+        ConcurrentMap<String, Long> shard = getShard(identifier);
+        Long expiry = shard.get(identifier);
+        if (expiry == null) {
+            return false;
+        }
+        if (expiry > System.currentTimeMillis()) {
+            return true;
+        }
+        remove(shard, identifier, expiry);
+        return false;
+    }
+
+    /**
+     * @return the number of identifiers currently stored, including any expired identifiers that
+     * have not been purged yet
+     */
+    public int size() {
+        return size.get();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Purge all of the entries that expire before the given time
+     */
+    protected void sweep(long now) {
+        for (ConcurrentMap<String, Long> shard : shards) {
+            Iterator<Map.Entry<String, Long>> iterator = shard.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Long> entry = iterator.next();
+                if (entry.getValue() <= now) {
+                    remove(shard, entry.getKey(), entry.getValue());
+                }
+            }
+        }
+    }
+
+    private boolean remove(ConcurrentMap<String, Long> shard, String identifier, Long expiry) {
+        if (shard.remove(identifier, expiry)) {
+            size.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private ConcurrentMap<String, Long> getShard(String identifier) {
+        int hash = identifier.hashCode();
+        hash ^= hash >>> 16;
+        return shards[hash & shardMask];
+    }
+
+    private static long getExpiry(long timeToLive) {
+        long ttl = timeToLive;
+        if (ttl < 0 || ttl > MAX_TTL) {
+            ttl = DEFAULT_TTL;
+        }
+        return System.currentTimeMillis() + ttl * 1000L;
+    }
+
+    @Override
+    public void close() {
+        ScheduledFuture<?> task = sweeperTask;
+        if (task != null) {
+            task.cancel(false);
+            sweeperTask = null;
+        }
+        for (ConcurrentMap<String, Long> shard : shards) {
+            shard.clear();
+        }
+        size.set(0);
+    }
+
+    /**
+     * The sweeper only holds a weak reference to the cache, so that a cache which is not closed
+     * can still be garbage collected, at which point the task cancels itself.
+     */
+    private static final class Sweeper implements Runnable {
+        private final WeakReference<ConcurrentReplayCache> cacheReference;
+
+        Sweeper(ConcurrentReplayCache cache) {
+            cacheReference = new WeakReference<>(cache);
+        }
+
+        @Override
+        public void run() {
+            ConcurrentReplayCache cache = cacheReference.get();
+            if (cache == null) {
+                throw new IllegalStateException("The replay cache has been garbage collected");
+            }
+            try {
+                long now = System.currentTimeMillis();
+                cache.lastSweep.set(now);
+                cache.sweep(now);
+            } catch (RuntimeException ex) {
+                LOG.debug("Error purging the replay cache: {}", ex.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+/**
+ * A factory to return a ConcurrentReplayCache instance. The maximum size, overflow policy and
+ * sweep interval of the caches that are created can be configured on the factory.
+ */
+public class ConcurrentReplayCacheFactory extends ReplayCacheFactory {
+
+    private int maxSize = ConcurrentReplayCache.DEFAULT_MAX_SIZE;
+    private ConcurrentReplayCache.OverflowPolicy overflowPolicy =
+        ConcurrentReplayCache.OverflowPolicy.REJECT;
+    private long sweepInterval = ConcurrentReplayCache.DEFAULT_SWEEP_INTERVAL;
+
+    public ReplayCache newReplayCache(String key, Object configuration) {
+        return new ConcurrentReplayCache(maxSize, overflowPolicy, sweepInterval);
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public ConcurrentReplayCache.OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(ConcurrentReplayCache.OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Get the interval in seconds between two purges of the expired entries of a cache
+     */
+    public long getSweepInterval() {
+        return sweepInterval;
+    }
+
+    /**
+     * Set the interval in seconds between two purges of the expired entries of a cache
+     */
+    public void setSweepInterval(long sweepInterval) {
+        this.sweepInterval = sweepInterval;
+    }
+
+}
@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.Closeable;
+import java.security.PublicKey;
+import java.util.Base64;
+import java.util.Objects;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+
+/**
+ * A bounded, in-memory cache of the symmetric keys obtained by decrypting (unwrapping) an
+ * EncryptedKey with a private key. When a sender reuses the same wrapped session key across many
+ * messages, a cached key saves the private key operation for every message but the first.
+ *
+ * Keys are cached per decryption Crypto instance, and are identified by the SHA-1 digest of the
+ * CipherValue of the EncryptedKey (the "EncryptedKeySHA1" of the key). A cached key is only
+ * returned if the public key that identifies the wrapping key, and the key transport parameters,
+ * match the ones the key was cached with. Only successfully unwrapped keys should be cached.
+ *
+ * Each key is cached for a fixed time to live, after which it is removed. If the cache is full, the
+ * oldest key is evicted. The bytes of a key are overwritten when it is removed, and only copies of
+ * the cached bytes are handed out.
+ */
+public class DecryptedKeyCache implements Closeable {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    public static final long DEFAULT_TTL = 60L * 5L;
+    public static final long MAX_TTL = DEFAULT_TTL * 12L;
+
+    private final ExpiringSecretMap<CacheKey, CacheEntry> cache;
+
+    /**
+     * Create a cache holding up to DEFAULT_MAX_ENTRIES keys for DEFAULT_TTL seconds.
+     */
+    public DecryptedKeyCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL);
+    }
+
+    /**
+     * Create a cache.
+     * @param maxEntries the maximum number of keys to cache
+     * @param timeToLive the length of time to cache a key in seconds. A value that is negative
+     *                   or greater than MAX_TTL is replaced by DEFAULT_TTL
+     */
+    public DecryptedKeyCache(int maxEntries, long timeToLive) {
+        cache = new ExpiringSecretMap<>(maxEntries, timeToLive, DEFAULT_TTL, MAX_TTL);
+    }
+
+    /**
+     * Get a copy of a cached key.
+     * @param crypto the Crypto instance that holds the private key that unwrapped the key
+     * @param encryptedKeySHA1 the (Base-64 encoded) SHA-1 digest of the wrapped key
+     * @param wrappingKey the public key of the key pair that wrapped the key
+     * @param keyTransportParameters the key transport algorithm and its parameters
+     * @return a copy of the cached key, or null if no matching key is cached
+     */
+    public synchronized byte[] get(
+        Crypto crypto, String encryptedKeySHA1, PublicKey wrappingKey, String keyTransportParameters
+    ) {
+        if (crypto == null || encryptedKeySHA1 == null) {
+            return null;
+        }
+        CacheEntry entry = cache.get(new CacheKey(crypto, encryptedKeySHA1), System.currentTimeMillis());
+        boolean hit = entry != null && entry.matches(wrappingKey, keyTransportParameters);
+        SecurityMetrics.cacheAccess("DecryptedKeyCache", hit);
+        return hit ? entry.getSecret().clone() : null;
+    }
+
+    /**
+     * Cache a copy of a key.
+     * @param crypto the Crypto instance that holds the private key that unwrapped the key
+     * @param encryptedKeySHA1 the (Base-64 encoded) SHA-1 digest of the wrapped key
+     * @param wrappingKey the public key of the key pair that wrapped the key
+     * @param keyTransportParameters the key transport algorithm and its parameters
+     * @param decryptedKey the unwrapped key
+     */
+    public synchronized void put(
+        Crypto crypto, String encryptedKeySHA1, PublicKey wrappingKey, String keyTransportParameters,
+        byte[] decryptedKey
+    ) {
+        if (crypto == null || encryptedKeySHA1 == null || decryptedKey == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        CacheEntry entry =
+            new CacheEntry(decryptedKey.clone(), wrappingKey, keyTransportParameters, cache.getExpiry(now));
+        cache.put(new CacheKey(crypto, encryptedKeySHA1), entry, now);
+    }
+
+    /**
+     * @return the number of cached keys, including keys that have expired but are not yet removed
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * Remove (and wipe) all of the cached keys.
+     */
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    public void close() {
+        clear();
+    }
+
+    /**
+     * Get the String that identifies the key transport algorithm of an EncryptedKey, and its
+     * parameters, which must match for a cached key to be used. Each part is always present, an
+     * empty String standing for a parameter that is not given, so that the DOM and StAX code
+     * produce the same String for the same EncryptedKey.
+     * @param keyTransportAlgorithm the key transport algorithm
+     * @param digestAlgorithm the OAEP digest algorithm, or null
+     * @param mgfAlgorithm the OAEP mask generation function, or null
+     * @param oaepParams the OAEP parameters (the PSource), or null
+     * @return the key transport parameters
+     */
+    public static String getKeyTransportParameters(
+        String keyTransportAlgorithm, String digestAlgorithm, String mgfAlgorithm, byte[] oaepParams
+    ) {
+        StringBuilder parameters = new StringBuilder();
+        parameters.append(keyTransportAlgorithm == null ? "" : keyTransportAlgorithm);
+        parameters.append(' ').append(digestAlgorithm == null ? "" : digestAlgorithm);
+        parameters.append(' ').append(mgfAlgorithm == null ? "" : mgfAlgorithm);
+        parameters.append(' ');
+        if (oaepParams != null) {
+            parameters.append(Base64.getEncoder().encodeToString(oaepParams));
+        }
+        return parameters.toString();
+    }
+
+    private static final class CacheKey {
+        private final Crypto crypto;
+        private final String encryptedKeySHA1;
+
+        CacheKey(Crypto crypto, String encryptedKeySHA1) {
+            this.crypto = crypto;
+            this.encryptedKeySHA1 = encryptedKeySHA1;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(crypto) + encryptedKeySHA1.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) object;
+            return crypto == other.crypto && encryptedKeySHA1.equals(other.encryptedKeySHA1);
+        }
+    }
+
+    private static final class CacheEntry extends ExpiringSecretMap.Entry {
+        private final PublicKey wrappingKey;
+        private final String keyTransportParameters;
+
+        CacheEntry(byte[] key, PublicKey wrappingKey, String keyTransportParameters, long expires) {
+            super(key, expires);
+            this.wrappingKey = wrappingKey;
+            this.keyTransportParameters = keyTransportParameters;
+        }
+
+        boolean matches(PublicKey otherWrappingKey, String otherKeyTransportParameters) {
+            return Objects.equals(wrappingKey, otherWrappingKey)
+                && Objects.equals(keyTransportParameters, otherKeyTransportParameters);
+        }
+    }
+}
@@ -113,6 +113,48 @@ public class EHCacheReplayCache implements ReplayCache {
             return;
         }
 
+        cache.put(createElement(identifier, timeToLive));
+    }
+
+    /**
+     * Add the given identifier to the cache, unless it is already contained in the cache. It will
+     * be cached for a default amount of time. The check and the addition are atomic.
+     * @param identifier The identifier to be added
+     * @return true if the identifier was added, false if it was already contained in the cache
+     */
+    public boolean addIfAbsent(String identifier) {
+        return addIfAbsent(identifier, ttl);
+    }
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time, unless it is already
+     * contained in the cache. The check and the addition are atomic.
+     * @param identifier The identifier to be added
+     * @param timeToLive The length of time to cache the Identifier in seconds
+     * @return true if the identifier was added, false if it was already contained in the cache
+     */
+    public boolean addIfAbsent(String identifier, long timeToLive) {
+        if (identifier == null || "".equals(identifier)) {
+            return true;
+        }
+
+        Element cacheElement = createElement(identifier, timeToLive);
+        while (true) {
+            Element existing = cache.putIfAbsent(cacheElement);
+            if (existing == null) {
+                return true;
+            }
+            if (!cache.isExpired(existing)) {
+                return false;
+            }
+            // Take over an expired element that has not been evicted yet
+            if (cache.replace(existing, cacheElement)) {
+                return true;
+            }
+        }
+    }
+
+    private Element createElement(String identifier, long timeToLive) {
         int parsedTTL = (int)timeToLive;
         if (timeToLive != (long)parsedTTL || parsedTTL < 0 || parsedTTL > MAX_TTL) {
             // Default to configured value
@@ -125,7 +167,7 @@ public class EHCacheReplayCache implements ReplayCache {
 
         Element cacheElement = new Element(identifier, identifier, parsedTTL, parsedTTL);
         cacheElement.resetAccessStatistics();
-        cache.put(cacheElement);
+        return cacheElement;
     }
 
     /**
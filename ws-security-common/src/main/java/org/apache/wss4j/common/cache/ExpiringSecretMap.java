@@ -0,0 +1,154 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded map of secrets (such as keys) that expire after a fixed time to live, which is shared
+ * by the in-memory key caches. If the map is full, the oldest entry is evicted. The bytes of the
+ * secret of an entry are overwritten when the entry is removed for any reason. This class is not
+ * thread-safe, the caches synchronize access to it.
+ *
+ * @param <K> the type of the keys of the map
+ * @param <E> the type of the entries of the map
+ */
+final class ExpiringSecretMap<K, E extends ExpiringSecretMap.Entry> {
+
+    // Insertion ordered. As every entry has the same time to live, the eldest entry expires first
+    private final Map<K, E> entries = new LinkedHashMap<>();
+    private final int maxEntries;
+    private final long timeToLive;
+
+    /**
+     * @param maxEntries the maximum number of entries
+     * @param timeToLive the time to live of an entry in seconds. A value that is negative or
+     *                   greater than maxTimeToLive is replaced by defaultTimeToLive
+     * @param defaultTimeToLive the default time to live of an entry in seconds
+     * @param maxTimeToLive the maximum time to live of an entry in seconds
+     */
+    ExpiringSecretMap(int maxEntries, long timeToLive, long defaultTimeToLive, long maxTimeToLive) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The maximum number of entries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        if (timeToLive < 0 || timeToLive > maxTimeToLive) {
+            this.timeToLive = defaultTimeToLive;
+        } else {
+            this.timeToLive = timeToLive;
+        }
+    }
+
+    /**
+     * @return the time at which an entry that is added at the given time expires
+     */
+    long getExpiry(long now) {
+        return now + timeToLive * 1000L;
+    }
+
+    /**
+     * @return the entry for the given key, or null if there is none. An expired entry is removed.
+     */
+    E get(K key, long now) {
+        E entry = entries.get(key);
+        if (entry != null && entry.isExpired(now)) {
+            entries.remove(key);
+            entry.wipe();
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Add an entry after removing the expired entries, replacing any entry for the same key. The
+     * oldest entries are evicted if the map is then full.
+     */
+    void put(K key, E entry, long now) {
+        processExpiry(now);
+
+        // Remove any previous entry first, so that the new one is appended at the end
+        remove(key);
+        entries.put(key, entry);
+
+        Iterator<E> iterator = entries.values().iterator();
+        while (entries.size() > maxEntries && iterator.hasNext()) {
+            iterator.next().wipe();
+            iterator.remove();
+        }
+    }
+
+    void remove(K key) {
+        E entry = entries.remove(key);
+        if (entry != null) {
+            entry.wipe();
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    void clear() {
+        for (E entry : entries.values()) {
+            entry.wipe();
+        }
+        entries.clear();
+    }
+
+    private void processExpiry(long now) {
+        Iterator<E> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            E entry = iterator.next();
+            if (!entry.isExpired(now)) {
+                break;
+            }
+            entry.wipe();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * An entry of the map, which holds a secret until it expires.
+     */
+    static class Entry {
+        private final byte[] secret;
+        private final long expires;
+
+        Entry(byte[] secret, long expires) {
+            this.secret = secret;
+            this.expires = expires;
+        }
+
+        byte[] getSecret() {
+            return secret;
+        }
+
+        boolean isExpired(long now) {
+            return expires <= now;
+        }
+
+        void wipe() {
+            Arrays.fill(secret, (byte) 0);
+        }
+    }
+}
@@ -0,0 +1,630 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * A ReplayCache implementation that persists the cached identifiers in a local directory, so
+ * that replay protection survives a restart. It does not depend on EHCache.
+ *
+ * Each identifier is appended, together with its expiry time, to a log made up of fixed-size
+ * segment files. The cache is looked up in a hash index that is held in memory,
+ * so a lookup does not touch the disk. When the cache is created, the segments are read in a
+ * single sequential pass to rebuild the index from the identifiers that have not expired. A
+ * background task removes the expired identifiers from the index, and deletes the segments
+ * whose identifiers have all expired. As the TTL of an identifier is bounded, every segment
+ * other than the one that is being written to is eventually deleted.
+ *
+ * Records are written to the segment file as they are added, and so survive the failure of the
+ * process. By default they are not forced to the storage device on every write, see
+ * "setSyncWrites". A truncated or corrupt record at the end of a segment is detected with a
+ * checksum, and ignored. The file handles of the segments are released when the cache is closed,
+ * and when an expired segment is deleted.
+ *
+ * The directory is locked while the cache is open, so that it cannot be shared with another
+ * cache instance (or process). The default TTL is 5 minutes and the max TTL is 1 hour.
+ */
+public class FileReplayCache implements ReplayCache {
+
+    public static final long DEFAULT_TTL = 60L * 5L;
+    public static final long MAX_TTL = DEFAULT_TTL * 12L;
+    public static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+    public static final long DEFAULT_COMPACTION_INTERVAL = 60L;
+
+    /**
+     * Identifiers longer than this (in UTF-8 bytes) are stored as a SHA-256 digest instead
+     */
+    static final int MAX_IDENTIFIER_LENGTH = 1024;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(FileReplayCache.class);
+
+    private static final String SEGMENT_PREFIX = "replay-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String LOCK_FILE = "replay.lock";
+    // length + expiry + checksum
+    private static final int RECORD_OVERHEAD = 4 + 8 + 4;
+
+    private static final ScheduledExecutorService COMPACTOR =
+        Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "wss4j-replay-cache-compactor");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+    private final File directory;
+    private final int segmentSize;
+    private final ConcurrentMap<String, Long> index = new ConcurrentHashMap<>();
+    private final List<Segment> segments = new ArrayList<>();
+    private final Object writeLock = new Object();
+    private final RandomAccessFile lockFile;
+    private final FileLock lock;
+    private Segment activeSegment;
+    private long nextSequence;
+    private volatile boolean syncWrites;
+    private volatile boolean closed;
+    private volatile ScheduledFuture<?> compactionTask;
+
+    /**
+     * Create a cache in the given directory, with the default segment size and compaction interval
+     * @param directory the directory in which the segments are stored. It is created if needed.
+     * @throws IOException if the directory cannot be created, locked or read
+     */
+    public FileReplayCache(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_COMPACTION_INTERVAL);
+    }
+
+    /**
+     * @param directory the directory in which the segments are stored. It is created if needed.
+     * @param segmentSize the size in bytes of a segment file
+     * @param compactionInterval the interval in seconds between two compactions
+     * @throws IOException if the directory cannot be created, locked or read
+     */
+    public FileReplayCache(
+        File directory, int segmentSize, long compactionInterval
+    ) throws IOException {
+        if (segmentSize < RECORD_OVERHEAD + MAX_IDENTIFIER_LENGTH * 4 || compactionInterval <= 0L) {
+            throw new IllegalArgumentException("Invalid segment size or compaction interval");
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create the replay cache directory " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+
+        lockFile = new RandomAccessFile(new File(directory, LOCK_FILE), "rw");
+        FileLock fileLock;
+        try {
+            fileLock = lockFile.getChannel().tryLock();
+        } catch (OverlappingFileLockException ex) {
+            // The directory is locked by another cache in this JVM
+            fileLock = null;
+        } catch (IOException ex) {
+            lockFile.close();
+            throw ex;
+        }
+        if (fileLock == null) {
+            lockFile.close();
+            throw new IOException("The replay cache directory " + directory + " is in use");
+        }
+        lock = fileLock;
+
+        try {
+            load();
+        } catch (IOException ex) {
+            closeSegments();
+            lock.release();
+            lockFile.close();
+            throw ex;
+        }
+
+        compactionTask =
+            COMPACTOR.scheduleWithFixedDelay(
+                new Compactor(this), compactionInterval, compactionInterval, TimeUnit.SECONDS
+            );
+    }
+
+    /**
+     * Open the existing segments in sequence order, and rebuild the index from their records
+     */
+    private void load() throws IOException {
+        File[] files = directory.listFiles((dir, name) ->
+            name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)
+        );
+        List<Long> sequences = new ArrayList<>();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                try {
+                    sequences.add(Long.valueOf(
+                        name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())
+                    ));
+                } catch (NumberFormatException ex) {
+                    LOG.debug("Ignoring file {} in the replay cache directory", name);
+                }
+            }
+        }
+        sequences.sort(null);
+
+        long now = System.currentTimeMillis();
+        int restored = 0;
+        for (Long sequence : sequences) {
+            Segment segment = new Segment(sequence, segmentFile(sequence), segmentSize);
+            segments.add(segment);
+            restored += segment.replay(index, now);
+            nextSequence = sequence + 1;
+        }
+        if (segments.isEmpty()) {
+            activeSegment = newSegment();
+        } else {
+            activeSegment = segments.get(segments.size() - 1);
+        }
+        LOG.debug(
+            "Restored {} identifiers from {} replay cache segments in {}",
+            restored, segments.size(), directory
+        );
+    }
+
+    private File segmentFile(long sequence) {
+        return new File(directory, SEGMENT_PREFIX + String.format("%016d", sequence) + SEGMENT_SUFFIX);
+    }
+
+    private Segment newSegment() throws IOException {
+        long sequence = nextSequence++;
+        Segment segment = new Segment(sequence, segmentFile(sequence), segmentSize);
+        segments.add(segment);
+        return segment;
+    }
+
+    /**
+     * Set whether every write is forced to the storage device. The default is false, in which
+     * case the records survive the failure of the process, but not necessarily of the machine.
+     */
+    public void setSyncWrites(boolean syncWrites) {
+        this.syncWrites = syncWrites;
+    }
+
+    public boolean isSyncWrites() {
+        return syncWrites;
+    }
+
+    /**
+     * Add the given identifier to the cache. It will be cached for a default amount of time.
+     * @param identifier The identifier to be added
+     */
+    public void add(String identifier) {
+        add(identifier, DEFAULT_TTL);
+    }
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time
+     * @param identifier The identifier to be added
+     * @param timeToLive The length of time to cache the Identifier in seconds
+     */
+    public void add(String identifier, long timeToLive) {
+        if (identifier == null || "".equals(identifier)) {
+            return;
+        }
+        String key = normalize(identifier);
+        long expiry = getExpiry(timeToLive);
+        synchronized (writeLock) {
+            append(key, expiry);
+            index.put(key, expiry);
+        }
+    }
+
+    /**
+     * Add the given identifier to the cache, unless it is already contained in the cache. It will
+     * be cached for a default amount of time. The check and the addition are atomic.
+     * @param identifier The identifier to be added
+     * @return true if the identifier was added, false if it was already contained in the cache
+     */
+    public boolean addIfAbsent(String identifier) {
+        return addIfAbsent(identifier, DEFAULT_TTL);
+    }
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time, unless it is already
+     * contained in the cache. The check and the addition are atomic.
+     * @param identifier The identifier to be added
+     * @param timeToLive The length of time to cache the Identifier in seconds
+     * @return true if the identifier was added, false if it was already contained in the cache
+     */
+    public boolean addIfAbsent(String identifier, long timeToLive) {
+        if (identifier == null || "".equals(identifier)) {
+            return true;
+        }
+        String key = normalize(identifier);
+        if (isCached(key)) {
+            return false;
+        }
+        long expiry = getExpiry(timeToLive);
+        synchronized (writeLock) {
+            if (isCached(key)) {
+                return false;
+            }
+            append(key, expiry);
+            index.put(key, expiry);
+        }
+        return true;
+    }
+
+    /**
+     * Return true if the given identifier is contained in the cache
+     * @param identifier The identifier to check
+     */
+    public boolean contains(String identifier) {
+        if (identifier == null || "".equals(identifier)) {
+            return false;
+        }
+        return isCached(normalize(identifier));
+    }
+
+    private boolean isCached(String key) {
+        Long expiry = index.get(key);
+        if (expiry == null) {
+            return false;
+        }
+        if (expiry > System.currentTimeMillis()) {
+            return true;
+        }
+        index.remove(key, expiry);
+        return false;
+    }
+
+    /**
+     * @return the number of identifiers in the index, including any expired identifiers that have
+     * not been purged yet
+     */
+    public int size() {
+        return index.size();
+    }
+
+    /**
+     * @return the number of segment files
+     */
+    public int getSegmentCount() {
+        synchronized (writeLock) {
+            return segments.size();
+        }
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Append a record to the active segment, moving on to a new segment if it is full. Must be
+     * called with the write lock held. A failure to write is logged, the identifier is then only
+     * cached in memory.
+     */
+    private void append(String key, long expiry) {
+        if (closed) {
+            throw new IllegalStateException("The replay cache has been closed");
+        }
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        try {
+            if (!activeSegment.append(bytes, expiry, syncWrites)) {
+                activeSegment.force();
+                activeSegment = newSegment();
+                activeSegment.append(bytes, expiry, syncWrites);
+            }
+        } catch (IOException ex) {
+            LOG.error("Error writing to the replay cache in {}: {}", directory, ex.getMessage());
+        }
+    }
+
+    /**
+     * Purge the expired identifiers from the index, and delete the segments (other than the
+     * active one) that only hold identifiers that have expired before the given time
+     */
+    protected void compact(long now) {
+        Iterator<Map.Entry<String, Long>> iterator = index.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Long> entry = iterator.next();
+            if (entry.getValue() <= now) {
+                index.remove(entry.getKey(), entry.getValue());
+            }
+        }
+
+        synchronized (writeLock) {
+            Iterator<Segment> segmentIterator = segments.iterator();
+            while (segmentIterator.hasNext()) {
+                Segment segment = segmentIterator.next();
+                if (segment != activeSegment && segment.getMaxExpiry() <= now) {
+                    segment.delete();
+                    segmentIterator.remove();
+                }
+            }
+        }
+    }
+
+    private static String normalize(String identifier) {
+        if (identifier.length() * 3 <= MAX_IDENTIFIER_LENGTH) {
+            return identifier;
+        }
+        byte[] bytes = identifier.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= MAX_IDENTIFIER_LENGTH) {
+            return identifier;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return "sha256:" + Base64.getEncoder().encodeToString(digest.digest(bytes));
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static long getExpiry(long timeToLive) {
+        long ttl = timeToLive;
+        if (ttl < 0 || ttl > MAX_TTL) {
+            ttl = DEFAULT_TTL;
+        }
+        return System.currentTimeMillis() + ttl * 1000L;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            ScheduledFuture<?> task = compactionTask;
+            if (task != null) {
+                task.cancel(false);
+                compactionTask = null;
+            }
+            closeSegments();
+            index.clear();
+            try {
+                lock.release();
+            } finally {
+                lockFile.close();
+            }
+        }
+    }
+
+    private void closeSegments() {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+    }
+
+    /**
+     * A segment file, that is written and read with positional I/O on its FileChannel. A record
+     * consists of the length of the identifier (an int), the expiry (a long), the UTF-8 bytes of
+     * the identifier and a CRC-32 checksum (an int) of the previous fields. A zero length marks
+     * the end of the records.
+     */
+    private static final class Segment {
+        private final long sequence;
+        private final File file;
+        private final FileChannel channel;
+        private final long capacity;
+        private long position;
+        private volatile long maxExpiry;
+
+        Segment(long sequence, File file, int size) throws IOException {
+            this.sequence = sequence;
+            this.file = file;
+            channel = new RandomAccessFile(file, "rw").getChannel();
+            try {
+                capacity = Math.max(channel.size(), size);
+            } catch (IOException ex) {
+                channel.close();
+                throw ex;
+            }
+        }
+
+        /**
+         * Read the records from the start of the segment, adding those that have not expired to
+         * the index, and position the segment after the last valid record.
+         * @return the number of identifiers that were added to the index
+         */
+        int replay(ConcurrentMap<String, Long> index, long now) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate((int)Math.min(channel.size(), capacity));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, buffer.position()) < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+
+            int count = 0;
+            CRC32 crc = new CRC32();
+            while (buffer.remaining() >= RECORD_OVERHEAD) {
+                int start = buffer.position();
+                try {
+                    int length = buffer.getInt();
+                    if (length <= 0 || length > buffer.remaining() - 12) {
+                        buffer.position(start);
+                        break;
+                    }
+                    long expiry = buffer.getLong();
+                    byte[] bytes = new byte[length];
+                    buffer.get(bytes);
+                    int checksum = buffer.getInt();
+
+                    crc.reset();
+                    updateChecksum(crc, length, expiry, bytes);
+                    if ((int)crc.getValue() != checksum) {
+                        LOG.warn("Ignoring a corrupt record in replay cache segment {}", file);
+                        buffer.position(start);
+                        break;
+                    }
+
+                    maxExpiry = Math.max(maxExpiry, expiry);
+                    if (expiry > now) {
+                        index.merge(new String(bytes, StandardCharsets.UTF_8), expiry, Math::max);
+                        count++;
+                    }
+                } catch (BufferUnderflowException ex) {
+                    buffer.position(start);
+                    break;
+                }
+            }
+            position = buffer.position();
+            // Clear any partial record, so that it is not mistaken for a valid one later
+            if (capacity - position >= 4) {
+                writeInt(position, 0);
+            }
+            return count;
+        }
+
+        /**
+         * @return false if the segment does not have enough room left for the record
+         */
+        boolean append(byte[] bytes, long expiry, boolean sync) throws IOException {
+            int recordLength = RECORD_OVERHEAD + bytes.length;
+            // Keep room for the zero length that marks the end of the records
+            if (capacity - position < recordLength + 4) {
+                return false;
+            }
+            CRC32 crc = new CRC32();
+            updateChecksum(crc, bytes.length, expiry, bytes);
+
+            ByteBuffer record = ByteBuffer.allocate(recordLength + 4);
+            record.putInt(0);
+            record.putLong(expiry);
+            record.put(bytes);
+            record.putInt((int)crc.getValue());
+            record.putInt(0);
+            record.flip();
+
+            // Write the length last, so that a partially written record is never seen as valid
+            long start = position;
+            while (record.hasRemaining()) {
+                channel.write(record, start + record.position());
+            }
+            writeInt(start, bytes.length);
+            position = start + recordLength;
+
+            maxExpiry = Math.max(maxExpiry, expiry);
+            if (sync) {
+                channel.force(false);
+            }
+            return true;
+        }
+
+        private void writeInt(long offset, int value) throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(4);
+            buffer.putInt(value);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer, offset + buffer.position());
+            }
+        }
+
+        private static void updateChecksum(CRC32 crc, int length, long expiry, byte[] bytes) {
+            for (int shift = 24; shift >= 0; shift -= 8) {
+                crc.update((int)(length >>> shift));
+            }
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                crc.update((int)(expiry >>> shift));
+            }
+            crc.update(bytes);
+        }
+
+        long getMaxExpiry() {
+            return maxExpiry;
+        }
+
+        void force() throws IOException {
+            channel.force(false);
+        }
+
+        /**
+         * Flush the segment and release its file handle
+         */
+        void close() {
+            try {
+                channel.force(false);
+            } catch (IOException ex) {
+                LOG.debug("Error flushing replay cache segment {}: {}", file, ex.getMessage());
+            }
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                LOG.debug("Error closing replay cache segment {}: {}", file, ex.getMessage());
+            }
+        }
+
+        void delete() {
+            // The file handle must be released first, or the file cannot be deleted on Windows
+            close();
+            if (!file.delete()) {
+                LOG.warn("Cannot delete the expired replay cache segment {}", file);
+            } else {
+                LOG.debug("Deleted the expired replay cache segment {}", sequence);
+            }
+        }
+    }
+
+    /**
+     * The compactor only holds a weak reference to the cache, so that a cache which is not closed
+     * can still be garbage collected, at which point the task cancels itself.
+     */
+    private static final class Compactor implements Runnable {
+        private final WeakReference<FileReplayCache> cacheReference;
+
+        Compactor(FileReplayCache cache) {
+            cacheReference = new WeakReference<>(cache);
+        }
+
+        @Override
+        public void run() {
+            FileReplayCache cache = cacheReference.get();
+            if (cache == null) {
+                throw new IllegalStateException("The replay cache has been garbage collected");
+            }
+            try {
+                cache.compact(System.currentTimeMillis());
+            } catch (RuntimeException ex) {
+                LOG.debug("Error compacting the replay cache: {}", ex.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * A factory to return a FileReplayCache instance. If the configuration Object is a File, it is
+ * the directory in which the cache is stored. Otherwise (for example a String or URL that refers
+ * to the configuration file of another ReplayCache implementation) the configuration is ignored,
+ * and the cache is stored in a subdirectory, named after the key, of the base directory of the
+ * factory ("java.io.tmpdir/wss4j-replay-cache" by default).
+ */
+public class FileReplayCacheFactory extends ReplayCacheFactory {
+
+    private File baseDirectory =
+        new File(System.getProperty("java.io.tmpdir"), "wss4j-replay-cache");
+    private boolean syncWrites;
+
+    public ReplayCache newReplayCache(String key, Object configuration) {
+        File directory;
+        if (configuration instanceof File) {
+            directory = (File)configuration;
+        } else {
+            directory = new File(baseDirectory, key.replaceAll("[^A-Za-z0-9._-]", "_"));
+        }
+
+        try {
+            FileReplayCache replayCache = new FileReplayCache(directory);
+            replayCache.setSyncWrites(syncWrites);
+            return replayCache;
+        } catch (IOException ex) {
+            throw new IllegalStateException(
+                "Cannot create the replay cache in " + directory + ": " + ex.getMessage(), ex
+            );
+        }
+    }
+
+    public File getBaseDirectory() {
+        return baseDirectory;
+    }
+
+    public void setBaseDirectory(File baseDirectory) {
+        this.baseDirectory = baseDirectory;
+    }
+
+    public boolean isSyncWrites() {
+        return syncWrites;
+    }
+
+    public void setSyncWrites(boolean syncWrites) {
+        this.syncWrites = syncWrites;
+    }
+
+}
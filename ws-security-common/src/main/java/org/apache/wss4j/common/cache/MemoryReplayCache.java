@@ -60,6 +60,41 @@ public class MemoryReplayCache implements ReplayCache {
             return;
         }
 
+        addExpiry(identifier, timeToLive);
+        ids.add(identifier);
+    }
+
+    /**
+     * Add the given identifier to the cache, unless it is already contained in the cache. It will
+     * be cached for a default amount of time.
+     * @param identifier The identifier to be added
+     * @return true if the identifier was added, false if it was already contained in the cache
+     */
+    public boolean addIfAbsent(String identifier) {
+        return addIfAbsent(identifier, DEFAULT_TTL);
+    }
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time, unless it is already
+     * contained in the cache.
+     * @param identifier The identifier to be added
+     * @param timeToLive The length of time to cache the Identifier in seconds
+     * @return true if the identifier was added, false if it was already contained in the cache
+     */
+    public boolean addIfAbsent(String identifier, long timeToLive) {
+        if (identifier == null || "".equals(identifier)) {
+            return true;
+        }
+
+        processTokenExpiry();
+        if (!ids.add(identifier)) {
+            return false;
+        }
+        addExpiry(identifier, timeToLive);
+        return true;
+    }
+
+    private void addExpiry(String identifier, long timeToLive) {
         long ttl = timeToLive;
         if (ttl < 0 || ttl > MAX_TTL) {
             ttl = DEFAULT_TTL;
@@ -77,7 +112,6 @@ public class MemoryReplayCache implements ReplayCache {
             }
             list.add(identifier);
         }
-        ids.add(identifier);
     }
 
     /**
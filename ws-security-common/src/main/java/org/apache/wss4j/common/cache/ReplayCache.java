@@ -46,4 +46,35 @@ public interface ReplayCache extends Closeable {
      */
     boolean contains(String identifier);
 
+    /**
+     * Add the given identifier to the cache, unless it is already contained in the cache. It will
+     * be cached for a default amount of time. Implementations should perform the check and the
+     * addition atomically. The default implementation calls "contains" and then "add".
+     * @param identifier The identifier to be added
+     * @return true if the identifier was added, false if it was already contained in the cache
+     */
+    default boolean addIfAbsent(String identifier) {
+        if (contains(identifier)) {
+            return false;
+        }
+        add(identifier);
+        return true;
+    }
+
+    /**
+     * Add the given identifier to the cache to be cached for the given time, unless it is already
+     * contained in the cache. Implementations should perform the check and the addition
+     * atomically. The default implementation calls "contains" and then "add".
+     * @param identifier The identifier to be added
+     * @param timeToLive The length of time to cache the Identifier in seconds
+     * @return true if the identifier was added, false if it was already contained in the cache
+     */
+    default boolean addIfAbsent(String identifier, long timeToLive) {
+        if (contains(identifier)) {
+            return false;
+        }
+        add(identifier, timeToLive);
+        return true;
+    }
+
 }
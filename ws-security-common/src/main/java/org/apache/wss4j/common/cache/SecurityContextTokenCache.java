@@ -0,0 +1,119 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.cache;
+
+import java.io.Closeable;
+
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+
+/**
+ * A bounded, in-memory cache of the secrets of the SecurityContextTokens that were obtained from a
+ * CallbackHandler, so that the CallbackHandler is not called for every message of a conversation.
+ *
+ * A secret is identified by the identifier (or wsu:Id) that the CallbackHandler returned it for.
+ * Each secret is cached for a fixed time to live, which should not exceed the lifetime of the
+ * SecurityContextTokens, after which it is removed. As a cached secret is used without calling
+ * the CallbackHandler, a SecurityContextToken that is cancelled (or renewed with a new secret)
+ * before then must be removed from the cache with removeSecret. If the cache is full, the oldest
+ * secret is evicted. The bytes of a secret are overwritten when it is removed, and only copies of
+ * the cached bytes are handed out.
+ */
+public class SecurityContextTokenCache implements Closeable {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    public static final long DEFAULT_TTL = 60L * 5L;
+    public static final long MAX_TTL = DEFAULT_TTL * 12L;
+
+    private final ExpiringSecretMap<String, ExpiringSecretMap.Entry> secrets;
+
+    /**
+     * Create a cache holding up to DEFAULT_MAX_ENTRIES secrets for DEFAULT_TTL seconds.
+     */
+    public SecurityContextTokenCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL);
+    }
+
+    /**
+     * Create a cache.
+     * @param maxEntries the maximum number of secrets to cache
+     * @param timeToLive the length of time to cache a secret in seconds. A value that is
+     *                   negative or greater than MAX_TTL is replaced by DEFAULT_TTL
+     */
+    public SecurityContextTokenCache(int maxEntries, long timeToLive) {
+        secrets = new ExpiringSecretMap<>(maxEntries, timeToLive, DEFAULT_TTL, MAX_TTL);
+    }
+
+    /**
+     * Get a copy of the cached secret of a SecurityContextToken.
+     * @param identifier the identifier (or wsu:Id) of the SecurityContextToken
+     * @return a copy of the cached secret, or null if no secret is cached
+     */
+    public synchronized byte[] getSecret(String identifier) {
+        if (identifier == null) {
+            return null;
+        }
+        ExpiringSecretMap.Entry entry = secrets.get(identifier, System.currentTimeMillis());
+        SecurityMetrics.cacheAccess("SecurityContextTokenCache", entry != null);
+        return entry == null ? null : entry.getSecret().clone();
+    }
+
+    /**
+     * Cache a copy of the secret of a SecurityContextToken.
+     * @param identifier the identifier (or wsu:Id) that the secret was obtained for
+     * @param secret the secret
+     */
+    public synchronized void putSecret(String identifier, byte[] secret) {
+        if (identifier == null || secret == null || secret.length == 0) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        secrets.put(identifier, new ExpiringSecretMap.Entry(secret.clone(), secrets.getExpiry(now)), now);
+    }
+
+    /**
+     * Remove (and wipe) the cached secret of a SecurityContextToken. This must be called when the
+     * SecurityContextToken is cancelled, or its secret is changed, so that the secret is not used
+     * until it expires from the cache.
+     * @param identifier the identifier (or wsu:Id) of the SecurityContextToken
+     */
+    public synchronized void removeSecret(String identifier) {
+        if (identifier != null) {
+            secrets.remove(identifier);
+        }
+    }
+
+    /**
+     * @return the number of cached secrets, including secrets that have expired but are not yet
+     * removed
+     */
+    public synchronized int size() {
+        return secrets.size();
+    }
+
+    /**
+     * Remove (and wipe) all of the cached secrets.
+     */
+    public synchronized void clear() {
+        secrets.clear();
+    }
+
+    public void close() {
+        clear();
+    }
+}
@@ -0,0 +1,206 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.Closeable;
+import java.security.PublicKey;
+
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+
+/**
+ * A bounded, in-memory cache of the symmetric (session) keys that a sender has wrapped for a
+ * recipient. Generating a new session key for every message means that every message costs a
+ * public key operation to wrap the key, and a private key operation for the recipient to unwrap it.
+ * When a cached session key is reused instead, the same wrapped key (the same EncryptedKey
+ * CipherValue) is sent again, and a recipient with a DecryptedKeyCache can skip the unwrapping.
+ *
+ * One session key is cached per recipient public key, key transport algorithm (and parameters) and
+ * symmetric encryption algorithm. A session key is rotated once it is older than the maximum age,
+ * or once it has been used for the maximum number of messages, whichever comes first. If the cache
+ * is full, the oldest session key is evicted. The bytes of a session key are overwritten when it is
+ * removed, and only copies of the cached bytes are handed out.
+ */
+public class SessionKeyCache implements Closeable {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    public static final long DEFAULT_MAX_AGE = 60L * 5L;
+    public static final long MAX_AGE = DEFAULT_MAX_AGE * 12L;
+    public static final int DEFAULT_MAX_USES = 100;
+
+    private final ExpiringSecretMap<CacheKey, CacheEntry> cache;
+    private final int maxUses;
+
+    /**
+     * Create a cache holding up to DEFAULT_MAX_ENTRIES session keys, which are each used for at most
+     * DEFAULT_MAX_USES messages and DEFAULT_MAX_AGE seconds.
+     */
+    public SessionKeyCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_AGE, DEFAULT_MAX_USES);
+    }
+
+    /**
+     * Create a cache.
+     * @param maxEntries the maximum number of session keys to cache
+     * @param maxAge the length of time to use a session key for in seconds. A value that is
+     *               negative or greater than MAX_AGE is replaced by DEFAULT_MAX_AGE
+     * @param maxUses the maximum number of messages to use a session key for
+     */
+    public SessionKeyCache(int maxEntries, long maxAge, int maxUses) {
+        if (maxUses < 1) {
+            throw new IllegalArgumentException("The maximum number of uses must be positive");
+        }
+        cache = new ExpiringSecretMap<>(maxEntries, maxAge, DEFAULT_MAX_AGE, MAX_AGE);
+        this.maxUses = maxUses;
+    }
+
+    /**
+     * Get a copy of the current session key for a recipient, and count it as used. A session key
+     * that is too old, or that has been used too often, is removed instead.
+     * @param recipientKey the public key of the recipient, which wraps the session key
+     * @param keyTransportParameters the key transport algorithm and its parameters
+     * @param symmetricAlgorithm the symmetric encryption algorithm of the session key
+     * @return a copy of the session key, or null if no usable session key is cached
+     */
+    public synchronized SessionKey get(
+        PublicKey recipientKey, String keyTransportParameters, String symmetricAlgorithm
+    ) {
+        if (recipientKey == null) {
+            return null;
+        }
+        CacheKey cacheKey = new CacheKey(recipientKey, keyTransportParameters, symmetricAlgorithm);
+        CacheEntry entry = cache.get(cacheKey, System.currentTimeMillis());
+        if (entry != null && entry.uses >= maxUses) {
+            cache.remove(cacheKey);
+            entry = null;
+        }
+        SecurityMetrics.cacheAccess("SessionKeyCache", entry != null);
+        if (entry == null) {
+            return null;
+        }
+        entry.uses++;
+        return new SessionKey(entry.getSecret().clone(), entry.encryptedKey.clone());
+    }
+
+    /**
+     * Cache a copy of a new session key for a recipient, which counts as its first use. Any
+     * session key that is already cached for the recipient is replaced.
+     * @param recipientKey the public key of the recipient, which wrapped the session key
+     * @param keyTransportParameters the key transport algorithm and its parameters
+     * @param symmetricAlgorithm the symmetric encryption algorithm of the session key
+     * @param key the session key
+     * @param encryptedKey the session key wrapped with the public key of the recipient
+     */
+    public synchronized void put(
+        PublicKey recipientKey, String keyTransportParameters, String symmetricAlgorithm,
+        byte[] key, byte[] encryptedKey
+    ) {
+        if (recipientKey == null || key == null || encryptedKey == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        CacheEntry entry = new CacheEntry(key.clone(), encryptedKey.clone(), cache.getExpiry(now));
+        cache.put(new CacheKey(recipientKey, keyTransportParameters, symmetricAlgorithm), entry, now);
+    }
+
+    /**
+     * @return the number of cached session keys, including keys that are due to be rotated
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * Remove (and wipe) all of the cached session keys.
+     */
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    public void close() {
+        clear();
+    }
+
+    /**
+     * A session key, together with the same key wrapped for the recipient.
+     */
+    public static final class SessionKey {
+        private final byte[] key;
+        private final byte[] encryptedKey;
+
+        SessionKey(byte[] key, byte[] encryptedKey) {
+            this.key = key;
+            this.encryptedKey = encryptedKey;
+        }
+
+        /**
+         * @return the (encoded) session key
+         */
+        public byte[] getKey() {
+            return key;
+        }
+
+        /**
+         * @return the session key wrapped with the public key of the recipient
+         */
+        public byte[] getEncryptedKey() {
+            return encryptedKey;
+        }
+    }
+
+    private static final class CacheKey {
+        private final PublicKey recipientKey;
+        private final String keyTransportParameters;
+        private final String symmetricAlgorithm;
+
+        CacheKey(PublicKey recipientKey, String keyTransportParameters, String symmetricAlgorithm) {
+            this.recipientKey = recipientKey;
+            this.keyTransportParameters = keyTransportParameters == null ? "" : keyTransportParameters;
+            this.symmetricAlgorithm = symmetricAlgorithm == null ? "" : symmetricAlgorithm;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = recipientKey.hashCode();
+            result = 31 * result + keyTransportParameters.hashCode();
+            return 31 * result + symmetricAlgorithm.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) object;
+            return recipientKey.equals(other.recipientKey)
+                && keyTransportParameters.equals(other.keyTransportParameters)
+                && symmetricAlgorithm.equals(other.symmetricAlgorithm);
+        }
+    }
+
+    private static final class CacheEntry extends ExpiringSecretMap.Entry {
+        private final byte[] encryptedKey;
+        private int uses = 1;
+
+        CacheEntry(byte[] key, byte[] encryptedKey, long expires) {
+            super(key, expires);
+            this.encryptedKey = encryptedKey;
+        }
+    }
+}
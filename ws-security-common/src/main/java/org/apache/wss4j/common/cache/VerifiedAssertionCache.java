@@ -0,0 +1,345 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.X509Certificate;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+import org.apache.wss4j.common.saml.SAMLKeyInfo;
+import org.apache.wss4j.common.saml.SamlAssertionWrapper;
+import org.joda.time.DateTime;
+import org.opensaml.saml.common.SAMLVersion;
+import org.opensaml.saml.saml2.core.AuthnStatement;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * A bounded, in-memory cache of the signed SAML Assertions whose signature has been verified, and
+ * whose signing key has been trusted. When a client re-presents the same (STS-issued) Assertion
+ * with every request, a cached Assertion saves the canonicalization, the signature verification and
+ * the trust (certificate path) verification for every request but the first. The other checks of an
+ * Assertion (conditions, audience restrictions, one-time use etc.) are not affected by the cache.
+ *
+ * Assertions are cached per signature verification Crypto, and are identified by their ID and a
+ * SHA-256 digest of the complete Assertion element, which includes its Signature (and so its
+ * SignatureValue and signing certificate). An Assertion is only found in the cache if it is
+ * identical to the one that was verified. The digest also covers the settings under which trust
+ * was verified, i.e. whether revocation was checked and the subject and issuer certificate
+ * constraints, so that an Assertion is not found by an endpoint that verifies trust under other
+ * settings. The key is created once per Assertion with "createKey", and then passed to both "get"
+ * and "put". An Assertion is cached until its NotOnOrAfter Condition,
+ * the earliest SessionNotOnOrAfter of its AuthnStatements, or the expiry of its signing
+ * certificate, whichever comes first, and for no longer than the time to live of the cache. If the
+ * cache is full, the oldest Assertion is evicted.
+ */
+public class VerifiedAssertionCache implements Closeable {
+
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+    public static final long DEFAULT_TTL = 60L * 5L;
+    public static final long MAX_TTL = DEFAULT_TTL * 12L;
+
+    private static final byte ELEMENT = 1;
+    private static final byte ATTRIBUTE = 2;
+    private static final byte END_ELEMENT = 3;
+    private static final byte TEXT = 4;
+    private static final byte OTHER = 5;
+
+    // Insertion ordered. Entries may expire earlier than the eldest, these are removed on lookup
+    private final Map<CacheKey, CacheEntry> cache = new LinkedHashMap<>();
+    private final int maxEntries;
+    private final long timeToLive;
+
+    /**
+     * Create a cache holding up to DEFAULT_MAX_ENTRIES Assertions for at most DEFAULT_TTL seconds.
+     */
+    public VerifiedAssertionCache() {
+        this(DEFAULT_MAX_ENTRIES, DEFAULT_TTL);
+    }
+
+    /**
+     * Create a cache.
+     * @param maxEntries the maximum number of Assertions to cache
+     * @param timeToLive the maximum length of time to cache an Assertion in seconds. A value that
+     *                   is negative or greater than MAX_TTL is replaced by DEFAULT_TTL
+     */
+    public VerifiedAssertionCache(int maxEntries, long timeToLive) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("The maximum number of entries must be positive");
+        }
+        this.maxEntries = maxEntries;
+        if (timeToLive < 0 || timeToLive > MAX_TTL) {
+            this.timeToLive = DEFAULT_TTL;
+        } else {
+            this.timeToLive = timeToLive;
+        }
+    }
+
+    /**
+     * Create the key under which a signed Assertion is cached. This digests the complete
+     * Assertion element, so the key should be created once and passed to both "get" and "put".
+     * @param crypto the Crypto instance that verifies trust in the signing key
+     * @param samlAssertion the signed Assertion
+     * @param enableRevocation whether revocation is checked when verifying trust
+     * @param subjectCertConstraints the constraints on the subject DN of the signing certificate
+     * @param issuerCertConstraints the constraints on the issuer DN of the signing certificate
+     * @return the key, or null if the Assertion cannot be cached
+     * @throws WSSecurityException if the Assertion cannot be digested
+     */
+    public CacheKey createKey(
+        Crypto crypto,
+        SamlAssertionWrapper samlAssertion,
+        boolean enableRevocation,
+        Collection<Pattern> subjectCertConstraints,
+        Collection<Pattern> issuerCertConstraints
+    ) throws WSSecurityException {
+        if (crypto == null || samlAssertion == null || samlAssertion.getElement() == null) {
+            return null;
+        }
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            digest(messageDigest, samlAssertion.getElement());
+            messageDigest.update(enableRevocation ? (byte)1 : (byte)0);
+            update(messageDigest, subjectCertConstraints);
+            update(messageDigest, issuerCertConstraints);
+            String digest = Base64.getEncoder().encodeToString(messageDigest.digest());
+            return new CacheKey(crypto, samlAssertion.getId(), digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e);
+        }
+    }
+
+    /**
+     * Get the SAMLKeyInfo of the signature of a cached Assertion.
+     * @param cacheKey the key of the Assertion, as returned by "createKey"
+     * @return the SAMLKeyInfo of the signing key, or null if the Assertion is not cached
+     */
+    public SAMLKeyInfo get(CacheKey cacheKey) {
+        if (cacheKey == null) {
+            return null;
+        }
+        synchronized (this) {
+            CacheEntry entry = cache.get(cacheKey);
+            if (entry != null && entry.expires <= System.currentTimeMillis()) {
+                cache.remove(cacheKey);
+                entry = null;
+            }
+            SecurityMetrics.cacheAccess("VerifiedAssertionCache", entry != null);
+            return entry == null ? null : entry.samlKeyInfo;
+        }
+    }
+
+    /**
+     * Cache an Assertion, the signature of which has been verified, and the signing key of
+     * which is trusted.
+     * @param cacheKey the key of the Assertion, as returned by "createKey"
+     * @param samlAssertion the signed Assertion
+     * @param samlKeyInfo the SAMLKeyInfo of the signing key
+     */
+    public void put(CacheKey cacheKey, SamlAssertionWrapper samlAssertion, SAMLKeyInfo samlKeyInfo) {
+        if (cacheKey == null || samlAssertion == null || samlKeyInfo == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long expires = getExpiry(samlAssertion, samlKeyInfo, now + timeToLive * 1000L);
+        if (expires <= now) {
+            return;
+        }
+        synchronized (this) {
+            processExpiry(now);
+            // Remove any previous entry first, so that the new one is appended at the end
+            cache.remove(cacheKey);
+            cache.put(cacheKey, new CacheEntry(samlKeyInfo, expires));
+
+            Iterator<CacheEntry> iterator = cache.values().iterator();
+            while (cache.size() > maxEntries && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the number of cached Assertions, including Assertions that have expired but are
+     * not yet removed
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * Remove all of the cached Assertions.
+     */
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    public void close() {
+        clear();
+    }
+
+    private void processExpiry(long now) {
+        Iterator<CacheEntry> iterator = cache.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().expires <= now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static long getExpiry(SamlAssertionWrapper samlAssertion, SAMLKeyInfo samlKeyInfo, long maxExpiry) {
+        long expires = maxExpiry;
+        DateTime notOnOrAfter = null;
+        if (samlAssertion.getSamlVersion().equals(SAMLVersion.VERSION_20)) {
+            if (samlAssertion.getSaml2().getConditions() != null) {
+                notOnOrAfter = samlAssertion.getSaml2().getConditions().getNotOnOrAfter();
+            }
+            for (AuthnStatement authnStatement : samlAssertion.getSaml2().getAuthnStatements()) {
+                expires = earliest(expires, authnStatement.getSessionNotOnOrAfter());
+            }
+        } else if (samlAssertion.getSaml1().getConditions() != null) {
+            notOnOrAfter = samlAssertion.getSaml1().getConditions().getNotOnOrAfter();
+        }
+        expires = earliest(expires, notOnOrAfter);
+
+        X509Certificate[] certs = samlKeyInfo.getCerts();
+        if (certs != null && certs.length > 0 && certs[0] != null) {
+            expires = Math.min(expires, certs[0].getNotAfter().getTime());
+        }
+        return expires;
+    }
+
+    private static long earliest(long expires, DateTime dateTime) {
+        if (dateTime != null) {
+            return Math.min(expires, dateTime.getMillis());
+        }
+        return expires;
+    }
+
+    /**
+     * Digest the complete Assertion element. Every node is written with its type, and every
+     * String with its length, so that different trees cannot produce the same input.
+     */
+    private static void digest(MessageDigest messageDigest, Node node) {
+        switch (node.getNodeType()) {
+        case Node.ELEMENT_NODE:
+            messageDigest.update(ELEMENT);
+            update(messageDigest, node.getNamespaceURI());
+            update(messageDigest, node.getNodeName());
+            NamedNodeMap attributes = node.getAttributes();
+            for (int i = 0; i < attributes.getLength(); i++) {
+                Node attribute = attributes.item(i);
+                messageDigest.update(ATTRIBUTE);
+                update(messageDigest, attribute.getNamespaceURI());
+                update(messageDigest, attribute.getNodeName());
+                update(messageDigest, attribute.getNodeValue());
+            }
+            for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+                digest(messageDigest, child);
+            }
+            messageDigest.update(END_ELEMENT);
+            break;
+        case Node.TEXT_NODE:
+        case Node.CDATA_SECTION_NODE:
+            messageDigest.update(TEXT);
+            update(messageDigest, node.getNodeValue());
+            break;
+        default:
+            messageDigest.update(OTHER);
+            update(messageDigest, node.getNodeName());
+            update(messageDigest, node.getNodeValue());
+            break;
+        }
+    }
+
+    private static void update(MessageDigest messageDigest, String value) {
+        if (value == null) {
+            messageDigest.update(ByteBuffer.allocate(4).putInt(-1).array());
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        messageDigest.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+        messageDigest.update(bytes);
+    }
+
+    private static void update(MessageDigest messageDigest, Collection<Pattern> patterns) {
+        int size = patterns == null ? 0 : patterns.size();
+        messageDigest.update(ByteBuffer.allocate(4).putInt(size).array());
+        if (patterns != null) {
+            for (Pattern pattern : patterns) {
+                update(messageDigest, pattern.pattern());
+                messageDigest.update(ByteBuffer.allocate(4).putInt(pattern.flags()).array());
+            }
+        }
+    }
+
+    /**
+     * The key of a cached Assertion.
+     */
+    public static final class CacheKey {
+        private final Crypto crypto;
+        private final String id;
+        private final String digest;
+
+        CacheKey(Crypto crypto, String id, String digest) {
+            this.crypto = crypto;
+            this.id = id == null ? "" : id;
+            this.digest = digest;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = System.identityHashCode(crypto);
+            result = 31 * result + id.hashCode();
+            return 31 * result + digest.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) object;
+            return crypto == other.crypto && id.equals(other.id) && digest.equals(other.digest);
+        }
+    }
+
+    private static final class CacheEntry {
+        private final SAMLKeyInfo samlKeyInfo;
+        private final long expires;
+
+        CacheEntry(SAMLKeyInfo samlKeyInfo, long expires) {
+            this.samlKeyInfo = samlKeyInfo;
+            this.expires = expires;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.common.crypto;
+
+import java.security.InvalidKeyException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.Provider;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * A per-thread pool of MessageDigest and Mac instances, so that the JCA providers are not searched
+ * for every digest or HMAC that is computed, and no lock is needed to share an instance between
+ * threads. An instance that is obtained from the pool must be returned with the corresponding
+ * "release" method once it is no longer used, after which it is reset. An instance that is not
+ * released is simply not reused. A Mac is re-initialized with a dummy key when it is released, so
+ * that the pool does not keep the key material of the caller.
+ *
+ * The instances are pooled by algorithm name and, if the ThreadLocalSecurityProvider is installed,
+ * by the name of the Provider that is set for the current thread. Cipher and KeyGenerator instances
+ * are not pooled: a Cipher selects its provider only when it is initialized with a key (which may be
+ * a hardware key), and a KeyGenerator is handed to the caller.
+ *
+ * The pools of the threads only hold JDK collections and the pooled instances, so that they do not
+ * refer to the classes of WSS4J. All of the pools are emptied by clearAll(), which is called by
+ * WSProviderConfig.cleanUp() when WSS4J is shut down.
+ */
+public final class JCEInstancePool {
+
+    /**
+     * The maximum number of instances of an algorithm that are kept for each thread
+     */
+    private static final int MAX_INSTANCES = 4;
+
+    /**
+     * The key that a released Mac is initialized with, in place of the key of the caller
+     */
+    private static final byte[] DUMMY_KEY = new byte[32];
+
+    private static final ThreadLocal<Map<String, Deque<MessageDigest>>> MESSAGE_DIGESTS =
+        new ThreadLocal<>();
+
+    private static final ThreadLocal<Map<String, Deque<Mac>>> MACS = new ThreadLocal<>();
+
+    /**
+     * The pools of all of the threads, so that clearAll() can empty them. A thread that has
+     * terminated is removed by the WeakHashMap.
+     */
+    private static final Map<Thread, List<Map<String, ?>>> ALL_POOLS = new WeakHashMap<>();
+
+    private JCEInstancePool() {
+        // complete
+    }
+
+    /**
+     * Get a MessageDigest instance of the given algorithm. It must be returned to the pool with
+     * release(MessageDigest).
+     */
+    public static MessageDigest getMessageDigest(String algorithm) throws NoSuchAlgorithmException {
+        Map<String, Deque<MessageDigest>> pool = MESSAGE_DIGESTS.get();
+        if (pool != null) {
+            Deque<MessageDigest> messageDigests = pool.get(getPoolKey(algorithm));
+            if (messageDigests != null && !messageDigests.isEmpty()) {
+                return messageDigests.pop();
+            }
+        }
+        return MessageDigest.getInstance(algorithm);
+    }
+
+    /**
+     * Reset the given MessageDigest instance, and return it to the pool of the current thread.
+     */
+    public static void release(MessageDigest messageDigest) {
+        if (messageDigest == null) {
+            return;
+        }
+        messageDigest.reset();
+        add(getPool(MESSAGE_DIGESTS), getPoolKey(messageDigest.getAlgorithm()), messageDigest);
+    }
+
+    /**
+     * Get a Mac instance of the given algorithm. It must be initialized with a key before it is
+     * used, and it must be returned to the pool with release(Mac).
+     */
+    public static Mac getMac(String algorithm) throws NoSuchAlgorithmException {
+        Map<String, Deque<Mac>> pool = MACS.get();
+        if (pool != null) {
+            Deque<Mac> macs = pool.get(getPoolKey(algorithm));
+            if (macs != null && !macs.isEmpty()) {
+                return macs.pop();
+            }
+        }
+        return Mac.getInstance(algorithm);
+    }
+
+    /**
+     * Re-initialize the given Mac instance with a dummy key, and return it to the pool of the
+     * current thread. A Mac that does not accept the dummy key is not pooled.
+     */
+    public static void release(Mac mac) {
+        if (mac == null) {
+            return;
+        }
+        try {
+            mac.init(new SecretKeySpec(DUMMY_KEY, mac.getAlgorithm()));
+        } catch (InvalidKeyException | IllegalArgumentException ex) {
+            return;
+        }
+        add(getPool(MACS), getPoolKey(mac.getAlgorithm()), mac);
+    }
+
+    /**
+     * Remove all of the pooled instances of the current thread, for example after the JCA
+     * providers have been changed.
+     */
+    public static void clear() {
+        MESSAGE_DIGESTS.remove();
+        MACS.remove();
+        synchronized (ALL_POOLS) {
+            ALL_POOLS.remove(Thread.currentThread());
+        }
+    }
+
+    /**
+     * Remove all of the pooled instances of all of the threads. This must be called when WSS4J is
+     * shut down (for example when a web application is undeployed), so that the threads of a
+     * container do not keep the instances, and the JCA providers that created them.
+     */
+    public static void clearAll() {
+        synchronized (ALL_POOLS) {
+            for (List<Map<String, ?>> threadPools : ALL_POOLS.values()) {
+                for (Map<String, ?> pool : threadPools) {
+                    pool.clear();
+                }
+            }
+        }
+        clear();
+    }
+
+    private static <T> Map<String, Deque<T>> getPool(ThreadLocal<Map<String, Deque<T>>> threadLocal) {
+        Map<String, Deque<T>> pool = threadLocal.get();
+        if (pool == null) {
+            // A ConcurrentHashMap, as the pool is emptied by the thread that calls clearAll()
+            pool = new ConcurrentHashMap<>();
+            threadLocal.set(pool);
+            synchronized (ALL_POOLS) {
+                List<Map<String, ?>> threadPools = ALL_POOLS.get(Thread.currentThread());
+                if (threadPools == null) {
+                    threadPools = new ArrayList<>(2);
+                    ALL_POOLS.put(Thread.currentThread(), threadPools);
+                }
+                threadPools.add(pool);
+            }
+        }
+        return pool;
+    }
+
+    private static String getPoolKey(String algorithm) {
+        Provider threadLocalProvider = ThreadLocalSecurityProvider.getThreadLocalProvider();
+        if (threadLocalProvider == null) {
+            return algorithm;
+        }
+        return algorithm + "/" + threadLocalProvider.getName();
+    }
+
+    private static <T> void add(Map<String, Deque<T>> pool, String key, T instance) {
+        Deque<T> instances = pool.get(key);
+        if (instances == null) {
+            instances = new ArrayDeque<>(MAX_INSTANCES);
+            pool.put(key, instances);
+        }
+        if (instances.size() < MAX_INSTANCES) {
+            instances.push(instance);
+        }
+    }
+}
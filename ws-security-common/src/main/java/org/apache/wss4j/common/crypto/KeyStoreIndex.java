@@ -0,0 +1,195 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * An immutable set of hash indexes over the (first) certificates of the entries of a KeyStore.
+ * The indexes are keyed by issuer name + serial number, SHA-1 thumbprint, SubjectKeyIdentifier
+ * bytes and Subject DN, so that Merlin can locate a certificate (chain) without iterating over
+ * all of the aliases of the KeyStore. Where several aliases match the same key, the first alias
+ * in the enumeration order of the KeyStore wins, as is the case for a linear search.
+ *
+ * An index is a snapshot of the KeyStore at the time it was built. The KeyStore instance and its
+ * size are recorded, so that a stale index can be detected and rebuilt.
+ */
+final class KeyStoreIndex {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(KeyStoreIndex.class);
+
+    private final KeyStore store;
+    private final int size;
+    private final Map<IssuerSerial, Certificate[]> issuerSerialIndex = new HashMap<>();
+    private final Map<ByteBuffer, Certificate[]> thumbprintIndex = new HashMap<>();
+    private final Map<ByteBuffer, Certificate[]> skiIndex = new HashMap<>();
+    private final Map<Object, List<Certificate[]>> subjectIndex = new HashMap<>();
+
+    KeyStoreIndex(KeyStore store, CryptoBase crypto) throws WSSecurityException {
+        this.store = store;
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA1");
+            int count = 0;
+            for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
+                String alias = e.nextElement();
+                Certificate[] certs = store.getCertificateChain(alias);
+                if (certs == null || certs.length == 0) {
+                    // no cert chain, so lets check if getCertificate gives us a result.
+                    Certificate cert = store.getCertificate(alias);
+                    if (cert != null) {
+                        certs = new Certificate[]{cert};
+                    }
+                }
+                count++;
+
+                if (certs != null && certs.length > 0 && certs[0] instanceof X509Certificate) {
+                    addEntry(alias, certs, crypto, sha);
+                }
+            }
+            size = count;
+        } catch (KeyStoreException e) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, e, "keystore"
+            );
+        } catch (NoSuchAlgorithmException e) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, e, "decoding.general"
+            );
+        }
+        LOG.debug("Indexed {} keystore entries", size);
+    }
+
+    private void addEntry(
+        String alias, Certificate[] certs, CryptoBase crypto, MessageDigest sha
+    ) throws WSSecurityException {
+        X509Certificate x509cert = (X509Certificate) certs[0];
+
+        Object issuerName = crypto.createBCX509Name(x509cert.getIssuerX500Principal().getName());
+        IssuerSerial issuerSerial = new IssuerSerial(issuerName, x509cert.getSerialNumber());
+        if (!issuerSerialIndex.containsKey(issuerSerial)) {
+            issuerSerialIndex.put(issuerSerial, certs);
+        }
+
+        try {
+            ByteBuffer thumbprint = ByteBuffer.wrap(sha.digest(x509cert.getEncoded()));
+            if (!thumbprintIndex.containsKey(thumbprint)) {
+                thumbprintIndex.put(thumbprint, certs);
+            }
+        } catch (CertificateEncodingException ex) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, ex, "encodeError"
+            );
+        }
+
+        try {
+            ByteBuffer ski = ByteBuffer.wrap(crypto.getSKIBytesFromCert(x509cert));
+            if (!skiIndex.containsKey(ski)) {
+                skiIndex.put(ski, certs);
+            }
+        } catch (WSSecurityException ex) {
+            LOG.debug("No SKI could be computed for keystore alias {}: {}", alias, ex.getMessage());
+        }
+
+        Object subjectName = crypto.createBCX509Name(x509cert.getSubjectX500Principal().getName());
+        List<Certificate[]> subjectCerts = subjectIndex.get(subjectName);
+        if (subjectCerts == null) {
+            subjectCerts = new ArrayList<>(1);
+            subjectIndex.put(subjectName, subjectCerts);
+        }
+        subjectCerts.add(certs);
+    }
+
+    /**
+     * @return true if this index was built from the given KeyStore, and the KeyStore does not
+     * appear to have been modified since
+     */
+    boolean isCurrent(KeyStore keyStore) {
+        if (keyStore != store) {
+            return false;
+        }
+        try {
+            return keyStore.size() == size;
+        } catch (KeyStoreException ex) {
+            return false;
+        }
+    }
+
+    Certificate[] getByIssuerSerial(Object issuerName, BigInteger serialNumber) {
+        return issuerSerialIndex.get(new IssuerSerial(issuerName, serialNumber));
+    }
+
+    Certificate[] getByThumbprint(byte[] thumbprint) {
+        return thumbprintIndex.get(ByteBuffer.wrap(thumbprint));
+    }
+
+    Certificate[] getBySKI(byte[] skiBytes) {
+        return skiIndex.get(ByteBuffer.wrap(skiBytes));
+    }
+
+    List<Certificate[]> getBySubject(Object subjectName) {
+        List<Certificate[]> certs = subjectIndex.get(subjectName);
+        if (certs == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(certs);
+    }
+
+    private static final class IssuerSerial {
+        private final Object issuer;
+        private final BigInteger serial;
+
+        IssuerSerial(Object issuer, BigInteger serial) {
+            this.issuer = issuer;
+            this.serial = serial;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * issuer.hashCode() + serial.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof IssuerSerial)) {
+                return false;
+            }
+            IssuerSerial other = (IssuerSerial) obj;
+            return serial.equals(other.serial) && issuer.equals(other.issuer);
+        }
+    }
+
+}
@@ -24,6 +24,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
 import java.net.MalformedURLException;
+import java.nio.ByteBuffer;
 import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.Key;
@@ -37,6 +38,7 @@ import java.security.PublicKey;
 import java.security.UnrecoverableKeyException;
 import java.security.cert.CertPath;
 import java.security.cert.CertPathValidator;
+import java.security.cert.CertPathValidatorResult;
 import java.security.cert.CertStore;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateEncodingException;
@@ -45,6 +47,7 @@ import java.security.cert.CertificateExpiredException;
 import java.security.cert.CertificateFactory;
 import java.security.cert.CertificateNotYetValidException;
 import java.security.cert.CollectionCertStoreParameters;
+import java.security.cert.PKIXCertPathValidatorResult;
 import java.security.cert.PKIXParameters;
 import java.security.cert.TrustAnchor;
 import java.security.cert.X509CRL;
@@ -52,6 +55,7 @@ import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.HashSet;
 import java.util.List;
@@ -66,6 +70,9 @@ import javax.security.auth.x500.X500Principal;
 
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityOperation;
 import org.apache.wss4j.common.util.Loader;
 
 /**
@@ -114,6 +121,25 @@ public class Merlin extends CryptoBase {
      */
     public static final String X509_CRL_FILE = "x509crl.file";
 
+    /*
+     * Certificate index configuration
+     */
+    public static final String CERT_INDEX = "cert.index";
+
+    /*
+     * Trust verification cache configuration
+     */
+    public static final String TRUST_CACHE = "trust.cache";
+    public static final String TRUST_CACHE_TTL = "trust.cache.ttl";
+    public static final String TRUST_CACHE_SIZE = "trust.cache.size";
+
+    /*
+     * Private key cache configuration
+     */
+    public static final String PRIVATE_KEY_CACHE = "private.key.cache";
+    public static final String PRIVATE_KEY_CACHE_TTL = "private.key.cache.ttl";
+    public static final String PRIVATE_KEY_CACHE_SIZE = "private.key.cache.size";
+
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(Merlin.class);
     private static final boolean DO_DEBUG = LOG.isDebugEnabled();
@@ -126,6 +152,11 @@ public class Merlin extends CryptoBase {
     protected boolean loadCACerts;
     protected boolean privatePasswordSet;
     protected PasswordEncryptor passwordEncryptor;
+    protected boolean certIndex;
+    private volatile KeyStoreIndex keystoreIndex;
+    private volatile KeyStoreIndex truststoreIndex;
+    protected TrustVerificationCache trustVerificationCache;
+    protected PrivateKeyCache privateKeyCache;
 
     public Merlin() {
         // default constructor
@@ -192,6 +223,7 @@ public class Merlin extends CryptoBase {
         if (certProvider != null) {
             setCryptoProvider(certProvider);
         }
+        loadCacheProperties(properties, prefix);
         //
         // Load the KeyStore
         //
@@ -349,6 +381,36 @@ public class Merlin extends CryptoBase {
             }
 
         }
+
+        if (certIndex) {
+            rebuildCertificateIndexes();
+        }
+    }
+
+    private void loadCacheProperties(Properties properties, String prefix) {
+        certIndex = Boolean.parseBoolean(properties.getProperty(prefix + CERT_INDEX, "false").trim());
+
+        String trustCache = properties.getProperty(prefix + TRUST_CACHE, "false").trim();
+        if (Boolean.parseBoolean(trustCache)) {
+            String ttl = properties.getProperty(prefix + TRUST_CACHE_TTL);
+            String size = properties.getProperty(prefix + TRUST_CACHE_SIZE);
+            trustVerificationCache =
+                new TrustVerificationCache(
+                    ttl == null ? TrustVerificationCache.DEFAULT_TTL : Long.parseLong(ttl.trim()),
+                    size == null ? TrustVerificationCache.DEFAULT_MAX_SIZE : Integer.parseInt(size.trim())
+                );
+        }
+
+        String keyCache = properties.getProperty(prefix + PRIVATE_KEY_CACHE, "false").trim();
+        if (Boolean.parseBoolean(keyCache)) {
+            String ttl = properties.getProperty(prefix + PRIVATE_KEY_CACHE_TTL);
+            String size = properties.getProperty(prefix + PRIVATE_KEY_CACHE_SIZE);
+            privateKeyCache =
+                new PrivateKeyCache(
+                    ttl == null ? PrivateKeyCache.DEFAULT_TTL : Long.parseLong(ttl.trim()),
+                    size == null ? PrivateKeyCache.DEFAULT_MAX_SIZE : Integer.parseInt(size.trim())
+                );
+        }
     }
 
     /**
@@ -442,6 +504,13 @@ public class Merlin extends CryptoBase {
      */
     public void setKeyStore(KeyStore keyStore) {
         keystore = keyStore;
+        keystoreIndex = certIndex ? buildCertificateIndex(keyStore) : null;
+        if (trustVerificationCache != null) {
+            trustVerificationCache.clear();
+        }
+        if (privateKeyCache != null) {
+            privateKeyCache.clear();
+        }
     }
 
     /**
@@ -460,6 +529,131 @@ public class Merlin extends CryptoBase {
      */
     public void setTrustStore(KeyStore trustStore) {
         truststore = trustStore;
+        truststoreIndex = certIndex ? buildCertificateIndex(trustStore) : null;
+        if (trustVerificationCache != null) {
+            trustVerificationCache.clear();
+        }
+    }
+
+    /**
+     * Whether certificates are located via hash indexes built over the keystore and truststore,
+     * rather than by searching through all of the aliases on each call.
+     *
+     * @return whether certificate indexing is enabled
+     */
+    public boolean isCertIndex() {
+        return certIndex;
+    }
+
+    /**
+     * Enable or disable the indexing of the keystore and truststore certificates. When enabled,
+     * the certificate lookups by issuer + serial number, SHA-1 thumbprint, SubjectKeyIdentifier
+     * and Subject DN are served from indexes that are built when the keystore or truststore is
+     * loaded or set. An index is rebuilt if the keystore is replaced or its size changes, but
+     * not if an existing entry is overwritten in place - call rebuildCertificateIndexes() in
+     * that case.
+     *
+     * @param certIndex whether certificate indexing is enabled
+     */
+    public void setCertIndex(boolean certIndex) {
+        this.certIndex = certIndex;
+        keystoreIndex = null;
+        truststoreIndex = null;
+        if (certIndex) {
+            rebuildCertificateIndexes();
+        }
+    }
+
+    /**
+     * Rebuild the certificate indexes of the keystore and truststore, if indexing is enabled.
+     */
+    public void rebuildCertificateIndexes() {
+        if (certIndex) {
+            keystoreIndex = buildCertificateIndex(keystore);
+            truststoreIndex = buildCertificateIndex(truststore);
+        }
+    }
+
+    private KeyStoreIndex buildCertificateIndex(KeyStore store) {
+        if (store == null) {
+            return null;
+        }
+        try {
+            return new KeyStoreIndex(store, this);
+        } catch (WSSecurityException ex) {
+            // The index will be built again on the first lookup, which reports the error
+            LOG.debug("Error building the certificate index: " + ex.getMessage(), ex);
+            return null;
+        }
+    }
+
+    /**
+     * Get the cache used to store the TrustAnchors and the certificate chains that have been
+     * successfully validated. Returns null if trust verification caching is not enabled.
+     *
+     * @return the trust verification cache
+     */
+    public TrustVerificationCache getTrustVerificationCache() {
+        return trustVerificationCache;
+    }
+
+    /**
+     * Set the cache used to store the TrustAnchors and the certificate chains that have been
+     * successfully validated. A chain that is found in the cache is trusted without validating
+     * the certificate path again. A null value disables trust verification caching.
+     *
+     * @param trustVerificationCache the trust verification cache
+     */
+    public void setTrustVerificationCache(TrustVerificationCache trustVerificationCache) {
+        this.trustVerificationCache = trustVerificationCache;
+    }
+
+    /**
+     * Get the cache used to store the private keys that have been recovered from the keystore.
+     * Returns null if private key caching is not enabled.
+     *
+     * @return the private key cache
+     */
+    public PrivateKeyCache getPrivateKeyCache() {
+        return privateKeyCache;
+    }
+
+    /**
+     * Set the cache used to store the private keys that have been recovered from the keystore.
+     * A private key that is found in the cache is returned without recovering it from the
+     * keystore again, and (for a lookup by certificate or public key) without asking the
+     * CallbackHandler for the password. A null value disables private key caching.
+     *
+     * @param privateKeyCache the private key cache
+     */
+    public void setPrivateKeyCache(PrivateKeyCache privateKeyCache) {
+        this.privateKeyCache = privateKeyCache;
+    }
+
+    /**
+     * Get the index for the given store (the keystore or truststore), building it if it does
+     * not exist yet or it is stale. Returns null if certificate indexing is not enabled.
+     */
+    private KeyStoreIndex getCertificateIndex(KeyStore store) throws WSSecurityException {
+        if (!certIndex || store == null) {
+            return null;
+        }
+        if (store == keystore) {
+            KeyStoreIndex index = keystoreIndex;
+            if (index == null || !index.isCurrent(store)) {
+                index = new KeyStoreIndex(store, this);
+                keystoreIndex = index;
+            }
+            return index;
+        } else if (store == truststore) {
+            KeyStoreIndex index = truststoreIndex;
+            if (index == null || !index.isCurrent(store)) {
+                index = new KeyStoreIndex(store, this);
+                truststoreIndex = index;
+            }
+            return index;
+        }
+        return null;
     }
 
     /**
@@ -470,6 +664,9 @@ public class Merlin extends CryptoBase {
      */
     public void setCRLCertStore(CertStore crlCertStore) {
         this.crlCertStore = crlCertStore;
+        if (trustVerificationCache != null) {
+            trustVerificationCache.clear();
+        }
     }
 
     /**
@@ -661,6 +858,17 @@ public class Merlin extends CryptoBase {
                                           new Object[] {"The CallbackHandler is null"});
         }
 
+        PrivateKeyCache cache = privateKeyCache;
+        ByteBuffer fingerprint = null;
+        if (cache != null) {
+            cache.checkGeneration(keystore);
+            fingerprint = cache.createKey(certificate);
+            PrivateKey privateKey = cache.getPrivateKey(fingerprint);
+            if (privateKey != null) {
+                return privateKey;
+            }
+        }
+
         String identifier = getIdentifier(certificate, keystore);
         if (identifier == null) {
             try {
@@ -677,7 +885,11 @@ public class Merlin extends CryptoBase {
             }
         }
         String password = getPassword(identifier, callbackHandler);
-        return getPrivateKey(identifier, password);
+        PrivateKey privateKey = getPrivateKey(identifier, password);
+        if (cache != null) {
+            cache.setAlias(fingerprint, identifier);
+        }
+        return privateKey;
     }
     
     /**
@@ -700,6 +912,17 @@ public class Merlin extends CryptoBase {
                                           new Object[] {"The CallbackHandler is null"});
         }
 
+        PrivateKeyCache cache = privateKeyCache;
+        ByteBuffer fingerprint = null;
+        if (cache != null) {
+            cache.checkGeneration(keystore);
+            fingerprint = cache.createKey(publicKey);
+            PrivateKey privateKey = cache.getPrivateKey(fingerprint);
+            if (privateKey != null) {
+                return privateKey;
+            }
+        }
+
         String identifier = getIdentifier(publicKey, keystore);
         if (identifier == null) {
             try {
@@ -716,7 +939,11 @@ public class Merlin extends CryptoBase {
             }
         }
         String password = getPassword(identifier, callbackHandler);
-        return getPrivateKey(identifier, password);
+        PrivateKey privateKey = getPrivateKey(identifier, password);
+        if (cache != null) {
+            cache.setAlias(fingerprint, identifier);
+        }
+        return privateKey;
     }
     
     /**
@@ -730,10 +957,28 @@ public class Merlin extends CryptoBase {
         String identifier,
         String password
     ) throws WSSecurityException {
+        SecurityMetricsListener.Timer timer =
+            SecurityMetrics.start(SecurityOperation.GET_PRIVATE_KEY, getClass().getName());
+        try {
+            return recoverPrivateKey(identifier, password);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private PrivateKey recoverPrivateKey(String identifier, String password) throws WSSecurityException {
         if (keystore == null) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
                                           new Object[] {"The keystore is null"});
         }
+        PrivateKeyCache cache = privateKeyCache;
+        if (cache != null && identifier != null) {
+            cache.checkGeneration(keystore);
+            PrivateKey privateKey = cache.getPrivateKey(identifier, password);
+            if (privateKey != null) {
+                return privateKey;
+            }
+        }
         try {
             if (identifier == null || !keystore.isKeyEntry(identifier)) {
                 String msg = "Cannot find key for alias: [" + identifier + "]";
@@ -762,6 +1007,9 @@ public class Merlin extends CryptoBase {
                 throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "empty",
                                               new Object[] {msg});
             }
+            if (cache != null) {
+                cache.setPrivateKey(identifier, password, (PrivateKey) keyTmp);
+            }
             return (PrivateKey) keyTmp;
         } catch (KeyStoreException | UnrecoverableKeyException | NoSuchAlgorithmException ex) {
             throw new WSSecurityException(
@@ -784,6 +1032,31 @@ public class Merlin extends CryptoBase {
         boolean enableRevocation,
         Collection<Pattern> subjectCertConstraints
     ) throws WSSecurityException {
+        SecurityMetricsListener.Timer timer =
+            SecurityMetrics.start(SecurityOperation.VERIFY_TRUST, getClass().getName());
+        try {
+            verifyCertificateTrust(certs, enableRevocation, subjectCertConstraints);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private void verifyCertificateTrust(
+        X509Certificate[] certs,
+        boolean enableRevocation,
+        Collection<Pattern> subjectCertConstraints
+    ) throws WSSecurityException {
+        TrustVerificationCache cache = trustVerificationCache;
+        ByteBuffer cacheKey = null;
+        if (cache != null) {
+            cache.checkGeneration(keystore, truststore);
+            cacheKey = cache.createKey(certs, enableRevocation, subjectCertConstraints);
+            if (cache.isVerified(cacheKey)) {
+                LOG.debug("The certificate chain has already been validated");
+                return;
+            }
+        }
+
         //
         // FIRST step - Search the keystore for the transmitted certificate
         //
@@ -812,6 +1085,9 @@ public class Merlin extends CryptoBase {
                         "Direct trust for certificate with " + certs[0].getSubjectX500Principal().getName()
                     );
                 }
+                if (cache != null) {
+                    cache.setVerified(cacheKey, Arrays.<Certificate>asList(certs));
+                }
                 return;
             }
         }
@@ -860,40 +1136,10 @@ public class Merlin extends CryptoBase {
             );
         }
 
+        Certificate[] validatedIssuingCertChain = null;
+        TrustAnchor trustAnchor = null;
         try {
-            Set<TrustAnchor> set = new HashSet<>();
-            if (truststore != null) {
-                Enumeration<String> truststoreAliases = truststore.aliases();
-                while (truststoreAliases.hasMoreElements()) {
-                    String alias = truststoreAliases.nextElement();
-                    X509Certificate cert =
-                        (X509Certificate) truststore.getCertificate(alias);
-                    if (cert != null) {
-                        TrustAnchor anchor =
-                            new TrustAnchor(cert, cert.getExtensionValue(NAME_CONSTRAINTS_OID));
-                        set.add(anchor);
-                    }
-                }
-            }
-
-            //
-            // Add certificates from the keystore - only if there is no TrustStore, apart from
-            // the case that the truststore is the JDK CA certs. This behaviour is preserved
-            // for backwards compatibility reasons
-            //
-            if (keystore != null && (truststore == null || loadCACerts)) {
-                Enumeration<String> aliases = keystore.aliases();
-                while (aliases.hasMoreElements()) {
-                    String alias = aliases.nextElement();
-                    X509Certificate cert =
-                        (X509Certificate) keystore.getCertificate(alias);
-                    if (cert != null) {
-                        TrustAnchor anchor =
-                            new TrustAnchor(cert, cert.getExtensionValue(NAME_CONSTRAINTS_OID));
-                        set.add(anchor);
-                    }
-                }
-            }
+            Set<TrustAnchor> set = getTrustAnchors();
 
             // Verify the trust path using the above settings
             String provider = getCryptoProvider();
@@ -919,9 +1165,11 @@ public class Merlin extends CryptoBase {
                     CertPath path = getCertificateFactory().generateCertPath(certList);
                     
                     try {
-                        validator.validate(path, param);
+                        CertPathValidatorResult result = validator.validate(path, param);
                         // We have a valid cert path at this point so break
                         validatorException = null;
+                        validatedIssuingCertChain = foundCertChain;
+                        trustAnchor = getTrustAnchor(result);
                         break;
                     } catch (java.security.cert.CertPathValidatorException e) {
                         validatorException = e;
@@ -935,7 +1183,7 @@ public class Merlin extends CryptoBase {
                 List<X509Certificate> certList = Arrays.asList(certs);
                 CertPath path = getCertificateFactory().generateCertPath(certList);
                 
-                validator.validate(path, param);
+                trustAnchor = getTrustAnchor(validator.validate(path, param));
             }
         } catch (NoSuchProviderException | NoSuchAlgorithmException
             | CertificateException | InvalidAlgorithmParameterException
@@ -950,7 +1198,85 @@ public class Merlin extends CryptoBase {
         if (!matchesSubjectDnPattern(certs[0], subjectCertConstraints)) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
-    }   
+
+        if (cache != null) {
+            // The entry must not outlive any certificate of the path, including the issuing
+            // certificates that were found in the keystore or truststore, and the trust anchor
+            List<Certificate> pathCerts = new ArrayList<>(Arrays.asList(certs));
+            if (validatedIssuingCertChain != null) {
+                pathCerts.addAll(Arrays.asList(validatedIssuingCertChain));
+            }
+            if (trustAnchor != null && trustAnchor.getTrustedCert() != null) {
+                pathCerts.add(trustAnchor.getTrustedCert());
+            }
+            cache.setVerified(cacheKey, pathCerts);
+        }
+    }
+
+    static TrustAnchor getTrustAnchor(CertPathValidatorResult result) {
+        if (result instanceof PKIXCertPathValidatorResult) {
+            return ((PKIXCertPathValidatorResult)result).getTrustAnchor();
+        }
+        return null;
+    }
+
+    /**
+     * Get the TrustAnchors to use to validate a certificate path. These are the certificates of
+     * the truststore, and of the keystore if there is no truststore. The TrustAnchors are
+     * cached if trust verification caching is enabled.
+     *
+     * @return the TrustAnchors to use to validate a certificate path
+     * @throws KeyStoreException
+     */
+    protected Set<TrustAnchor> getTrustAnchors() throws KeyStoreException {
+        TrustVerificationCache cache = trustVerificationCache;
+        if (cache != null) {
+            Set<TrustAnchor> cachedAnchors = cache.getTrustAnchors(keystore, truststore);
+            if (cachedAnchors != null) {
+                return cachedAnchors;
+            }
+        }
+
+        Set<TrustAnchor> set = new HashSet<>();
+        if (truststore != null) {
+            Enumeration<String> truststoreAliases = truststore.aliases();
+            while (truststoreAliases.hasMoreElements()) {
+                String alias = truststoreAliases.nextElement();
+                X509Certificate cert =
+                    (X509Certificate) truststore.getCertificate(alias);
+                if (cert != null) {
+                    TrustAnchor anchor =
+                        new TrustAnchor(cert, cert.getExtensionValue(NAME_CONSTRAINTS_OID));
+                    set.add(anchor);
+                }
+            }
+        }
+
+        //
+        // Add certificates from the keystore - only if there is no TrustStore, apart from
+        // the case that the truststore is the JDK CA certs. This behaviour is preserved
+        // for backwards compatibility reasons
+        //
+        if (keystore != null && (truststore == null || loadCACerts)) {
+            Enumeration<String> aliases = keystore.aliases();
+            while (aliases.hasMoreElements()) {
+                String alias = aliases.nextElement();
+                X509Certificate cert =
+                    (X509Certificate) keystore.getCertificate(alias);
+                if (cert != null) {
+                    TrustAnchor anchor =
+                        new TrustAnchor(cert, cert.getExtensionValue(NAME_CONSTRAINTS_OID));
+                    set.add(anchor);
+                }
+            }
+        }
+
+        if (cache != null) {
+            set = Collections.unmodifiableSet(set);
+            cache.setTrustAnchors(keystore, truststore, set);
+        }
+        return set;
+    }
 
     @Override
     public void verifyTrust(X509Certificate[] certs, boolean enableRevocation, Collection<Pattern> subjectCertConstraints,
@@ -992,9 +1318,15 @@ public class Merlin extends CryptoBase {
         // Search the keystore for the transmitted public key (direct trust). If not found
         // then search the truststore for the transmitted public key (direct trust)
         //
-        if (!findPublicKeyInKeyStore(publicKey, keystore)
-            && !findPublicKeyInKeyStore(publicKey, truststore)) {
-            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
+        SecurityMetricsListener.Timer timer =
+            SecurityMetrics.start(SecurityOperation.VERIFY_TRUST, getClass().getName());
+        try {
+            if (!findPublicKeyInKeyStore(publicKey, keystore)
+                && !findPublicKeyInKeyStore(publicKey, truststore)) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
+            }
+        } finally {
+            timer.stop();
         }
     }
 
@@ -1055,6 +1387,11 @@ public class Merlin extends CryptoBase {
         KeyStore store
     ) throws WSSecurityException {
         LOG.debug("Searching keystore for cert with issuer {} and serial {}", issuerRDN, serialNumber);
+        KeyStoreIndex index = getCertificateIndex(store);
+        if (index != null) {
+            Certificate[] certs = index.getByIssuerSerial(issuerRDN, serialNumber);
+            return certs == null ? new Certificate[]{} : certs;
+        }
         try {
             for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
                 String alias = e.nextElement();
@@ -1138,6 +1475,11 @@ public class Merlin extends CryptoBase {
         MessageDigest sha
     ) throws WSSecurityException {
         LOG.debug("Searching keystore for cert using a SHA-1 thumbprint");
+        KeyStoreIndex index = getCertificateIndex(store);
+        if (index != null) {
+            Certificate[] certs = index.getByThumbprint(thumbprint);
+            return certs == null ? new Certificate[]{} : certs;
+        }
         try {
             for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
                 String alias = e.nextElement();
@@ -1213,6 +1555,11 @@ public class Merlin extends CryptoBase {
         KeyStore store
     ) throws WSSecurityException {
         LOG.debug("Searching keystore for cert using Subject Key Identifier bytes");
+        KeyStoreIndex index = getCertificateIndex(store);
+        if (index != null) {
+            Certificate[] certs = index.getBySKI(skiBytes);
+            return certs == null ? new Certificate[]{} : certs;
+        }
         try {
             for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
                 String alias = e.nextElement();
@@ -1383,6 +1730,10 @@ public class Merlin extends CryptoBase {
     private List<Certificate[]> getCertificates(Object subjectRDN, KeyStore store)
         throws WSSecurityException {
         LOG.debug("Searching keystore for cert with Subject {}", subjectRDN);
+        KeyStoreIndex index = getCertificateIndex(store);
+        if (index != null) {
+            return index.getBySubject(subjectRDN);
+        }
         List<Certificate[]> foundCerts = new ArrayList<>();
         try {
             for (Enumeration<String> e = store.aliases(); e.hasMoreElements();) {
@@ -21,6 +21,7 @@ package org.apache.wss4j.common.crypto;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
@@ -36,10 +37,10 @@ import java.security.cert.CertificateNotYetValidException;
 import java.security.cert.PKIXParameters;
 import java.security.cert.TrustAnchor;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Enumeration;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Properties;
 import java.util.Set;
@@ -86,6 +87,17 @@ public class MerlinAKI extends Merlin {
         boolean enableRevocation,
         Collection<Pattern> subjectCertConstraints
     ) throws WSSecurityException {
+        TrustVerificationCache cache = trustVerificationCache;
+        ByteBuffer cacheKey = null;
+        if (cache != null) {
+            cache.checkGeneration(keystore, truststore);
+            cacheKey = cache.createKey(certs, enableRevocation, subjectCertConstraints);
+            if (cache.isVerified(cacheKey)) {
+                LOG.debug("The certificate chain has already been validated");
+                return;
+            }
+        }
+
         //
         // FIRST step - Search the keystore for the transmitted certificate
         //
@@ -114,6 +126,9 @@ public class MerlinAKI extends Merlin {
                         "Direct trust for certificate with " + certs[0].getSubjectX500Principal().getName()
                     );
                 }
+                if (cache != null) {
+                    cache.setVerified(cacheKey, Arrays.<Certificate>asList(certs));
+                }
                 return;
             }
         }
@@ -167,44 +182,13 @@ public class MerlinAKI extends Merlin {
             );
         }
 
+        TrustAnchor trustAnchor = null;
         try {
             // Generate cert path
             List<X509Certificate> certList = Arrays.asList(x509certs);
             CertPath path = getCertificateFactory().generateCertPath(certList);
 
-            Set<TrustAnchor> set = new HashSet<>();
-            if (truststore != null) {
-                Enumeration<String> truststoreAliases = truststore.aliases();
-                while (truststoreAliases.hasMoreElements()) {
-                    String alias = truststoreAliases.nextElement();
-                    X509Certificate cert =
-                        (X509Certificate) truststore.getCertificate(alias);
-                    if (cert != null) {
-                        TrustAnchor anchor =
-                            new TrustAnchor(cert, cert.getExtensionValue(NAME_CONSTRAINTS_OID));
-                        set.add(anchor);
-                    }
-                }
-            }
-
-            //
-            // Add certificates from the keystore - only if there is no TrustStore, apart from
-            // the case that the truststore is the JDK CA certs. This behaviour is preserved
-            // for backwards compatibility reasons
-            //
-            if (keystore != null && (truststore == null || loadCACerts)) {
-                Enumeration<String> aliases = keystore.aliases();
-                while (aliases.hasMoreElements()) {
-                    String alias = aliases.nextElement();
-                    X509Certificate cert =
-                        (X509Certificate) keystore.getCertificate(alias);
-                    if (cert != null) {
-                        TrustAnchor anchor =
-                            new TrustAnchor(cert, cert.getExtensionValue(NAME_CONSTRAINTS_OID));
-                        set.add(anchor);
-                    }
-                }
-            }
+            Set<TrustAnchor> set = getTrustAnchors();
 
             // Verify the trust path using the above settings
             String provider = getCryptoProvider();
@@ -216,7 +200,7 @@ public class MerlinAKI extends Merlin {
             }
 
             PKIXParameters param = createPKIXParameters(set, enableRevocation);
-            validator.validate(path, param);
+            trustAnchor = getTrustAnchor(validator.validate(path, param));
         } catch (NoSuchProviderException | NoSuchAlgorithmException
             | CertificateException | InvalidAlgorithmParameterException
             | java.security.cert.CertPathValidatorException
@@ -230,6 +214,15 @@ public class MerlinAKI extends Merlin {
         if (!matchesSubjectDnPattern(certs[0], subjectCertConstraints)) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
+
+        if (cache != null) {
+            // The entry must not outlive any certificate of the path, including the trust anchor
+            List<Certificate> pathCerts = new ArrayList<>(Arrays.asList(x509certs));
+            if (trustAnchor != null && trustAnchor.getTrustedCert() != null) {
+                pathCerts.add(trustAnchor.getTrustedCert());
+            }
+            cache.setVerified(cacheKey, pathCerts);
+        }
     }
 
     private X509Certificate[] getX509CertificatesFromKeyIdentifier(
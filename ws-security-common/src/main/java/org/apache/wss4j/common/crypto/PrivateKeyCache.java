@@ -0,0 +1,328 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+
+/**
+ * A cache used by Merlin to avoid recovering (decrypting) a private key from the keystore for
+ * every message, which is costly for a PKCS#12 keystore in particular. It stores the unlocked
+ * private keys by alias, together with a digest of the password that unlocked them, so that a
+ * private key is only returned for the same alias and password. It also maps the fingerprints
+ * (SHA-256 digests) of the certificates and public keys that private keys were requested for to
+ * the alias, so that a cached private key is returned for a certificate or public key without
+ * searching the keystore for the alias, or asking the CallbackHandler for the password.
+ *
+ * The entries expire after the configured time-to-live. When the cache is full, the private key
+ * that expires soonest is evicted, and the fingerprints that map to aliases which are no longer
+ * cached are dropped. The cached state belongs to a particular
+ * "generation" of the keystore. It is discarded when the keystore is replaced, or its size
+ * changes.
+ */
+public class PrivateKeyCache {
+
+    public static final long DEFAULT_TTL = 300L;
+    public static final int DEFAULT_MAX_SIZE = 100;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(PrivateKeyCache.class);
+
+    private static final byte CERTIFICATE = 1;
+    private static final byte PUBLIC_KEY = 2;
+
+    private final long ttl;
+    private final int maxSize;
+    private final ConcurrentMap<String, CacheEntry> privateKeys = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ByteBuffer, String> aliases = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile Generation generation;
+
+    public PrivateKeyCache() {
+        this(DEFAULT_TTL, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param ttl the time-to-live in seconds of an unlocked private key
+     * @param maxSize the maximum number of private keys to store
+     */
+    public PrivateKeyCache(long ttl, int maxSize) {
+        if (ttl <= 0L || maxSize <= 0) {
+            throw new IllegalArgumentException("The TTL and size of the cache must be positive");
+        }
+        this.ttl = ttl * 1000L;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Make sure that the cached state belongs to the given keystore, discarding it otherwise.
+     */
+    void checkGeneration(KeyStore keystore) {
+        Generation current = generation;
+        if (current == null || !current.matches(keystore)) {
+            LOG.debug("The keystore has changed, clearing the private key cache");
+            privateKeys.clear();
+            aliases.clear();
+            generation = new Generation(keystore);
+        }
+    }
+
+    /**
+     * Get the private key with the given alias, if it was unlocked with the given password, and
+     * the entry has not expired.
+     */
+    PrivateKey getPrivateKey(String alias, String password) throws WSSecurityException {
+        CacheEntry entry = getEntry(alias);
+        if (entry != null && MessageDigest.isEqual(entry.passwordDigest, digest(password))) {
+            hits.increment();
+            SecurityMetrics.cacheAccess("PrivateKeyCache", true);
+            return entry.privateKey;
+        }
+        misses.increment();
+        SecurityMetrics.cacheAccess("PrivateKeyCache", false);
+        return null;
+    }
+
+    /**
+     * Get the private key of the alias that the given fingerprint (see createKey) is mapped to,
+     * if the entry has not expired.
+     */
+    PrivateKey getPrivateKey(ByteBuffer fingerprint) {
+        String alias = aliases.get(fingerprint);
+        CacheEntry entry = alias == null ? null : getEntry(alias);
+        if (entry != null) {
+            hits.increment();
+            SecurityMetrics.cacheAccess("PrivateKeyCache", true);
+            return entry.privateKey;
+        }
+        misses.increment();
+        SecurityMetrics.cacheAccess("PrivateKeyCache", false);
+        return null;
+    }
+
+    /**
+     * Store the private key with the given alias, that was unlocked with the given password.
+     */
+    void setPrivateKey(String alias, String password, PrivateKey privateKey) throws WSSecurityException {
+        long now = System.currentTimeMillis();
+        if (privateKeys.size() >= maxSize && !privateKeys.containsKey(alias)) {
+            purgeExpired(now);
+            if (privateKeys.size() >= maxSize) {
+                LOG.debug("The private key cache is full, evicting the entry that expires soonest");
+                evictEarliest();
+            }
+        }
+        privateKeys.put(alias, new CacheEntry(privateKey, digest(password), now + ttl));
+    }
+
+    /**
+     * Map the given fingerprint (see createKey) to the alias of a private key.
+     */
+    void setAlias(ByteBuffer fingerprint, String alias) {
+        // A private key may be looked up by both its certificate and its public key
+        if (aliases.size() >= 2 * maxSize && !aliases.containsKey(fingerprint)) {
+            Iterator<String> iterator = aliases.values().iterator();
+            while (iterator.hasNext()) {
+                if (!privateKeys.containsKey(iterator.next())) {
+                    iterator.remove();
+                }
+            }
+            if (aliases.size() >= 2 * maxSize) {
+                LOG.debug("The fingerprints of the private key cache are full, clearing them");
+                aliases.clear();
+            }
+        }
+        aliases.put(fingerprint, alias);
+    }
+
+    /**
+     * Create the fingerprint of a certificate, under which the alias of its private key is stored.
+     */
+    ByteBuffer createKey(X509Certificate certificate) throws WSSecurityException {
+        try {
+            return createKey(CERTIFICATE, certificate.getEncoded());
+        } catch (CertificateEncodingException e) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, e, "encodeError"
+            );
+        }
+    }
+
+    /**
+     * Create the fingerprint of a public key, under which the alias of its private key is stored.
+     */
+    ByteBuffer createKey(PublicKey publicKey) throws WSSecurityException {
+        return createKey(PUBLIC_KEY, publicKey.getEncoded());
+    }
+
+    private static ByteBuffer createKey(byte type, byte[] encoded) throws WSSecurityException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(type);
+            digest.update(encoded);
+            return ByteBuffer.wrap(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, e, "decoding.general"
+            );
+        }
+    }
+
+    private static byte[] digest(String password) throws WSSecurityException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            if (password == null) {
+                digest.update((byte)0);
+            } else {
+                digest.update((byte)1);
+                digest.update(password.getBytes(StandardCharsets.UTF_8));
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, e, "decoding.general"
+            );
+        }
+    }
+
+    private CacheEntry getEntry(String alias) {
+        CacheEntry entry = privateKeys.get(alias);
+        if (entry != null) {
+            if (entry.expiry > System.currentTimeMillis()) {
+                return entry;
+            }
+            privateKeys.remove(alias, entry);
+        }
+        return null;
+    }
+
+    private void purgeExpired(long now) {
+        Iterator<Map.Entry<String, CacheEntry>> iterator = privateKeys.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue().expiry <= now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void evictEarliest() {
+        Map.Entry<String, CacheEntry> earliest = null;
+        for (Map.Entry<String, CacheEntry> entry : privateKeys.entrySet()) {
+            if (earliest == null || entry.getValue().expiry < earliest.getValue().expiry) {
+                earliest = entry;
+            }
+        }
+        if (earliest != null) {
+            privateKeys.remove(earliest.getKey(), earliest.getValue());
+        }
+    }
+
+    /**
+     * Discard all of the cached state
+     */
+    public void clear() {
+        privateKeys.clear();
+        aliases.clear();
+        generation = null;
+    }
+
+    /**
+     * @return the number of private keys that are currently stored
+     */
+    public int size() {
+        return privateKeys.size();
+    }
+
+    /**
+     * @return the number of times a private key was returned from the cache
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of times a private key had to be recovered from the keystore
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getTtl() {
+        return ttl / 1000L;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    private static final class CacheEntry {
+        private final PrivateKey privateKey;
+        private final byte[] passwordDigest;
+        private final long expiry;
+
+        CacheEntry(PrivateKey privateKey, byte[] passwordDigest, long expiry) {
+            this.privateKey = privateKey;
+            this.passwordDigest = passwordDigest;
+            this.expiry = expiry;
+        }
+    }
+
+    private static final class Generation {
+        private final KeyStore keystore;
+        private final int keystoreSize;
+
+        Generation(KeyStore keystore) {
+            this.keystore = keystore;
+            this.keystoreSize = size(keystore);
+        }
+
+        boolean matches(KeyStore otherKeystore) {
+            return keystore == otherKeystore && keystoreSize == size(otherKeystore);
+        }
+
+        private static int size(KeyStore store) {
+            if (store == null) {
+                return 0;
+            }
+            try {
+                return store.size();
+            } catch (KeyStoreException ex) {
+                return -1;
+            }
+        }
+    }
+}
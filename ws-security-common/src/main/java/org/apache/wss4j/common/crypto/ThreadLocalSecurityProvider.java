@@ -66,6 +66,13 @@ public final class ThreadLocalSecurityProvider extends Provider {
         return PROVIDER.get();
     }
 
+    /**
+     * @return the Provider that is set for the current thread, if this provider is installed, or null
+     */
+    static Provider getThreadLocalProvider() {
+        return installed ? PROVIDER.get() : null;
+    }
+
     public void clear() {
         Provider p = getProvider();
         if (p != null) {
@@ -0,0 +1,272 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.KeyStoreException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.TrustAnchor;
+import java.security.cert.X509Certificate;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+
+/**
+ * A cache used by Merlin to speed up the trust verification of certificate chains. It stores the
+ * set of TrustAnchors built from the keystore/truststore, and it memoizes the chains that have
+ * been successfully validated, keyed by a digest of the encoded certificates, the revocation flag
+ * and the Subject DN constraints. A validated chain is trusted again without a PKIX validation,
+ * until either the configured time-to-live has elapsed or any certificate of the validated path
+ * expires, whichever is earlier. The certificates of the path are the received certificates, the
+ * issuing certificates that were found in the keystore or truststore, and the certificate of the
+ * trust anchor.
+ *
+ * The cached state belongs to a particular "generation" of the keystore and truststore. It is
+ * discarded when either store is replaced, or its size changes.
+ */
+public class TrustVerificationCache {
+
+    public static final long DEFAULT_TTL = 300L;
+    public static final int DEFAULT_MAX_SIZE = 1000;
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(TrustVerificationCache.class);
+
+    private final long ttl;
+    private final int maxSize;
+    private final ConcurrentMap<ByteBuffer, Long> validatedChains = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile Generation generation;
+
+    public TrustVerificationCache() {
+        this(DEFAULT_TTL, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param ttl the time-to-live in seconds of a validated chain
+     * @param maxSize the maximum number of validated chains to store
+     */
+    public TrustVerificationCache(long ttl, int maxSize) {
+        if (ttl <= 0L || maxSize <= 0) {
+            throw new IllegalArgumentException("The TTL and size of the cache must be positive");
+        }
+        this.ttl = ttl * 1000L;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Make sure that the cached state belongs to the given keystore and truststore, discarding it
+     * otherwise.
+     */
+    void checkGeneration(KeyStore keystore, KeyStore truststore) {
+        Generation current = generation;
+        if (current == null || !current.matches(keystore, truststore)) {
+            LOG.debug("The keystore or truststore has changed, clearing the trust verification cache");
+            validatedChains.clear();
+            generation = new Generation(keystore, truststore, null);
+        }
+    }
+
+    /**
+     * Get the TrustAnchors of the current generation, or null if they have not been stored yet.
+     */
+    Set<TrustAnchor> getTrustAnchors(KeyStore keystore, KeyStore truststore) {
+        Generation current = generation;
+        if (current != null && current.matches(keystore, truststore)) {
+            return current.trustAnchors;
+        }
+        return null;
+    }
+
+    void setTrustAnchors(KeyStore keystore, KeyStore truststore, Set<TrustAnchor> trustAnchors) {
+        Generation current = generation;
+        if (current == null || !current.matches(keystore, truststore)) {
+            validatedChains.clear();
+        }
+        generation = new Generation(keystore, truststore, trustAnchors);
+    }
+
+    /**
+     * Create the key under which the result of validating the given chain is stored.
+     */
+    ByteBuffer createKey(
+        X509Certificate[] certs, boolean enableRevocation, Collection<Pattern> subjectCertConstraints
+    ) throws WSSecurityException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (X509Certificate cert : certs) {
+                digest.update(cert.getEncoded());
+            }
+            digest.update(enableRevocation ? (byte)1 : (byte)0);
+            if (subjectCertConstraints != null) {
+                for (Pattern pattern : subjectCertConstraints) {
+                    digest.update((byte)0);
+                    digest.update(pattern.pattern().getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            return ByteBuffer.wrap(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, e, "decoding.general"
+            );
+        } catch (CertificateEncodingException e) {
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.SECURITY_TOKEN_UNAVAILABLE, e, "encodeError"
+            );
+        }
+    }
+
+    /**
+     * @return whether a chain with the given key has been validated, and the result has not expired
+     */
+    boolean isVerified(ByteBuffer key) {
+        Long expiry = validatedChains.get(key);
+        if (expiry != null) {
+            if (expiry > System.currentTimeMillis()) {
+                hits.increment();
+                SecurityMetrics.cacheAccess("TrustVerificationCache", true);
+                return true;
+            }
+            validatedChains.remove(key, expiry);
+        }
+        misses.increment();
+        SecurityMetrics.cacheAccess("TrustVerificationCache", false);
+        return false;
+    }
+
+    /**
+     * Store that a chain with the given key has been validated. The certs are the certificates of
+     * the validated path (including the issuing certificates and the trust anchor that were
+     * resolved from the keystore or truststore), which determine the expiry of the entry.
+     */
+    void setVerified(ByteBuffer key, Collection<? extends Certificate> certs) {
+        long now = System.currentTimeMillis();
+        long expiry = now + ttl;
+        for (Certificate cert : certs) {
+            if (cert instanceof X509Certificate) {
+                expiry = Math.min(expiry, ((X509Certificate)cert).getNotAfter().getTime());
+            }
+        }
+        if (expiry <= now) {
+            return;
+        }
+
+        if (validatedChains.size() >= maxSize) {
+            purgeExpired(now);
+            if (validatedChains.size() >= maxSize) {
+                LOG.debug("The trust verification cache is full");
+                return;
+            }
+        }
+        validatedChains.put(key, expiry);
+    }
+
+    private void purgeExpired(long now) {
+        Iterator<Map.Entry<ByteBuffer, Long>> iterator = validatedChains.entrySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().getValue() <= now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Discard all of the cached state
+     */
+    public void clear() {
+        validatedChains.clear();
+        generation = null;
+    }
+
+    /**
+     * @return the number of validated chains that are currently stored
+     */
+    public int size() {
+        return validatedChains.size();
+    }
+
+    /**
+     * @return the number of times a chain was trusted from the cache
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * @return the number of times a chain had to be validated
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getTtl() {
+        return ttl / 1000L;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    private static final class Generation {
+        private final KeyStore keystore;
+        private final int keystoreSize;
+        private final KeyStore truststore;
+        private final int truststoreSize;
+        private final Set<TrustAnchor> trustAnchors;
+
+        Generation(KeyStore keystore, KeyStore truststore, Set<TrustAnchor> trustAnchors) {
+            this.keystore = keystore;
+            this.keystoreSize = size(keystore);
+            this.truststore = truststore;
+            this.truststoreSize = size(truststore);
+            this.trustAnchors = trustAnchors;
+        }
+
+        boolean matches(KeyStore otherKeystore, KeyStore otherTruststore) {
+            return keystore == otherKeystore && truststore == otherTruststore
+                && keystoreSize == size(otherKeystore) && truststoreSize == size(otherTruststore);
+        }
+
+        private static int size(KeyStore store) {
+            if (store == null) {
+                return 0;
+            }
+            try {
+                return store.size();
+            } catch (KeyStoreException ex) {
+                return -1;
+            }
+        }
+    }
+}
@@ -116,6 +116,15 @@ public final class WSProviderConfig {
         }
     }
 
+    /**
+     * Release the per-thread state that WSS4J keeps for all of the threads, such as the pooled
+     * MessageDigest and Mac instances. This should be called when WSS4J is shut down, for example
+     * when a web application is undeployed.
+     */
+    public static void cleanUp() {
+        JCEInstancePool.clearAll();
+    }
+
     /**
      * Set the value of the internal addJceProviders flag.  This flag
      * turns on (or off) automatic registration of known JCE providers
@@ -40,12 +40,15 @@ package org.apache.wss4j.common.derivedKey;
  */
 
 import javax.crypto.Mac;
+import javax.crypto.ShortBufferException;
 import javax.crypto.spec.SecretKeySpec;
 
+import org.apache.wss4j.common.crypto.JCEInstancePool;
 import org.apache.wss4j.common.ext.WSSecurityException;
 
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 
 public class P_SHA1 implements DerivationAlgorithm {
 
@@ -53,54 +56,72 @@ public class P_SHA1 implements DerivationAlgorithm {
     public byte[] createKey(byte[] secret, byte[] seed, int offset, long length)
             throws WSSecurityException {
 
+        if (offset < 0 || length < 0 || offset + length > Integer.MAX_VALUE) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "errorInKeyDerivation");
+        }
+        Mac mac = null;
         try {
-            Mac mac = Mac.getInstance("HmacSHA1");
-
-            byte[] tempBytes = pHash(secret, seed, mac, offset + (int) length);
+            mac = JCEInstancePool.getMac("HmacSHA1");
 
             byte[] key = new byte[(int) length];
-
-            System.arraycopy(tempBytes, offset, key, 0, key.length);
-
+            pHash(secret, seed, mac, offset, key);
             return key;
-        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
+        } catch (NoSuchAlgorithmException | InvalidKeyException | ShortBufferException e) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, e, "errorInKeyDerivation");
+        } finally {
+            JCEInstancePool.release(mac);
         }
     }
 
     /**
-     * P_hash as defined in RFC 2246 for TLS.
+     * P_hash as defined in RFC 2246 for TLS. The output bytes from the given offset are written
+     * to the key array, the output before the offset is computed but not kept. The A(i) values and
+     * the output blocks are computed into two buffers of the length of the HMAC.
      *
      * @param secret is the key for the HMAC
      * @param seed the seed value to start the generation - A(0)
      * @param mac the HMAC algorithm
-     * @param required number of bytes to generate
-     * @return a byte array that contains a secret key
+     * @param offset the number of output bytes to skip
+     * @param key the array to fill with the output bytes
      * @throws InvalidKeyException
+     * @throws ShortBufferException
      */
-    private static byte[] pHash(byte[] secret, byte[] seed, Mac mac, int required)
-            throws InvalidKeyException {
+    private static void pHash(byte[] secret, byte[] seed, Mac mac, int offset, byte[] key)
+            throws InvalidKeyException, ShortBufferException {
 
-        byte[] out = new byte[required];
-        int offset = 0, tocpy;
-        byte[] a = seed; // a(0) is the seed
-        byte[] tmp;
+        SecretKeySpec secretKey = new SecretKeySpec(secret, "HMACSHA1");
+        mac.init(secretKey);
 
-        SecretKeySpec key = new SecretKeySpec(secret, "HMACSHA1");
-        mac.init(key);
+        int macLength = mac.getMacLength();
+        byte[] a = new byte[macLength];
+        byte[] block = new byte[macLength];
 
-        int bytesRequired = required;
-        while (bytesRequired > 0) {
-            mac.update(a);
-            a = mac.doFinal();
+        // A(1) = HMAC(secret, A(0))
+        mac.update(seed);
+        mac.doFinal(a, 0);
+
+        int skip = offset;
+        int written = 0;
+        while (written < key.length) {
+            // HMAC(secret, A(i) + seed)
             mac.update(a);
             mac.update(seed);
-            tmp = mac.doFinal();
-            tocpy = Math.min(bytesRequired, tmp.length);
-            System.arraycopy(tmp, 0, out, offset, tocpy);
-            offset += tocpy;
-            bytesRequired -= tocpy;
+            mac.doFinal(block, 0);
+            if (skip >= macLength) {
+                skip -= macLength;
+            } else {
+                int tocpy = Math.min(key.length - written, macLength - skip);
+                System.arraycopy(block, skip, key, written, tocpy);
+                written += tocpy;
+                skip = 0;
+            }
+            if (written < key.length) {
+                // A(i + 1) = HMAC(secret, A(i))
+                mac.update(a);
+                mac.doFinal(a, 0);
+            }
         }
-        return out;
+        Arrays.fill(a, (byte) 0);
+        Arrays.fill(block, (byte) 0);
     }
 }
@@ -0,0 +1,251 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.kerberos;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.kerberos.KerberosTicket;
+import javax.security.auth.login.LoginContext;
+import javax.security.auth.login.LoginException;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+
+/**
+ * This class logs in to a JAAS login context (for example a Krb5LoginModule using a keytab) once,
+ * and shares the Subject holding the service credentials between the validations of received
+ * Kerberos tokens, on all threads. Without it, a new LoginContext is created, and logged in to,
+ * for every received token.
+ *
+ * A login is identified by the name of the login context, which configures the principal of the
+ * service. The Subject is replaced by a new login before the Kerberos tickets in it expire: the
+ * first thread that uses the Subject in the "refresh window" before it expires logs in again,
+ * while the other threads keep using the current Subject. If the new login fails, the current
+ * Subject is used until it expires, and the login is tried again after the retry interval. A
+ * Subject for which no ticket is found (for example a login that only stores the keys of the
+ * service) is replaced after the maximum lifetime.
+ *
+ * A caller can invalidate a Subject if the validation of a token fails with it, for example
+ * because the keys of the service were changed, to log in again. This is only done once per
+ * retry interval, so that invalid tokens do not cause a login each.
+ */
+public class KerberosServiceCredentialManager {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(KerberosServiceCredentialManager.class);
+
+    public static final long DEFAULT_REFRESH_WINDOW = 60L * 5L;
+    public static final long DEFAULT_MAX_LIFETIME = 60L * 60L * 8L;
+    public static final long DEFAULT_RETRY_INTERVAL = 30L;
+
+    private final ConcurrentMap<String, ServiceLogin> logins = new ConcurrentHashMap<>();
+    private final long refreshWindow;
+    private final long maxLifetime;
+    private final long retryInterval;
+
+    public KerberosServiceCredentialManager() {
+        this(DEFAULT_REFRESH_WINDOW, DEFAULT_MAX_LIFETIME, DEFAULT_RETRY_INTERVAL);
+    }
+
+    /**
+     * @param refreshWindow the number of seconds before the expiry of a Subject to log in again
+     * @param maxLifetime the maximum number of seconds to use a Subject for
+     * @param retryInterval the minimum number of seconds between two logins to the same context
+     * after a failed login, or after the Subject was invalidated
+     */
+    public KerberosServiceCredentialManager(long refreshWindow, long maxLifetime, long retryInterval) {
+        if (refreshWindow < 0 || maxLifetime <= 0 || retryInterval < 0) {
+            throw new IllegalArgumentException("Invalid Kerberos service credential lifetime");
+        }
+        this.refreshWindow = TimeUnit.SECONDS.toMillis(refreshWindow);
+        this.maxLifetime = TimeUnit.SECONDS.toMillis(maxLifetime);
+        this.retryInterval = TimeUnit.SECONDS.toMillis(retryInterval);
+    }
+
+    /**
+     * Get the Subject of a login to the given login context, logging in if there is no current
+     * Subject.
+     * @param contextName the JAAS login context name
+     * @param callbackHandler the CallbackHandler to use with the LoginContext (optional)
+     * @return the Subject
+     * @throws WSSecurityException if the login fails, and no current Subject is available
+     */
+    public Subject getSubject(String contextName, CallbackHandler callbackHandler)
+        throws WSSecurityException {
+        ServiceLogin serviceLogin = logins.get(contextName);
+        if (serviceLogin == null) {
+            serviceLogin = new ServiceLogin();
+            ServiceLogin existing = logins.putIfAbsent(contextName, serviceLogin);
+            if (existing != null) {
+                serviceLogin = existing;
+            }
+        }
+        return serviceLogin.getSubject(contextName, callbackHandler);
+    }
+
+    /**
+     * Invalidate a Subject that was returned by getSubject, so that the next call logs in again.
+     * Nothing is done if the Subject was already replaced, or if the last login to the context
+     * was less than the retry interval ago.
+     * @param contextName the JAAS login context name
+     * @param subject the Subject to invalidate
+     * @return whether the Subject was invalidated
+     */
+    public boolean invalidate(String contextName, Subject subject) {
+        ServiceLogin serviceLogin = logins.get(contextName);
+        return serviceLogin != null && serviceLogin.invalidate(subject);
+    }
+
+    /**
+     * Remove all of the Subjects. The Subjects are not logged out, as they may still be in use.
+     */
+    public void clear() {
+        logins.clear();
+    }
+
+    /**
+     * Log in to a JAAS login context.
+     * @param contextName the JAAS login context name
+     * @param callbackHandler the CallbackHandler to use with the LoginContext (optional)
+     * @return the Subject of the login
+     * @throws WSSecurityException if the login fails
+     */
+    public static Subject login(String contextName, CallbackHandler callbackHandler)
+        throws WSSecurityException {
+        try {
+            LoginContext loginContext;
+            if (callbackHandler == null) {
+                loginContext = new LoginContext(contextName);
+            } else {
+                loginContext = new LoginContext(contextName, callbackHandler);
+            }
+            loginContext.login();
+            return loginContext.getSubject();
+        } catch (LoginException ex) {
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(ex.getMessage(), ex);
+            }
+            throw new WSSecurityException(
+                WSSecurityException.ErrorCode.FAILURE, ex, "kerberosLoginError",
+                new Object[] {ex.getMessage()});
+        }
+    }
+
+    /**
+     * The current login to one context
+     */
+    private final class ServiceLogin {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile LoginState state;
+
+        Subject getSubject(String contextName, CallbackHandler callbackHandler)
+            throws WSSecurityException {
+            LoginState current = state;
+            long now = System.currentTimeMillis();
+            if (current != null && now < current.refreshAt) {
+                return current.subject;
+            }
+
+            if (current != null && now < current.expires) {
+                // Refresh the credentials before they expire, unless another thread already does
+                if (!lock.tryLock()) {
+                    return current.subject;
+                }
+            } else {
+                lock.lock();
+            }
+            try {
+                current = state;
+                now = System.currentTimeMillis();
+                if (current != null && now < current.refreshAt) {
+                    return current.subject;
+                }
+                try {
+                    Subject subject = login(contextName, callbackHandler);
+                    state = new LoginState(subject, now, getExpiry(subject, now));
+                    LOG.debug("Logged in to the Kerberos service context {}", contextName);
+                    return subject;
+                } catch (WSSecurityException ex) {
+                    if (current != null && now < current.expires) {
+                        LOG.warn("Refreshing the Kerberos service credentials of the context {} failed, "
+                                 + "the current credentials are used until they expire", contextName);
+                        current.refreshAt = Math.min(now + retryInterval, current.expires);
+                        return current.subject;
+                    }
+                    throw ex;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean invalidate(Subject subject) {
+            lock.lock();
+            try {
+                LoginState current = state;
+                if (current == null || current.subject != subject
+                    || System.currentTimeMillis() < current.loginTime + retryInterval) {
+                    return false;
+                }
+                state = null;
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private long getExpiry(Subject subject, long now) {
+            long expires = now + maxLifetime;
+            Set<KerberosTicket> tickets = subject.getPrivateCredentials(KerberosTicket.class);
+            Iterator<KerberosTicket> iterator = tickets.iterator();
+            while (iterator.hasNext()) {
+                Date endTime = iterator.next().getEndTime();
+                if (endTime != null && endTime.getTime() < expires) {
+                    expires = endTime.getTime();
+                }
+            }
+            return expires;
+        }
+
+        private final class LoginState {
+            private final Subject subject;
+            private final long loginTime;
+            private final long expires;
+            private volatile long refreshAt;
+
+            LoginState(Subject subject, long loginTime, long expires) {
+                this.subject = subject;
+                this.loginTime = loginTime;
+                this.expires = expires;
+                // Log in again in the refresh window, or half way through a shorter lifetime
+                this.refreshAt = expires - Math.min(refreshWindow, Math.max(0, expires - loginTime) / 2);
+            }
+        }
+    }
+}
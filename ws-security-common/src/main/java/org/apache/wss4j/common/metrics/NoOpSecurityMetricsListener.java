@@ -0,0 +1,61 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.metrics;
+
+/**
+ * The default SecurityMetricsListener, which ignores all of the notifications.
+ */
+public final class NoOpSecurityMetricsListener implements SecurityMetricsListener {
+
+    public static final NoOpSecurityMetricsListener INSTANCE = new NoOpSecurityMetricsListener();
+
+    private static final Timer NO_OP_TIMER = new Timer() {
+        @Override
+        public void stop() {
+            // complete
+        }
+    };
+
+    private NoOpSecurityMetricsListener() {
+        // complete
+    }
+
+    @Override
+    public Timer start(SecurityOperation operation, String name) {
+        return NO_OP_TIMER;
+    }
+
+    @Override
+    public void cacheAccess(String cache, boolean hit) {
+        // complete
+    }
+
+    @Override
+    public void cacheRejection(String cache) {
+        // complete
+    }
+
+    @Override
+    public void bytesProcessed(SecurityOperation operation, String name, long bytes) {
+        // complete
+    }
+
+}
@@ -0,0 +1,124 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.metrics;
+
+import org.apache.wss4j.common.util.Loader;
+
+/**
+ * Holds the SecurityMetricsListener that is notified of the security operations of WSS4J. The
+ * NoOpSecurityMetricsListener is used unless another listener is set. A listener can also be
+ * configured with the "org.apache.wss4j.metrics.listener" system property, which holds the class
+ * name of a listener with a public no-argument constructor, for example
+ * "org.apache.wss4j.metrics.jfr.JfrSecurityMetricsListener" of the (Java 11) wss4j-ws-security-metrics-jfr
+ * module to record Java Flight Recorder events.
+ */
+public final class SecurityMetrics {
+
+    public static final String LISTENER_PROPERTY = "org.apache.wss4j.metrics.listener";
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(SecurityMetrics.class);
+
+    private static volatile SecurityMetricsListener listener = loadListener();
+
+    private SecurityMetrics() {
+        // complete
+    }
+
+    private static SecurityMetricsListener loadListener() {
+        String className = System.getProperty(LISTENER_PROPERTY);
+        if (className == null || className.trim().isEmpty()) {
+            return NoOpSecurityMetricsListener.INSTANCE;
+        }
+        try {
+            return Loader.loadClass(className.trim(), SecurityMetricsListener.class).newInstance();
+        } catch (ClassNotFoundException | InstantiationException | IllegalAccessException
+            | ClassCastException | LinkageError ex) {
+            LOG.warn("Cannot create the SecurityMetricsListener " + className, ex);
+            return NoOpSecurityMetricsListener.INSTANCE;
+        }
+    }
+
+    /**
+     * @return the SecurityMetricsListener, never null
+     */
+    public static SecurityMetricsListener getListener() {
+        return listener;
+    }
+
+    /**
+     * Set the SecurityMetricsListener. Null restores the NoOpSecurityMetricsListener.
+     * @param securityMetricsListener the SecurityMetricsListener
+     */
+    public static void setListener(SecurityMetricsListener securityMetricsListener) {
+        if (securityMetricsListener == null) {
+            listener = NoOpSecurityMetricsListener.INSTANCE;
+        } else {
+            listener = securityMetricsListener;
+        }
+    }
+
+    /**
+     * @return whether a listener other than the NoOpSecurityMetricsListener is set. This can be
+     * used to skip work that is only needed to notify the listener.
+     */
+    public static boolean isEnabled() {
+        return listener != NoOpSecurityMetricsListener.INSTANCE;
+    }
+
+    /**
+     * Notify the listener that an operation is started.
+     * @param operation the operation
+     * @param name the name of the type of processor, action or algorithm that performs the operation
+     * @return the Timer to stop when the operation has completed
+     */
+    public static SecurityMetricsListener.Timer start(SecurityOperation operation, String name) {
+        return listener.start(operation, name);
+    }
+
+    /**
+     * Notify the listener of a lookup in a cache.
+     * @param cache the name of the cache
+     * @param hit whether the entry was found in the cache
+     */
+    public static void cacheAccess(String cache, boolean hit) {
+        listener.cacheAccess(cache, hit);
+    }
+
+    /**
+     * Notify the listener that an entry was rejected, as a cache was full.
+     * @param cache the name of the cache
+     */
+    public static void cacheRejection(String cache) {
+        listener.cacheRejection(cache);
+    }
+
+    /**
+     * Notify the listener of the number of bytes that were processed by an operation.
+     * @param operation the operation
+     * @param name the name of the algorithm
+     * @param bytes the number of bytes
+     */
+    public static void bytesProcessed(SecurityOperation operation, String name, long bytes) {
+        listener.bytesProcessed(operation, name, bytes);
+    }
+
+}
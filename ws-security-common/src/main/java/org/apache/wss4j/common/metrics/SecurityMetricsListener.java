@@ -0,0 +1,75 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.metrics;
+
+/**
+ * A listener that is notified of the security operations that WSS4J performs, so that the time
+ * spent in them, their number, the hit ratio of the caches and the number of bytes that are
+ * encrypted and decrypted can be recorded. A listener is registered with
+ * SecurityMetrics.setListener, and is used by the DOM and the StAX code alike.
+ *
+ * The methods of a listener are called on the threads that process the messages, concurrently,
+ * and so implementations must be thread-safe, and should return quickly.
+ */
+public interface SecurityMetricsListener {
+
+    /**
+     * Notify the listener that an operation is started.
+     * @param operation the operation
+     * @param name the name of the type of processor, action or algorithm that performs the operation
+     * @return a Timer, which is stopped when the operation has completed (successfully or not)
+     */
+    Timer start(SecurityOperation operation, String name);
+
+    /**
+     * Notify the listener of a lookup in a cache.
+     * @param cache the name of the cache
+     * @param hit whether the entry was found in the cache. For a ReplayCache, a hit is a replay.
+     */
+    void cacheAccess(String cache, boolean hit);
+
+    /**
+     * Notify the listener that an entry was rejected, as a cache was full.
+     * @param cache the name of the cache
+     */
+    void cacheRejection(String cache);
+
+    /**
+     * Notify the listener of the number of bytes that were processed by an operation.
+     * @param operation the operation (ENCRYPT or DECRYPT)
+     * @param name the name of the algorithm
+     * @param bytes the number of bytes of the (decoded) cipher value
+     */
+    void bytesProcessed(SecurityOperation operation, String name, long bytes);
+
+    /**
+     * The timer of a single operation.
+     */
+    interface Timer {
+
+        /**
+         * Stop the timer. This is called once, on the thread that started the operation.
+         */
+        void stop();
+
+    }
+
+}
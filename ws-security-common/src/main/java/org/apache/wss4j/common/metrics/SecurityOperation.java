@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.metrics;
+
+/**
+ * The (timed) operations that are reported to a SecurityMetricsListener. Each operation is
+ * reported together with a name, that identifies the type of the processor, action or cache.
+ */
+public enum SecurityOperation {
+
+    /**
+     * The processing of a security header element by a DOM Processor, or by a StAX
+     * security header handler. The name is the local name of the element.
+     */
+    PROCESSOR,
+
+    /**
+     * The execution of a DOM Action. The name is the class name of the Action.
+     */
+    ACTION,
+
+    /**
+     * Crypto.verifyTrust. The name is the class name of the Crypto implementation.
+     */
+    VERIFY_TRUST,
+
+    /**
+     * The recovery of a private key by Crypto.getPrivateKey. The name is the class name of the
+     * Crypto implementation.
+     */
+    GET_PRIVATE_KEY,
+
+    /**
+     * The creation of an XML Signature. The name is the signature algorithm.
+     */
+    SIGN,
+
+    /**
+     * The verification of an XML Signature. The name is the signature algorithm.
+     */
+    VERIFY,
+
+    /**
+     * The unwrapping of a symmetric key with a private key. The name is the key transport algorithm.
+     */
+    UNWRAP,
+
+    /**
+     * The encryption of an element. The name is the symmetric encryption algorithm.
+     */
+    ENCRYPT,
+
+    /**
+     * The decryption of an EncryptedData element. The name is the symmetric encryption algorithm.
+     */
+    DECRYPT,
+
+    /**
+     * A lookup (and addition) of an identifier in a ReplayCache. The name is the use of the
+     * ReplayCache: "TimestampReplayCache", "NonceReplayCache" or "SamlOneTimeUseReplayCache".
+     * The same name is used to report the access to the cache, where a hit is a replay.
+     */
+    REPLAY_CACHE
+
+}
@@ -0,0 +1,233 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.metrics;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A SecurityMetricsListener that keeps the number of operations, the time spent in them and the
+ * bytes they processed per operation and name, and the number of hits, misses and rejections per
+ * cache, in memory. The statistics can be read at any time, for example to publish them to a monitoring
+ * system.
+ */
+public class StatisticsSecurityMetricsListener implements SecurityMetricsListener {
+
+    private final Map<SecurityOperation, ConcurrentMap<String, OperationStatistics>> operations =
+        new EnumMap<>(SecurityOperation.class);
+    private final ConcurrentMap<String, CacheStatistics> caches = new ConcurrentHashMap<>();
+
+    public StatisticsSecurityMetricsListener() {
+        for (SecurityOperation operation : SecurityOperation.values()) {
+            operations.put(operation, new ConcurrentHashMap<String, OperationStatistics>());
+        }
+    }
+
+    @Override
+    public Timer start(SecurityOperation operation, String name) {
+        return new StatisticsTimer(getOrCreate(operation, name), System.nanoTime());
+    }
+
+    @Override
+    public void cacheAccess(String cache, boolean hit) {
+        CacheStatistics statistics = getOrCreate(cache);
+        if (hit) {
+            statistics.hits.increment();
+        } else {
+            statistics.misses.increment();
+        }
+    }
+
+    @Override
+    public void cacheRejection(String cache) {
+        getOrCreate(cache).rejections.increment();
+    }
+
+    @Override
+    public void bytesProcessed(SecurityOperation operation, String name, long bytes) {
+        getOrCreate(operation, name).bytes.add(bytes);
+    }
+
+    private CacheStatistics getOrCreate(String cache) {
+        CacheStatistics statistics = caches.get(cache);
+        if (statistics == null) {
+            statistics = new CacheStatistics();
+            CacheStatistics existing = caches.putIfAbsent(cache, statistics);
+            if (existing != null) {
+                statistics = existing;
+            }
+        }
+        return statistics;
+    }
+
+    private OperationStatistics getOrCreate(SecurityOperation operation, String name) {
+        String key = name == null ? "" : name;
+        ConcurrentMap<String, OperationStatistics> statisticsMap = operations.get(operation);
+        OperationStatistics statistics = statisticsMap.get(key);
+        if (statistics == null) {
+            statistics = new OperationStatistics();
+            OperationStatistics existing = statisticsMap.putIfAbsent(key, statistics);
+            if (existing != null) {
+                statistics = existing;
+            }
+        }
+        return statistics;
+    }
+
+    /**
+     * @param operation the operation
+     * @return the statistics of the given operation, by name
+     */
+    public Map<String, OperationStatistics> getStatistics(SecurityOperation operation) {
+        return Collections.unmodifiableMap(operations.get(operation));
+    }
+
+    /**
+     * @param operation the operation
+     * @param name the name that the operation was reported with
+     * @return the statistics of the given operation and name, or null if it was not reported
+     */
+    public OperationStatistics getStatistics(SecurityOperation operation, String name) {
+        return operations.get(operation).get(name == null ? "" : name);
+    }
+
+    /**
+     * @return the statistics of the caches, by name
+     */
+    public Map<String, CacheStatistics> getCacheStatistics() {
+        return Collections.unmodifiableMap(caches);
+    }
+
+    /**
+     * @param cache the name of the cache
+     * @return the statistics of the given cache, or null if it was not accessed
+     */
+    public CacheStatistics getCacheStatistics(String cache) {
+        return caches.get(cache);
+    }
+
+    /**
+     * Discard all of the statistics.
+     */
+    public void reset() {
+        for (ConcurrentMap<String, OperationStatistics> statisticsMap : operations.values()) {
+            statisticsMap.clear();
+        }
+        caches.clear();
+    }
+
+    /**
+     * The statistics of an operation (of a given name).
+     */
+    public static final class OperationStatistics {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder totalTime = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+
+        /**
+         * @return the number of times the operation was performed
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return the total time spent in the operation, in nanoseconds
+         */
+        public long getTotalTime() {
+            return totalTime.sum();
+        }
+
+        /**
+         * @return the number of bytes that the operation processed
+         */
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        @Override
+        public String toString() {
+            return "count=" + getCount() + ", totalTime=" + getTotalTime() + "ns, bytes=" + getBytes();
+        }
+    }
+
+    /**
+     * The number of hits, misses and rejections of a cache.
+     */
+    public static final class CacheStatistics {
+
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder rejections = new LongAdder();
+
+        public long getHits() {
+            return hits.sum();
+        }
+
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        /**
+         * @return the number of entries that were rejected, as the cache was full
+         */
+        public long getRejections() {
+            return rejections.sum();
+        }
+
+        /**
+         * @return the ratio of the hits to all of the lookups, or 0 if there were no lookups
+         */
+        public double getHitRatio() {
+            long hitCount = getHits();
+            long total = hitCount + getMisses();
+            return total == 0 ? 0.0 : (double) hitCount / total;
+        }
+
+        @Override
+        public String toString() {
+            return "hits=" + getHits() + ", misses=" + getMisses() + ", rejections=" + getRejections();
+        }
+    }
+
+    private static final class StatisticsTimer implements Timer {
+
+        private final OperationStatistics statistics;
+        private final long startTime;
+
+        StatisticsTimer(OperationStatistics statistics, long startTime) {
+            this.statistics = statistics;
+            this.startTime = startTime;
+        }
+
+        @Override
+        public void stop() {
+            statistics.totalTime.add(System.nanoTime() - startTime);
+            statistics.count.increment();
+        }
+    }
+
+}
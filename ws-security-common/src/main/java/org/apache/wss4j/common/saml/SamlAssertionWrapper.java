@@ -719,6 +719,16 @@ public class SamlAssertionWrapper {
         return signatureKeyInfo;
     }
 
+    /**
+     * Set the SAMLKeyInfo associated with the signature of the assertion. This is only used
+     * instead of verifySignature, if the signature was verified before (see
+     * VerifiedAssertionCache).
+     * @param signatureKeyInfo the SAMLKeyInfo associated with the signature of the assertion
+     */
+    public void setSignatureKeyInfo(SAMLKeyInfo signatureKeyInfo) {
+        this.signatureKeyInfo = signatureKeyInfo;
+    }
+
     /**
      * Get the SAMLKeyInfo associated with the Subject KeyInfo
      * @return the SAMLKeyInfo associated with the Subject KeyInfo
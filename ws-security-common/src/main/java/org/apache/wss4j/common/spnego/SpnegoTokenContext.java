@@ -33,6 +33,7 @@ import org.apache.wss4j.common.ext.WSSecurityException.ErrorCode;
 import org.apache.wss4j.common.kerberos.KerberosClientExceptionAction;
 import org.apache.wss4j.common.kerberos.KerberosContext;
 import org.apache.wss4j.common.kerberos.KerberosServiceContext;
+import org.apache.wss4j.common.kerberos.KerberosServiceCredentialManager;
 import org.apache.wss4j.common.kerberos.KerberosServiceExceptionAction;
 import org.ietf.jgss.GSSContext;
 import org.ietf.jgss.GSSCredential;
@@ -54,6 +55,7 @@ public class SpnegoTokenContext {
     private SpnegoServiceAction serviceAction;
     private GSSCredential delegationCredential;
     private Principal spnegoPrincipal;
+    private KerberosServiceCredentialManager serviceCredentialManager;
 
     /**
      * Retrieve a service ticket from a KDC using the Kerberos JAAS module, and set it in this
@@ -223,29 +225,18 @@ public class SpnegoTokenContext {
         boolean isUsernameServiceNameForm,
         byte[] ticket
     ) throws WSSecurityException {
-        // Get a TGT from the KDC using JAAS
-        LoginContext loginContext = null;
-        try {
-            if (callbackHandler == null) {
-                loginContext = new LoginContext(jaasLoginModuleName);
-            } else {
-                loginContext = new LoginContext(jaasLoginModuleName, callbackHandler);
-            }
-            loginContext.login();
-        } catch (LoginException ex) {
-            if (LOG.isDebugEnabled()) {
-                LOG.debug(ex.getMessage(), ex);
-            }
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, ex, "kerberosLoginError",
-                new Object[] {ex.getMessage()});
+        // Get a TGT from the KDC using JAAS, or the Subject of a previous login
+        Subject subject;
+        if (serviceCredentialManager != null) {
+            subject = serviceCredentialManager.getSubject(jaasLoginModuleName, callbackHandler);
+        } else {
+            subject = KerberosServiceCredentialManager.login(jaasLoginModuleName, callbackHandler);
         }
         if (LOG.isDebugEnabled()) {
             LOG.debug("Successfully authenticated to the TGT");
         }
 
         // Get the service name to use - fall back on the principal
-        Subject subject = loginContext.getSubject();
         String service = serviceName;
         if (service == null) {
             Set<Principal> principals = subject.getPrincipals();
@@ -372,6 +363,15 @@ public class SpnegoTokenContext {
         this.serviceAction = spnegoServiceAction;
     }
 
+    /**
+     * Set a KerberosServiceCredentialManager to share the Subject of the login to the JAAS Login
+     * Module between the validations of service tickets. The default is null, which logs in for
+     * every validated service ticket.
+     */
+    public void setServiceCredentialManager(KerberosServiceCredentialManager serviceCredentialManager) {
+        this.serviceCredentialManager = serviceCredentialManager;
+    }
+
     public void clear() {
         token = null;
         mutualAuth = false;
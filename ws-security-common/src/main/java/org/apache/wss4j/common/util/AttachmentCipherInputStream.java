@@ -0,0 +1,182 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.ShortBufferException;
+
+/**
+ * An InputStream that encrypts or decrypts an attachment as it is read. Unlike
+ * javax.crypto.CipherInputStream, which allocates a new output array for every 512 bytes of
+ * input, the data is read in fixed size chunks and processed into a single output buffer that
+ * is reused for the lifetime of the stream. The memory used is therefore independent of the
+ * size of the attachment, as long as the Cipher itself does not buffer the data (the SunJCE
+ * AES-GCM implementation for example holds back all of the plaintext on decryption until the
+ * authentication tag has been verified).
+ */
+public class AttachmentCipherInputStream extends FilterInputStream {
+
+    private static final int CHUNK_SIZE = 8192;
+
+    private final Cipher cipher;
+    private final byte[] inputBuffer = new byte[CHUNK_SIZE];
+    private byte[] outputBuffer;
+    private int outputOffset;
+    private int outputLength;
+    private boolean initialized;
+    private boolean finished;
+
+    public AttachmentCipherInputStream(InputStream inputStream, Cipher cipher) {
+        super(inputStream);
+        this.cipher = cipher;
+        int blockSize = cipher.getBlockSize();
+        this.outputBuffer = new byte[CHUNK_SIZE + 2 * Math.max(blockSize, 16)];
+    }
+
+    /**
+     * Initialize the Cipher before the first chunk is processed. The default implementation
+     * does nothing, as the Cipher is expected to be initialized already. Subclasses can
+     * override this method to read the IV from the start of the (encrypted) stream.
+     * @param inputStream the underlying InputStream
+     * @param cipher the Cipher to initialize
+     * @throws IOException
+     */
+    protected void initCipher(InputStream inputStream, Cipher cipher) throws IOException {
+        // complete
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return outputBuffer[outputOffset++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] bytes) throws IOException {
+        return read(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public int read(byte[] bytes, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int length = Math.min(len, outputLength - outputOffset);
+        System.arraycopy(outputBuffer, outputOffset, bytes, off, length);
+        outputOffset += length;
+        return length;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && fill()) {
+            int length = (int) Math.min(n - skipped, outputLength - outputOffset);
+            outputOffset += length;
+            skipped += length;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return outputLength - outputOffset;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+        // mark is not supported
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    @Override
+    public void close() throws IOException {
+        finished = true;
+        outputOffset = outputLength;
+        super.close();
+    }
+
+    /**
+     * Make sure that there is some processed data in the output buffer.
+     * @return false if the end of the stream has been reached
+     */
+    private boolean fill() throws IOException {
+        if (!initialized) {
+            initCipher(in, cipher);
+            initialized = true;
+        }
+        while (outputOffset >= outputLength) {
+            if (finished) {
+                return false;
+            }
+            int read = in.read(inputBuffer, 0, inputBuffer.length);
+            outputOffset = 0;
+            try {
+                if (read == -1) {
+                    finished = true;
+                    outputLength = doFinal();
+                } else {
+                    outputLength = update(read);
+                }
+            } catch (GeneralSecurityException e) {
+                throw new IOException(e);
+            }
+        }
+        return true;
+    }
+
+    private int update(int length) throws GeneralSecurityException {
+        try {
+            return cipher.update(inputBuffer, 0, length, outputBuffer, 0);
+        } catch (ShortBufferException e) {
+            outputBuffer = new byte[cipher.getOutputSize(length)];
+            return cipher.update(inputBuffer, 0, length, outputBuffer, 0);
+        }
+    }
+
+    private int doFinal() throws GeneralSecurityException {
+        try {
+            return cipher.doFinal(outputBuffer, 0);
+        } catch (ShortBufferException e) {
+            outputBuffer = new byte[cipher.getOutputSize(0)];
+            return cipher.doFinal(outputBuffer, 0);
+        }
+    }
+}
@@ -25,7 +25,6 @@ import org.apache.xml.security.encryption.XMLCipherUtil;
 import org.apache.xml.security.stax.impl.util.MultiInputStream;
 
 import javax.crypto.Cipher;
-import javax.crypto.CipherInputStream;
 import javax.mail.internet.MimeUtility;
 
 import java.io.*;
@@ -478,76 +477,32 @@ public final class AttachmentUtils {
             final String encAlgo, final Cipher cipher, final Key key, InputStream inputStream)
             throws WSSecurityException {
 
-        CipherInputStream cipherInputStream = new CipherInputStream(inputStream, cipher) {
+        return new AttachmentCipherInputStream(inputStream, cipher) {
 
-            private boolean firstRead = true;
-
-            private void initCipher() throws IOException {
+            @Override
+            protected void initCipher(InputStream encryptedStream, Cipher decryptionCipher) throws IOException {
                 int ivLen = JCEMapper.getIVLengthFromURI(encAlgo) / 8;
                 byte[] ivBytes = new byte[ivLen];
 
-                int read = super.in.read(ivBytes, 0, ivLen);
+                int read = 0;
                 while (read != ivLen) {
-                    read += super.in.read(ivBytes, read, ivLen - read);
+                    int count = encryptedStream.read(ivBytes, read, ivLen - read);
+                    if (count == -1) {
+                        throw new IOException("Unexpected end of stream while reading the IV");
+                    }
+                    read += count;
                 }
-                
-                AlgorithmParameterSpec paramSpec = 
+
+                AlgorithmParameterSpec paramSpec =
                     XMLCipherUtil.constructBlockCipherParameters(encAlgo, ivBytes, AttachmentUtils.class);
 
                 try {
-                    cipher.init(Cipher.DECRYPT_MODE, key, paramSpec);
+                    decryptionCipher.init(Cipher.DECRYPT_MODE, key, paramSpec);
                 } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
                     throw new IOException(e);
                 }
             }
-
-            @Override
-            public int read() throws IOException {
-                if (firstRead) {
-                    initCipher();
-                    firstRead = false;
-                }
-                return super.read();
-            }
-
-            @Override
-            public int read(byte[] bytes) throws IOException {
-                if (firstRead) {
-                    initCipher();
-                    firstRead = false;
-                }
-                return super.read(bytes);
-            }
-
-            @Override
-            public int read(byte[] bytes, int i, int i2) throws IOException {
-                if (firstRead) {
-                    initCipher();
-                    firstRead = false;
-                }
-                return super.read(bytes, i, i2);
-            }
-
-            @Override
-            public long skip(long l) throws IOException {
-                if (firstRead) {
-                    initCipher();
-                    firstRead = false;
-                }
-                return super.skip(l);
-            }
-
-            @Override
-            public int available() throws IOException {
-                if (firstRead) {
-                    initCipher();
-                    firstRead = false;
-                }
-                return super.available();
-            }
         };
-
-        return cipherInputStream;
     }
 
     public static InputStream setupAttachmentEncryptionStream(
@@ -597,7 +552,7 @@ public final class AttachmentUtils {
         }
 
         final ByteArrayInputStream ivInputStream = new ByteArrayInputStream(cipher.getIV());
-        final CipherInputStream cipherInputStream = new CipherInputStream(attachmentInputStream, cipher);
+        final InputStream cipherInputStream = new AttachmentCipherInputStream(attachmentInputStream, cipher);
 
         return new MultiInputStream(ivInputStream, cipherInputStream);
     }
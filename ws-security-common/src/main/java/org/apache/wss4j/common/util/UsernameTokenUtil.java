@@ -23,6 +23,7 @@ import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
+import org.apache.wss4j.common.crypto.JCEInstancePool;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.xml.security.stax.ext.XMLSecurityConstants;
 
@@ -58,7 +59,7 @@ public final class UsernameTokenUtil {
 
         MessageDigest sha = null;
         try {
-            sha = MessageDigest.getInstance("SHA1");
+            sha = JCEInstancePool.getMessageDigest("SHA1");
         } catch (NoSuchAlgorithmException e) {
             if (LOG.isDebugEnabled()) {
                 LOG.debug(e.getMessage(), e);
@@ -67,21 +68,25 @@ public final class UsernameTokenUtil {
                 WSSecurityException.ErrorCode.FAILURE, e, "decoding.general"
             );
         }
-        //
-        // Make the first hash round with start value
-        //
-        byte[] k = sha.digest(pwSalt);
-        //
-        // Perform the 1st up to iteration-1 hash rounds
-        //
-        int iter = iteration;
-        if (iter <= 0) {
-            iter = DEFAULT_ITERATION;
-        }
-        for (int i = 1; i < iter; i++) {
-            k = sha.digest(k);
+        try {
+            //
+            // Make the first hash round with start value
+            //
+            byte[] k = sha.digest(pwSalt);
+            //
+            // Perform the 1st up to iteration-1 hash rounds
+            //
+            int iter = iteration;
+            if (iter <= 0) {
+                iter = DEFAULT_ITERATION;
+            }
+            for (int i = 1; i < iter; i++) {
+                k = sha.digest(k);
+            }
+            return k;
+        } finally {
+            JCEInstancePool.release(sha);
         }
-        return k;
     }
 
     /**
@@ -0,0 +1,238 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.attachment;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.security.spec.AlgorithmParameterSpec;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import javax.crypto.Cipher;
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+
+import org.apache.wss4j.common.crypto.WSProviderConfig;
+import org.apache.wss4j.common.ext.Attachment;
+import org.apache.wss4j.common.util.AttachmentUtils;
+import org.apache.xml.security.algorithms.JCEMapper;
+import org.apache.xml.security.encryption.XMLCipherUtil;
+import org.apache.xml.security.stax.ext.XMLSecurityConstants;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+/**
+ * Tests for the encryption and decryption streams of AttachmentUtils.
+ */
+public class AttachmentCipherStreamTest {
+
+    private static final String AES128_CBC = "http://www.w3.org/2001/04/xmlenc#aes128-cbc";
+    private static final String AES128_GCM = "http://www.w3.org/2009/xmlenc11#aes128-gcm";
+
+    public AttachmentCipherStreamTest() {
+        WSProviderConfig.init();
+    }
+
+    @Test
+    public void testContentRoundTripCBC() throws Exception {
+        roundTrip(AES128_CBC, false);
+    }
+
+    @Test
+    public void testCompleteRoundTripCBC() throws Exception {
+        roundTrip(AES128_CBC, true);
+    }
+
+    @Test
+    public void testContentRoundTripGCM() throws Exception {
+        roundTrip(AES128_GCM, false);
+    }
+
+    @Test
+    public void testCompleteRoundTripGCM() throws Exception {
+        roundTrip(AES128_GCM, true);
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedIV() throws Exception {
+        SecretKey key = createKey();
+        Cipher cipher = Cipher.getInstance(JCEMapper.translateURItoJCEID(AES128_CBC));
+        InputStream decryptionStream =
+            AttachmentUtils.setupAttachmentDecryptionStream(
+                AES128_CBC, cipher, key, new ByteArrayInputStream(new byte[5]));
+        decryptionStream.read();
+    }
+
+    /**
+     * Encrypt and decrypt a 64 MB attachment, without holding it in memory. The attachment is
+     * several times larger than the allocation bound, which in turn is far larger than the
+     * buffers of the streams, so the bound only holds if the attachment is streamed.
+     */
+    @Test
+    public void testLargeAttachmentBoundedMemory() throws Exception {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+        Assume.assumeTrue(allocationMXBean.isThreadAllocatedMemorySupported());
+        allocationMXBean.setThreadAllocatedMemoryEnabled(true);
+
+        long size = 64L * 1024 * 1024;
+        SecretKey key = createKey();
+        GeneratedInputStream source = new GeneratedInputStream(size);
+
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = allocationMXBean.getThreadAllocatedBytes(threadId);
+
+        Attachment attachment = new Attachment();
+        attachment.setId("large");
+        attachment.setSourceStream(source);
+        Map<String, String> headers = new HashMap<>();
+        InputStream encryptionStream =
+            AttachmentUtils.setupAttachmentEncryptionStream(
+                createEncryptionCipher(AES128_CBC, key), false, attachment, headers);
+        InputStream decryptionStream =
+            AttachmentUtils.setupAttachmentDecryptionStream(
+                AES128_CBC, Cipher.getInstance(JCEMapper.translateURItoJCEID(AES128_CBC)), key,
+                encryptionStream);
+
+        CRC32 crc32 = new CRC32();
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        int read;
+        while ((read = decryptionStream.read(buffer)) != -1) {
+            crc32.update(buffer, 0, read);
+            total += read;
+        }
+
+        long allocated = allocationMXBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        Assert.assertEquals(size, total);
+        Assert.assertEquals(source.getChecksum(), crc32.getValue());
+        Assert.assertTrue("Allocated " + allocated + " bytes", allocated < 16L * 1024 * 1024);
+    }
+
+    private void roundTrip(String algorithm, boolean complete) throws Exception {
+        byte[] content = new byte[100_000];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i % 251);
+        }
+        Map<String, String> headers = new HashMap<>();
+        headers.put(AttachmentUtils.MIME_HEADER_CONTENT_ID, "<attachment=1>");
+        headers.put(AttachmentUtils.MIME_HEADER_CONTENT_TYPE, "application/octet-stream");
+        headers.put("TestHeader", "testHeaderValue");
+
+        Attachment attachment = new Attachment();
+        attachment.setId("1");
+        attachment.setSourceStream(new ByteArrayInputStream(content));
+
+        SecretKey key = createKey();
+        Map<String, String> encryptedHeaders = new HashMap<>(headers);
+        InputStream encryptionStream =
+            AttachmentUtils.setupAttachmentEncryptionStream(
+                createEncryptionCipher(algorithm, key), complete, attachment, encryptedHeaders);
+        byte[] encrypted = readInputStream(encryptionStream);
+        Assert.assertEquals(complete ? 1 : 3, encryptedHeaders.size());
+
+        InputStream decryptionStream =
+            AttachmentUtils.setupAttachmentDecryptionStream(
+                algorithm, Cipher.getInstance(JCEMapper.translateURItoJCEID(algorithm)), key,
+                new ByteArrayInputStream(encrypted));
+        if (complete) {
+            Map<String, String> decryptedHeaders = new HashMap<>();
+            AttachmentUtils.readAndReplaceEncryptedAttachmentHeaders(decryptedHeaders, decryptionStream);
+            Assert.assertEquals("<attachment=1>", decryptedHeaders.get(AttachmentUtils.MIME_HEADER_CONTENT_ID));
+            Assert.assertEquals(2, decryptedHeaders.size());
+        }
+        Assert.assertArrayEquals(content, readInputStream(decryptionStream));
+    }
+
+    private static SecretKey createKey() throws Exception {
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(128);
+        return keyGenerator.generateKey();
+    }
+
+    private static Cipher createEncryptionCipher(String algorithm, SecretKey key) throws Exception {
+        Cipher cipher = Cipher.getInstance(JCEMapper.translateURItoJCEID(algorithm));
+        int ivLen = JCEMapper.getIVLengthFromURI(algorithm) / 8;
+        byte[] iv = XMLSecurityConstants.generateBytes(ivLen);
+        AlgorithmParameterSpec paramSpec =
+            XMLCipherUtil.constructBlockCipherParameters(algorithm, iv, AttachmentCipherStreamTest.class);
+        cipher.init(Cipher.ENCRYPT_MODE, key, paramSpec);
+        return cipher;
+    }
+
+    private static byte[] readInputStream(InputStream inputStream) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int read;
+        while ((read = inputStream.read(buf)) != -1) {
+            byteArrayOutputStream.write(buf, 0, read);
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    /**
+     * An InputStream of the given size, the content of which is generated as it is read.
+     */
+    private static class GeneratedInputStream extends InputStream {
+
+        private final byte[] block = "The quick brown fox jumps over the lazy dog. "
+            .getBytes(StandardCharsets.US_ASCII);
+        private final CRC32 crc32 = new CRC32();
+        private final long size;
+        private long position;
+
+        GeneratedInputStream(long size) {
+            this.size = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int off, int len) throws IOException {
+            if (position >= size) {
+                return -1;
+            }
+            int length = (int) Math.min(len, size - position);
+            for (int i = 0; i < length; i++) {
+                bytes[off + i] = block[(int) ((position + i) % block.length)];
+            }
+            crc32.update(bytes, off, length);
+            position += length;
+            return length;
+        }
+
+        long getChecksum() {
+            return crc32.getValue();
+        }
+    }
+}
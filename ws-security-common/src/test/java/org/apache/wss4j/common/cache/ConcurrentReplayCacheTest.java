@@ -0,0 +1,265 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+import org.apache.wss4j.common.metrics.StatisticsSecurityMetricsListener;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Some tests for the ConcurrentReplayCache.
+ */
+public class ConcurrentReplayCacheTest extends Assert {
+
+    @Test
+    public void testAddAndContains() throws Exception {
+        ConcurrentReplayCache replayCache = new ConcurrentReplayCache();
+
+        String id = UUID.randomUUID().toString();
+        assertFalse(replayCache.contains(id));
+        replayCache.add(id);
+        assertTrue(replayCache.contains(id));
+        assertEquals(1, replayCache.size());
+
+        // Adding it again refreshes the entry
+        replayCache.add(id, 60L);
+        assertTrue(replayCache.contains(id));
+        assertEquals(1, replayCache.size());
+
+        assertFalse(replayCache.contains(null));
+        assertFalse(replayCache.contains(""));
+
+        replayCache.close();
+        assertFalse(replayCache.contains(id));
+        assertEquals(0, replayCache.size());
+    }
+
+    @Test
+    public void testAddIfAbsent() throws Exception {
+        ConcurrentReplayCache replayCache = new ConcurrentReplayCache();
+
+        String id = UUID.randomUUID().toString();
+        assertTrue(replayCache.addIfAbsent(id, 60L));
+        assertFalse(replayCache.addIfAbsent(id, 60L));
+        assertTrue(replayCache.contains(id));
+
+        replayCache.close();
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        ConcurrentReplayCache replayCache = new ConcurrentReplayCache();
+
+        String id = UUID.randomUUID().toString();
+        assertTrue(replayCache.addIfAbsent(id, 1L));
+        assertTrue(replayCache.contains(id));
+
+        Thread.sleep(1250L);
+        assertFalse(replayCache.contains(id));
+        assertEquals(0, replayCache.size());
+
+        // An expired identifier can be added again
+        replayCache.add(id, 1L);
+        Thread.sleep(1250L);
+        assertTrue(replayCache.addIfAbsent(id, 60L));
+        assertEquals(1, replayCache.size());
+
+        replayCache.close();
+    }
+
+    @Test
+    public void testSweep() throws Exception {
+        ConcurrentReplayCache replayCache = new ConcurrentReplayCache();
+        for (int i = 0; i < 100; i++) {
+            replayCache.add(UUID.randomUUID().toString(), 1L);
+        }
+        replayCache.add("long-lived", 60L);
+        assertEquals(101, replayCache.size());
+
+        replayCache.sweep(System.currentTimeMillis() + 2000L);
+        assertEquals(1, replayCache.size());
+        assertTrue(replayCache.contains("long-lived"));
+
+        replayCache.close();
+    }
+
+    @Test
+    public void testRejectOverflow() throws Exception {
+        ConcurrentReplayCache replayCache =
+            new ConcurrentReplayCache(10, ConcurrentReplayCache.OverflowPolicy.REJECT, 60L);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(replayCache.addIfAbsent("id" + i, 60L));
+        }
+        assertFalse(replayCache.addIfAbsent("id10", 60L));
+        assertFalse(replayCache.contains("id10"));
+        assertEquals(10, replayCache.size());
+
+        replayCache.close();
+    }
+
+    @Test
+    public void testRejectOverflowPurgesExpired() throws Exception {
+        ConcurrentReplayCache replayCache =
+            new ConcurrentReplayCache(10, ConcurrentReplayCache.OverflowPolicy.REJECT, 60L);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(replayCache.addIfAbsent("id" + i, 1L));
+        }
+        Thread.sleep(1250L);
+        assertTrue(replayCache.addIfAbsent("id10", 60L));
+        assertEquals(1, replayCache.size());
+
+        replayCache.close();
+    }
+
+    @Test
+    public void testOverflowSweepIsRateLimited() throws Exception {
+        final AtomicInteger sweeps = new AtomicInteger();
+        ConcurrentReplayCache replayCache =
+            new ConcurrentReplayCache(10, ConcurrentReplayCache.OverflowPolicy.REJECT, 60L) {
+                @Override
+                protected void sweep(long now) {
+                    sweeps.incrementAndGet();
+                    super.sweep(now);
+                }
+            };
+        for (int i = 0; i < 10; i++) {
+            assertTrue(replayCache.addIfAbsent("id" + i, 60L));
+        }
+        for (int i = 10; i < 1000; i++) {
+            assertFalse(replayCache.addIfAbsent("id" + i, 60L));
+        }
+        // The full cache is only purged once per sweep interval
+        assertEquals(1, sweeps.get());
+        assertEquals(10, replayCache.size());
+
+        replayCache.close();
+    }
+
+    @Test
+    public void testOverflowWarningIsRateLimited() throws Exception {
+        StatisticsSecurityMetricsListener listener = new StatisticsSecurityMetricsListener();
+        SecurityMetrics.setListener(listener);
+        final List<Long> warnings = new ArrayList<>();
+        ConcurrentReplayCache replayCache =
+            new ConcurrentReplayCache(10, ConcurrentReplayCache.OverflowPolicy.REJECT, 60L) {
+                @Override
+                protected void warnOverflow(long rejected) {
+                    warnings.add(rejected);
+                }
+            };
+        try {
+            for (int i = 0; i < 10; i++) {
+                assertTrue(replayCache.addIfAbsent("id" + i, 60L));
+            }
+            for (int i = 10; i < 1000; i++) {
+                assertFalse(replayCache.addIfAbsent("id" + i, 60L));
+            }
+            // Only the first rejection is logged within the sweep interval, but all are reported
+            assertEquals(1, warnings.size());
+            assertEquals(1L, warnings.get(0).longValue());
+            assertEquals(990L, listener.getCacheStatistics("ConcurrentReplayCache").getRejections());
+        } finally {
+            SecurityMetrics.setListener(null);
+            replayCache.close();
+        }
+    }
+
+    @Test
+    public void testEvictOverflow() throws Exception {
+        // A single shard, so that the entry that expires soonest is evicted
+        ConcurrentReplayCache replayCache =
+            new ConcurrentReplayCache(
+                10, ConcurrentReplayCache.OverflowPolicy.EVICT_EARLIEST_EXPIRY, 60L, 1
+            );
+        assertTrue(replayCache.addIfAbsent("first", 30L));
+        for (int i = 1; i < 10; i++) {
+            assertTrue(replayCache.addIfAbsent("id" + i, 60L));
+        }
+        assertTrue(replayCache.addIfAbsent("id10", 60L));
+        assertTrue(replayCache.contains("id10"));
+        assertFalse(replayCache.contains("first"));
+        assertEquals(10, replayCache.size());
+
+        replayCache.close();
+    }
+
+    @Test
+    public void testConcurrentAddIfAbsent() throws Exception {
+        final ConcurrentReplayCache replayCache = new ConcurrentReplayCache();
+        final int threads = 8;
+        final int ids = 1000;
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                results.add(executor.submit(new Callable<Integer>() {
+                    public Integer call() {
+                        int added = 0;
+                        for (int i = 0; i < ids; i++) {
+                            if (replayCache.addIfAbsent("id" + i, 60L)) {
+                                added++;
+                            }
+                        }
+                        return added;
+                    }
+                }));
+            }
+
+            // Each identifier must have been added by exactly one thread
+            int total = 0;
+            for (Future<Integer> result : results) {
+                total += result.get();
+            }
+            assertEquals(ids, total);
+            assertEquals(ids, replayCache.size());
+        } finally {
+            executor.shutdown();
+            replayCache.close();
+        }
+    }
+
+    @Test
+    public void testFactory() throws Exception {
+        ConcurrentReplayCacheFactory factory = new ConcurrentReplayCacheFactory();
+        factory.setMaxSize(100);
+        factory.setOverflowPolicy(ConcurrentReplayCache.OverflowPolicy.EVICT_EARLIEST_EXPIRY);
+
+        ReplayCache replayCache = factory.newReplayCache("key", null);
+        assertTrue(replayCache instanceof ConcurrentReplayCache);
+        assertEquals(100, ((ConcurrentReplayCache)replayCache).getMaxSize());
+        assertEquals(
+            ConcurrentReplayCache.OverflowPolicy.EVICT_EARLIEST_EXPIRY,
+            ((ConcurrentReplayCache)replayCache).getOverflowPolicy()
+        );
+
+        replayCache.close();
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.Merlin;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Some tests for the DecryptedKeyCache.
+ */
+public class DecryptedKeyCacheTest extends Assert {
+
+    private static final String OAEP = "http://www.w3.org/2001/04/xmlenc#rsa-oaep-mgf1p";
+
+    private static PublicKey publicKey;
+    private static PublicKey otherPublicKey;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(1024);
+        publicKey = keyPairGenerator.generateKeyPair().getPublic();
+        otherPublicKey = keyPairGenerator.generateKeyPair().getPublic();
+    }
+
+    @Test
+    public void testGetAndPut() throws Exception {
+        DecryptedKeyCache cache = new DecryptedKeyCache();
+        Crypto crypto = new Merlin();
+        byte[] key = new byte[] {1, 2, 3, 4};
+
+        assertNull(cache.get(crypto, "sha1", publicKey, OAEP));
+        cache.put(crypto, "sha1", publicKey, OAEP, key);
+        assertEquals(1, cache.size());
+
+        // The cache keeps and hands out copies of the key
+        key[0] = 0;
+        byte[] cachedKey = cache.get(crypto, "sha1", publicKey, OAEP);
+        assertArrayEquals(new byte[] {1, 2, 3, 4}, cachedKey);
+        cachedKey[1] = 0;
+        assertArrayEquals(new byte[] {1, 2, 3, 4}, cache.get(crypto, "sha1", publicKey, OAEP));
+
+        assertNull(cache.get(crypto, "other-sha1", publicKey, OAEP));
+        assertNull(cache.get(null, "sha1", publicKey, OAEP));
+        assertNull(cache.get(crypto, null, publicKey, OAEP));
+
+        cache.close();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(crypto, "sha1", publicKey, OAEP));
+    }
+
+    @Test
+    public void testScopedPerCrypto() throws Exception {
+        DecryptedKeyCache cache = new DecryptedKeyCache();
+        Crypto crypto = new Merlin();
+        Crypto otherCrypto = new Merlin();
+
+        cache.put(crypto, "sha1", publicKey, OAEP, new byte[] {1});
+        assertNull(cache.get(otherCrypto, "sha1", publicKey, OAEP));
+
+        cache.put(otherCrypto, "sha1", publicKey, OAEP, new byte[] {2});
+        assertEquals(2, cache.size());
+        assertArrayEquals(new byte[] {1}, cache.get(crypto, "sha1", publicKey, OAEP));
+        assertArrayEquals(new byte[] {2}, cache.get(otherCrypto, "sha1", publicKey, OAEP));
+    }
+
+    @Test
+    public void testWrappingKeyAndParametersMustMatch() throws Exception {
+        DecryptedKeyCache cache = new DecryptedKeyCache();
+        Crypto crypto = new Merlin();
+
+        cache.put(crypto, "sha1", publicKey, OAEP, new byte[] {1});
+        assertNull(cache.get(crypto, "sha1", otherPublicKey, OAEP));
+        assertNull(cache.get(crypto, "sha1", publicKey, OAEP + " http://www.w3.org/2001/04/xmlenc#sha256"));
+        assertNotNull(cache.get(crypto, "sha1", publicKey, OAEP));
+
+        // Caching the key again replaces the previous entry
+        cache.put(crypto, "sha1", otherPublicKey, OAEP, new byte[] {2});
+        assertEquals(1, cache.size());
+        assertNull(cache.get(crypto, "sha1", publicKey, OAEP));
+        assertArrayEquals(new byte[] {2}, cache.get(crypto, "sha1", otherPublicKey, OAEP));
+    }
+
+    @Test
+    public void testMaxEntries() throws Exception {
+        DecryptedKeyCache cache = new DecryptedKeyCache(2, 60L);
+        Crypto crypto = new Merlin();
+
+        cache.put(crypto, "sha1-1", publicKey, OAEP, new byte[] {1});
+        cache.put(crypto, "sha1-2", publicKey, OAEP, new byte[] {2});
+        cache.put(crypto, "sha1-3", publicKey, OAEP, new byte[] {3});
+        assertEquals(2, cache.size());
+
+        // The oldest key is evicted
+        assertNull(cache.get(crypto, "sha1-1", publicKey, OAEP));
+        assertNotNull(cache.get(crypto, "sha1-2", publicKey, OAEP));
+        assertNotNull(cache.get(crypto, "sha1-3", publicKey, OAEP));
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        DecryptedKeyCache cache = new DecryptedKeyCache(10, 0L);
+        Crypto crypto = new Merlin();
+
+        cache.put(crypto, "sha1", publicKey, OAEP, new byte[] {1});
+        assertNull(cache.get(crypto, "sha1", publicKey, OAEP));
+        assertEquals(0, cache.size());
+
+        cache.put(crypto, "sha1-1", publicKey, OAEP, new byte[] {1});
+        cache.put(crypto, "sha1-2", publicKey, OAEP, new byte[] {2});
+        // Expired keys are removed when a key is added
+        assertEquals(1, cache.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxEntries() throws Exception {
+        new DecryptedKeyCache(0, 60L);
+    }
+
+    @Test
+    public void testKeyTransportParameters() throws Exception {
+        String rsaOaep = "http://www.w3.org/2009/xmlenc11#rsa-oaep";
+        String sha256 = "http://www.w3.org/2001/04/xmlenc#sha256";
+        String mgfSha256 = "http://www.w3.org/2009/xmlenc11#mgf1sha256";
+
+        // Every part is always present, in the same order
+        assertEquals(rsaOaep + " " + sha256 + " " + mgfSha256 + " AQI=",
+            DecryptedKeyCache.getKeyTransportParameters(rsaOaep, sha256, mgfSha256, new byte[] {1, 2}));
+        assertEquals(rsaOaep + "  " + mgfSha256 + " ",
+            DecryptedKeyCache.getKeyTransportParameters(rsaOaep, null, mgfSha256, null));
+        assertNotEquals(
+            DecryptedKeyCache.getKeyTransportParameters(rsaOaep, sha256, null, null),
+            DecryptedKeyCache.getKeyTransportParameters(rsaOaep, null, sha256, null)
+        );
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.UUID;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Some tests for the FileReplayCache.
+ */
+public class FileReplayCacheTest extends Assert {
+
+    private static final int SEGMENT_SIZE = 64 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testAddAndContains() throws Exception {
+        FileReplayCache replayCache = new FileReplayCache(folder.newFolder());
+
+        String id = UUID.randomUUID().toString();
+        assertFalse(replayCache.contains(id));
+        assertTrue(replayCache.addIfAbsent(id));
+        assertFalse(replayCache.addIfAbsent(id, 60L));
+        assertTrue(replayCache.contains(id));
+
+        replayCache.add("abc", 60L);
+        assertTrue(replayCache.contains("abc"));
+        assertEquals(2, replayCache.size());
+
+        replayCache.close();
+    }
+
+    @Test
+    public void testRestart() throws Exception {
+        File directory = folder.newFolder();
+        FileReplayCache replayCache = new FileReplayCache(directory, SEGMENT_SIZE, 60L);
+        for (int i = 0; i < 100; i++) {
+            replayCache.add("id" + i, 60L);
+        }
+        replayCache.add("expiring", 1L);
+        replayCache.close();
+
+        Thread.sleep(1250L);
+
+        replayCache = new FileReplayCache(directory, SEGMENT_SIZE, 60L);
+        assertEquals(100, replayCache.size());
+        for (int i = 0; i < 100; i++) {
+            assertFalse(replayCache.addIfAbsent("id" + i));
+        }
+        assertFalse(replayCache.contains("expiring"));
+
+        // Records appended after the restart follow the restored ones
+        assertTrue(replayCache.addIfAbsent("new", 60L));
+        replayCache.close();
+
+        replayCache = new FileReplayCache(directory, SEGMENT_SIZE, 60L);
+        assertTrue(replayCache.contains("new"));
+        assertTrue(replayCache.contains("id50"));
+        assertEquals(101, replayCache.size());
+        replayCache.close();
+    }
+
+    @Test
+    public void testSegmentRollAndCompaction() throws Exception {
+        File directory = folder.newFolder();
+        FileReplayCache replayCache = new FileReplayCache(directory, SEGMENT_SIZE, 60L);
+        for (int i = 0; i < 5000; i++) {
+            replayCache.add(UUID.randomUUID().toString(), 1L);
+        }
+        replayCache.add("long-lived", 60L);
+        int segments = replayCache.getSegmentCount();
+        assertTrue(segments > 1);
+
+        // All of the segments except the active one only contain expired identifiers
+        replayCache.compact(System.currentTimeMillis() + 2000L);
+        assertEquals(1, replayCache.getSegmentCount());
+        assertEquals(1, directory.listFiles((dir, name) -> name.endsWith(".log")).length);
+        assertEquals(1, replayCache.size());
+        assertTrue(replayCache.contains("long-lived"));
+        replayCache.close();
+
+        replayCache = new FileReplayCache(directory, SEGMENT_SIZE, 60L);
+        assertEquals(1, replayCache.getSegmentCount());
+        assertTrue(replayCache.contains("long-lived"));
+        replayCache.close();
+    }
+
+    @Test
+    public void testTruncatedRecord() throws Exception {
+        File directory = folder.newFolder();
+        FileReplayCache replayCache = new FileReplayCache(directory, SEGMENT_SIZE, 60L);
+        replayCache.add("first", 60L);
+        replayCache.add("second", 60L);
+        replayCache.close();
+
+        // Corrupt the last byte of the identifier of the second record
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(".log"));
+        assertEquals(1, files.length);
+        int offset = (4 + 8 + "first".length() + 4) + 4 + 8 + "second".length() - 1;
+        try (RandomAccessFile raf = new RandomAccessFile(files[0], "rw")) {
+            raf.seek(offset);
+            raf.write('X');
+        }
+
+        replayCache = new FileReplayCache(directory, SEGMENT_SIZE, 60L);
+        assertTrue(replayCache.contains("first"));
+        assertFalse(replayCache.contains("second"));
+
+        // The corrupt record is overwritten by the next one
+        replayCache.add("third", 60L);
+        replayCache.close();
+        replayCache = new FileReplayCache(directory, SEGMENT_SIZE, 60L);
+        assertTrue(replayCache.contains("first"));
+        assertTrue(replayCache.contains("third"));
+        replayCache.close();
+    }
+
+    @Test
+    public void testLongIdentifier() throws Exception {
+        File directory = folder.newFolder();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            sb.append(UUID.randomUUID().toString());
+        }
+        String id = sb.toString();
+
+        FileReplayCache replayCache = new FileReplayCache(directory, SEGMENT_SIZE, 60L);
+        assertTrue(replayCache.addIfAbsent(id, 60L));
+        assertFalse(replayCache.addIfAbsent(id, 60L));
+        replayCache.close();
+
+        replayCache = new FileReplayCache(directory, SEGMENT_SIZE, 60L);
+        assertTrue(replayCache.contains(id));
+        assertFalse(replayCache.contains(id.substring(1)));
+        replayCache.close();
+    }
+
+    @Test
+    public void testDirectoryLocked() throws Exception {
+        File directory = folder.newFolder();
+        FileReplayCache replayCache = new FileReplayCache(directory);
+        try {
+            new FileReplayCache(directory);
+            fail("Failure expected on a directory in use");
+        } catch (IOException ex) {
+            assertTrue(ex.getMessage().contains("in use"));
+        }
+        replayCache.close();
+
+        replayCache = new FileReplayCache(directory);
+        replayCache.close();
+    }
+
+    @Test
+    public void testFactory() throws Exception {
+        FileReplayCacheFactory factory = new FileReplayCacheFactory();
+        factory.setBaseDirectory(folder.newFolder());
+
+        ReplayCache replayCache = factory.newReplayCache("wss4j-timestamp-cache-xyz", null);
+        assertTrue(replayCache instanceof FileReplayCache);
+        assertEquals(
+            new File(factory.getBaseDirectory(), "wss4j-timestamp-cache-xyz"),
+            ((FileReplayCache)replayCache).getDirectory()
+        );
+        replayCache.close();
+
+        File directory = folder.newFolder();
+        replayCache = factory.newReplayCache("xyz", directory);
+        assertEquals(directory, ((FileReplayCache)replayCache).getDirectory());
+        replayCache.close();
+
+        // A String or URL refers to the configuration file of another implementation
+        replayCache = factory.newReplayCache("abc", "wss4j-ehcache.xml");
+        assertEquals(new File(factory.getBaseDirectory(), "abc"), ((FileReplayCache)replayCache).getDirectory());
+        replayCache.close();
+
+        replayCache = factory.newReplayCache("def", directory.toURI().toURL());
+        assertEquals(new File(factory.getBaseDirectory(), "def"), ((FileReplayCache)replayCache).getDirectory());
+        replayCache.close();
+        assertFalse(new File("wss4j-ehcache.xml").exists());
+    }
+}
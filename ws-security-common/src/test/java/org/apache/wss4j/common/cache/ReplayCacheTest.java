@@ -0,0 +1,94 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Some tests for the "addIfAbsent" operation of the ReplayCache implementations.
+ */
+public class ReplayCacheTest extends Assert {
+
+    @Test
+    public void testMemoryReplayCache() throws Exception {
+        ReplayCache replayCache = new MemoryReplayCache();
+        testAddIfAbsent(replayCache);
+        replayCache.close();
+    }
+
+    @Test
+    public void testEHCacheReplayCache() throws Exception {
+        ReplayCache replayCache = new EHCacheReplayCacheFactory().newReplayCache("xyz", null);
+        testAddIfAbsent(replayCache);
+        replayCache.close();
+    }
+
+    @Test
+    public void testConcurrentReplayCache() throws Exception {
+        ReplayCache replayCache = new ConcurrentReplayCacheFactory().newReplayCache("xyz", null);
+        testAddIfAbsent(replayCache);
+        replayCache.close();
+    }
+
+    @Test
+    public void testDefaultAddIfAbsent() throws Exception {
+        ReplayCache replayCache = new ReplayCache() {
+            private final Set<String> ids = new HashSet<>();
+
+            public void add(String identifier) {
+                ids.add(identifier);
+            }
+
+            public void add(String identifier, long timeToLive) {
+                ids.add(identifier);
+            }
+
+            public boolean contains(String identifier) {
+                return ids.contains(identifier);
+            }
+
+            public void close() {
+                ids.clear();
+            }
+        };
+        testAddIfAbsent(replayCache);
+        replayCache.close();
+    }
+
+    private void testAddIfAbsent(ReplayCache replayCache) throws Exception {
+        String id = UUID.randomUUID().toString();
+        assertTrue(replayCache.addIfAbsent(id));
+        assertTrue(replayCache.contains(id));
+        assertFalse(replayCache.addIfAbsent(id));
+        assertFalse(replayCache.addIfAbsent(id, 60L));
+
+        String id2 = UUID.randomUUID().toString();
+        assertTrue(replayCache.addIfAbsent(id2, 60L));
+        assertFalse(replayCache.addIfAbsent(id2));
+
+        replayCache.add(id2);
+        assertFalse(replayCache.addIfAbsent(id2, 60L));
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Some tests for the SecurityContextTokenCache.
+ */
+public class SecurityContextTokenCacheTest extends Assert {
+
+    @Test
+    public void testSecrets() throws Exception {
+        SecurityContextTokenCache cache = new SecurityContextTokenCache();
+        byte[] secret = new byte[] {1, 2, 3, 4};
+
+        assertNull(cache.getSecret("sct-1"));
+        cache.putSecret("sct-1", secret);
+        assertEquals(1, cache.size());
+
+        // The cache keeps and hands out copies of the secret
+        secret[0] = 0;
+        byte[] cachedSecret = cache.getSecret("sct-1");
+        assertArrayEquals(new byte[] {1, 2, 3, 4}, cachedSecret);
+        cachedSecret[1] = 0;
+        assertArrayEquals(new byte[] {1, 2, 3, 4}, cache.getSecret("sct-1"));
+
+        assertNull(cache.getSecret("sct-2"));
+        assertNull(cache.getSecret(null));
+
+        // Empty secrets are not cached
+        cache.putSecret("sct-2", new byte[0]);
+        cache.putSecret("sct-3", null);
+        assertEquals(1, cache.size());
+
+        cache.removeSecret("sct-1");
+        assertNull(cache.getSecret("sct-1"));
+        assertEquals(0, cache.size());
+        cache.close();
+    }
+
+    @Test
+    public void testMaxEntries() throws Exception {
+        SecurityContextTokenCache cache = new SecurityContextTokenCache(2, 60L);
+        cache.putSecret("sct-1", new byte[] {1});
+        cache.putSecret("sct-2", new byte[] {2});
+        cache.putSecret("sct-3", new byte[] {3});
+
+        // The oldest secret is evicted
+        assertEquals(2, cache.size());
+        assertNull(cache.getSecret("sct-1"));
+        assertArrayEquals(new byte[] {2}, cache.getSecret("sct-2"));
+        assertArrayEquals(new byte[] {3}, cache.getSecret("sct-3"));
+        cache.close();
+    }
+
+    @Test
+    public void testExpiry() throws Exception {
+        SecurityContextTokenCache cache = new SecurityContextTokenCache(10, 0L);
+        cache.putSecret("sct-1", new byte[] {1});
+        assertNull(cache.getSecret("sct-1"));
+        assertEquals(0, cache.size());
+        cache.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxEntries() throws Exception {
+        new SecurityContextTokenCache(0, 60L);
+    }
+
+}
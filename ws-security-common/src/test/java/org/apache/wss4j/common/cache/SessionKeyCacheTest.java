@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.cache;
+
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Some tests for the SessionKeyCache.
+ */
+public class SessionKeyCacheTest extends Assert {
+
+    private static final String OAEP = "http://www.w3.org/2001/04/xmlenc#rsa-oaep-mgf1p";
+    private static final String AES_128 = "http://www.w3.org/2001/04/xmlenc#aes128-cbc";
+    private static final String AES_256 = "http://www.w3.org/2001/04/xmlenc#aes256-cbc";
+
+    private static PublicKey publicKey;
+    private static PublicKey otherPublicKey;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(1024);
+        publicKey = keyPairGenerator.generateKeyPair().getPublic();
+        otherPublicKey = keyPairGenerator.generateKeyPair().getPublic();
+    }
+
+    @Test
+    public void testGetAndPut() throws Exception {
+        SessionKeyCache cache = new SessionKeyCache();
+        byte[] key = new byte[] {1, 2, 3, 4};
+        byte[] encryptedKey = new byte[] {5, 6, 7, 8};
+
+        assertNull(cache.get(publicKey, OAEP, AES_128));
+        cache.put(publicKey, OAEP, AES_128, key, encryptedKey);
+        assertEquals(1, cache.size());
+
+        // The cache keeps and hands out copies of the keys
+        key[0] = 0;
+        encryptedKey[0] = 0;
+        SessionKeyCache.SessionKey sessionKey = cache.get(publicKey, OAEP, AES_128);
+        assertArrayEquals(new byte[] {1, 2, 3, 4}, sessionKey.getKey());
+        assertArrayEquals(new byte[] {5, 6, 7, 8}, sessionKey.getEncryptedKey());
+        sessionKey.getKey()[1] = 0;
+        assertArrayEquals(new byte[] {1, 2, 3, 4}, cache.get(publicKey, OAEP, AES_128).getKey());
+
+        // The session key is specific to the recipient and the algorithms
+        assertNull(cache.get(otherPublicKey, OAEP, AES_128));
+        assertNull(cache.get(publicKey, "other", AES_128));
+        assertNull(cache.get(publicKey, OAEP, AES_256));
+        assertNull(cache.get(null, OAEP, AES_128));
+
+        cache.close();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(publicKey, OAEP, AES_128));
+    }
+
+    @Test
+    public void testRotatedAfterMaxUses() throws Exception {
+        SessionKeyCache cache = new SessionKeyCache(10, 60L, 3);
+        cache.put(publicKey, OAEP, AES_128, new byte[] {1, 2, 3, 4}, new byte[] {5, 6, 7, 8});
+
+        // The put counts as the first use
+        assertNotNull(cache.get(publicKey, OAEP, AES_128));
+        assertNotNull(cache.get(publicKey, OAEP, AES_128));
+        assertNull(cache.get(publicKey, OAEP, AES_128));
+        assertEquals(0, cache.size());
+
+        cache.put(publicKey, OAEP, AES_128, new byte[] {9, 10, 11, 12}, new byte[] {13, 14, 15, 16});
+        assertArrayEquals(new byte[] {9, 10, 11, 12}, cache.get(publicKey, OAEP, AES_128).getKey());
+    }
+
+    @Test
+    public void testRotatedAfterMaxAge() throws Exception {
+        SessionKeyCache cache = new SessionKeyCache(10, 1L, 100);
+        cache.put(publicKey, OAEP, AES_128, new byte[] {1, 2, 3, 4}, new byte[] {5, 6, 7, 8});
+        assertNotNull(cache.get(publicKey, OAEP, AES_128));
+
+        Thread.sleep(1100L);
+        assertNull(cache.get(publicKey, OAEP, AES_128));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testPutReplacesSessionKey() throws Exception {
+        SessionKeyCache cache = new SessionKeyCache();
+        cache.put(publicKey, OAEP, AES_128, new byte[] {1, 2, 3, 4}, new byte[] {5, 6, 7, 8});
+        cache.put(publicKey, OAEP, AES_128, new byte[] {9, 10, 11, 12}, new byte[] {13, 14, 15, 16});
+        assertEquals(1, cache.size());
+        SessionKeyCache.SessionKey sessionKey = cache.get(publicKey, OAEP, AES_128);
+        assertArrayEquals(new byte[] {9, 10, 11, 12}, sessionKey.getKey());
+        assertArrayEquals(new byte[] {13, 14, 15, 16}, sessionKey.getEncryptedKey());
+    }
+
+    @Test
+    public void testEldestEvicted() throws Exception {
+        SessionKeyCache cache = new SessionKeyCache(1, 60L, 100);
+        cache.put(publicKey, OAEP, AES_128, new byte[] {1, 2, 3, 4}, new byte[] {5, 6, 7, 8});
+        cache.put(otherPublicKey, OAEP, AES_128, new byte[] {9, 10, 11, 12}, new byte[] {13, 14, 15, 16});
+
+        assertEquals(1, cache.size());
+        assertNull(cache.get(publicKey, OAEP, AES_128));
+        assertNotNull(cache.get(otherPublicKey, OAEP, AES_128));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidMaxUses() throws Exception {
+        new SessionKeyCache(10, 60L, 0);
+    }
+}
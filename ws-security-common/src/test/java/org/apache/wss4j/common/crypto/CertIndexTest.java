@@ -0,0 +1,162 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.InputStream;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.cert.X509Certificate;
+import java.util.Properties;
+
+import org.apache.wss4j.common.util.Loader;
+import org.junit.Test;
+
+/**
+ * Some tests for the certificate indexes of Merlin. The indexed lookups must return the same
+ * certificates as the linear search over the keystore aliases.
+ */
+public class CertIndexTest extends org.junit.Assert {
+
+    public CertIndexTest() {
+        WSProviderConfig.init();
+    }
+
+    @Test
+    public void testIndexedLookups() throws Exception {
+        KeyStore keyStore = loadKeyStore("keys/wss40.jks", "security");
+        KeyStore trustStore = loadKeyStore("keys/wss40CA.jks", "security");
+
+        Merlin scanCrypto = new Merlin();
+        scanCrypto.setKeyStore(keyStore);
+        scanCrypto.setTrustStore(trustStore);
+
+        Merlin indexedCrypto = new Merlin();
+        indexedCrypto.setCertIndex(true);
+        indexedCrypto.setKeyStore(keyStore);
+        indexedCrypto.setTrustStore(trustStore);
+
+        X509Certificate cert = (X509Certificate)keyStore.getCertificate("wss40");
+        X509Certificate caCert = (X509Certificate)trustStore.getCertificate("wss40CA");
+
+        for (X509Certificate x509 : new X509Certificate[] {cert, caCert}) {
+            CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ISSUER_SERIAL);
+            cryptoType.setIssuerSerial(x509.getIssuerX500Principal().getName(), x509.getSerialNumber());
+            assertLookup(scanCrypto, indexedCrypto, cryptoType, x509);
+
+            cryptoType = new CryptoType(CryptoType.TYPE.THUMBPRINT_SHA1);
+            cryptoType.setBytes(MessageDigest.getInstance("SHA-1").digest(x509.getEncoded()));
+            assertLookup(scanCrypto, indexedCrypto, cryptoType, x509);
+
+            cryptoType = new CryptoType(CryptoType.TYPE.SKI_BYTES);
+            cryptoType.setBytes(scanCrypto.getSKIBytesFromCert(x509));
+            assertLookup(scanCrypto, indexedCrypto, cryptoType, x509);
+
+            cryptoType = new CryptoType(CryptoType.TYPE.SUBJECT_DN);
+            cryptoType.setSubjectDN(x509.getSubjectX500Principal().getName());
+            assertLookup(scanCrypto, indexedCrypto, cryptoType, x509);
+        }
+
+        // A DN in a different (.NET) format must still match
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ISSUER_SERIAL);
+        cryptoType.setIssuerSerial(
+            cert.getIssuerX500Principal().getName().replace("ST=", "S="), cert.getSerialNumber()
+        );
+        assertLookup(scanCrypto, indexedCrypto, cryptoType, cert);
+
+        // Unknown certificates
+        KeyStore badKeyStore = loadKeyStore("keys/wss40badca.jks", "security");
+        X509Certificate badCert =
+            (X509Certificate)badKeyStore.getCertificate("wss4jcertdsa");
+        cryptoType = new CryptoType(CryptoType.TYPE.THUMBPRINT_SHA1);
+        cryptoType.setBytes(MessageDigest.getInstance("SHA-1").digest(badCert.getEncoded()));
+        assertNull(indexedCrypto.getX509Certificates(cryptoType));
+        assertNull(scanCrypto.getX509Certificates(cryptoType));
+
+        cryptoType = new CryptoType(CryptoType.TYPE.SUBJECT_DN);
+        cryptoType.setSubjectDN(badCert.getSubjectX500Principal().getName());
+        assertNull(indexedCrypto.getX509Certificates(cryptoType));
+    }
+
+    @Test
+    public void testIndexRebuild() throws Exception {
+        KeyStore keyStore = loadKeyStore("keys/wss40.jks", "security");
+        X509Certificate badCert = (X509Certificate)
+            loadKeyStore("keys/wss40badca.jks", "security").getCertificate("wss4jcertdsa");
+        assertNotNull(badCert);
+
+        Merlin crypto = new Merlin();
+        crypto.setCertIndex(true);
+        crypto.setKeyStore(keyStore);
+
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ISSUER_SERIAL);
+        cryptoType.setIssuerSerial(
+            badCert.getIssuerX500Principal().getName(), badCert.getSerialNumber()
+        );
+        assertNull(crypto.getX509Certificates(cryptoType));
+
+        // Adding an entry to the keystore is picked up by the index
+        keyStore.setCertificateEntry("badca", badCert);
+        X509Certificate[] certs = crypto.getX509Certificates(cryptoType);
+        assertNotNull(certs);
+        assertEquals(badCert, certs[0]);
+
+        // Replacing the keystore replaces the index
+        crypto.setKeyStore(loadKeyStore("keys/wss40.jks", "security"));
+        assertNull(crypto.getX509Certificates(cryptoType));
+    }
+
+    @Test
+    public void testIndexProperty() throws Exception {
+        Properties properties = new Properties();
+        properties.put(Merlin.PREFIX + Merlin.KEYSTORE_FILE, "keys/wss40.jks");
+        properties.put(Merlin.PREFIX + Merlin.KEYSTORE_PASSWORD, "security");
+        properties.put(Merlin.PREFIX + Merlin.CERT_INDEX, "true");
+        Merlin crypto = new Merlin(properties, Loader.getClassLoader(CertIndexTest.class), null);
+        assertTrue(crypto.isCertIndex());
+
+        X509Certificate cert = (X509Certificate)crypto.getKeyStore().getCertificate("wss40");
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.SUBJECT_DN);
+        cryptoType.setSubjectDN(cert.getSubjectX500Principal().getName());
+        X509Certificate[] certs = crypto.getX509Certificates(cryptoType);
+        assertNotNull(certs);
+        assertEquals(cert, certs[0]);
+    }
+
+    private void assertLookup(
+        Crypto scanCrypto, Crypto indexedCrypto, CryptoType cryptoType, X509Certificate expected
+    ) throws Exception {
+        X509Certificate[] scanCerts = scanCrypto.getX509Certificates(cryptoType);
+        X509Certificate[] indexedCerts = indexedCrypto.getX509Certificates(cryptoType);
+        assertNotNull(scanCerts);
+        assertNotNull(indexedCerts);
+        assertEquals(expected, indexedCerts[0]);
+        assertArrayEquals(scanCerts, indexedCerts);
+    }
+
+    private KeyStore loadKeyStore(String path, String password) throws Exception {
+        KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+        ClassLoader loader = Loader.getClassLoader(CertIndexTest.class);
+        InputStream input = Merlin.loadInputStream(loader, path);
+        keyStore.load(input, password.toCharArray());
+        input.close();
+
+        return keyStore;
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.junit.Test;
+
+/**
+ * Some tests for the per-thread pool of MessageDigest and Mac instances.
+ */
+public class JCEInstancePoolTest extends org.junit.Assert {
+
+    private static final byte[] DATA = "The quick brown fox".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testMessageDigestIsReusedAndReset() throws Exception {
+        JCEInstancePool.clear();
+        byte[] expected = MessageDigest.getInstance("SHA-256").digest(DATA);
+
+        MessageDigest messageDigest = JCEInstancePool.getMessageDigest("SHA-256");
+        // Leave some data in the digest, which must be discarded when it is released
+        messageDigest.update(DATA);
+        JCEInstancePool.release(messageDigest);
+
+        MessageDigest pooledMessageDigest = JCEInstancePool.getMessageDigest("SHA-256");
+        assertSame(messageDigest, pooledMessageDigest);
+        assertArrayEquals(expected, pooledMessageDigest.digest(DATA));
+
+        // The pooled instance has been taken, so a new one is created
+        assertNotSame(pooledMessageDigest, JCEInstancePool.getMessageDigest("SHA-256"));
+        JCEInstancePool.release(pooledMessageDigest);
+
+        // Another algorithm does not get the pooled instance
+        assertEquals("SHA-1", JCEInstancePool.getMessageDigest("SHA-1").getAlgorithm());
+    }
+
+    @Test
+    public void testMacIsReused() throws Exception {
+        JCEInstancePool.clear();
+        SecretKeySpec key = new SecretKeySpec("0123456789abcdefghij".getBytes(StandardCharsets.UTF_8), "HmacSHA1");
+        Mac expectedMac = Mac.getInstance("HmacSHA1");
+        expectedMac.init(key);
+        byte[] expected = expectedMac.doFinal(DATA);
+
+        Mac mac = JCEInstancePool.getMac("HmacSHA1");
+        mac.init(key);
+        mac.update(DATA);
+        JCEInstancePool.release(mac);
+
+        Mac pooledMac = JCEInstancePool.getMac("HmacSHA1");
+        assertSame(mac, pooledMac);
+        // The key of the previous caller has been discarded
+        assertFalse(Arrays.equals(expected, pooledMac.doFinal(DATA)));
+        pooledMac.init(key);
+        assertArrayEquals(expected, pooledMac.doFinal(DATA));
+        JCEInstancePool.release(pooledMac);
+    }
+
+    @Test
+    public void testInstancesArePooledPerThread() throws Exception {
+        JCEInstancePool.clear();
+        final MessageDigest messageDigest = JCEInstancePool.getMessageDigest("SHA-256");
+        JCEInstancePool.release(messageDigest);
+
+        final AtomicReference<MessageDigest> otherThreadMessageDigest = new AtomicReference<>();
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    otherThreadMessageDigest.set(JCEInstancePool.getMessageDigest("SHA-256"));
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        };
+        thread.start();
+        thread.join();
+
+        assertNotNull(otherThreadMessageDigest.get());
+        assertNotSame(messageDigest, otherThreadMessageDigest.get());
+        assertSame(messageDigest, JCEInstancePool.getMessageDigest("SHA-256"));
+    }
+
+    @Test
+    public void testClearAll() throws Exception {
+        final AtomicReference<MessageDigest> released = new AtomicReference<>();
+        final AtomicReference<MessageDigest> pooled = new AtomicReference<>();
+        final CountDownLatch releasedLatch = new CountDownLatch(1);
+        final CountDownLatch clearedLatch = new CountDownLatch(1);
+        Thread thread = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    MessageDigest messageDigest = JCEInstancePool.getMessageDigest("SHA-256");
+                    JCEInstancePool.release(messageDigest);
+                    released.set(messageDigest);
+                    releasedLatch.countDown();
+                    clearedLatch.await();
+                    pooled.set(JCEInstancePool.getMessageDigest("SHA-256"));
+                } catch (Exception ex) {
+                    throw new RuntimeException(ex);
+                }
+            }
+        };
+        thread.start();
+        releasedLatch.await();
+        // Empty the pool of the other thread while it is still alive
+        JCEInstancePool.clearAll();
+        clearedLatch.countDown();
+        thread.join();
+
+        assertNotNull(pooled.get());
+        assertNotSame(released.get(), pooled.get());
+    }
+
+    @Test
+    public void testThreadLocalSecurityProvider() throws Exception {
+        JCEInstancePool.clear();
+        boolean installed = ThreadLocalSecurityProvider.isInstalled();
+        if (!installed) {
+            ThreadLocalSecurityProvider.install();
+        }
+        try {
+            MessageDigest messageDigest = JCEInstancePool.getMessageDigest("SHA-256");
+            JCEInstancePool.release(messageDigest);
+
+            // An instance that was created without a thread-local Provider is not used
+            // once a Provider has been set for the thread
+            ThreadLocalSecurityProvider.setProvider(new BouncyCastleProvider());
+            try {
+                MessageDigest threadLocalMessageDigest = JCEInstancePool.getMessageDigest("SHA-256");
+                assertNotSame(messageDigest, threadLocalMessageDigest);
+                JCEInstancePool.release(threadLocalMessageDigest);
+                assertSame(threadLocalMessageDigest, JCEInstancePool.getMessageDigest("SHA-256"));
+            } finally {
+                ThreadLocalSecurityProvider.unsetProvider();
+            }
+
+            assertSame(messageDigest, JCEInstancePool.getMessageDigest("SHA-256"));
+        } finally {
+            if (!installed) {
+                ThreadLocalSecurityProvider.uninstall();
+            }
+            JCEInstancePool.clear();
+        }
+    }
+}
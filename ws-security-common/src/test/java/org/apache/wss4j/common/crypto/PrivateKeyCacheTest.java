@@ -0,0 +1,195 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.Properties;
+
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.UnsupportedCallbackException;
+
+import org.apache.wss4j.common.ext.WSPasswordCallback;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.Test;
+
+/**
+ * Some tests for caching the private keys recovered from a (PKCS#12) keystore in Merlin.
+ */
+public class PrivateKeyCacheTest extends org.junit.Assert {
+
+    private static final String ALIAS = "wss4j";
+    private static final String PASSWORD = "security";
+
+    private final KeyPair keyPair;
+    private final X509Certificate cert;
+
+    public PrivateKeyCacheTest() throws Exception {
+        WSProviderConfig.init();
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(1024);
+        keyPair = keyPairGenerator.generateKeyPair();
+
+        long now = System.currentTimeMillis();
+        X500Name name = new X500Name("CN=Colm, OU=WSS4J, O=Apache, C=IE");
+        JcaX509v3CertificateBuilder builder =
+            new JcaX509v3CertificateBuilder(
+                name, BigInteger.ONE, new Date(now - 60000L), new Date(now + 3600000L),
+                name, keyPair.getPublic()
+            );
+        cert = new JcaX509CertificateConverter().getCertificate(
+            builder.build(new JcaContentSignerBuilder("SHA256withRSA").build(keyPair.getPrivate()))
+        );
+    }
+
+    @Test
+    public void testCachedPrivateKey() throws Exception {
+        Merlin crypto = new Merlin();
+        crypto.setKeyStore(createKeyStore());
+        PrivateKeyCache cache = new PrivateKeyCache();
+        crypto.setPrivateKeyCache(cache);
+
+        PrivateKey privateKey = crypto.getPrivateKey(ALIAS, PASSWORD);
+        assertEquals(keyPair.getPrivate(), privateKey);
+        assertEquals(0L, cache.getHitCount());
+        assertEquals(1, cache.size());
+
+        assertSame(privateKey, crypto.getPrivateKey(ALIAS, PASSWORD));
+        assertEquals(1L, cache.getHitCount());
+
+        // The cached key is not returned for a different password
+        try {
+            crypto.getPrivateKey(ALIAS, "wrong");
+            fail("Failure expected on a wrong password");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILURE, ex.getErrorCode());
+        }
+        assertEquals(1L, cache.getHitCount());
+    }
+
+    @Test
+    public void testCachedPrivateKeyByCertificate() throws Exception {
+        Merlin crypto = new Merlin();
+        crypto.setKeyStore(createKeyStore());
+        crypto.setPrivateKeyCache(new PrivateKeyCache());
+
+        CountingCallbackHandler callbackHandler = new CountingCallbackHandler();
+        PrivateKey privateKey = crypto.getPrivateKey(cert, callbackHandler);
+        assertEquals(keyPair.getPrivate(), privateKey);
+        assertEquals(1, callbackHandler.count);
+
+        // The CallbackHandler is not called again
+        assertSame(privateKey, crypto.getPrivateKey(cert, callbackHandler));
+        assertEquals(1, callbackHandler.count);
+
+        // The public key is not mapped yet
+        assertSame(privateKey, crypto.getPrivateKey(keyPair.getPublic(), callbackHandler));
+        assertEquals(2, callbackHandler.count);
+        assertSame(privateKey, crypto.getPrivateKey(keyPair.getPublic(), callbackHandler));
+        assertEquals(2, callbackHandler.count);
+    }
+
+    @Test
+    public void testKeyStoreReplaced() throws Exception {
+        Merlin crypto = new Merlin();
+        crypto.setKeyStore(createKeyStore());
+        PrivateKeyCache cache = new PrivateKeyCache();
+        crypto.setPrivateKeyCache(cache);
+
+        CountingCallbackHandler callbackHandler = new CountingCallbackHandler();
+        crypto.getPrivateKey(cert, callbackHandler);
+        assertEquals(1, cache.size());
+
+        crypto.setKeyStore(createKeyStore());
+        assertEquals(0, cache.size());
+        crypto.getPrivateKey(cert, callbackHandler);
+        assertEquals(2, callbackHandler.count);
+
+        // An entry added to the keystore in place also invalidates the cache
+        crypto.getKeyStore().setCertificateEntry("other", cert);
+        crypto.getPrivateKey(cert, callbackHandler);
+        assertEquals(3, callbackHandler.count);
+    }
+
+    @Test
+    public void testFullCacheEvicts() throws Exception {
+        PrivateKeyCache cache = new PrivateKeyCache(60L, 2);
+        for (int i = 0; i < 10; i++) {
+            String alias = ALIAS + i;
+            ByteBuffer fingerprint = ByteBuffer.wrap(new byte[] {(byte)i});
+            cache.setPrivateKey(alias, PASSWORD, keyPair.getPrivate());
+            cache.setAlias(fingerprint, alias);
+
+            // The latest entries are cached even though the cache has been full for a while
+            assertSame(keyPair.getPrivate(), cache.getPrivateKey(alias, PASSWORD));
+            assertSame(keyPair.getPrivate(), cache.getPrivateKey(fingerprint));
+        }
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testPrivateKeyCacheProperties() throws Exception {
+        Properties properties = new Properties();
+        properties.put(Merlin.PREFIX + Merlin.PRIVATE_KEY_CACHE, "true");
+        properties.put(Merlin.PREFIX + Merlin.PRIVATE_KEY_CACHE_TTL, "60");
+        properties.put(Merlin.PREFIX + Merlin.PRIVATE_KEY_CACHE_SIZE, "10");
+        Merlin crypto = new Merlin(properties, null, null);
+
+        PrivateKeyCache cache = crypto.getPrivateKeyCache();
+        assertNotNull(cache);
+        assertEquals(60L, cache.getTtl());
+        assertEquals(10, cache.getMaxSize());
+    }
+
+    private KeyStore createKeyStore() throws Exception {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        keyStore.load(null, null);
+        keyStore.setKeyEntry(ALIAS, keyPair.getPrivate(), PASSWORD.toCharArray(), new Certificate[] {cert});
+        return keyStore;
+    }
+
+    private static class CountingCallbackHandler implements CallbackHandler {
+        private int count;
+
+        public void handle(Callback[] callbacks) throws IOException, UnsupportedCallbackException {
+            for (Callback callback : callbacks) {
+                if (callback instanceof WSPasswordCallback) {
+                    count++;
+                    ((WSPasswordCallback) callback).setPassword(PASSWORD);
+                } else {
+                    throw new UnsupportedCallbackException(callback, "Unrecognized Callback");
+                }
+            }
+        }
+    }
+}
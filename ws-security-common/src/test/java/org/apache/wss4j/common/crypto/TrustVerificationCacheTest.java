@@ -0,0 +1,245 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.common.crypto;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.junit.Test;
+
+/**
+ * Some tests for caching the trust verification of certificate chains in Merlin. The
+ * certificates are generated on the fly, so that the validity periods can be controlled.
+ */
+public class TrustVerificationCacheTest extends org.junit.Assert {
+
+    private static final X500Name CA_NAME = new X500Name("CN=Test CA, OU=WSS4J, O=Apache, C=IE");
+
+    private final KeyPair caKeyPair;
+    private final X509Certificate caCert;
+
+    public TrustVerificationCacheTest() throws Exception {
+        WSProviderConfig.init();
+        caKeyPair = generateKeyPair();
+        long now = System.currentTimeMillis();
+        X509v3CertificateBuilder builder =
+            new JcaX509v3CertificateBuilder(
+                CA_NAME, BigInteger.ONE, new Date(now - 60000L), new Date(now + 3600000L),
+                CA_NAME, caKeyPair.getPublic()
+            );
+        builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(true));
+        caCert = sign(builder, caKeyPair.getPrivate());
+    }
+
+    @Test
+    public void testCachedChain() throws Exception {
+        Merlin crypto = new Merlin();
+        crypto.setTrustStore(createTrustStore());
+        TrustVerificationCache cache = new TrustVerificationCache();
+        crypto.setTrustVerificationCache(cache);
+
+        X509Certificate cert = createCert("CN=Colm", 2L, 3600000L);
+        crypto.verifyTrust(new X509Certificate[] {cert}, false, null);
+        assertEquals(0L, cache.getHitCount());
+        assertEquals(1L, cache.getMissCount());
+        assertEquals(1, cache.size());
+
+        crypto.verifyTrust(new X509Certificate[] {cert}, false, null);
+        assertEquals(1L, cache.getHitCount());
+        assertEquals(1L, cache.getMissCount());
+
+        // A different set of constraints is a different entry
+        Pattern pattern = Pattern.compile(".*CN=Colm.*");
+        crypto.verifyTrust(new X509Certificate[] {cert}, false, Collections.singletonList(pattern));
+        assertEquals(2L, cache.getMissCount());
+        crypto.verifyTrust(new X509Certificate[] {cert}, false, Collections.singletonList(pattern));
+        assertEquals(2L, cache.getHitCount());
+
+        // A failed constraint check is not cached
+        Pattern badPattern = Pattern.compile(".*CN=Werner.*");
+        for (int i = 0; i < 2; i++) {
+            try {
+                crypto.verifyTrust(new X509Certificate[] {cert}, false, Collections.singletonList(badPattern));
+                fail("Failure expected on a bad subject constraint");
+            } catch (WSSecurityException ex) {
+                assertEquals(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, ex.getErrorCode());
+            }
+        }
+        assertEquals(4L, cache.getMissCount());
+
+        // Replacing the truststore clears the cache
+        crypto.setTrustStore(createTrustStore());
+        assertEquals(0, cache.size());
+        crypto.verifyTrust(new X509Certificate[] {cert}, false, null);
+        assertEquals(5L, cache.getMissCount());
+    }
+
+    @Test
+    public void testUntrustedChainNotCached() throws Exception {
+        Merlin crypto = new Merlin();
+        KeyStore trustStore = KeyStore.getInstance("JKS");
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("other", createCert("CN=Other", 3L, 3600000L));
+        crypto.setTrustStore(trustStore);
+        TrustVerificationCache cache = new TrustVerificationCache();
+        crypto.setTrustVerificationCache(cache);
+
+        X509Certificate cert = createCert("CN=Colm", 2L, 3600000L);
+        for (int i = 0; i < 2; i++) {
+            try {
+                crypto.verifyTrust(new X509Certificate[] {cert}, false, null);
+                fail("Failure expected on an untrusted cert");
+            } catch (WSSecurityException ex) {
+                assertEquals(WSSecurityException.ErrorCode.FAILURE, ex.getErrorCode());
+            }
+        }
+        assertEquals(0L, cache.getHitCount());
+        assertEquals(0, cache.size());
+
+        // Now add the CA to the truststore - the changed size is picked up by the cache
+        trustStore.setCertificateEntry("ca", caCert);
+        crypto.verifyTrust(new X509Certificate[] {cert}, false, null);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testEntryExpiresWithCert() throws Exception {
+        Merlin crypto = new Merlin();
+        crypto.setTrustStore(createTrustStore());
+        TrustVerificationCache cache = new TrustVerificationCache();
+        crypto.setTrustVerificationCache(cache);
+
+        X509Certificate cert = createCert("CN=Colm", 2L, 1500L);
+        crypto.verifyTrust(new X509Certificate[] {cert}, false, null);
+        crypto.verifyTrust(new X509Certificate[] {cert}, false, null);
+        assertEquals(1L, cache.getHitCount());
+
+        Thread.sleep(cert.getNotAfter().getTime() - System.currentTimeMillis() + 100L);
+        try {
+            crypto.verifyTrust(new X509Certificate[] {cert}, false, null);
+            fail("Failure expected on an expired cert");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILURE, ex.getErrorCode());
+        }
+        assertEquals(1L, cache.getHitCount());
+    }
+
+    @Test
+    public void testEntryExpiresWithTrustAnchor() throws Exception {
+        // A CA certificate that expires long before the certificate it issued
+        long now = System.currentTimeMillis();
+        X509v3CertificateBuilder builder =
+            new JcaX509v3CertificateBuilder(
+                CA_NAME, BigInteger.TEN, new Date(now - 60000L), new Date(now + 1500L),
+                CA_NAME, caKeyPair.getPublic()
+            );
+        builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(true));
+        X509Certificate shortLivedCaCert = sign(builder, caKeyPair.getPrivate());
+        KeyStore trustStore = KeyStore.getInstance("JKS");
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("ca", shortLivedCaCert);
+
+        Merlin crypto = new Merlin();
+        crypto.setTrustStore(trustStore);
+        TrustVerificationCache cache = new TrustVerificationCache();
+        crypto.setTrustVerificationCache(cache);
+
+        X509Certificate cert = createCert("CN=Colm", 2L, 3600000L);
+        crypto.verifyTrust(new X509Certificate[] {cert}, false, null);
+        crypto.verifyTrust(new X509Certificate[] {cert}, false, null);
+        assertEquals(1L, cache.getHitCount());
+
+        // The cached entry expires with the trust anchor, rather than with the received certificate
+        Thread.sleep(shortLivedCaCert.getNotAfter().getTime() - System.currentTimeMillis() + 100L);
+        try {
+            crypto.verifyTrust(new X509Certificate[] {cert}, false, null);
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILURE, ex.getErrorCode());
+        }
+        assertEquals(1L, cache.getHitCount());
+        assertEquals(2L, cache.getMissCount());
+    }
+
+    @Test
+    public void testTrustCacheProperties() throws Exception {
+        Properties properties = new Properties();
+        properties.put(Merlin.PREFIX + Merlin.TRUST_CACHE, "true");
+        properties.put(Merlin.PREFIX + Merlin.TRUST_CACHE_TTL, "60");
+        properties.put(Merlin.PREFIX + Merlin.TRUST_CACHE_SIZE, "10");
+        Merlin crypto = new Merlin(properties, null, null);
+
+        TrustVerificationCache cache = crypto.getTrustVerificationCache();
+        assertNotNull(cache);
+        assertEquals(60L, cache.getTtl());
+        assertEquals(10, cache.getMaxSize());
+
+        crypto.setTrustStore(createTrustStore());
+        for (int i = 0; i < 20; i++) {
+            X509Certificate cert = createCert("CN=Colm" + i, 10L + i, 3600000L);
+            crypto.verifyTrust(new X509Certificate[] {cert}, false, null);
+        }
+        assertEquals(10, cache.size());
+    }
+
+    private KeyStore createTrustStore() throws Exception {
+        KeyStore trustStore = KeyStore.getInstance("JKS");
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("ca", caCert);
+        return trustStore;
+    }
+
+    private X509Certificate createCert(String subject, long serial, long validity) throws Exception {
+        long now = System.currentTimeMillis();
+        X509v3CertificateBuilder builder =
+            new JcaX509v3CertificateBuilder(
+                CA_NAME, BigInteger.valueOf(serial), new Date(now - 60000L), new Date(now + validity),
+                new X500Name(subject + ", OU=WSS4J, O=Apache, C=IE"), generateKeyPair().getPublic()
+            );
+        return sign(builder, caKeyPair.getPrivate());
+    }
+
+    private static X509Certificate sign(X509v3CertificateBuilder builder, PrivateKey key) throws Exception {
+        return new JcaX509CertificateConverter().getCertificate(
+            builder.build(new JcaContentSignerBuilder("SHA256withRSA").build(key))
+        );
+    }
+
+    private static KeyPair generateKeyPair() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(1024);
+        return keyPairGenerator.generateKeyPair();
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.derivedKey;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Some tests for the P_SHA1 key derivation.
+ */
+public class P_SHA1Test extends Assert {
+
+    private static final byte[] SECRET = "some secret".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SEED = "WS-SecureConversationWS-SecureConversation0123456789abcdef"
+        .getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testOffsetsAndLengths() throws Exception {
+        P_SHA1 pSha1 = new P_SHA1();
+        int[] values = {0, 1, 16, 19, 20, 21, 32, 40, 41, 64, 100};
+        for (int offset : values) {
+            for (int length : values) {
+                byte[] expected = referencePHash(SECRET, SEED, offset, length);
+                assertArrayEquals(
+                    "offset " + offset + ", length " + length,
+                    expected, pSha1.createKey(SECRET, SEED, offset, length)
+                );
+            }
+        }
+    }
+
+    @Test
+    public void testDerivedKeyUtils() throws Exception {
+        byte[] nonce = new byte[] {1, 2, 3, 4, 5, 6, 7, 8};
+        byte[] key =
+            DerivedKeyUtils.deriveKey(ConversationConstants.DerivationAlgorithm.P_SHA_1, "label", 24, SECRET, nonce, 8);
+
+        byte[] seed = new byte[5 + nonce.length];
+        System.arraycopy("label".getBytes(StandardCharsets.UTF_8), 0, seed, 0, 5);
+        System.arraycopy(nonce, 0, seed, 5, nonce.length);
+        assertArrayEquals(referencePHash(SECRET, seed, 8, 24), key);
+    }
+
+    @Test(expected = WSSecurityException.class)
+    public void testNegativeOffset() throws Exception {
+        new P_SHA1().createKey(SECRET, SEED, -1, 16);
+    }
+
+    @Test(expected = WSSecurityException.class)
+    public void testNegativeLength() throws Exception {
+        new P_SHA1().createKey(SECRET, SEED, 0, -16);
+    }
+
+    /**
+     * P_hash as defined in RFC 2246, computing all of the output up to offset + length.
+     */
+    private static byte[] referencePHash(byte[] secret, byte[] seed, int offset, int length)
+        throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA1");
+        mac.init(new SecretKeySpec(secret, "HmacSHA1"));
+        byte[] out = new byte[offset + length];
+        byte[] a = seed;
+        int written = 0;
+        while (written < out.length) {
+            a = mac.doFinal(a);
+            mac.update(a);
+            byte[] block = mac.doFinal(seed);
+            int tocpy = Math.min(out.length - written, block.length);
+            System.arraycopy(block, 0, out, written, tocpy);
+            written += tocpy;
+        }
+        byte[] key = new byte[length];
+        System.arraycopy(out, offset, key, 0, length);
+        return key;
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.kerberos;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.security.auth.Subject;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.login.AppConfigurationEntry;
+import javax.security.auth.login.Configuration;
+import javax.security.auth.login.LoginException;
+import javax.security.auth.spi.LoginModule;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Some tests for the KerberosServiceCredentialManager, with a LoginModule that counts the logins.
+ */
+public class KerberosServiceCredentialManagerTest extends Assert {
+
+    private static final String CONTEXT_NAME = "service";
+
+    private static final AtomicInteger LOGINS = new AtomicInteger();
+    private static volatile boolean failLogin;
+    private static Configuration previousConfiguration;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        try {
+            previousConfiguration = Configuration.getConfiguration();
+        } catch (SecurityException ex) {
+            previousConfiguration = null;
+        }
+        Configuration.setConfiguration(new Configuration() {
+            @Override
+            public AppConfigurationEntry[] getAppConfigurationEntry(String name) {
+                if (!CONTEXT_NAME.equals(name)) {
+                    return null;
+                }
+                return new AppConfigurationEntry[] {
+                    new AppConfigurationEntry(
+                        CountingLoginModule.class.getName(),
+                        AppConfigurationEntry.LoginModuleControlFlag.REQUIRED,
+                        Collections.<String, Object>emptyMap()
+                    )
+                };
+            }
+        });
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        Configuration.setConfiguration(previousConfiguration);
+    }
+
+    @Before
+    public void reset() {
+        LOGINS.set(0);
+        failLogin = false;
+    }
+
+    @Test
+    public void testLoginOnce() throws Exception {
+        KerberosServiceCredentialManager manager = new KerberosServiceCredentialManager();
+        Subject subject = manager.getSubject(CONTEXT_NAME, null);
+        assertNotNull(subject);
+        assertSame(subject, manager.getSubject(CONTEXT_NAME, null));
+        assertEquals(1, LOGINS.get());
+
+        manager.clear();
+        assertNotSame(subject, manager.getSubject(CONTEXT_NAME, null));
+        assertEquals(2, LOGINS.get());
+    }
+
+    @Test
+    public void testRefresh() throws Exception {
+        // Refresh one second after the login, and expire after two seconds
+        KerberosServiceCredentialManager manager = new KerberosServiceCredentialManager(1L, 2L, 0L);
+        Subject subject = manager.getSubject(CONTEXT_NAME, null);
+        Thread.sleep(1100L);
+
+        // A failed refresh keeps the current Subject until it expires
+        failLogin = true;
+        assertSame(subject, manager.getSubject(CONTEXT_NAME, null));
+        assertEquals(2, LOGINS.get());
+
+        failLogin = false;
+        Subject refreshedSubject = manager.getSubject(CONTEXT_NAME, null);
+        assertNotSame(subject, refreshedSubject);
+        assertEquals(3, LOGINS.get());
+        assertSame(refreshedSubject, manager.getSubject(CONTEXT_NAME, null));
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        KerberosServiceCredentialManager manager = new KerberosServiceCredentialManager(60L, 3600L, 0L);
+        Subject subject = manager.getSubject(CONTEXT_NAME, null);
+        assertFalse(manager.invalidate(CONTEXT_NAME, new Subject()));
+        assertFalse(manager.invalidate("other", subject));
+        assertTrue(manager.invalidate(CONTEXT_NAME, subject));
+        assertNotSame(subject, manager.getSubject(CONTEXT_NAME, null));
+        assertEquals(2, LOGINS.get());
+
+        // A Subject is not invalidated again within the retry interval
+        manager = new KerberosServiceCredentialManager();
+        subject = manager.getSubject(CONTEXT_NAME, null);
+        assertFalse(manager.invalidate(CONTEXT_NAME, subject));
+        assertSame(subject, manager.getSubject(CONTEXT_NAME, null));
+    }
+
+    @Test
+    public void testFailedLogin() throws Exception {
+        KerberosServiceCredentialManager manager = new KerberosServiceCredentialManager();
+        failLogin = true;
+        try {
+            manager.getSubject(CONTEXT_NAME, null);
+            fail("Failure expected on a failed login");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILURE, ex.getErrorCode());
+        }
+
+        failLogin = false;
+        assertNotNull(manager.getSubject(CONTEXT_NAME, null));
+    }
+
+    /**
+     * A LoginModule that counts the logins
+     */
+    public static class CountingLoginModule implements LoginModule {
+
+        @Override
+        public void initialize(Subject subject, CallbackHandler callbackHandler,
+                               Map<String, ?> sharedState, Map<String, ?> options) {
+            // complete
+        }
+
+        @Override
+        public boolean login() throws LoginException {
+            LOGINS.incrementAndGet();
+            if (failLogin) {
+                throw new LoginException("Login failed");
+            }
+            return true;
+        }
+
+        @Override
+        public boolean commit() throws LoginException {
+            return true;
+        }
+
+        @Override
+        public boolean abort() throws LoginException {
+            return true;
+        }
+
+        @Override
+        public boolean logout() throws LoginException {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.common.metrics;
+
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+
+import org.apache.wss4j.common.cache.SessionKeyCache;
+import org.apache.wss4j.common.metrics.StatisticsSecurityMetricsListener.CacheStatistics;
+import org.apache.wss4j.common.metrics.StatisticsSecurityMetricsListener.OperationStatistics;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Some tests for the StatisticsSecurityMetricsListener, and the SecurityMetrics that hold it.
+ */
+public class StatisticsSecurityMetricsListenerTest extends Assert {
+
+    private static final String OAEP = "http://www.w3.org/2001/04/xmlenc#rsa-oaep-mgf1p";
+    private static final String AES_128 = "http://www.w3.org/2001/04/xmlenc#aes128-cbc";
+
+    @After
+    public void resetListener() {
+        SecurityMetrics.setListener(null);
+    }
+
+    @Test
+    public void testOperations() throws Exception {
+        StatisticsSecurityMetricsListener listener = new StatisticsSecurityMetricsListener();
+        for (int i = 0; i < 3; i++) {
+            SecurityMetricsListener.Timer timer = listener.start(SecurityOperation.PROCESSOR, "Signature");
+            Thread.sleep(1L);
+            timer.stop();
+        }
+        listener.start(SecurityOperation.PROCESSOR, "Timestamp").stop();
+        listener.bytesProcessed(SecurityOperation.DECRYPT, AES_128, 100L);
+        listener.bytesProcessed(SecurityOperation.DECRYPT, AES_128, 50L);
+
+        OperationStatistics signature = listener.getStatistics(SecurityOperation.PROCESSOR, "Signature");
+        assertEquals(3, signature.getCount());
+        assertTrue(signature.getTotalTime() >= 3000000L);
+        assertEquals(2, listener.getStatistics(SecurityOperation.PROCESSOR).size());
+        assertEquals(150L, listener.getStatistics(SecurityOperation.DECRYPT, AES_128).getBytes());
+        assertNull(listener.getStatistics(SecurityOperation.ACTION, "Signature"));
+
+        listener.reset();
+        assertTrue(listener.getStatistics(SecurityOperation.PROCESSOR).isEmpty());
+    }
+
+    @Test
+    public void testCacheAccess() throws Exception {
+        StatisticsSecurityMetricsListener listener = new StatisticsSecurityMetricsListener();
+        SecurityMetrics.setListener(listener);
+        assertTrue(SecurityMetrics.isEnabled());
+
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(1024);
+        PublicKey publicKey = keyPairGenerator.generateKeyPair().getPublic();
+
+        SessionKeyCache cache = new SessionKeyCache();
+        assertNull(cache.get(publicKey, OAEP, AES_128));
+        cache.put(publicKey, OAEP, AES_128, new byte[] {1, 2, 3, 4}, new byte[] {5, 6, 7, 8});
+        for (int i = 0; i < 3; i++) {
+            assertNotNull(cache.get(publicKey, OAEP, AES_128));
+        }
+
+        CacheStatistics statistics = listener.getCacheStatistics("SessionKeyCache");
+        assertEquals(3, statistics.getHits());
+        assertEquals(1, statistics.getMisses());
+        assertEquals(0.75, statistics.getHitRatio(), 0.0);
+    }
+
+    @Test
+    public void testNoOpListener() throws Exception {
+        SecurityMetrics.setListener(new StatisticsSecurityMetricsListener());
+        SecurityMetrics.setListener(null);
+        assertSame(NoOpSecurityMetricsListener.INSTANCE, SecurityMetrics.getListener());
+        assertFalse(SecurityMetrics.isEnabled());
+        // Does nothing
+        SecurityMetrics.start(SecurityOperation.ACTION, "Signature").stop();
+        SecurityMetrics.cacheAccess("SessionKeyCache", true);
+    }
+}
@@ -25,11 +25,13 @@ import javax.security.auth.callback.CallbackHandler;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.apache.wss4j.common.SecurityActionToken;
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.handler.WSHandler;
 
+@ThreadSafe
 public class CustomTokenAction implements Action {
 
     public void execute(WSHandler handler, SecurityActionToken actionToken,
@@ -26,6 +26,7 @@ import javax.security.auth.callback.CallbackHandler;
 
 import org.apache.wss4j.common.EncryptionActionToken;
 import org.apache.wss4j.common.SecurityActionToken;
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
@@ -36,6 +37,7 @@ import org.apache.wss4j.dom.handler.WSHandlerConstants;
 import org.apache.wss4j.dom.message.WSSecEncrypt;
 import org.w3c.dom.Document;
 
+@ThreadSafe
 public class EncryptionAction implements Action {
     public void execute(WSHandler handler, SecurityActionToken actionToken,
                         Document doc, RequestData reqData)
@@ -121,6 +123,8 @@ public class EncryptionAction implements Action {
 
         wsEncrypt.setAttachmentCallbackHandler(reqData.getAttachmentCallbackHandler());
         wsEncrypt.setStoreBytesInAttachment(reqData.isStoreBytesInAttachment());
+        wsEncrypt.setSessionKeyCache(reqData.getSessionKeyCache());
+        wsEncrypt.setEncryptionExecutor(reqData.getEncryptionExecutor());
 
         try {
             wsEncrypt.build(doc, encryptionToken.getCrypto(), reqData.getSecHeader());
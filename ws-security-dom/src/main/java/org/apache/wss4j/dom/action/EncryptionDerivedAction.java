@@ -25,6 +25,7 @@ import javax.security.auth.callback.CallbackHandler;
 
 import org.apache.wss4j.common.EncryptionActionToken;
 import org.apache.wss4j.common.SecurityActionToken;
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.WSEncryptionPart;
 import org.apache.wss4j.common.derivedKey.ConversationConstants;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
@@ -38,6 +39,7 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
+@ThreadSafe
 public class EncryptionDerivedAction extends AbstractDerivedAction implements Action {
 
     public void execute(WSHandler handler, SecurityActionToken actionToken,
@@ -84,6 +86,7 @@ public class EncryptionDerivedAction extends AbstractDerivedAction implements Ac
             setupTokenReference(reqData, encryptionToken, wsEncrypt, passwordCallback, doc);
         wsEncrypt.setAttachmentCallbackHandler(reqData.getAttachmentCallbackHandler());
         wsEncrypt.setStoreBytesInAttachment(reqData.isStoreBytesInAttachment());
+        wsEncrypt.setEncryptionExecutor(reqData.getEncryptionExecutor());
 
         try {
             List<WSEncryptionPart> parts = encryptionToken.getParts();
@@ -23,6 +23,7 @@ import javax.security.auth.callback.CallbackHandler;
 
 import org.apache.wss4j.common.SecurityActionToken;
 import org.apache.wss4j.common.SignatureActionToken;
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
@@ -36,6 +37,7 @@ import org.apache.wss4j.dom.handler.WSHandlerConstants;
 import org.apache.wss4j.dom.saml.WSSecSignatureSAML;
 import org.w3c.dom.Document;
 
+@ThreadSafe
 public class SAMLTokenSignedAction implements Action {
 
     private static final org.slf4j.Logger LOG =
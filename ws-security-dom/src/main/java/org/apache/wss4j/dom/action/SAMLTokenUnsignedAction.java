@@ -22,6 +22,7 @@ package org.apache.wss4j.dom.action;
 import javax.security.auth.callback.CallbackHandler;
 
 import org.apache.wss4j.common.SecurityActionToken;
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.saml.SamlAssertionWrapper;
 import org.apache.wss4j.common.saml.SAMLCallback;
@@ -32,6 +33,7 @@ import org.apache.wss4j.dom.handler.WSHandlerConstants;
 import org.apache.wss4j.dom.message.WSSecSAMLToken;
 import org.w3c.dom.Document;
 
+@ThreadSafe
 public class SAMLTokenUnsignedAction implements Action {
 
     public void execute(WSHandler handler, SecurityActionToken actionToken,
@@ -19,6 +19,7 @@
 
 package org.apache.wss4j.dom.action;
 
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
 import org.apache.wss4j.common.SecurityActionToken;
@@ -34,6 +35,7 @@ import org.w3c.dom.Document;
 
 import java.util.List;
 
+@ThreadSafe
 public class SignatureConfirmationAction implements Action {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(SignatureConfirmationAction.class);
@@ -25,6 +25,7 @@ import javax.security.auth.callback.CallbackHandler;
 
 import org.apache.wss4j.common.SecurityActionToken;
 import org.apache.wss4j.common.SignatureActionToken;
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.WSEncryptionPart;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.derivedKey.ConversationConstants;
@@ -39,6 +40,7 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
+@ThreadSafe
 public class SignatureDerivedAction extends AbstractDerivedAction implements Action {
 
     public void execute(WSHandler handler, SecurityActionToken actionToken,
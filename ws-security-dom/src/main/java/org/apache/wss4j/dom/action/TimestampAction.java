@@ -20,12 +20,14 @@
 package org.apache.wss4j.dom.action;
 
 import org.apache.wss4j.common.SecurityActionToken;
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.handler.WSHandler;
 import org.apache.wss4j.dom.message.WSSecTimestamp;
 import org.w3c.dom.Document;
 
+@ThreadSafe
 public class TimestampAction implements Action {
 
     public void execute(WSHandler handler, SecurityActionToken actionToken,
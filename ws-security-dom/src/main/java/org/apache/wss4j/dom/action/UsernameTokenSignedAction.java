@@ -24,6 +24,7 @@ import java.util.List;
 
 import javax.security.auth.callback.CallbackHandler;
 
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.common.SecurityActionToken;
 import org.apache.wss4j.common.SignatureActionToken;
@@ -44,6 +45,7 @@ import org.w3c.dom.Document;
  * username token signature
  */
 
+@ThreadSafe
 public class UsernameTokenSignedAction implements Action {
     public void execute(WSHandler handler, SecurityActionToken actionToken,
                         Document doc, RequestData reqData)
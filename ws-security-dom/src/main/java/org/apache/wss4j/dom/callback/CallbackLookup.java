@@ -25,6 +25,7 @@ import javax.xml.crypto.dom.DOMCryptoContext;
 
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
 /**
  * This interface defines a pluggable way of locating Elements that are referenced via an Id.
@@ -78,4 +79,15 @@ public interface CallbackLookup {
      * Get the SOAP Body
      */
     Element getSOAPBody();
+
+    /**
+     * Notify this CallbackLookup that the given Node (and its descendants) has been added to the
+     * Document while it is processed, e.g. when an EncryptedData Element is decrypted. This is
+     * needed by an implementation that indexes the Elements of the Document. The default
+     * implementation does nothing.
+     * @param node the Node that was added to the Document
+     */
+    default void elementsAdded(Node node) {
+        // complete
+    }
 }
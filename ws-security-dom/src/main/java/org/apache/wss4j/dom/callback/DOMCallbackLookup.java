@@ -30,6 +30,7 @@ import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.util.WSSecurityUtil;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
+import org.w3c.dom.Node;
 
 /**
  * This class uses a DOM-based approach to locate Elements that are referenced via an Id.
@@ -37,9 +38,24 @@ import org.w3c.dom.Element;
 public class DOMCallbackLookup implements CallbackLookup {
 
     private Document doc;
+    private final boolean indexIds;
+    private ElementIdIndex idIndex;
 
     public DOMCallbackLookup(Document doc) {
+        this(doc, false);
+    }
+
+    /**
+     * @param doc the Document in which to locate Elements
+     * @param indexIds whether to index the Elements of the Document by Id (with one pass over
+     *        the Document, on the first lookup), instead of searching the Document for every
+     *        lookup. This should only be enabled if every Element added to the Document after
+     *        the first lookup is passed to elementsAdded, as is done for decrypted Elements
+     *        when processing a security header.
+     */
+    public DOMCallbackLookup(Document doc, boolean indexIds) {
         this.doc = doc;
+        this.indexIds = indexIds;
     }
 
     /**
@@ -93,8 +109,13 @@ public class DOMCallbackLookup implements CallbackLookup {
             }
         }
         // Otherwise do a general search
-        Element foundElement =
-            XMLUtils.findElementById(doc.getDocumentElement(), idToMatch, checkMultipleElements);
+        Element foundElement;
+        if (indexIds) {
+            foundElement = getIdIndex().getElementById(idToMatch, checkMultipleElements);
+        } else {
+            foundElement =
+                XMLUtils.findElementById(doc.getDocumentElement(), idToMatch, checkMultipleElements);
+        }
         if (foundElement != null) {
             if (context != null) {
                 if (foundElement.hasAttributeNS(WSConstants.WSU_NS, "Id")
@@ -117,10 +138,14 @@ public class DOMCallbackLookup implements CallbackLookup {
             || WSConstants.WSS_SAML2_KI_VALUE_TYPE.equals(valueType)
             || "".equals(valueType)
             || valueType == null) {
-            foundElement =
-                XMLUtils.findSAMLAssertionElementById(
-                    doc.getDocumentElement(), idToMatch
-                );
+            if (indexIds) {
+                foundElement = getIdIndex().getSAMLAssertionElementById(idToMatch);
+            } else {
+                foundElement =
+                    XMLUtils.findSAMLAssertionElementById(
+                        doc.getDocumentElement(), idToMatch
+                    );
+            }
             if (foundElement != null) {
                 if (context != null) {
                     if (foundElement.hasAttributeNS(null, "ID")
@@ -166,4 +191,22 @@ public class DOMCallbackLookup implements CallbackLookup {
     public Element getSOAPBody() {
         return WSSecurityUtil.findBodyElement(doc);
     }
+
+    /**
+     * Add the given Node and its descendants to the Id index, if Elements are indexed by Id.
+     * @param node the Node that was added to the Document
+     */
+    @Override
+    public void elementsAdded(Node node) {
+        if (idIndex != null && node != null) {
+            idIndex.addElements(node);
+        }
+    }
+
+    private ElementIdIndex getIdIndex() {
+        if (idIndex == null) {
+            idIndex = new ElementIdIndex(doc);
+        }
+        return idIndex;
+    }
 }
@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.callback;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * An index of the Elements of a Document by their wsu:Id and Id attributes, and by their
+ * (SAML) ID and AssertionID attributes. It is built with one pass over the Document, and
+ * gives the same results as XMLUtils.findElementById and XMLUtils.findSAMLAssertionElementById,
+ * including the detection of multiple Elements with the same Id.
+ *
+ * Elements that are removed from the Document (or whose Id is changed) are dropped from the
+ * index when they are looked up. Elements that are added to the Document (e.g. when
+ * EncryptedData is decrypted) must be added to the index with addElements.
+ */
+class ElementIdIndex {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(ElementIdIndex.class);
+
+    private final Document doc;
+    private final Map<String, List<Element>> elementsById = new HashMap<>();
+    private final Map<String, List<Element>> elementsBySAMLId = new HashMap<>();
+
+    ElementIdIndex(Document doc) {
+        this.doc = doc;
+        if (doc.getDocumentElement() != null) {
+            addElements(doc.getDocumentElement());
+        }
+    }
+
+    /**
+     * Add the given Node and its descendants to the index. Elements that are indexed already
+     * are not added again.
+     */
+    void addElements(Node startNode) {
+        Node node = startNode;
+        while (node != null) {
+            if (node.getNodeType() == Node.ELEMENT_NODE) {
+                addElement((Element) node);
+            }
+
+            Node next = node.getFirstChild();
+            while (next == null && node != startNode) {
+                next = node.getNextSibling();
+                if (next == null) {
+                    node = node.getParentNode();
+                }
+            }
+            node = next;
+        }
+    }
+
+    private void addElement(Element element) {
+        String wsuId = element.getAttributeNS(WSConstants.WSU_NS, "Id");
+        if (!"".equals(wsuId)) {
+            add(elementsById, wsuId, element);
+        }
+        String id = element.getAttributeNS(null, "Id");
+        if (!"".equals(id)) {
+            add(elementsById, id, element);
+        }
+        if (element.hasAttributeNS(null, "ID")) {
+            add(elementsBySAMLId, element.getAttributeNS(null, "ID"), element);
+        }
+        if (element.hasAttributeNS(null, "AssertionID")) {
+            add(elementsBySAMLId, element.getAttributeNS(null, "AssertionID"), element);
+        }
+    }
+
+    private static void add(Map<String, List<Element>> index, String id, Element element) {
+        List<Element> elements = index.get(id);
+        if (elements == null) {
+            elements = new ArrayList<>(1);
+            index.put(id, elements);
+        } else {
+            for (Element indexed : elements) {
+                if (indexed == element) {
+                    return;
+                }
+            }
+        }
+        elements.add(element);
+    }
+
+    /**
+     * Get the Element with the given wsu:Id or Id, in the same way as XMLUtils.findElementById.
+     */
+    Element getElementById(String value, boolean checkMultipleElements) {
+        String id = XMLUtils.getIDFromReference(value);
+        List<Element> elements = getCurrentElements(elementsById, id, false);
+        if (elements.isEmpty()) {
+            return null;
+        } else if (elements.size() == 1) {
+            return elements.get(0);
+        } else if (checkMultipleElements) {
+            LOG.warn("Multiple elements with the same 'Id' attribute value!");
+            return null;
+        }
+        // The first Element in document order, the order of the index is not maintained
+        return XMLUtils.findElementById(doc.getDocumentElement(), id, false);
+    }
+
+    /**
+     * Get the single Element with the given ID or AssertionID, in the same way as
+     * XMLUtils.findSAMLAssertionElementById.
+     */
+    Element getSAMLAssertionElementById(String value) {
+        List<Element> elements = getCurrentElements(elementsBySAMLId, value, true);
+        if (elements.isEmpty()) {
+            return null;
+        } else if (elements.size() == 1) {
+            return elements.get(0);
+        }
+        LOG.warn("Multiple elements with the same 'ID' attribute value!");
+        return null;
+    }
+
+    /**
+     * Get the indexed Elements that are still in the Document, and still have the given Id
+     */
+    private List<Element> getCurrentElements(Map<String, List<Element>> index, String id, boolean saml) {
+        List<Element> elements = index.get(id);
+        if (elements == null) {
+            return new ArrayList<>(0);
+        }
+        Iterator<Element> iterator = elements.iterator();
+        while (iterator.hasNext()) {
+            Element element = iterator.next();
+            if (!isInDocument(element) || !hasId(element, id, saml)) {
+                iterator.remove();
+            }
+        }
+        if (elements.isEmpty()) {
+            index.remove(id);
+        }
+        return elements;
+    }
+
+    private boolean isInDocument(Node node) {
+        Node parent = node.getParentNode();
+        while (parent != null && parent != doc) {
+            parent = parent.getParentNode();
+        }
+        return parent == doc;
+    }
+
+    private static boolean hasId(Element element, String id, boolean saml) {
+        if (saml) {
+            return element.hasAttributeNS(null, "ID") && id.equals(element.getAttributeNS(null, "ID"))
+                || element.hasAttributeNS(null, "AssertionID")
+                    && id.equals(element.getAttributeNS(null, "AssertionID"));
+        }
+        return id.equals(element.getAttributeNS(WSConstants.WSU_NS, "Id"))
+            || id.equals(element.getAttributeNS(null, "Id"));
+    }
+}
@@ -32,6 +32,7 @@ import javax.xml.namespace.QName;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WsuIdAllocator;
 import org.apache.wss4j.dom.action.Action;
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.crypto.WSProviderConfig;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.WSCurrentTimeSource;
@@ -239,6 +240,24 @@ public final class WSSConfig {
         DEFAULT_VALIDATORS = java.util.Collections.unmodifiableMap(tmp);
     }
 
+    /**
+     * The shared instances of the Processor, Validator and Action classes that are annotated
+     * with ThreadSafe. A class that is not annotated maps to null.
+     */
+    private static final ClassValue<Object> THREAD_SAFE_INSTANCES = new ClassValue<Object>() {
+        @Override
+        protected Object computeValue(Class<?> type) {
+            if (!type.isAnnotationPresent(ThreadSafe.class)) {
+                return null;
+            }
+            try {
+                return type.newInstance();
+            } catch (InstantiationException | IllegalAccessException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    };
+
     /**
      * a static boolean flag that determines whether default JCE providers
      * should be added at the time of construction.
@@ -300,6 +319,12 @@ public final class WSSConfig {
      */
     private final Map<QName, Object> validatorMap = new HashMap<QName, Object>(DEFAULT_VALIDATORS);
 
+    /**
+     * Whether a single (shared) instance is used of the Processor, Validator and Action classes
+     * that are annotated with ThreadSafe. Other classes are instantiated each time they are used.
+     */
+    private boolean shareThreadSafeInstances = true;
+
     static {
         try {
             Transform.register(WSConstants.SWA_ATTACHMENT_CIPHERTEXT_TRANS,
@@ -349,6 +374,14 @@ public final class WSSConfig {
         }
     }
 
+    /**
+     * Release the per-thread state that WSS4J keeps for all of the threads. This should be
+     * called when WSS4J is shut down, for example when a web application is undeployed.
+     */
+    public static void cleanUp() {
+        WSProviderConfig.cleanUp();
+    }
+
     /**
      * @return a new WSSConfig instance configured with the default values
      */
@@ -392,6 +425,9 @@ public final class WSSConfig {
      *
      * This operation allows applications to supply their own
      * actions for well-known operations.
+     *
+     * If the class is annotated with ThreadSafe then a single instance of it is shared,
+     * otherwise it is instantiated each time it is used.
      */
     public Class<?> setAction(int code, Class<?> clazz) {
         Object result = actionMap.put(code, clazz);
@@ -415,7 +451,7 @@ public final class WSSConfig {
 
         if (actionObject instanceof Class<?>) {
             try {
-                return (Action)((Class<?>)actionObject).newInstance();
+                return (Action)getInstance((Class<?>)actionObject);
             } catch (Exception ex) {
                 if (LOG.isDebugEnabled()) {
                     LOG.debug(ex.getMessage(), ex);
@@ -451,6 +487,9 @@ public final class WSSConfig {
      * Associate a SOAP processor name with a specified SOAP Security header
      * element QName.  Processors registered under this QName will be
      * called when processing header elements with the specified type.
+     *
+     * If the class is annotated with ThreadSafe then a single instance of it is shared,
+     * otherwise it is instantiated each time it is used.
      */
     public Class<?> setProcessor(QName el, Class<?> clazz) {
         Object result = processorMap.put(el, clazz);
@@ -484,6 +523,9 @@ public final class WSSConfig {
      * Associate a SOAP validator name with a specified SOAP Security header
      * element QName.  validator registered under this QName will be
      * called when processing header elements with the specified type.
+     *
+     * If the class is annotated with ThreadSafe then a single instance of it is shared,
+     * otherwise it is instantiated each time it is used.
      */
     public Class<?> setValidator(QName el, Class<?> clazz) {
         Object result = validatorMap.put(el, clazz);
@@ -507,7 +549,7 @@ public final class WSSConfig {
 
         if (validatorObject instanceof Class<?>) {
             try {
-                return (Validator)((Class<?>)validatorObject).newInstance();
+                return (Validator)getInstance((Class<?>)validatorObject);
             } catch (Exception ex) {
                 if (LOG.isDebugEnabled()) {
                     LOG.debug(ex.getMessage(), ex);
@@ -533,7 +575,7 @@ public final class WSSConfig {
 
         if (processorObject instanceof Class<?>) {
             try {
-                return (Processor)((Class<?>)processorObject).newInstance();
+                return (Processor)getInstance((Class<?>)processorObject);
             } catch (Exception ex) {
                 if (LOG.isDebugEnabled()) {
                     LOG.debug(ex.getMessage(), ex);
@@ -547,6 +589,34 @@ public final class WSSConfig {
         return null;
     }
 
+    /**
+     * Return the shared instance of the given class if it is annotated with ThreadSafe, or
+     * otherwise a new instance.
+     */
+    private Object getInstance(Class<?> clazz) throws Exception {
+        if (shareThreadSafeInstances) {
+            Object instance = THREAD_SAFE_INSTANCES.get(clazz);
+            if (instance != null) {
+                return instance;
+            }
+        }
+        return clazz.newInstance();
+    }
+
+    public boolean isShareThreadSafeInstances() {
+        return shareThreadSafeInstances;
+    }
+
+    /**
+     * Set whether a single instance is shared of the Processor, Validator and Action classes
+     * that are annotated with ThreadSafe (the default), instead of creating a new instance each
+     * time that one is used. Classes that are not annotated are always instantiated per use, and
+     * instances that are registered directly (rather than by class) are always shared.
+     */
+    public void setShareThreadSafeInstances(boolean shareThreadSafeInstances) {
+        this.shareThreadSafeInstances = shareThreadSafeInstances;
+    }
+
     public WSTimeSource getCurrentTime() {
         if (currentTime != null) {
             return currentTime;
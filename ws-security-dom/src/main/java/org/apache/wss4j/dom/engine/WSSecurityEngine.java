@@ -30,6 +30,9 @@ import javax.xml.namespace.QName;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityOperation;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDocInfo;
 import org.apache.wss4j.dom.callback.CallbackLookup;
@@ -312,7 +315,7 @@ public class WSSecurityEngine {
         WSDocInfo wsDocInfo = new WSDocInfo(securityHeader.getOwnerDocument());
         CallbackLookup callbackLookupToUse = callbackLookup;
         if (callbackLookupToUse == null) {
-            callbackLookupToUse = new DOMCallbackLookup(securityHeader.getOwnerDocument());
+            callbackLookupToUse = new DOMCallbackLookup(securityHeader.getOwnerDocument(), true);
         }
         wsDocInfo.setCallbackLookup(callbackLookupToUse);
         wsDocInfo.setCrypto(requestData.getSigVerCrypto());
@@ -341,8 +344,14 @@ public class WSSecurityEngine {
                 //
                 Processor p = cfg.getProcessor(el);
                 if (p != null) {
-                    List<WSSecurityEngineResult> results =
-                        p.handleToken((Element) node, requestData, wsDocInfo);
+                    List<WSSecurityEngineResult> results;
+                    SecurityMetricsListener.Timer timer =
+                        SecurityMetrics.start(SecurityOperation.PROCESSOR, el.getLocalPart());
+                    try {
+                        results = p.handleToken((Element) node, requestData, wsDocInfo);
+                    } finally {
+                        timer.stop();
+                    }
                     if (!results.isEmpty()) {
                         returnResults.addAll(0, results);
                     }
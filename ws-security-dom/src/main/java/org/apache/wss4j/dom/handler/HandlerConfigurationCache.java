@@ -0,0 +1,350 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.dom.handler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.apache.wss4j.common.WSEncryptionPart;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+
+/**
+ * The decoded configuration of a WSHandler. Each configuration value (or group of values that
+ * are decoded together, such as the signature parameters) is decoded and validated the first time
+ * it is used, and found again by its String form(s) for the following messages, so that the
+ * configuration of an endpoint is not parsed for every message. A value that is set on the message
+ * context, rather than as an option of the handler, is found in the same way, so that a
+ * per-message configuration is still taken into account.
+ *
+ * The cache belongs to a single WSHandler, so it only holds the values of that handler. The number
+ * of values of each kind is bounded, a value that does not fit is decoded for every message. A
+ * value that fails to decode is not cached, so the error is raised for every message.
+ */
+final class HandlerConfigurationCache {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(HandlerConfigurationCache.class);
+
+    private static final int MAX_ENTRIES = 64;
+
+    private final Map<String, List<Pattern>> patterns = new ConcurrentHashMap<>();
+    private final Map<PartsKey, List<WSEncryptionPart>> parts = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> booleans = new ConcurrentHashMap<>();
+    private final Map<String, Integer> timesToLive = new ConcurrentHashMap<>();
+    private final Map<String, List<Integer>> actions = new ConcurrentHashMap<>();
+    private final Map<String, List<Integer>> handlerActions = new ConcurrentHashMap<>();
+    private final Map<DecodedKey, Object> decodedValues = new ConcurrentHashMap<>();
+
+    /**
+     * Decodes a group of configuration values into an object, which is shared by all of the
+     * messages with the same configuration values and so must not be modified.
+     */
+    interface Decoder<T> {
+        T decode() throws WSSecurityException;
+    }
+
+    /**
+     * Get the decoded form of a group of configuration values.
+     * @param name the name of the group of values
+     * @param values the String form of the values (which may be null)
+     * @param decoder decodes the values if they have not been decoded before
+     * @return the (shared) decoded form of the values
+     * @throws WSSecurityException if the values are invalid
+     */
+    @SuppressWarnings("unchecked")
+    <T> T getDecodedValue(String name, String[] values, Decoder<T> decoder) throws WSSecurityException {
+        DecodedKey key = new DecodedKey(name, values);
+        Object decodedValue = decodedValues.get(key);
+        if (decodedValue == null) {
+            decodedValue = decoder.decode();
+            if (decodedValue != null && decodedValues.size() < MAX_ENTRIES) {
+                decodedValues.put(key, decodedValue);
+            }
+        }
+        return (T) decodedValue;
+    }
+
+    /**
+     * Get a boolean configuration value, which is "true" or "1", or "false" or "0".
+     * @param value the String form of the value
+     * @return the boolean value, or null if the value is invalid
+     */
+    Boolean getBoolean(String value) {
+        Boolean booleanValue = booleans.get(value);
+        if (booleanValue == null) {
+            if ("0".equals(value) || "false".equals(value)) {
+                booleanValue = Boolean.FALSE;
+            } else if ("1".equals(value) || "true".equals(value)) {
+                booleanValue = Boolean.TRUE;
+            } else {
+                return null;
+            }
+            if (booleans.size() < MAX_ENTRIES) {
+                booleans.put(value, booleanValue);
+            }
+        }
+        return booleanValue;
+    }
+
+    /**
+     * Get a time to live configuration value.
+     * @param ttl the String form of the value
+     * @return the time to live in seconds, or -1 if the value is negative or not a number
+     */
+    int getTimeToLive(String ttl) {
+        Integer timeToLive = timesToLive.get(ttl);
+        if (timeToLive == null) {
+            try {
+                timeToLive = Math.max(Integer.parseInt(ttl), -1);
+            } catch (NumberFormatException e) {
+                timeToLive = -1;
+            }
+            if (timesToLive.size() < MAX_ENTRIES) {
+                timesToLive.put(ttl, timeToLive);
+            }
+        }
+        return timeToLive;
+    }
+
+    /**
+     * Get the action codes of a received action String.
+     * @param action the action String
+     * @return a new (modifiable) List of the action codes
+     * @throws WSSecurityException if an action is unknown
+     */
+    List<Integer> getActions(String action) throws WSSecurityException {
+        List<Integer> actionCodes = actions.get(action);
+        if (actionCodes == null) {
+            actionCodes = Collections.unmodifiableList(WSSecurityUtil.decodeAction(action));
+            if (actions.size() < MAX_ENTRIES) {
+                actions.put(action, actionCodes);
+            }
+        }
+        return new ArrayList<>(actionCodes);
+    }
+
+    /**
+     * Get the HandlerActions of an action String to be performed on an outbound message.
+     * @param action the action String
+     * @param wssConfig the WSSConfig that the custom actions are defined in
+     * @return a new List of new HandlerActions
+     * @throws WSSecurityException if an action is unknown
+     */
+    List<HandlerAction> getHandlerActions(String action, WSSConfig wssConfig) throws WSSecurityException {
+        List<Integer> actionCodes = handlerActions.get(action);
+        if (actionCodes == null) {
+            List<HandlerAction> decodedActions = WSSecurityUtil.decodeHandlerAction(action, wssConfig);
+            // Numeric (custom) actions depend on the WSSConfig, so they are decoded for every call
+            if (!containsDigit(action) && handlerActions.size() < MAX_ENTRIES) {
+                List<Integer> decodedCodes = new ArrayList<>(decodedActions.size());
+                for (HandlerAction handlerAction : decodedActions) {
+                    decodedCodes.add(handlerAction.getAction());
+                }
+                handlerActions.put(action, Collections.unmodifiableList(decodedCodes));
+            }
+            return decodedActions;
+        }
+
+        List<HandlerAction> decodedActions = new ArrayList<>(actionCodes.size());
+        for (Integer actionCode : actionCodes) {
+            decodedActions.add(new HandlerAction(actionCode));
+        }
+        return decodedActions;
+    }
+
+    /**
+     * Get the Patterns of a comma separated list of certificate constraints.
+     * @param constraints the comma separated list of regular expressions
+     * @return a new (modifiable) Collection of the compiled Patterns
+     * @throws WSSecurityException if a regular expression is invalid
+     */
+    List<Pattern> getPatterns(String constraints) throws WSSecurityException {
+        List<Pattern> compiledPatterns = patterns.get(constraints);
+        if (compiledPatterns == null) {
+            String[] constraintsList = constraints.split(",");
+            compiledPatterns = new ArrayList<>(constraintsList.length);
+            for (String constraint : constraintsList) {
+                try {
+                    compiledPatterns.add(Pattern.compile(constraint.trim()));
+                } catch (PatternSyntaxException ex) {
+                    LOG.debug(ex.getMessage(), ex);
+                    throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex);
+                }
+            }
+            compiledPatterns = Collections.unmodifiableList(compiledPatterns);
+            if (patterns.size() < MAX_ENTRIES) {
+                patterns.put(constraints, compiledPatterns);
+            }
+        }
+        return new ArrayList<>(compiledPatterns);
+    }
+
+    /**
+     * Add the parts of a part definition (for example "{Content}{namespace}Body;Token") to the
+     * given list. New WSEncryptionPart objects are created for every call, as they are modified
+     * when the message is secured.
+     * @param definition the part definition
+     * @param required whether the parts are required
+     * @param envelopeURI the SOAP envelope namespace of the message
+     * @param target the list to add the parts to
+     * @throws WSSecurityException if the part definition is invalid
+     */
+    void addParts(String definition, boolean required, String envelopeURI, List<WSEncryptionPart> target)
+        throws WSSecurityException {
+        PartsKey key = new PartsKey(definition, envelopeURI);
+        List<WSEncryptionPart> parsedParts = parts.get(key);
+        if (parsedParts == null) {
+            parsedParts = Collections.unmodifiableList(parseParts(definition, envelopeURI));
+            if (parts.size() < MAX_ENTRIES) {
+                parts.put(key, parsedParts);
+            }
+        }
+        for (WSEncryptionPart parsedPart : parsedParts) {
+            WSEncryptionPart encPart;
+            if (parsedPart.getId() != null) {
+                encPart = new WSEncryptionPart(parsedPart.getId(), parsedPart.getEncModifier());
+            } else {
+                encPart =
+                    new WSEncryptionPart(
+                        parsedPart.getName(), parsedPart.getNamespace(), parsedPart.getEncModifier()
+                    );
+            }
+            encPart.setRequired(required);
+            target.add(encPart);
+        }
+    }
+
+    private static List<WSEncryptionPart> parseParts(String definition, String envelopeURI)
+        throws WSSecurityException {
+        String[] rawParts = definition.split(";");
+        List<WSEncryptionPart> parsedParts = new ArrayList<>(rawParts.length);
+
+        for (int i = 0; i < rawParts.length; i++) {
+            String[] partDef = rawParts[i].split("}");
+
+            if (partDef.length == 1) {
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug("single partDef: '" + partDef[0] + "'");
+                }
+                parsedParts.add(new WSEncryptionPart(partDef[0].trim(), envelopeURI, "Content"));
+            } else if (partDef.length == 2) {
+                String mode = partDef[0].trim().substring(1);
+                String element = partDef[1].trim();
+                parsedParts.add(new WSEncryptionPart(element, mode));
+            } else if (partDef.length == 3) {
+                String mode = partDef[0].trim();
+                if (mode.length() <= 1) {
+                    mode = "Content";
+                } else {
+                    mode = mode.substring(1);
+                }
+                String nmSpace = partDef[1].trim();
+                if (nmSpace.length() <= 1) {
+                    nmSpace = envelopeURI;
+                } else {
+                    nmSpace = nmSpace.substring(1);
+                    if (nmSpace.equals(WSConstants.NULL_NS)) {
+                        nmSpace = null;
+                    }
+                }
+                String element = partDef[2].trim();
+                if (LOG.isDebugEnabled()) {
+                    LOG.debug(
+                        "partDefs: '" + mode + "' ,'" + nmSpace + "' ,'" + element + "'"
+                    );
+                }
+                parsedParts.add(new WSEncryptionPart(element, nmSpace, mode));
+            } else {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE,
+                        "empty",
+                        new Object[] {"WSHandler: wrong part definition: " + definition});
+            }
+        }
+        return parsedParts;
+    }
+
+    private static boolean containsDigit(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.isDigit(value.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class DecodedKey {
+        private final String name;
+        private final String[] values;
+
+        DecodedKey(String name, String[] values) {
+            this.name = name;
+            this.values = values;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof DecodedKey)) {
+                return false;
+            }
+            DecodedKey other = (DecodedKey) object;
+            return name.equals(other.name) && Arrays.equals(values, other.values);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * name.hashCode() + Arrays.hashCode(values);
+        }
+    }
+
+    private static final class PartsKey {
+        private final String definition;
+        private final String envelopeURI;
+
+        PartsKey(String definition, String envelopeURI) {
+            this.definition = definition;
+            this.envelopeURI = envelopeURI;
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof PartsKey)) {
+                return false;
+            }
+            PartsKey other = (PartsKey) object;
+            return definition.equals(other.definition) && Objects.equals(envelopeURI, other.envelopeURI);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * definition.hashCode() + Objects.hashCode(envelopeURI);
+        }
+    }
+}
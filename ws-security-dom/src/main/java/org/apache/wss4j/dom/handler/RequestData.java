@@ -25,6 +25,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.regex.Pattern;
 
 import javax.security.auth.callback.CallbackHandler;
@@ -34,7 +35,11 @@ import org.apache.wss4j.common.EncryptionActionToken;
 import org.apache.wss4j.common.SignatureActionToken;
 import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.DecryptedKeyCache;
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.SecurityContextTokenCache;
+import org.apache.wss4j.common.cache.SessionKeyCache;
+import org.apache.wss4j.common.cache.VerifiedAssertionCache;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.PasswordEncryptor;
@@ -192,6 +197,43 @@ public class RequestData {
 
     private boolean expandXopIncludeForSignature = true;
 
+    /**
+     * An Executor used to verify the digests of the attachment references of a Signature
+     * concurrently. The default is null, meaning that all references are verified on the
+     * calling thread.
+     */
+    private Executor referenceDigestExecutor;
+
+    /**
+     * A cache of the symmetric keys unwrapped from received EncryptedKeys. The default is null,
+     * meaning that every EncryptedKey is unwrapped with the private key.
+     */
+    private DecryptedKeyCache decryptedKeyCache;
+
+    /**
+     * A cache of the session keys generated (and wrapped) for a recipient. The default is null,
+     * meaning that a new session key is generated for every message.
+     */
+    private SessionKeyCache sessionKeyCache;
+
+    /**
+     * The Executor to encrypt the elements of a message on in parallel. The default is null,
+     * meaning that the elements are encrypted one after another on the calling thread.
+     */
+    private Executor encryptionExecutor;
+
+    /**
+     * A cache of the verified signed SAML Assertions. The default is null, meaning that the
+     * signature of every Assertion is verified.
+     */
+    private VerifiedAssertionCache verifiedAssertionCache;
+
+    /**
+     * A cache of the SecurityContextToken secrets. The default is null, meaning that the secret
+     * is requested from the CallbackHandler for every message.
+     */
+    private SecurityContextTokenCache securityContextTokenCache;
+
     public Object getMsgContext() {
         return msgContext;
     }
@@ -727,6 +769,91 @@ public class RequestData {
         this.expandXopIncludeForSignature = expandXopIncludeForSignature;
     }
 
+    public Executor getReferenceDigestExecutor() {
+        return referenceDigestExecutor;
+    }
+
+    /**
+     * Set an Executor used to verify the digests of the attachment ("cid:") references of a
+     * Signature concurrently. References to the SOAP message itself are always verified on the
+     * calling thread, as the DOM is not thread-safe. If an Executor is set, the attachment
+     * CallbackHandler must be thread-safe. The default is null, which verifies all references
+     * on the calling thread.
+     * @param referenceDigestExecutor the Executor used to verify attachment references
+     */
+    public void setReferenceDigestExecutor(Executor referenceDigestExecutor) {
+        this.referenceDigestExecutor = referenceDigestExecutor;
+    }
+
+    public DecryptedKeyCache getDecryptedKeyCache() {
+        return decryptedKeyCache;
+    }
+
+    /**
+     * Set a cache of the symmetric keys unwrapped from received EncryptedKeys. A key is cached
+     * per decryption Crypto, and is found again by the SHA-1 digest of the wrapped key. The
+     * default is null, which unwraps every EncryptedKey with the private key.
+     * @param decryptedKeyCache the cache of unwrapped keys
+     */
+    public void setDecryptedKeyCache(DecryptedKeyCache decryptedKeyCache) {
+        this.decryptedKeyCache = decryptedKeyCache;
+    }
+
+    public SessionKeyCache getSessionKeyCache() {
+        return sessionKeyCache;
+    }
+
+    /**
+     * Set a cache of the session keys generated for a recipient. A cached session key, and the
+     * EncryptedKey that wraps it, are reused for the following messages to the same recipient,
+     * until the key is rotated. The default is null, which generates a new key for every message.
+     * @param sessionKeyCache the cache of session keys
+     */
+    public void setSessionKeyCache(SessionKeyCache sessionKeyCache) {
+        this.sessionKeyCache = sessionKeyCache;
+    }
+
+    public Executor getEncryptionExecutor() {
+        return encryptionExecutor;
+    }
+
+    /**
+     * Set an Executor to encrypt the elements of a message on in parallel. The default is null,
+     * which encrypts the elements one after another on the calling thread.
+     * @param encryptionExecutor the Executor to encrypt the elements on
+     */
+    public void setEncryptionExecutor(Executor encryptionExecutor) {
+        this.encryptionExecutor = encryptionExecutor;
+    }
+
+    public VerifiedAssertionCache getVerifiedAssertionCache() {
+        return verifiedAssertionCache;
+    }
+
+    /**
+     * Set a cache of the signed SAML Assertions whose signature has been verified, and whose
+     * signing key has been trusted. The signature and trust verification is skipped for an
+     * Assertion that is received again. The default is null, which verifies every Assertion.
+     * @param verifiedAssertionCache the cache of verified Assertions
+     */
+    public void setVerifiedAssertionCache(VerifiedAssertionCache verifiedAssertionCache) {
+        this.verifiedAssertionCache = verifiedAssertionCache;
+    }
+
+    public SecurityContextTokenCache getSecurityContextTokenCache() {
+        return securityContextTokenCache;
+    }
+
+    /**
+     * Set a cache of the secrets of the SecurityContextTokens. A secret is requested from the
+     * CallbackHandler once for a conversation, until the cached secret expires. The default is
+     * null, which requests the secret for every message.
+     * @param securityContextTokenCache the cache of SecurityContextToken secrets
+     */
+    public void setSecurityContextTokenCache(SecurityContextTokenCache securityContextTokenCache) {
+        this.securityContextTokenCache = securityContextTokenCache;
+    }
+
     public Serializer getEncryptionSerializer() {
         return encryptionSerializer;
     }
@@ -22,7 +22,6 @@ package org.apache.wss4j.dom.handler;
 import java.security.cert.X509Certificate;
 import java.util.Arrays;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -30,19 +29,24 @@ import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.regex.Pattern;
-import java.util.regex.PatternSyntaxException;
+import java.util.concurrent.Executor;
 
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
 
 import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.action.Action;
 import org.apache.wss4j.dom.engine.WSSConfig;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
 import org.apache.wss4j.common.EncryptionActionToken;
+import org.apache.wss4j.common.SecurityActionToken;
 import org.apache.wss4j.common.SignatureActionToken;
 import org.apache.wss4j.common.SignatureEncryptionActionToken;
 import org.apache.wss4j.common.WSEncryptionPart;
+import org.apache.wss4j.common.cache.DecryptedKeyCache;
+import org.apache.wss4j.common.cache.SecurityContextTokenCache;
+import org.apache.wss4j.common.cache.SessionKeyCache;
+import org.apache.wss4j.common.cache.VerifiedAssertionCache;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
@@ -50,6 +54,9 @@ import org.apache.wss4j.common.crypto.JasyptPasswordEncryptor;
 import org.apache.wss4j.common.crypto.PasswordEncryptor;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityOperation;
 import org.apache.wss4j.common.util.Loader;
 import org.apache.wss4j.dom.message.WSSecHeader;
 import org.apache.wss4j.dom.message.token.SignatureConfirmation;
@@ -67,6 +74,33 @@ public abstract class WSHandler {
 
     private boolean doDebug = LOG.isDebugEnabled();
 
+    // The configuration values that are decoded together
+    private static final String[] USERNAME_TOKEN_PARAMETERS = {
+        WSHandlerConstants.PASSWORD_TYPE, WSHandlerConstants.ADD_USERNAMETOKEN_NONCE,
+        WSHandlerConstants.ADD_USERNAMETOKEN_CREATED, WSHandlerConstants.USE_DERIVED_KEY_FOR_MAC,
+        WSHandlerConstants.DERIVED_KEY_ITERATIONS
+    };
+    private static final String[] SIGNATURE_PARAMETERS = {
+        WSHandlerConstants.SIG_KEY_ID, WSHandlerConstants.SIG_ALGO,
+        WSHandlerConstants.DERIVED_TOKEN_REFERENCE, WSHandlerConstants.DERIVED_TOKEN_KEY_ID,
+        WSHandlerConstants.DERIVED_SIGNATURE_KEY_LENGTH, WSHandlerConstants.SIG_DIGEST_ALGO,
+        WSHandlerConstants.SIG_C14N_ALGO, WSHandlerConstants.USE_SINGLE_CERTIFICATE,
+        WSHandlerConstants.INCLUDE_SIGNATURE_TOKEN
+    };
+    private static final String[] ENCRYPTION_PARAMETERS = {
+        WSHandlerConstants.ENC_KEY_ID, WSHandlerConstants.ENC_SYM_ALGO,
+        WSHandlerConstants.ENC_KEY_TRANSPORT, WSHandlerConstants.DERIVED_TOKEN_REFERENCE,
+        WSHandlerConstants.DERIVED_TOKEN_KEY_ID, WSHandlerConstants.DERIVED_ENCRYPTION_KEY_LENGTH,
+        WSHandlerConstants.GET_SECRET_KEY_FROM_CALLBACK_HANDLER, WSHandlerConstants.ENC_DIGEST_ALGO,
+        WSHandlerConstants.ENC_MGF_ALGO, WSHandlerConstants.INCLUDE_ENCRYPTION_TOKEN
+    };
+    private static final String[] ALGORITHM_SUITE_PARAMETERS = {
+        WSHandlerConstants.SIG_ALGO, WSHandlerConstants.SIG_DIGEST_ALGO,
+        WSHandlerConstants.ENC_SYM_ALGO, WSHandlerConstants.ENC_KEY_TRANSPORT
+    };
+
+    private final HandlerConfigurationCache configurationCache = new HandlerConfigurationCache();
+
     /**
      * Performs all defined security actions to set-up the SOAP request.
      *
@@ -196,7 +230,7 @@ public abstract class WSHandler {
             String done =
                 (String)getProperty(reqData.getMsgContext(), WSHandlerConstants.SIG_CONF_DONE);
             if (done == null) {
-                wssConfig.getAction(WSConstants.SC).execute(this, null, doc, reqData);
+                executeAction(wssConfig.getAction(WSConstants.SC), null, doc, reqData);
             }
         }
 
@@ -227,8 +261,9 @@ public abstract class WSHandler {
             }
 
             if (WSConstants.NO_SECURITY != actionToDo.getAction()) {
-                wssConfig.getAction(actionToDo.getAction()).execute(
-                    this, actionToDo.getActionToken(), doc, reqData);
+                executeAction(
+                    wssConfig.getAction(actionToDo.getAction()), actionToDo.getActionToken(), doc, reqData
+                );
             }
         }
 
@@ -254,6 +289,18 @@ public abstract class WSHandler {
         }
     }
 
+    private void executeAction(
+        Action action, SecurityActionToken actionToken, Document doc, RequestData reqData
+    ) throws WSSecurityException {
+        SecurityMetricsListener.Timer timer =
+            SecurityMetrics.start(SecurityOperation.ACTION, action.getClass().getName());
+        try {
+            action.execute(this, actionToken, doc, reqData);
+        } finally {
+            timer.stop();
+        }
+    }
+
     private HandlerAction getSignatureActionThatSignsATimestamp(
         List<HandlerAction> actions, RequestData reqData
     ) {
@@ -325,6 +372,25 @@ public abstract class WSHandler {
             decodeBooleanConfigValue(mc, WSHandlerConstants.VALIDATE_SAML_SUBJECT_CONFIRMATION, true)
         );
 
+        if (reqData.getVerifiedAssertionCache() == null) {
+            Object verifiedAssertionCache = getOption(WSHandlerConstants.VERIFIED_ASSERTION_CACHE_INSTANCE);
+            if (verifiedAssertionCache == null) {
+                verifiedAssertionCache = getProperty(mc, WSHandlerConstants.VERIFIED_ASSERTION_CACHE_INSTANCE);
+            }
+            if (verifiedAssertionCache instanceof VerifiedAssertionCache) {
+                reqData.setVerifiedAssertionCache((VerifiedAssertionCache) verifiedAssertionCache);
+            }
+        }
+        if (reqData.getSecurityContextTokenCache() == null) {
+            Object securityContextTokenCache = getOption(WSHandlerConstants.SECURITY_CONTEXT_TOKEN_CACHE_INSTANCE);
+            if (securityContextTokenCache == null) {
+                securityContextTokenCache = getProperty(mc, WSHandlerConstants.SECURITY_CONTEXT_TOKEN_CACHE_INSTANCE);
+            }
+            if (securityContextTokenCache instanceof SecurityContextTokenCache) {
+                reqData.setSecurityContextTokenCache((SecurityContextTokenCache) securityContextTokenCache);
+            }
+        }
+
         boolean bspCompliant =
             decodeBooleanConfigValue(mc, WSHandlerConstants.IS_BSP_COMPLIANT, true);
         if (!bspCompliant) {
@@ -491,39 +557,54 @@ public abstract class WSHandler {
         throws WSSecurityException {
         Object mc = reqData.getMsgContext();
 
+        UsernameTokenParameters parameters =
+            configurationCache.getDecodedValue(
+                "UsernameToken", getStrings(USERNAME_TOKEN_PARAMETERS, mc),
+                () -> decodeUsernameTokenParameters(mc)
+            );
+        if (parameters.passwordTypeSet) {
+            reqData.setPwType(parameters.passwordType);
+        }
+        reqData.setAddUsernameTokenNonce(parameters.addNonce);
+        reqData.setAddUsernameTokenCreated(parameters.addCreated);
+        if (parameters.useDerivedKeyForMAC) {
+            reqData.setUseDerivedKeyForMAC(true);
+        }
+        if (parameters.derivedKeyIterations != null) {
+            reqData.setDerivedKeyIterations(parameters.derivedKeyIterations);
+        }
+    }
+
+    private UsernameTokenParameters decodeUsernameTokenParameters(Object mc)
+        throws WSSecurityException {
+        UsernameTokenParameters parameters = new UsernameTokenParameters();
+
         String type = getString(WSHandlerConstants.PASSWORD_TYPE, mc);
         if (type != null) {
             if (WSConstants.PW_TEXT.equals(type)) {
-                reqData.setPwType(WSConstants.PASSWORD_TEXT);
+                parameters.passwordType = WSConstants.PASSWORD_TEXT;
             } else if (WSConstants.PW_DIGEST.equals(type)) {
-                reqData.setPwType(WSConstants.PASSWORD_DIGEST);
-            } else if (WSConstants.PW_NONE.equals(type)) {
-                reqData.setPwType(null);
-            } else {
+                parameters.passwordType = WSConstants.PASSWORD_DIGEST;
+            } else if (!WSConstants.PW_NONE.equals(type)) {
                 throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE,
                         "empty", new Object[] {"Unknown password type encoding: " + type});
             }
+            parameters.passwordTypeSet = true;
         }
 
-        boolean addNonce =
+        parameters.addNonce =
             decodeBooleanConfigValue(mc, WSHandlerConstants.ADD_USERNAMETOKEN_NONCE, false);
-        reqData.setAddUsernameTokenNonce(addNonce);
-
-        boolean addCreated =
+        parameters.addCreated =
             decodeBooleanConfigValue(mc, WSHandlerConstants.ADD_USERNAMETOKEN_CREATED, false);
-        reqData.setAddUsernameTokenCreated(addCreated);
 
         String derivedMAC = getString(WSHandlerConstants.USE_DERIVED_KEY_FOR_MAC, mc);
-        boolean useDerivedKeyForMAC = Boolean.parseBoolean(derivedMAC);
-        if (useDerivedKeyForMAC) {
-            reqData.setUseDerivedKeyForMAC(useDerivedKeyForMAC);
-        }
+        parameters.useDerivedKeyForMAC = Boolean.parseBoolean(derivedMAC);
 
         String iterations = getString(WSHandlerConstants.DERIVED_KEY_ITERATIONS, mc);
         if (iterations != null) {
-            int iIterations = Integer.parseInt(iterations);
-            reqData.setDerivedKeyIterations(iIterations);
+            parameters.derivedKeyIterations = Integer.parseInt(iterations);
         }
+        return parameters;
     }
 
     // Convert various Signature configuration into a single SignatureActionToken to be set on
@@ -545,6 +626,45 @@ public abstract class WSHandler {
             actionToken.setUser(reqData.getUsername());
         }
 
+        // The decoded token is shared by the messages with the same configuration, so its values
+        // are copied to the token of the message
+        SignatureActionToken decodedToken =
+            configurationCache.getDecodedValue(
+                "Signature", getStrings(SIGNATURE_PARAMETERS, mc), () -> decodeSignatureToken(mc)
+            );
+        if (decodedToken.getKeyIdentifierId() != 0) {
+            actionToken.setKeyIdentifierId(decodedToken.getKeyIdentifierId());
+        }
+        actionToken.setSignatureAlgorithm(decodedToken.getSignatureAlgorithm());
+        actionToken.setDerivedKeyTokenReference(decodedToken.getDerivedKeyTokenReference());
+        if (decodedToken.getDerivedKeyIdentifier() != 0) {
+            actionToken.setDerivedKeyIdentifier(decodedToken.getDerivedKeyIdentifier());
+        }
+        if (decodedToken.getDerivedKeyLength() != 0) {
+            actionToken.setDerivedKeyLength(decodedToken.getDerivedKeyLength());
+        }
+        actionToken.setDigestAlgorithm(decodedToken.getDigestAlgorithm());
+        actionToken.setC14nAlgorithm(decodedToken.getC14nAlgorithm());
+        actionToken.setUseSingleCert(decodedToken.isUseSingleCert());
+        actionToken.setIncludeToken(decodedToken.isIncludeToken());
+
+        boolean use200512Namespace =
+            decodeBooleanConfigValue(mc, WSHandlerConstants.USE_2005_12_NAMESPACE, true);
+        reqData.setUse200512Namespace(use200512Namespace);
+
+        String parts = getString(WSHandlerConstants.SIGNATURE_PARTS, mc);
+        if (parts != null) {
+            splitEncParts(true, parts, actionToken.getParts(), reqData);
+        }
+        parts = getString(WSHandlerConstants.OPTIONAL_SIGNATURE_PARTS, mc);
+        if (parts != null) {
+            splitEncParts(false, parts, actionToken.getParts(), reqData);
+        }
+    }
+
+    private SignatureActionToken decodeSignatureToken(Object mc) throws WSSecurityException {
+        SignatureActionToken actionToken = new SignatureActionToken();
+
         String keyId = getString(WSHandlerConstants.SIG_KEY_ID, mc);
         if (keyId != null) {
             Integer id = WSHandlerConstants.getKeyIdentifier(keyId);
@@ -599,19 +719,6 @@ public abstract class WSHandler {
         String c14nAlgo = getString(WSHandlerConstants.SIG_C14N_ALGO, mc);
         actionToken.setC14nAlgorithm(c14nAlgo);
 
-        boolean use200512Namespace =
-            decodeBooleanConfigValue(mc, WSHandlerConstants.USE_2005_12_NAMESPACE, true);
-        reqData.setUse200512Namespace(use200512Namespace);
-
-        String parts = getString(WSHandlerConstants.SIGNATURE_PARTS, mc);
-        if (parts != null) {
-            splitEncParts(true, parts, actionToken.getParts(), reqData);
-        }
-        parts = getString(WSHandlerConstants.OPTIONAL_SIGNATURE_PARTS, mc);
-        if (parts != null) {
-            splitEncParts(false, parts, actionToken.getParts(), reqData);
-        }
-
         boolean useSingleCert =
             decodeBooleanConfigValue(mc, WSHandlerConstants.USE_SINGLE_CERTIFICATE, true);
         actionToken.setUseSingleCert(useSingleCert);
@@ -619,6 +726,7 @@ public abstract class WSHandler {
         boolean includeToken =
             decodeBooleanConfigValue(mc, WSHandlerConstants.INCLUDE_SIGNATURE_TOKEN, false);
         actionToken.setIncludeToken(includeToken);
+        return actionToken;
     }
 
     protected void decodeAlgorithmSuite(RequestData reqData) throws WSSecurityException {
@@ -627,6 +735,17 @@ public abstract class WSHandler {
             return;
         }
 
+        // The AlgorithmSuite is only read when processing a message, so it is shared by the
+        // messages with the same configuration
+        AlgorithmSuite algorithmSuite =
+            configurationCache.getDecodedValue(
+                "AlgorithmSuite", getStrings(ALGORITHM_SUITE_PARAMETERS, mc),
+                () -> decodeAlgorithmSuite(mc)
+            );
+        reqData.setAlgorithmSuite(algorithmSuite);
+    }
+
+    private AlgorithmSuite decodeAlgorithmSuite(Object mc) {
         AlgorithmSuite algorithmSuite = new AlgorithmSuite();
 
         String signatureAlgorithm = getString(WSHandlerConstants.SIG_ALGO, mc);
@@ -646,8 +765,7 @@ public abstract class WSHandler {
         if (transportAlgorithm != null && !"".equals(transportAlgorithm)) {
             algorithmSuite.addKeyWrapAlgorithm(transportAlgorithm);
         }
-
-        reqData.setAlgorithmSuite(algorithmSuite);
+        return algorithmSuite;
     }
 
     // Convert various Encryption configuration into a single EncryptionActionToken to be set on
@@ -661,6 +779,87 @@ public abstract class WSHandler {
             actionToken = new EncryptionActionToken();
             reqData.setEncryptionToken(actionToken);
         }
+
+        // The decoded token is shared by the messages with the same configuration, so its values
+        // are copied to the token of the message
+        EncryptionActionToken decodedToken =
+            configurationCache.getDecodedValue(
+                "Encryption", getStrings(ENCRYPTION_PARAMETERS, mc), () -> decodeEncryptionToken(mc)
+            );
+        if (decodedToken.getKeyIdentifierId() != 0) {
+            actionToken.setKeyIdentifierId(decodedToken.getKeyIdentifierId());
+        }
+        actionToken.setSymmetricAlgorithm(decodedToken.getSymmetricAlgorithm());
+        actionToken.setKeyTransportAlgorithm(decodedToken.getKeyTransportAlgorithm());
+        actionToken.setDerivedKeyTokenReference(decodedToken.getDerivedKeyTokenReference());
+        if (decodedToken.getDerivedKeyIdentifier() != 0) {
+            actionToken.setDerivedKeyIdentifier(decodedToken.getDerivedKeyIdentifier());
+        }
+        if (decodedToken.getDerivedKeyLength() != 0) {
+            actionToken.setDerivedKeyLength(decodedToken.getDerivedKeyLength());
+        }
+        actionToken.setGetSymmetricKeyFromCallbackHandler(
+            decodedToken.isGetSymmetricKeyFromCallbackHandler()
+        );
+        actionToken.setDigestAlgorithm(decodedToken.getDigestAlgorithm());
+        actionToken.setMgfAlgorithm(decodedToken.getMgfAlgorithm());
+        actionToken.setIncludeToken(decodedToken.isIncludeToken());
+
+        boolean use200512Namespace =
+            decodeBooleanConfigValue(mc, WSHandlerConstants.USE_2005_12_NAMESPACE, true);
+        reqData.setUse200512Namespace(use200512Namespace);
+
+        String encSymEncKey = getString(WSHandlerConstants.ENC_SYM_ENC_KEY, mc);
+        if (encSymEncKey != null) {
+            boolean encSymEndKeyBoolean = Boolean.parseBoolean(encSymEncKey);
+            actionToken.setEncSymmetricEncryptionKey(encSymEndKeyBoolean);
+        }
+
+        String encUser = getString(WSHandlerConstants.ENCRYPTION_USER, mc);
+        if (encUser != null) {
+            actionToken.setUser(encUser);
+        } else {
+            actionToken.setUser(reqData.getUsername());
+        }
+        if (actionToken.isEncSymmetricEncryptionKey() && actionToken.getUser() == null) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE,
+                    "empty",
+                    new Object[] {"WSHandler: Encryption: no username"});
+        }
+
+        handleSpecialUser(reqData);
+
+        String encParts = getString(WSHandlerConstants.ENCRYPTION_PARTS, mc);
+        if (encParts != null) {
+            splitEncParts(true, encParts, actionToken.getParts(), reqData);
+        }
+        encParts = getString(WSHandlerConstants.OPTIONAL_ENCRYPTION_PARTS, mc);
+        if (encParts != null) {
+            splitEncParts(false, encParts, actionToken.getParts(), reqData);
+        }
+
+        if (reqData.getSessionKeyCache() == null) {
+            Object sessionKeyCache = getOption(WSHandlerConstants.SESSION_KEY_CACHE_INSTANCE);
+            if (sessionKeyCache == null) {
+                sessionKeyCache = getProperty(mc, WSHandlerConstants.SESSION_KEY_CACHE_INSTANCE);
+            }
+            if (sessionKeyCache instanceof SessionKeyCache) {
+                reqData.setSessionKeyCache((SessionKeyCache) sessionKeyCache);
+            }
+        }
+        if (reqData.getEncryptionExecutor() == null) {
+            Object encryptionExecutor = getOption(WSHandlerConstants.ENCRYPTION_EXECUTOR_INSTANCE);
+            if (encryptionExecutor == null) {
+                encryptionExecutor = getProperty(mc, WSHandlerConstants.ENCRYPTION_EXECUTOR_INSTANCE);
+            }
+            if (encryptionExecutor instanceof Executor) {
+                reqData.setEncryptionExecutor((Executor) encryptionExecutor);
+            }
+        }
+    }
+
+    private EncryptionActionToken decodeEncryptionToken(Object mc) throws WSSecurityException {
+        EncryptionActionToken actionToken = new EncryptionActionToken();
         //
         // If the following parameters are no used (they return null) then the
         // default values of WSS4J are used.
@@ -716,10 +915,6 @@ public abstract class WSHandler {
             }
         }
 
-        boolean use200512Namespace =
-            decodeBooleanConfigValue(mc, WSHandlerConstants.USE_2005_12_NAMESPACE, true);
-        reqData.setUse200512Namespace(use200512Namespace);
-
         boolean getSecretKeyFromCallbackHandler =
             decodeBooleanConfigValue(mc, WSHandlerConstants.GET_SECRET_KEY_FROM_CALLBACK_HANDLER, false);
         actionToken.setGetSymmetricKeyFromCallbackHandler(getSecretKeyFromCallbackHandler);
@@ -730,38 +925,10 @@ public abstract class WSHandler {
         String mgfAlgo = getString(WSHandlerConstants.ENC_MGF_ALGO, mc);
         actionToken.setMgfAlgorithm(mgfAlgo);
 
-        String encSymEncKey = getString(WSHandlerConstants.ENC_SYM_ENC_KEY, mc);
-        if (encSymEncKey != null) {
-            boolean encSymEndKeyBoolean = Boolean.parseBoolean(encSymEncKey);
-            actionToken.setEncSymmetricEncryptionKey(encSymEndKeyBoolean);
-        }
-
-        String encUser = getString(WSHandlerConstants.ENCRYPTION_USER, mc);
-        if (encUser != null) {
-            actionToken.setUser(encUser);
-        } else {
-            actionToken.setUser(reqData.getUsername());
-        }
-        if (actionToken.isEncSymmetricEncryptionKey() && actionToken.getUser() == null) {
-            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE,
-                    "empty",
-                    new Object[] {"WSHandler: Encryption: no username"});
-        }
-
-        handleSpecialUser(reqData);
-
-        String encParts = getString(WSHandlerConstants.ENCRYPTION_PARTS, mc);
-        if (encParts != null) {
-            splitEncParts(true, encParts, actionToken.getParts(), reqData);
-        }
-        encParts = getString(WSHandlerConstants.OPTIONAL_ENCRYPTION_PARTS, mc);
-        if (encParts != null) {
-            splitEncParts(false, encParts, actionToken.getParts(), reqData);
-        }
-
         boolean includeToken =
             decodeBooleanConfigValue(mc, WSHandlerConstants.INCLUDE_ENCRYPTION_TOKEN, false);
         actionToken.setIncludeToken(includeToken);
+        return actionToken;
     }
 
     /**
@@ -773,20 +940,7 @@ public abstract class WSHandler {
         if (!timestamp) {
             tag = WSHandlerConstants.TTL_USERNAMETOKEN;
         }
-        String ttl = getString(tag, reqData.getMsgContext());
-        int defaultTimeToLive = 300;
-        if (ttl != null) {
-            try {
-                int ttlI = Integer.parseInt(ttl);
-                if (ttlI < 0) {
-                    return defaultTimeToLive;
-                }
-                return ttlI;
-            } catch (NumberFormatException e) {
-                return defaultTimeToLive;
-            }
-        }
-        return defaultTimeToLive;
+        return decodeTimeToLive(getString(tag, reqData.getMsgContext()), 300);
     }
 
     /**
@@ -798,20 +952,17 @@ public abstract class WSHandler {
         if (!timestamp) {
             tag = WSHandlerConstants.TTL_FUTURE_USERNAMETOKEN;
         }
-        String ttl = getString(tag, reqData.getMsgContext());
-        int defaultFutureTimeToLive = 60;
+        return decodeTimeToLive(getString(tag, reqData.getMsgContext()), 60);
+    }
+
+    private int decodeTimeToLive(String ttl, int defaultTimeToLive) {
         if (ttl != null) {
-            try {
-                int ttlI = Integer.parseInt(ttl);
-                if (ttlI < 0) {
-                    return defaultFutureTimeToLive;
-                }
-                return ttlI;
-            } catch (NumberFormatException e) {
-                return defaultFutureTimeToLive;
+            int timeToLive = configurationCache.getTimeToLive(ttl);
+            if (timeToLive >= 0) {
+                return timeToLive;
             }
         }
-        return defaultFutureTimeToLive;
+        return defaultTimeToLive;
     }
 
     protected String decodePasswordType(RequestData reqData) throws WSSecurityException {
@@ -835,11 +986,9 @@ public abstract class WSHandler {
         if (value == null) {
             return defaultToTrue;
         }
-        if ("0".equals(value) || "false".equals(value)) {
-            return false;
-        }
-        if ("1".equals(value) || "true".equals(value)) {
-            return true;
+        Boolean booleanValue = configurationCache.getBoolean(value);
+        if (booleanValue != null) {
+            return booleanValue;
         }
 
         throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE,
@@ -848,6 +997,44 @@ public abstract class WSHandler {
         );
     }
 
+    /**
+     * Decode the action String of a received message. The action codes are decoded once for
+     * each action String that is configured for this handler.
+     * @param action the action String
+     * @return a List of the action codes
+     * @throws WSSecurityException if an action is unknown
+     */
+    protected List<Integer> decodeAction(String action) throws WSSecurityException {
+        if (action == null || "".equals(action)) {
+            return Collections.emptyList();
+        }
+        return configurationCache.getActions(action);
+    }
+
+    /**
+     * Decode the action String of an outbound message. The actions are decoded once for each
+     * action String that is configured for this handler, unless it contains a custom action.
+     * @param action the action String
+     * @param wssConfig the WSSConfig that the custom actions are defined in
+     * @return a List of the HandlerActions to perform
+     * @throws WSSecurityException if an action is unknown
+     */
+    protected List<HandlerAction> decodeHandlerAction(String action, WSSConfig wssConfig)
+        throws WSSecurityException {
+        if (action == null || "".equals(action)) {
+            return Collections.emptyList();
+        }
+        return configurationCache.getHandlerActions(action, wssConfig);
+    }
+
+    private String[] getStrings(String[] keys, Object mc) {
+        String[] values = new String[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            values[i] = getString(keys[i], mc);
+        }
+        return values;
+    }
+
     /**
      * Hook to allow subclasses to load their Signature creation Crypto however they see
      * fit.
@@ -1209,55 +1396,11 @@ public abstract class WSHandler {
     private void splitEncParts(boolean required, String tmpS,
                                List<WSEncryptionPart> parts, RequestData reqData)
         throws WSSecurityException {
-        WSEncryptionPart encPart = null;
-        String[] rawParts = tmpS.split(";");
-
-        for (int i = 0; i < rawParts.length; i++) {
-            String[] partDef = rawParts[i].split("}");
-
-            if (partDef.length == 1) {
-                if (doDebug) {
-                    LOG.debug("single partDef: '" + partDef[0] + "'");
-                }
-                encPart =
-                    new WSEncryptionPart(partDef[0].trim(),
-                            reqData.getSoapConstants().getEnvelopeURI(),
-                            "Content");
-            } else if (partDef.length == 2) {
-                String mode = partDef[0].trim().substring(1);
-                String element = partDef[1].trim();
-                encPart = new WSEncryptionPart(element, mode);
-            } else if (partDef.length == 3) {
-                String mode = partDef[0].trim();
-                if (mode.length() <= 1) {
-                    mode = "Content";
-                } else {
-                    mode = mode.substring(1);
-                }
-                String nmSpace = partDef[1].trim();
-                if (nmSpace.length() <= 1) {
-                    nmSpace = reqData.getSoapConstants().getEnvelopeURI();
-                } else {
-                    nmSpace = nmSpace.substring(1);
-                    if (nmSpace.equals(WSConstants.NULL_NS)) {
-                        nmSpace = null;
-                    }
-                }
-                String element = partDef[2].trim();
-                if (doDebug) {
-                    LOG.debug(
-                        "partDefs: '" + mode + "' ,'" + nmSpace + "' ,'" + element + "'"
-                    );
-                }
-                encPart = new WSEncryptionPart(element, nmSpace, mode);
-            } else {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE,
-                        "empty",
-                        new Object[] {"WSHandler: wrong part definition: " + tmpS});
-            }
-            encPart.setRequired(required);
-            parts.add(encPart);
+        String envelopeURI = null;
+        if (reqData.getSoapConstants() != null) {
+            envelopeURI = reqData.getSoapConstants().getEnvelopeURI();
         }
+        configurationCache.addParts(tmpS, required, envelopeURI, parts);
     }
 
     @SuppressWarnings("unchecked")
@@ -1318,45 +1461,30 @@ public abstract class WSHandler {
         String certConstraints =
             getString(WSHandlerConstants.SIG_SUBJECT_CERT_CONSTRAINTS, reqData.getMsgContext());
         if (certConstraints != null) {
-            String[] certConstraintsList = certConstraints.split(",");
-            if (certConstraintsList != null) {
-                Collection<Pattern> subjectCertConstraints =
-                    new ArrayList<>(certConstraintsList.length);
-                for (String certConstraint : certConstraintsList) {
-                    try {
-                        subjectCertConstraints.add(Pattern.compile(certConstraint.trim()));
-                    } catch (PatternSyntaxException ex) {
-                        LOG.debug(ex.getMessage(), ex);
-                        throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex);
-                    }
-                }
-                reqData.setSubjectCertConstraints(subjectCertConstraints);
-            }
+            reqData.setSubjectCertConstraints(configurationCache.getPatterns(certConstraints));
+        }
+        String issuerCertConstraints =
+            getString(WSHandlerConstants.SIG_ISSUER_CERT_CONSTRAINTS, reqData.getMsgContext());
+        if (issuerCertConstraints != null) {
+            reqData.setIssuerDNPatterns(configurationCache.getPatterns(issuerCertConstraints));
         }
-        String issuerCertConstraintsStringValue =
-                    getString(WSHandlerConstants.SIG_ISSUER_CERT_CONSTRAINTS, reqData.getMsgContext());
-                if (issuerCertConstraintsStringValue != null) {
-                    String[] issuerCertConstraintsList = issuerCertConstraintsStringValue.split(",");
-                    if (issuerCertConstraintsList != null) {
-                        Collection<Pattern> issuerCertConstraints =
-                            new ArrayList<>(issuerCertConstraintsList.length);
-                        for (String certConstraint : issuerCertConstraintsList) {
-                            try {
-                                issuerCertConstraints.add(Pattern.compile(certConstraint.trim()));
-                            } catch (PatternSyntaxException ex) {
-                                LOG.debug(ex.getMessage(), ex);
-                                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, ex);
-                            }
-                        }
-                        reqData.setIssuerDNPatterns(issuerCertConstraints);
-                    }
-                }
 
         boolean expandXOP =
             decodeBooleanConfigValue(
                 reqData.getMsgContext(), WSHandlerConstants.EXPAND_XOP_INCLUDE_FOR_SIGNATURE, true
             );
         reqData.setExpandXopIncludeForSignature(expandXOP);
+
+        if (reqData.getReferenceDigestExecutor() == null) {
+            Object executor = getOption(WSHandlerConstants.REFERENCE_DIGEST_EXECUTOR_INSTANCE);
+            if (executor == null) {
+                executor =
+                    getProperty(reqData.getMsgContext(), WSHandlerConstants.REFERENCE_DIGEST_EXECUTOR_INSTANCE);
+            }
+            if (executor instanceof Executor) {
+                reqData.setReferenceDigestExecutor((Executor) executor);
+            }
+        }
     }
 
     /*
@@ -1375,6 +1503,17 @@ public abstract class WSHandler {
                 false
             );
         reqData.setAllowRSA15KeyTransportAlgorithm(allowRsa15);
+
+        if (reqData.getDecryptedKeyCache() == null) {
+            Object decryptedKeyCache = getOption(WSHandlerConstants.DECRYPTED_KEY_CACHE_INSTANCE);
+            if (decryptedKeyCache == null) {
+                decryptedKeyCache =
+                    getProperty(reqData.getMsgContext(), WSHandlerConstants.DECRYPTED_KEY_CACHE_INSTANCE);
+            }
+            if (decryptedKeyCache instanceof DecryptedKeyCache) {
+                reqData.setDecryptedKeyCache((DecryptedKeyCache) decryptedKeyCache);
+            }
+        }
     }
 
     /**
@@ -1440,4 +1579,17 @@ public abstract class WSHandler {
     public abstract String getPassword(Object msgContext);
 
     public abstract void setPassword(Object msgContext, String password);
+
+    /**
+     * The decoded UsernameToken configuration, which is shared by the messages with the same
+     * configuration
+     */
+    private static final class UsernameTokenParameters {
+        private boolean passwordTypeSet;
+        private String passwordType;
+        private boolean addNonce;
+        private boolean addCreated;
+        private boolean useDerivedKeyForMAC;
+        private Integer derivedKeyIterations;
+    }
 }
@@ -21,6 +21,7 @@ package org.apache.wss4j.dom.message;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import javax.crypto.SecretKey;
 
@@ -50,6 +51,7 @@ public class WSSecDKEncrypt extends WSSecDerivedKeyBase {
     private List<Element> attachmentEncryptedDataElements;
     
     private Serializer encryptionSerializer;
+    private Executor encryptionExecutor;
 
     public WSSecDKEncrypt() {
         super();
@@ -133,7 +135,7 @@ public class WSSecDKEncrypt extends WSSecDerivedKeyBase {
             WSSecEncrypt.doEncryption(
                 document, getIdAllocator(), keyInfo, key, symEncAlgo, references, callbackLookup,
                 attachmentCallbackHandler, attachmentEncryptedDataElements, storeBytesInAttachment,
-                encryptionSerializer
+                encryptionSerializer, encryptionExecutor
             );
         if (dataRef == null) {
             dataRef =
@@ -220,4 +222,17 @@ public class WSSecDKEncrypt extends WSSecDerivedKeyBase {
     public void setEncryptionSerializer(Serializer encryptionSerializer) {
         this.encryptionSerializer = encryptionSerializer;
     }
+
+    public Executor getEncryptionExecutor() {
+        return encryptionExecutor;
+    }
+
+    /**
+     * Set an Executor to encrypt the elements on in parallel.
+     * @see WSSecEncrypt#setEncryptionExecutor(Executor)
+     * @param encryptionExecutor the Executor to encrypt the elements on
+     */
+    public void setEncryptionExecutor(Executor encryptionExecutor) {
+        this.encryptionExecutor = encryptionExecutor;
+    }
 }
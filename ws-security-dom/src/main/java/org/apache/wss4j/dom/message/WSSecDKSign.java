@@ -42,6 +42,9 @@ import org.w3c.dom.Element;
 import org.apache.wss4j.common.WSEncryptionPart;
 import org.apache.wss4j.common.derivedKey.ConversationConstants;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityOperation;
 import org.apache.wss4j.common.token.Reference;
 import org.apache.wss4j.common.token.SecurityTokenReference;
 import org.apache.wss4j.common.util.KeyUtils;
@@ -271,7 +274,14 @@ public class WSSecDKSign extends WSSecDerivedKeyBase {
             // Add the elements to sign to the Signature Context
             wsDocInfo.setTokensOnContext((DOMSignContext)signContext);
 
-            sig.sign(signContext);
+            SecurityMetricsListener.Timer timer = SecurityMetrics.start(
+                SecurityOperation.SIGN, sig.getSignedInfo().getSignatureMethod().getAlgorithm()
+            );
+            try {
+                sig.sign(signContext);
+            } finally {
+                timer.stop();
+            }
 
             signatureValue = sig.getSignatureValue().getValue();
         } catch (Exception ex) {
@@ -19,13 +19,22 @@
 
 package org.apache.wss4j.dom.message;
 
+import java.io.ByteArrayInputStream;
 import java.security.cert.X509Certificate;
 import java.security.spec.AlgorithmParameterSpec;
 import java.util.ArrayList;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
@@ -43,6 +52,9 @@ import org.apache.wss4j.common.ext.Attachment;
 import org.apache.wss4j.common.ext.AttachmentRequestCallback;
 import org.apache.wss4j.common.ext.AttachmentResultCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityOperation;
 import org.apache.wss4j.common.token.Reference;
 import org.apache.wss4j.common.token.SecurityTokenReference;
 import org.apache.wss4j.common.util.AttachmentUtils;
@@ -53,6 +65,7 @@ import org.apache.wss4j.dom.WsuIdAllocator;
 import org.apache.wss4j.dom.callback.CallbackLookup;
 import org.apache.wss4j.dom.callback.DOMCallbackLookup;
 import org.apache.wss4j.dom.message.token.KerberosSecurity;
+import org.apache.wss4j.dom.util.EncryptionUtils;
 import org.apache.wss4j.dom.util.WSSecurityUtil;
 import org.apache.xml.security.algorithms.JCEMapper;
 import org.apache.xml.security.c14n.Canonicalizer;
@@ -108,6 +121,8 @@ public class WSSecEncrypt extends WSSecEncryptedKey {
     
     private Serializer encryptionSerializer;
 
+    private Executor encryptionExecutor;
+
     public WSSecEncrypt() {
         super();
     }
@@ -129,6 +144,7 @@ public class WSSecEncrypt extends WSSecEncryptedKey {
     public void prepare(Document doc, Crypto crypto) throws WSSecurityException {
         document = doc;
         attachmentEncryptedDataElements = new ArrayList<>();
+        checkSessionKeyReuse();
 
         //
         // Set up the symmetric key
@@ -264,7 +280,7 @@ public class WSSecEncrypt extends WSSecEncryptedKey {
             doEncryption(
                 document, getIdAllocator(), keyInfo, secretKeySpec, getSymmetricEncAlgorithm(), references,
                     callbackLookup, attachmentCallbackHandler, attachmentEncryptedDataElements,
-                    storeBytesInAttachment
+                    storeBytesInAttachment, null, encryptionExecutor
             );
         if (encDataRefs.isEmpty()) {
             return null;
@@ -387,6 +403,45 @@ public class WSSecEncrypt extends WSSecEncryptedKey {
             boolean storeBytesInAttachment,
             Serializer encryptionSerializer
     ) throws WSSecurityException {
+        return doEncryption(
+                            doc, idAllocator, keyInfo, secretKey, encryptionAlgorithm,
+                            references, callbackLookup, attachmentCallbackHandler,
+                            attachmentEncryptedDataElements, storeBytesInAttachment, encryptionSerializer, null);
+    }
+
+    /**
+     * Perform encryption on the SOAP envelope.
+     * @param doc The document containing the SOAP envelope as document element
+     * @param idAllocator A WsuIdAllocator used to generate wsu:ID's
+     * @param keyInfo The KeyInfo object to set in EncryptedData
+     * @param secretKey The SecretKey object with which to encrypt data
+     * @param encryptionAlgorithm The encryption algorithm URI to use
+     * @param references The list of references to encrypt
+     * @param callbackLookup The CallbackLookup used to find the elements to encrypt
+     * @param attachmentCallbackHandler The CallbackHandler used to get and set attachments
+     * @param attachmentEncryptedDataElements The list that the EncryptedData elements of the
+     * attachments are added to
+     * @param storeBytesInAttachment Whether to store the encrypted bytes in an attachment
+     * @param encryptionSerializer The Serializer to use, or null for the default Serializer
+     * @param executor If this is not null, independent elements are encrypted in parallel
+     * on the Executor, see {@link #setEncryptionExecutor(Executor)}
+     * @return a List of references to EncryptedData elements
+     * @throws WSSecurityException
+     */
+    public static List<String> doEncryption(
+            Document doc,
+            WsuIdAllocator idAllocator,
+            KeyInfo keyInfo,
+            SecretKey secretKey,
+            String encryptionAlgorithm,
+            List<WSEncryptionPart> references,
+            CallbackLookup callbackLookup,
+            CallbackHandler attachmentCallbackHandler,
+            List<Element> attachmentEncryptedDataElements,
+            boolean storeBytesInAttachment,
+            Serializer encryptionSerializer,
+            Executor executor
+    ) throws WSSecurityException {
 
         XMLCipher xmlCipher = null;
         try {
@@ -400,6 +455,16 @@ public class WSSecEncrypt extends WSSecEncryptedKey {
             xmlCipher.setSerializer(encryptionSerializer);
         }
 
+        if (executor != null && !storeBytesInAttachment) {
+            List<String> encDataRef =
+                doParallelEncryption(doc, idAllocator, keyInfo, secretKey, encryptionAlgorithm, references,
+                                     callbackLookup, attachmentCallbackHandler, attachmentEncryptedDataElements,
+                                     xmlCipher, executor);
+            if (encDataRef != null) {
+                return encDataRef;
+            }
+        }
+
         List<String> encDataRef = new ArrayList<>();
         WSEncryptionPart attachmentEncryptionPart = null;
         for (int part = 0; part < references.size(); part++) {
@@ -446,7 +511,7 @@ public class WSSecEncrypt extends WSSecEncryptedKey {
                 for (Element elementToEncrypt : elementsToEncrypt) {
                     String id =
                         encryptElement(doc, elementToEncrypt, encPart.getEncModifier(), idAllocator, xmlCipher,
-                                       secretKey, keyInfo);
+                                       secretKey, encryptionAlgorithm, keyInfo);
                     encPart.setEncId(id);
                     encDataRef.add("#" + id);
                 }
@@ -462,6 +527,225 @@ public class WSSecEncrypt extends WSSecEncryptedKey {
         return encDataRef;
     }
 
+    /**
+     * Encrypt the elements on the Executor. The elements are found, their IDs are allocated and
+     * they are serialized on the calling thread, in the order of the parts, and the EncryptedData
+     * elements replace them on the calling thread, in the same order. Only the encryption of the
+     * serialized elements is done on the Executor, with a Cipher per element. The calling thread
+     * encrypts any element that the Executor has not started yet.
+     *
+     * @return a List of references to EncryptedData elements, or null if the elements should
+     * be encrypted one after another instead, as there are fewer than two of them, or one of
+     * them is (in) another one
+     */
+    private static List<String> doParallelEncryption(
+        Document doc,
+        WsuIdAllocator idAllocator,
+        KeyInfo keyInfo,
+        SecretKey secretKey,
+        String encryptionAlgorithm,
+        List<WSEncryptionPart> references,
+        CallbackLookup callbackLookup,
+        CallbackHandler attachmentCallbackHandler,
+        List<Element> attachmentEncryptedDataElements,
+        XMLCipher xmlCipher,
+        Executor executor
+    ) throws WSSecurityException {
+        CallbackLookup elementLookup = callbackLookup;
+        if (elementLookup == null) {
+            elementLookup = new DOMCallbackLookup(doc);
+        }
+
+        List<WSEncryptionPart> elementParts = new ArrayList<>();
+        List<Element> elementsToEncrypt = new ArrayList<>();
+        WSEncryptionPart attachmentEncryptionPart = null;
+        for (WSEncryptionPart encPart : references) {
+            if (encPart.getId() != null && encPart.getId().startsWith("cid:")) {
+                attachmentEncryptionPart = encPart;
+                continue;
+            }
+            List<Element> elements = WSSecurityUtil.findElements(encPart, elementLookup, doc);
+            if (elements == null || elements.isEmpty()) {
+                if (!encPart.isRequired()) {
+                    continue;
+                }
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.FAILURE,
+                    "noEncElement",
+                    new Object[] {"{" + encPart.getNamespace() + "}" + encPart.getName()});
+            }
+            for (Element element : elements) {
+                elementParts.add(encPart);
+                elementsToEncrypt.add(element);
+            }
+        }
+        if (elementsToEncrypt.size() < 2 || !areIndependent(elementsToEncrypt)) {
+            return null;
+        }
+
+        List<String> ids = new ArrayList<>(elementsToEncrypt.size());
+        List<FutureTask<EncryptedData>> tasks = new ArrayList<>(elementsToEncrypt.size());
+        try {
+            for (int i = 0; i < elementsToEncrypt.size(); i++) {
+                Element elementToEncrypt = elementsToEncrypt.get(i);
+                String modifier = elementParts.get(i).getEncModifier();
+                boolean content = "Content".equals(modifier);
+                String xencEncryptedDataId = idAllocator.createId("ED-", elementToEncrypt);
+                if ("Header".equals(modifier)
+                    && elementToEncrypt.getParentNode().equals(WSSecurityUtil.getSOAPHeader(doc))) {
+                    createEncryptedHeaderElement(doc, elementToEncrypt, idAllocator);
+                }
+                byte[] serializedElement;
+                if (content) {
+                    serializedElement = xmlCipher.getSerializer().serializeToByteArray(elementToEncrypt.getChildNodes());
+                } else {
+                    serializedElement = xmlCipher.getSerializer().serializeToByteArray(elementToEncrypt);
+                }
+
+                FutureTask<EncryptedData> task =
+                    new FutureTask<>(
+                        new EncryptionTask(doc, keyInfo, secretKey, encryptionAlgorithm, xencEncryptedDataId,
+                                           content, serializedElement)
+                    );
+                try {
+                    executor.execute(task);
+                } catch (RejectedExecutionException ex) {
+                    LOG.debug("The encryption of an element was rejected by the Executor", ex);
+                }
+                ids.add(xencEncryptedDataId);
+                tasks.add(task);
+            }
+
+            List<String> encDataRef = new ArrayList<>();
+            for (int i = 0; i < tasks.size(); i++) {
+                FutureTask<EncryptedData> task = tasks.get(i);
+                // Does nothing if the task was already started on the Executor
+                task.run();
+                EncryptedData encData = task.get();
+
+                Element elementToEncrypt = elementsToEncrypt.get(i);
+                Element encDataElement = xmlCipher.martial(doc, encData);
+                if ("Content".equals(elementParts.get(i).getEncModifier())) {
+                    Node child = elementToEncrypt.getFirstChild();
+                    while (child != null) {
+                        elementToEncrypt.removeChild(child);
+                        child = elementToEncrypt.getFirstChild();
+                    }
+                    elementToEncrypt.appendChild(encDataElement);
+                } else {
+                    elementToEncrypt.getParentNode().replaceChild(encDataElement, elementToEncrypt);
+                }
+                elementParts.get(i).setEncId(ids.get(i));
+                encDataRef.add("#" + ids.get(i));
+            }
+
+            if (attachmentEncryptionPart != null) {
+                encryptAttachment(doc, idAllocator, keyInfo, secretKey, encryptionAlgorithm,
+                                  attachmentCallbackHandler, attachmentEncryptionPart, encDataRef,
+                                  attachmentEncryptedDataElements);
+            }
+            return encDataRef;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_ENCRYPTION, ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof Exception) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_ENCRYPTION, (Exception)ex.getCause());
+            }
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_ENCRYPTION, ex);
+        } catch (WSSecurityException ex) {
+            throw ex;
+        } catch (Exception ex) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_ENCRYPTION, ex);
+        } finally {
+            for (FutureTask<EncryptedData> task : tasks) {
+                task.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * @return whether none of the elements is the same as, or a descendant of, another element
+     * (so that they can be serialized before any of them is replaced), and they all have a parent
+     */
+    private static boolean areIndependent(List<Element> elements) {
+        Set<Node> elementSet = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+        for (Element element : elements) {
+            if (element.getParentNode() == null || !elementSet.add(element)) {
+                return false;
+            }
+        }
+        for (Element element : elements) {
+            Node parent = element.getParentNode();
+            while (parent != null) {
+                if (elementSet.contains(parent)) {
+                    return false;
+                }
+                parent = parent.getParentNode();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Encrypts a serialized element, with its own XMLCipher. The returned EncryptedData is not
+     * marshalled, as the Document must only be modified by the calling thread.
+     */
+    private static final class EncryptionTask implements Callable<EncryptedData> {
+        private final Document doc;
+        private final KeyInfo keyInfo;
+        private final SecretKey secretKey;
+        private final String encryptionAlgorithm;
+        private final String id;
+        private final boolean content;
+        private final byte[] serializedElement;
+
+        EncryptionTask(
+            Document doc, KeyInfo keyInfo, SecretKey secretKey, String encryptionAlgorithm,
+            String id, boolean content, byte[] serializedElement
+        ) {
+            this.doc = doc;
+            this.keyInfo = keyInfo;
+            this.secretKey = secretKey;
+            this.encryptionAlgorithm = encryptionAlgorithm;
+            this.id = id;
+            this.content = content;
+            this.serializedElement = serializedElement;
+        }
+
+        @Override
+        public EncryptedData call() throws Exception {
+            XMLCipher xmlCipher = XMLCipher.getInstance(encryptionAlgorithm);
+            xmlCipher.init(XMLCipher.ENCRYPT_MODE, secretKey);
+            EncryptedData encData = xmlCipher.getEncryptedData();
+            encData.setId(id);
+            encData.setKeyInfo(keyInfo);
+            String type = content ? EncryptionConstants.TYPE_CONTENT : EncryptionConstants.TYPE_ELEMENT;
+            SecurityMetricsListener.Timer timer =
+                SecurityMetrics.start(SecurityOperation.ENCRYPT, encryptionAlgorithm);
+            EncryptedData result;
+            try {
+                result = xmlCipher.encryptData(doc, type, new ByteArrayInputStream(serializedElement));
+            } finally {
+                timer.stop();
+            }
+            reportBytesProcessed(encryptionAlgorithm, result);
+            return result;
+        }
+    }
+
+    private static void reportBytesProcessed(String encryptionAlgorithm, EncryptedData encData) {
+        if (SecurityMetrics.isEnabled() && encData.getCipherData() != null
+            && encData.getCipherData().getCipherValue() != null) {
+            String cipherValue = encData.getCipherData().getCipherValue().getValue();
+            if (cipherValue != null) {
+                SecurityMetrics.bytesProcessed(
+                    SecurityOperation.ENCRYPT, encryptionAlgorithm, EncryptionUtils.getDecodedBase64Length(cipherValue)
+                );
+            }
+        }
+    }
+
     private static String encryptElementInAttachment(
         Document doc,
         WsuIdAllocator idAllocator,
@@ -681,6 +965,7 @@ public class WSSecEncrypt extends WSSecEncryptedKey {
         WsuIdAllocator idAllocator,
         XMLCipher xmlCipher,
         SecretKey secretKey,
+        String encryptionAlgorithm,
         KeyInfo keyInfo
     ) throws WSSecurityException {
 
@@ -699,7 +984,14 @@ public class WSSecEncrypt extends WSSecEncryptedKey {
             EncryptedData encData = xmlCipher.getEncryptedData();
             encData.setId(xencEncryptedDataId);
             encData.setKeyInfo(keyInfo);
-            xmlCipher.doFinal(doc, elementToEncrypt, content);
+            SecurityMetricsListener.Timer timer =
+                SecurityMetrics.start(SecurityOperation.ENCRYPT, encryptionAlgorithm);
+            try {
+                xmlCipher.doFinal(doc, elementToEncrypt, content);
+            } finally {
+                timer.stop();
+            }
+            reportBytesProcessed(encryptionAlgorithm, encData);
             return xencEncryptedDataId;
         } catch (Exception ex) {
             throw new WSSecurityException(
@@ -908,4 +1200,23 @@ public class WSSecEncrypt extends WSSecEncryptedKey {
         this.encryptionSerializer = encryptionSerializer;
     }
 
+    public Executor getEncryptionExecutor() {
+        return encryptionExecutor;
+    }
+
+    /**
+     * Set an Executor to encrypt the elements on in parallel. The elements are serialized, and
+     * the EncryptedData elements are added to the Document, on the calling thread and in the order
+     * of the parts, so the output (apart from the random IVs) and the ReferenceList are the same
+     * as when the elements are encrypted one after another. Elements that are nested in each other
+     * are always encrypted one after another. Attachments are encrypted as they are written, and
+     * so are not affected. The default is null, meaning that the elements are encrypted on the
+     * calling thread.
+     *
+     * @param encryptionExecutor the Executor to encrypt the elements on
+     */
+    public void setEncryptionExecutor(Executor encryptionExecutor) {
+        this.encryptionExecutor = encryptionExecutor;
+    }
+
 }
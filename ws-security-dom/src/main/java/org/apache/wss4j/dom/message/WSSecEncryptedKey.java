@@ -39,6 +39,7 @@ import javax.xml.crypto.dsig.keyinfo.KeyInfo;
 import javax.xml.crypto.dsig.keyinfo.KeyInfoFactory;
 import javax.xml.crypto.dsig.keyinfo.KeyValue;
 
+import org.apache.wss4j.common.cache.SessionKeyCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.ext.WSSecurityException;
@@ -147,6 +148,17 @@ public class WSSecEncryptedKey extends WSSecBase {
     private boolean includeEncryptionToken;
     private Element customEKKeyInfoElement;
 
+    /**
+     * A cache of session keys to reuse for the recipient, instead of generating a new one
+     */
+    private SessionKeyCache sessionKeyCache;
+
+    /**
+     * Whether the session key is generated here (rather than being supplied), and so can be
+     * taken from (and added to) the sessionKeyCache
+     */
+    private boolean reuseSessionKey;
+
     public WSSecEncryptedKey() {
         super();
     }
@@ -193,6 +205,7 @@ public class WSSecEncryptedKey extends WSSecBase {
     public void prepare(Document doc, Crypto crypto) throws WSSecurityException {
 
         document = doc;
+        checkSessionKeyReuse();
 
         //
         // Set up the symmetric key
@@ -242,7 +255,43 @@ public class WSSecEncryptedKey extends WSSecBase {
         }
     }
     
-    private void encryptSymmetricKey(PublicKey encryptingKey, SecretKey keyToBeEncrypted) 
+    /**
+     * Check whether the session key is generated by <code>prepare()</code>, rather than being
+     * supplied, in which case a SessionKeyCache (if configured) is used to reuse a session key.
+     * This must be called before the symmetric key is set up.
+     */
+    protected void checkSessionKeyReuse() {
+        reuseSessionKey = sessionKeyCache != null && symmetricKey == null
+            && ephemeralKey == null && encryptedEphemeralKey == null;
+    }
+
+    private void encryptSymmetricKey(PublicKey encryptingKey, SecretKey keyToBeEncrypted)
+        throws WSSecurityException {
+        String keyTransportParameters = null;
+        if (reuseSessionKey) {
+            keyTransportParameters = keyEncAlgo + ":" + digestAlgo + ":" + mgfAlgo;
+            SessionKeyCache.SessionKey sessionKey =
+                sessionKeyCache.get(encryptingKey, keyTransportParameters, symEncAlgo);
+            if (sessionKey != null) {
+                // Reuse the cached session key instead of the generated one, with the same wrapped key
+                ephemeralKey = sessionKey.getKey();
+                symmetricKey = KeyUtils.prepareSecretKey(symEncAlgo, ephemeralKey);
+                encryptedEphemeralKey = sessionKey.getEncryptedKey();
+                return;
+            }
+        }
+
+        wrapSymmetricKey(encryptingKey, keyToBeEncrypted);
+
+        if (reuseSessionKey) {
+            sessionKeyCache.put(
+                encryptingKey, keyTransportParameters, symEncAlgo,
+                keyToBeEncrypted.getEncoded(), encryptedEphemeralKey
+            );
+        }
+    }
+
+    private void wrapSymmetricKey(PublicKey encryptingKey, SecretKey keyToBeEncrypted)
         throws WSSecurityException {
         Cipher cipher = KeyUtils.getCipherInstance(keyEncAlgo);
         try {
@@ -1023,5 +1072,21 @@ public class WSSecEncryptedKey extends WSSecBase {
         this.customEKKeyInfoElement = customEKKeyInfoElement;
     }
 
+    public SessionKeyCache getSessionKeyCache() {
+        return sessionKeyCache;
+    }
+
+    /**
+     * Set a cache of session keys. If the session key is not supplied (by setting the symmetric
+     * key, the ephemeral key or the encrypted ephemeral key), then the cached session key for the
+     * recipient is used, together with the same wrapped key, until the cache rotates it. A newly
+     * generated and wrapped session key is added to the cache.
+     *
+     * @param sessionKeyCache the cache of session keys
+     */
+    public void setSessionKeyCache(SessionKeyCache sessionKeyCache) {
+        this.sessionKeyCache = sessionKeyCache;
+    }
+
 
 }
@@ -45,6 +45,9 @@ import org.apache.wss4j.common.WSS4JConstants;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityOperation;
 import org.apache.wss4j.common.token.BinarySecurity;
 import org.apache.wss4j.common.token.DOMX509Data;
 import org.apache.wss4j.common.token.DOMX509IssuerSerial;
@@ -585,7 +588,14 @@ public class WSSecSignature extends WSSecSignatureBase {
 
             // Add the elements to sign to the Signature Context
             wsDocInfo.setTokensOnContext((DOMSignContext)signContext);
-            sig.sign(signContext);
+            SecurityMetricsListener.Timer timer = SecurityMetrics.start(
+                SecurityOperation.SIGN, sig.getSignedInfo().getSignatureMethod().getAlgorithm()
+            );
+            try {
+                sig.sign(signContext);
+            } finally {
+                timer.stop();
+            }
 
             signatureValue = sig.getSignatureValue().getValue();
         } catch (Exception ex) {
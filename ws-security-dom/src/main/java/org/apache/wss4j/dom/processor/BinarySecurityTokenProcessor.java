@@ -24,6 +24,7 @@ import java.util.List;
 
 import javax.xml.namespace.QName;
 
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.principal.SAMLTokenPrincipalImpl;
@@ -44,6 +45,7 @@ import org.w3c.dom.Element;
 /**
  * Processor implementation to handle wsse:BinarySecurityToken elements
  */
+@ThreadSafe
 public class BinarySecurityTokenProcessor implements Processor {
 
     /**
@@ -23,6 +23,7 @@ import java.util.Collections;
 import java.util.List;
 
 import org.w3c.dom.Element;
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDocInfo;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
@@ -39,6 +40,7 @@ import org.apache.wss4j.dom.str.STRParserResult;
 /**
  * The processor to process <code>wsc:DerivedKeyToken</code>.
  */
+@ThreadSafe
 public class DerivedKeyTokenProcessor implements Processor {
 
     public List<WSSecurityEngineResult> handleToken(
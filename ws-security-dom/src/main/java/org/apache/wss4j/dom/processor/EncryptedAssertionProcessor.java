@@ -27,6 +27,7 @@ import javax.xml.namespace.QName;
 
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.WSConstants;
@@ -38,6 +39,7 @@ import org.apache.wss4j.dom.handler.RequestData;
 /**
  * This will process incoming <code>saml2:EncryptedAssertion</code> elements.
  */
+@ThreadSafe
 public class EncryptedAssertionProcessor implements Processor {
 
     private static final org.slf4j.Logger LOG =
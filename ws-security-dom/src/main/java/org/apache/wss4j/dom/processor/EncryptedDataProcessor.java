@@ -28,6 +28,7 @@ import java.util.List;
 import javax.crypto.SecretKey;
 import javax.xml.namespace.QName;
 
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
@@ -56,6 +57,7 @@ import org.w3c.dom.Element;
  * This processor will not be invoked for encrypted content referenced by a
  * <code>xenc:ReferenceList</code>.
  */
+@ThreadSafe
 public class EncryptedDataProcessor implements Processor {
 
     private static final org.slf4j.Logger LOG =
@@ -165,7 +167,8 @@ public class EncryptedDataProcessor implements Processor {
 
         WSDataRef dataRef = EncryptionUtils.decryptEncryptedData(
                 elem.getOwnerDocument(), encryptedDataId, elem, key, symEncAlgo,
-                request.getAttachmentCallbackHandler(), request.getEncryptionSerializer());
+                request.getAttachmentCallbackHandler(), request.getEncryptionSerializer(),
+                wsDocInfo.getCallbackLookup());
 
         WSSecurityEngineResult result =
                 new WSSecurityEngineResult(WSConstants.ENCR, Collections.singletonList(dataRef));
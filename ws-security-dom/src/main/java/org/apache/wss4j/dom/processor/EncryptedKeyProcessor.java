@@ -29,6 +29,7 @@ import java.security.PublicKey;
 import java.security.cert.X509Certificate;
 import java.security.spec.MGF1ParameterSpec;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
 
@@ -42,12 +43,17 @@ import javax.xml.crypto.dsig.XMLSignatureFactory;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.DecryptedKeyCache;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.AlgorithmSuiteValidator;
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityOperation;
 import org.apache.wss4j.common.token.DOMX509IssuerSerial;
 import org.apache.wss4j.common.token.SecurityTokenReference;
 import org.apache.wss4j.common.util.KeyUtils;
@@ -68,6 +74,7 @@ import org.apache.wss4j.dom.util.X509Util;
 import org.apache.xml.security.algorithms.JCEMapper;
 import org.apache.xml.security.encryption.XMLCipher;
 
+@ThreadSafe
 public class EncryptedKeyProcessor implements Processor {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(EncryptedKeyProcessor.class);
@@ -214,7 +221,7 @@ public class EncryptedKeyProcessor implements Processor {
             PrivateKey privateKey = getPrivateKey(data, certs, publicKey);
             decryptedBytes = getAsymmetricDecryptedBytes(data, wsDocInfo, encryptedKeyTransportMethod,
                                                          encryptedEphemeralKey, refList,
-                                                         elem, privateKey);
+                                                         elem, privateKey, publicKey);
         }
 
         List<WSDataRef> dataRefs = decryptDataRefs(refList, wsDocInfo, decryptedBytes, data);
@@ -286,11 +293,30 @@ public class EncryptedKeyProcessor implements Processor {
         byte[] encryptedEphemeralKey,
         Element refList,
         Element encryptedKeyElement,
-        PrivateKey privateKey
+        PrivateKey privateKey,
+        PublicKey publicKey
     ) throws WSSecurityException {
         if (data.getDecCrypto() == null) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE, "noDecCryptoFile");
         }
+
+        // See if this wrapped key has already been unwrapped with the same key and parameters
+        DecryptedKeyCache decryptedKeyCache = data.getDecryptedKeyCache();
+        String encryptedKeySHA1 = null;
+        String keyTransportParameters = null;
+        if (decryptedKeyCache != null) {
+            encryptedKeySHA1 =
+                Base64.getEncoder().encodeToString(KeyUtils.generateDigest(encryptedEphemeralKey));
+            keyTransportParameters =
+                getKeyTransportParameters(encryptedKeyTransportMethod, encryptedKeyElement);
+            byte[] decryptedKey =
+                decryptedKeyCache.get(data.getDecCrypto(), encryptedKeySHA1, publicKey, keyTransportParameters);
+            if (decryptedKey != null) {
+                LOG.debug("Found the unwrapped key in the cache");
+                return decryptedKey;
+            }
+        }
+
         String cryptoProvider = data.getDecCrypto().getCryptoProvider();
         Cipher cipher = KeyUtils.getCipherInstance(encryptedKeyTransportMethod, cryptoProvider);
         try {
@@ -341,7 +367,21 @@ public class EncryptedKeyProcessor implements Processor {
 
         try {
             String keyAlgorithm = JCEMapper.translateURItoJCEID(encryptedKeyTransportMethod);
-            return cipher.unwrap(encryptedEphemeralKey, keyAlgorithm, Cipher.SECRET_KEY).getEncoded();
+            byte[] decryptedKey;
+            SecurityMetricsListener.Timer timer =
+                SecurityMetrics.start(SecurityOperation.UNWRAP, encryptedKeyTransportMethod);
+            try {
+                decryptedKey =
+                    cipher.unwrap(encryptedEphemeralKey, keyAlgorithm, Cipher.SECRET_KEY).getEncoded();
+            } finally {
+                timer.stop();
+            }
+            if (decryptedKeyCache != null) {
+                decryptedKeyCache.put(
+                    data.getDecCrypto(), encryptedKeySHA1, publicKey, keyTransportParameters, decryptedKey
+                );
+            }
+            return decryptedKey;
         } catch (IllegalStateException ex) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, ex);
         } catch (Exception ex) {
@@ -349,6 +389,21 @@ public class EncryptedKeyProcessor implements Processor {
         }
     }
 
+    /**
+     * The key transport algorithm of the EncryptedKey, and the OAEP parameters if any, which
+     * must match for a cached unwrapped key to be used
+     */
+    private static String getKeyTransportParameters(
+        String encryptedKeyTransportMethod, Element encryptedKeyElement
+    ) throws WSSecurityException {
+        return DecryptedKeyCache.getKeyTransportParameters(
+            encryptedKeyTransportMethod,
+            EncryptionUtils.getDigestAlgorithm(encryptedKeyElement),
+            EncryptionUtils.getMGFAlgorithm(encryptedKeyElement),
+            EncryptionUtils.getPSource(encryptedKeyElement)
+        );
+    }
+
     private static boolean isSymmetricKeyWrap(String transportAlgorithm) {
         return XMLCipher.AES_128_KeyWrap.equals(transportAlgorithm)
             || XMLCipher.AES_192_KeyWrap.equals(transportAlgorithm)
@@ -591,7 +646,7 @@ public class EncryptedKeyProcessor implements Processor {
 
         return EncryptionUtils.decryptEncryptedData(
             doc, dataRefURI, encryptedDataElement, symmetricKey, symEncAlgo, data.getAttachmentCallbackHandler(),
-            data.getEncryptionSerializer()
+            data.getEncryptionSerializer(), docInfo.getCallbackLookup()
         );
     }
 
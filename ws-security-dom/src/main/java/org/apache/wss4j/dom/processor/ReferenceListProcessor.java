@@ -30,6 +30,7 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
@@ -52,6 +53,7 @@ import org.apache.wss4j.dom.util.EncryptionUtils;
 import org.apache.wss4j.dom.util.SignatureUtils;
 import org.apache.wss4j.dom.util.X509Util;
 
+@ThreadSafe
 public class ReferenceListProcessor implements Processor {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(ReferenceListProcessor.class);
@@ -202,7 +204,7 @@ public class ReferenceListProcessor implements Processor {
         return
             EncryptionUtils.decryptEncryptedData(
                 doc, dataRefURI, encryptedDataElement, symmetricKey, symEncAlgo, data.getAttachmentCallbackHandler(),
-                data.getEncryptionSerializer()
+                data.getEncryptionSerializer(), wsDocInfo.getCallbackLookup()
             );
     }
 
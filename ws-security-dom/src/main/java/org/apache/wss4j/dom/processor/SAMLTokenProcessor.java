@@ -33,6 +33,8 @@ import javax.xml.crypto.dsig.XMLValidateContext;
 import javax.xml.crypto.dsig.dom.DOMValidateContext;
 import javax.xml.namespace.QName;
 
+import org.apache.wss4j.common.ThreadSafe;
+import org.apache.wss4j.common.cache.VerifiedAssertionCache;
 import org.apache.wss4j.common.crypto.AlgorithmSuite;
 import org.apache.wss4j.common.crypto.AlgorithmSuiteValidator;
 import org.apache.wss4j.common.ext.WSSecurityException;
@@ -49,14 +51,18 @@ import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.saml.WSSSAMLKeyInfoProcessor;
 import org.apache.wss4j.dom.util.EncryptionUtils;
 import org.apache.wss4j.dom.validate.Credential;
+import org.apache.wss4j.dom.validate.SamlAssertionValidator;
 import org.apache.wss4j.dom.validate.Validator;
 import org.opensaml.xmlsec.signature.KeyInfo;
 import org.opensaml.xmlsec.signature.Signature;
 import org.w3c.dom.Element;
 
+@ThreadSafe
 public class SAMLTokenProcessor implements Processor {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(SAMLTokenProcessor.class);
+
+    // The XMLSignatureFactory only creates new objects, and so it can be shared between threads
     private XMLSignatureFactory signatureFactory;
 
     public SAMLTokenProcessor() {
@@ -82,12 +88,20 @@ public class SAMLTokenProcessor implements Processor {
             data.getValidator(new QName(elem.getNamespaceURI(), elem.getLocalName()));
 
         SamlAssertionWrapper samlAssertion = new SamlAssertionWrapper(elem);
+        // The key of the Assertion in the VerifiedAssertionCache is shared with the Validator
+        VerifiedAssertionCache.CacheKey cacheKey = null;
+        if (data.getVerifiedAssertionCache() != null && samlAssertion.isSigned()) {
+            cacheKey =
+                SamlAssertionValidator.createVerifiedAssertionCacheKey(
+                    data.getVerifiedAssertionCache(), samlAssertion, data
+                );
+        }
         XMLSignature xmlSignature =
-            verifySignatureKeysAndAlgorithms(samlAssertion, data, wsDocInfo);
+            verifySignatureKeysAndAlgorithms(samlAssertion, data, wsDocInfo, cacheKey);
         List<WSDataRef> dataRefs = createDataRefs(elem, samlAssertion, xmlSignature);
 
         Credential credential =
-            handleSAMLToken(samlAssertion, data, validator, wsDocInfo);
+            handleSAMLToken(samlAssertion, data, validator, wsDocInfo, cacheKey);
         samlAssertion = credential.getSamlAssertion();
         if (LOG.isDebugEnabled()) {
             LOG.debug("SAML Assertion issuer " + samlAssertion.getIssuerString());
@@ -148,6 +162,16 @@ public class SAMLTokenProcessor implements Processor {
         RequestData data,
         Validator validator,
         WSDocInfo docInfo
+    ) throws WSSecurityException {
+        return handleSAMLToken(samlAssertion, data, validator, docInfo, null);
+    }
+
+    private Credential handleSAMLToken(
+        SamlAssertionWrapper samlAssertion,
+        RequestData data,
+        Validator validator,
+        WSDocInfo docInfo,
+        VerifiedAssertionCache.CacheKey cacheKey
     ) throws WSSecurityException {
         // Parse the subject if it exists
         samlAssertion.parseSubject(
@@ -158,6 +182,7 @@ public class SAMLTokenProcessor implements Processor {
         // Now delegate the rest of the verification to the Validator
         Credential credential = new Credential();
         credential.setSamlAssertion(samlAssertion);
+        credential.setVerifiedAssertionCacheKey(cacheKey);
         if (validator != null) {
             return validator.validate(credential, data);
         }
@@ -167,7 +192,8 @@ public class SAMLTokenProcessor implements Processor {
     private XMLSignature verifySignatureKeysAndAlgorithms(
         SamlAssertionWrapper samlAssertion,
         RequestData data,
-        WSDocInfo wsDocInfo
+        WSDocInfo wsDocInfo,
+        VerifiedAssertionCache.CacheKey cacheKey
     ) throws WSSecurityException {
         if (samlAssertion.isSigned()) {
             Signature sig = samlAssertion.getSignature();
@@ -225,7 +251,17 @@ public class SAMLTokenProcessor implements Processor {
                 }
             }
 
-            samlAssertion.verifySignature(samlKeyInfo);
+            // An identical Assertion has been verified (and trusted) before
+            SAMLKeyInfo verifiedKeyInfo = null;
+            if (cacheKey != null) {
+                verifiedKeyInfo = data.getVerifiedAssertionCache().get(cacheKey);
+            }
+            if (verifiedKeyInfo != null) {
+                LOG.debug("Skipping the signature verification of a cached SAML Assertion");
+                samlAssertion.setSignatureKeyInfo(verifiedKeyInfo);
+            } else {
+                samlAssertion.verifySignature(samlKeyInfo);
+            }
 
             return xmlSignature;
         }
@@ -19,6 +19,8 @@
 
 package org.apache.wss4j.dom.processor;
 
+import org.apache.wss4j.common.ThreadSafe;
+import org.apache.wss4j.common.cache.SecurityContextTokenCache;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDocInfo;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
@@ -42,6 +44,7 @@ import java.io.IOException;
 /**
  * The processor to process <code>wsc:SecurityContextToken</code>.
  */
+@ThreadSafe
 public class SecurityContextTokenProcessor implements Processor {
 
     public List<WSSecurityEngineResult> handleToken(
@@ -72,14 +75,26 @@ public class SecurityContextTokenProcessor implements Processor {
             String id = sct.getID();
             id = XMLUtils.getIDFromReference(id);
 
-            byte[] secret = null;
-            try {
-                secret = getSecret(data.getCallbackHandler(), sct.getIdentifier());
-            } catch (WSSecurityException ex) {
-                secret = getSecret(data.getCallbackHandler(), id);
-            }
-            if (secret == null || secret.length == 0) {
-                secret = getSecret(data.getCallbackHandler(), id);
+            SecurityContextTokenCache securityContextTokenCache = data.getSecurityContextTokenCache();
+            byte[] secret = getCachedSecret(securityContextTokenCache, sct.getIdentifier());
+            if (secret == null) {
+                // The secret is only cached under the identifier that it was obtained for
+                String resolvedIdentifier = sct.getIdentifier();
+                try {
+                    secret = getSecret(data.getCallbackHandler(), resolvedIdentifier);
+                } catch (WSSecurityException ex) {
+                    secret = null;
+                }
+                if (secret == null || secret.length == 0) {
+                    resolvedIdentifier = id;
+                    secret = getCachedSecret(securityContextTokenCache, id);
+                    if (secret == null) {
+                        secret = getSecret(data.getCallbackHandler(), id);
+                    }
+                }
+                if (securityContextTokenCache != null) {
+                    securityContextTokenCache.putSecret(resolvedIdentifier, secret);
+                }
             }
             result.put(WSSecurityEngineResult.TAG_ID, sct.getID());
             result.put(WSSecurityEngineResult.TAG_SECRET, secret);
@@ -90,6 +105,15 @@ public class SecurityContextTokenProcessor implements Processor {
         return java.util.Collections.singletonList(result);
     }
 
+    private static byte[] getCachedSecret(
+        SecurityContextTokenCache securityContextTokenCache, String identifier
+    ) {
+        if (securityContextTokenCache == null) {
+            return null;
+        }
+        return securityContextTokenCache.getSecret(identifier);
+    }
+
     /**
      * Get the secret from the provided callback handler and return it.
      *
@@ -19,6 +19,7 @@
 
 package org.apache.wss4j.dom.processor;
 
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDocInfo;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
@@ -29,6 +30,7 @@ import org.w3c.dom.Element;
 
 import java.util.List;
 
+@ThreadSafe
 public class SignatureConfirmationProcessor implements Processor {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(SignatureConfirmationProcessor.class);
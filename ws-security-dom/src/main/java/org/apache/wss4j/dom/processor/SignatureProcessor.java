@@ -32,22 +32,35 @@ import java.util.Base64;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.xml.crypto.Data;
 import javax.xml.crypto.NodeSetData;
 import javax.xml.crypto.OctetStreamData;
+import javax.xml.crypto.URIDereferencer;
+import javax.xml.crypto.URIReference;
+import javax.xml.crypto.URIReferenceException;
+import javax.xml.crypto.XMLCryptoContext;
 import javax.xml.crypto.dsig.Manifest;
 import javax.xml.crypto.dsig.Reference;
 import javax.xml.crypto.dsig.SignedInfo;
 import javax.xml.crypto.dsig.Transform;
 import javax.xml.crypto.dsig.XMLObject;
 import javax.xml.crypto.dsig.XMLSignature;
+import javax.xml.crypto.dsig.XMLSignatureException;
 import javax.xml.crypto.dsig.XMLSignatureFactory;
 import javax.xml.crypto.dsig.XMLValidateContext;
 import javax.xml.crypto.dsig.dom.DOMValidateContext;
 import javax.xml.crypto.dsig.spec.ExcC14NParameterSpec;
 import javax.xml.crypto.dsig.spec.HMACParameterSpec;
 
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.cache.ReplayCache;
@@ -56,6 +69,9 @@ import org.apache.wss4j.common.crypto.AlgorithmSuiteValidator;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityOperation;
 import org.apache.wss4j.common.principal.PublicKeyPrincipalImpl;
 import org.apache.wss4j.common.principal.UsernameTokenPrincipal;
 import org.apache.wss4j.common.principal.WSDerivedKeyTokenPrincipal;
@@ -88,10 +104,20 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 
+@ThreadSafe
 public class SignatureProcessor implements Processor {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(SignatureProcessor.class);
 
+    // The properties of the ValidateContext used to verify an attachment reference
+    private static final String[] REFERENCE_CONTEXT_PROPERTIES = {
+        "javax.xml.crypto.dsig.cacheReference",
+        "org.apache.jcp.xml.dsig.secureValidation",
+        "org.jcp.xml.dsig.secureValidation",
+        AttachmentContentSignatureTransform.ATTACHMENT_CALLBACKHANDLER,
+    };
+
+    // The XMLSignatureFactory only creates new objects, and so it can be shared between threads
     private XMLSignatureFactory signatureFactory;
 
     public SignatureProcessor() {
@@ -364,7 +390,20 @@ public class SignatureProcessor implements Processor {
             testMessageReplay(elem, xmlSignature.getSignatureValue().getValue(), key, data, wsDocInfo);
 
             setElementsOnContext(xmlSignature, (DOMValidateContext)context, data, wsDocInfo);
-            boolean signatureOk = xmlSignature.validate(context);
+            boolean signatureOk;
+            Executor referenceDigestExecutor = data.getReferenceDigestExecutor();
+            SecurityMetricsListener.Timer timer = SecurityMetrics.start(
+                SecurityOperation.VERIFY, xmlSignature.getSignedInfo().getSignatureMethod().getAlgorithm()
+            );
+            try {
+                if (referenceDigestExecutor == null) {
+                    signatureOk = xmlSignature.validate(context);
+                } else {
+                    signatureOk = validateConcurrently(xmlSignature, context, referenceDigestExecutor);
+                }
+            } finally {
+                timer.stop();
+            }
             if (signatureOk) {
                 return xmlSignature;
             }
@@ -398,6 +437,136 @@ public class SignatureProcessor implements Processor {
         throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK);
     }
 
+    /**
+     * Validate the XMLSignature, verifying the digests of the attachment ("cid:") references
+     * concurrently on the given Executor. The SignatureValue is validated first. The other
+     * references are verified on the calling thread, as they are dereferenced from the DOM,
+     * which is not thread-safe. The attachment references are also dereferenced on the calling
+     * thread, and each task gets its own ValidateContext, so that the tasks share neither the DOM
+     * nor the context. An attachment reference that the Executor rejects is verified on the calling
+     * thread instead. Validation stops at the first reference that fails, after which no
+     * further attachment references are verified.
+     * @param xmlSignature the XMLSignature to validate
+     * @param context the ValidateContext
+     * @param executor the Executor on which to verify the attachment references
+     * @return true if the SignatureValue and all of the references are valid
+     */
+    private boolean validateConcurrently(
+        XMLSignature xmlSignature,
+        XMLValidateContext context,
+        Executor executor
+    ) throws XMLSignatureException, WSSecurityException {
+        List<Reference> localReferences = new ArrayList<>();
+        List<Reference> attachmentReferences = new ArrayList<>();
+        for (Object object : xmlSignature.getSignedInfo().getReferences()) {
+            Reference reference = (Reference)object;
+            String uri = reference.getURI();
+            if (uri != null && uri.startsWith("cid:")) {
+                attachmentReferences.add(reference);
+            } else {
+                localReferences.add(reference);
+            }
+        }
+        if (attachmentReferences.size() < 2) {
+            return xmlSignature.validate(context);
+        }
+
+        if (!xmlSignature.getSignatureValue().validate(context)) {
+            return false;
+        }
+
+        CompletionService<Boolean> completionService = new ExecutorCompletionService<>(executor);
+        final AtomicBoolean failed = new AtomicBoolean();
+        int pending = 0;
+        try {
+            for (final Reference reference : attachmentReferences) {
+                final XMLValidateContext referenceContext =
+                    createReferenceContext(reference, (DOMValidateContext)context);
+                try {
+                    // The result of a reference that is skipped after a failure is ignored
+                    completionService.submit(() -> failed.get() || reference.validate(referenceContext));
+                    pending++;
+                } catch (RejectedExecutionException ex) {
+                    LOG.debug("The verification of a reference was rejected by the Executor", ex);
+                    if (!reference.validate(referenceContext)) {
+                        return false;
+                    }
+                }
+            }
+
+            for (Reference reference : localReferences) {
+                if (!reference.validate(context)) {
+                    return false;
+                }
+            }
+
+            while (pending > 0) {
+                Future<Boolean> result = completionService.take();
+                pending--;
+                if (!result.get()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof XMLSignatureException) {
+                throw (XMLSignatureException)cause;
+            } else if (cause instanceof Exception) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, (Exception)cause);
+            }
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, ex);
+        } finally {
+            // Skip the references that have not been started yet, and wait for the others, so
+            // that no attachment is read once the Signature has been processed
+            failed.set(true);
+            while (pending > 0 && !Thread.currentThread().isInterrupted()) {
+                try {
+                    completionService.take();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                pending--;
+            }
+        }
+    }
+
+    /**
+     * Create a ValidateContext to verify the given attachment reference on another thread. The
+     * reference is dereferenced here, as the dereferencer reads the URI attribute from the DOM.
+     * The new context returns this detached data, and has its own copy of the properties that
+     * the attachment transforms read and write.
+     */
+    private XMLValidateContext createReferenceContext(
+        Reference reference,
+        DOMValidateContext context
+    ) throws XMLSignatureException {
+        URIDereferencer dereferencer = context.getURIDereferencer();
+        if (dereferencer == null) {
+            dereferencer = signatureFactory.getURIDereferencer();
+        }
+        Data data;
+        try {
+            data = dereferencer.dereference(reference, context);
+        } catch (URIReferenceException ex) {
+            throw new XMLSignatureException(ex);
+        }
+
+        DOMValidateContext referenceContext =
+            new DOMValidateContext(context.getKeySelector(), context.getNode());
+        for (String property : REFERENCE_CONTEXT_PROPERTIES) {
+            Object value = context.getProperty(property);
+            if (value != null) {
+                referenceContext.setProperty(property, value);
+            }
+        }
+        referenceContext.setURIDereferencer(new DereferencedData(data));
+        return referenceContext;
+    }
+
     /**
      * Retrieve the Reference elements and set them on the ValidateContext
      * @param xmlSignature the XMLSignature object to get the references from
@@ -671,24 +840,31 @@ public class SignatureProcessor implements Processor {
         String identifier = zulu.format(created) + "" + Arrays.hashCode(signatureValue)
             + "" + Arrays.hashCode(key.getEncoded());
 
-        if (replayCache.contains(identifier)) {
+        // Store the Timestamp/SignatureValue/Key combination in the cache
+        Date expires = timeStamp.getExpires();
+        boolean added;
+        SecurityMetricsListener.Timer timer =
+            SecurityMetrics.start(SecurityOperation.REPLAY_CACHE, "TimestampReplayCache");
+        try {
+            if (expires != null) {
+                Date rightNow = new Date();
+                long currentTime = rightNow.getTime();
+                long expiresTime = expires.getTime();
+                added = replayCache.addIfAbsent(identifier, 1L + (expiresTime - currentTime) / 1000L);
+            } else {
+                added = replayCache.addIfAbsent(identifier);
+            }
+        } finally {
+            timer.stop();
+        }
+        SecurityMetrics.cacheAccess("TimestampReplayCache", !added);
+
+        if (!added) {
             throw new WSSecurityException(
                 WSSecurityException.ErrorCode.INVALID_SECURITY,
                 "invalidTimestamp",
                 new Object[] {"A replay attack has been detected"});
         }
-
-        // Store the Timestamp/SignatureValue/Key combination in the cache
-        Date expires = timeStamp.getExpires();
-        if (expires != null) {
-            Date rightNow = new Date();
-            long currentTime = rightNow.getTime();
-            long expiresTime = expires.getTime();
-            replayCache.add(identifier, 1L + (expiresTime - currentTime) / 1000L);
-        } else {
-            replayCache.add(identifier);
-        }
-
     }
 
     /**
@@ -767,4 +943,20 @@ public class SignatureProcessor implements Processor {
         }
     }
 
+    /**
+     * A URIDereferencer that returns the data of a reference that has already been dereferenced
+     */
+    private static final class DereferencedData implements URIDereferencer {
+        private final Data data;
+
+        DereferencedData(Data data) {
+            this.data = data;
+        }
+
+        @Override
+        public Data dereference(URIReference uriReference, XMLCryptoContext context) {
+            return data;
+        }
+    }
+
 }
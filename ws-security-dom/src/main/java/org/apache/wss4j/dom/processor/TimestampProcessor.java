@@ -21,6 +21,7 @@ package org.apache.wss4j.dom.processor;
 
 import java.util.List;
 
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDocInfo;
@@ -31,6 +32,7 @@ import org.apache.wss4j.dom.validate.Credential;
 import org.apache.wss4j.dom.validate.Validator;
 import org.w3c.dom.Element;
 
+@ThreadSafe
 public class TimestampProcessor implements Processor {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(TimestampProcessor.class);
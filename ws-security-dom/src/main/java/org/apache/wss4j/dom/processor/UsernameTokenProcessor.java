@@ -23,11 +23,15 @@ import java.util.Date;
 import java.util.List;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.principal.SAMLTokenPrincipalImpl;
 import org.apache.wss4j.common.principal.WSUsernameTokenPrincipalImpl;
 import org.w3c.dom.Element;
 import org.apache.wss4j.common.cache.ReplayCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityOperation;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.WSDocInfo;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
@@ -36,6 +40,7 @@ import org.apache.wss4j.dom.message.token.UsernameToken;
 import org.apache.wss4j.dom.validate.Credential;
 import org.apache.wss4j.dom.validate.Validator;
 
+@ThreadSafe
 public class UsernameTokenProcessor implements Processor {
     private static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(UsernameTokenProcessor.class);
@@ -141,23 +146,30 @@ public class UsernameTokenProcessor implements Processor {
         // Test for replay attacks
         ReplayCache replayCache = data.getNonceReplayCache();
         if (replayCache != null && ut.getNonce() != null) {
-            if (replayCache.contains(ut.getNonce())) {
+            // If no Created, then just cache for the default time
+            // Otherwise, cache for the configured TTL of the UsernameToken Created time, as any
+            // older token will just get rejected anyway
+            Date created = ut.getCreatedDate();
+            boolean added;
+            SecurityMetricsListener.Timer timer =
+                SecurityMetrics.start(SecurityOperation.REPLAY_CACHE, "NonceReplayCache");
+            try {
+                if (created == null || utTTL <= 0) {
+                    added = replayCache.addIfAbsent(ut.getNonce());
+                } else {
+                    added = replayCache.addIfAbsent(ut.getNonce(), utTTL + 1L);
+                }
+            } finally {
+                timer.stop();
+            }
+            SecurityMetrics.cacheAccess("NonceReplayCache", !added);
+            if (!added) {
                 throw new WSSecurityException(
                     WSSecurityException.ErrorCode.INVALID_SECURITY,
                     "badUsernameToken",
                     new Object[] {"A replay attack has been detected"}
                 );
             }
-
-            // If no Created, then just cache for the default time
-            // Otherwise, cache for the configured TTL of the UsernameToken Created time, as any
-            // older token will just get rejected anyway
-            Date created = ut.getCreatedDate();
-            if (created == null || utTTL <= 0) {
-                replayCache.add(ut.getNonce());
-            } else {
-                replayCache.add(ut.getNonce(), utTTL + 1L);
-            }
         }
 
         // Validate whether the security semantics have expired
@@ -38,6 +38,9 @@ import org.apache.wss4j.common.WSEncryptionPart;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityOperation;
 import org.apache.wss4j.common.saml.OpenSAMLUtil;
 import org.apache.wss4j.common.saml.SAMLKeyInfo;
 import org.apache.wss4j.common.saml.SAMLUtil;
@@ -545,7 +548,14 @@ public class WSSecSignatureSAML extends WSSecSignature {
             // Add the elements to sign to the Signature Context
             wsDocInfo.setTokensOnContext((DOMSignContext)signContext);
 
-            sig.sign(signContext);
+            SecurityMetricsListener.Timer timer = SecurityMetrics.start(
+                SecurityOperation.SIGN, sig.getSignedInfo().getSignatureMethod().getAlgorithm()
+            );
+            try {
+                sig.sign(signContext);
+            } finally {
+                timer.stop();
+            }
 
             signatureValue = sig.getSignatureValue().getValue();
         } catch (Exception ex) {
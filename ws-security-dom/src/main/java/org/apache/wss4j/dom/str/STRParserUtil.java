@@ -26,6 +26,7 @@ import javax.security.auth.callback.CallbackHandler;
 
 import org.apache.wss4j.common.bsp.BSPEnforcer;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.SecurityContextTokenCache;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.saml.SamlAssertionWrapper;
@@ -272,12 +273,26 @@ public final class STRParserUtil {
         RequestData data
     ) throws WSSecurityException {
         String uri = XMLUtils.getIDFromReference(id);
+        SecurityContextTokenCache securityContextTokenCache = null;
+        if (identifier == WSPasswordCallback.SECURITY_CONTEXT_TOKEN) {
+            securityContextTokenCache = data.getSecurityContextTokenCache();
+        }
+        if (securityContextTokenCache != null) {
+            byte[] secret = securityContextTokenCache.getSecret(uri);
+            if (secret != null) {
+                return secret;
+            }
+        }
+
         WSPasswordCallback pwcb =
             new WSPasswordCallback(uri, null, type, identifier);
         try {
             Callback[] callbacks = new Callback[]{pwcb};
             if (data.getCallbackHandler() != null) {
                 data.getCallbackHandler().handle(callbacks);
+                if (securityContextTokenCache != null) {
+                    securityContextTokenCache.putSecret(uri, pwcb.getKey());
+                }
                 return pwcb.getKey();
             }
         } catch (Exception e) {
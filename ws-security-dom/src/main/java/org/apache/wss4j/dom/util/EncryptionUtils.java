@@ -23,6 +23,9 @@ import org.apache.wss4j.common.ext.Attachment;
 import org.apache.wss4j.common.ext.AttachmentRequestCallback;
 import org.apache.wss4j.common.ext.AttachmentResultCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityOperation;
 import org.apache.wss4j.common.util.AttachmentUtils;
 import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.WSConstants;
@@ -39,6 +42,7 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
+import org.w3c.dom.Text;
 import org.xml.sax.SAXException;
 
 import javax.crypto.Cipher;
@@ -142,6 +146,33 @@ public final class EncryptionUtils {
         CallbackHandler attachmentCallbackHandler,
         Serializer encryptionSerializer
     ) throws WSSecurityException {
+        return decryptEncryptedData(doc, dataRefURI, encData, symmetricKey,
+                                    symEncAlgo, attachmentCallbackHandler, encryptionSerializer, null);
+    }
+
+    /**
+     * Decrypt the EncryptedData argument using a SecretKey.
+     * @param doc The (document) owner of EncryptedData
+     * @param dataRefURI The URI of EncryptedData
+     * @param encData The EncryptedData element
+     * @param symmetricKey The SecretKey with which to decrypt EncryptedData
+     * @param symEncAlgo The symmetric encryption algorithm to use
+     * @param attachmentCallbackHandler The CallbackHandler from which to get attachments
+     * @param encryptionSerializer The Serializer to use to decrypt EncryptedData
+     * @param callbackLookup The CallbackLookup to notify of the decrypted Elements (can be null)
+     * @throws WSSecurityException
+     */
+    public static WSDataRef
+    decryptEncryptedData(
+        Document doc,
+        String dataRefURI,
+        Element encData,
+        SecretKey symmetricKey,
+        String symEncAlgo,
+        CallbackHandler attachmentCallbackHandler,
+        Serializer encryptionSerializer,
+        CallbackLookup callbackLookup
+    ) throws WSSecurityException {
 
         // See if it is an attachment, and handle that differently
         String typeStr = encData.getAttributeNS(null, "Type");
@@ -174,6 +205,7 @@ public final class EncryptionUtils {
         Element encDataOrig = encData;
         Node parent = encData.getParentNode();
         Node previousSibling = encData.getPreviousSibling();
+        Node nextSibling = encData.getNextSibling();
         if (content) {
             encData = (Element) encData.getParentNode();
             parent = encData.getParentNode();
@@ -210,7 +242,17 @@ public final class EncryptionUtils {
             } else {
                 //in this case, the XMLCipher knows how to handle encData when it's the parent node
                 // (i.e., when content == true)
-                xmlCipher.doFinal(doc, encData, content);
+                long cipherValueLength = SecurityMetrics.isEnabled() ? getCipherValueLength(encDataOrig) : 0L;
+                SecurityMetricsListener.Timer timer =
+                    SecurityMetrics.start(SecurityOperation.DECRYPT, symEncAlgo);
+                try {
+                    xmlCipher.doFinal(doc, encData, content);
+                } finally {
+                    timer.stop();
+                }
+                if (cipherValueLength > 0) {
+                    SecurityMetrics.bytesProcessed(SecurityOperation.DECRYPT, symEncAlgo, cipherValueLength);
+                }
             }
         } catch (Exception ex) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_CHECK, ex);
@@ -224,13 +266,28 @@ public final class EncryptionUtils {
             Node decryptedHeader = parent.getFirstChild();
             Node soapHeader = parent.getParentNode();
             soapHeader.replaceChild(decryptedHeader, parent);
+            if (callbackLookup != null) {
+                callbackLookup.elementsAdded(decryptedHeader);
+            }
 
             dataRef.setProtectedElement((Element)decryptedHeader);
             dataRef.setXpath(getXPath(decryptedHeader));
         } else if (content) {
+            if (callbackLookup != null) {
+                callbackLookup.elementsAdded(encData);
+            }
             dataRef.setProtectedElement(encData);
             dataRef.setXpath(getXPath(encData));
         } else {
+            if (callbackLookup != null) {
+                // The decrypted Nodes replace EncryptedData (an attachment is appended instead)
+                Node node = previousSibling == null ? parent.getFirstChild() : previousSibling.getNextSibling();
+                while (node != null && node != nextSibling) {
+                    callbackLookup.elementsAdded(node);
+                    node = node.getNextSibling();
+                }
+                callbackLookup.elementsAdded(decryptedNode);
+            }
             if (decryptedNode == null) {
                 if (previousSibling == null) {
                     decryptedNode = parent.getFirstChild();
@@ -265,6 +322,46 @@ public final class EncryptionUtils {
         return null;
     }
 
+    /**
+     * @return the number of characters of the (Base-64 encoded) CipherValue of the given
+     * EncryptedData element, or 0 if it has no CipherValue
+     */
+    private static long getCipherValueLength(Element encData) {
+        Element cipherValue = getCipherValueFromEncryptedData(encData);
+        long characters = 0;
+        if (cipherValue != null) {
+            for (Node node = cipherValue.getFirstChild(); node != null; node = node.getNextSibling()) {
+                if (Node.TEXT_NODE == node.getNodeType()) {
+                    characters += countBase64Characters(((Text)node).getData());
+                }
+            }
+        }
+        return characters * 3 / 4;
+    }
+
+    /**
+     * Get the number of bytes that the given Base-64 encoded data decodes to, without decoding it.
+     * @param base64EncodedData the Base-64 encoded data, which may contain whitespace and padding
+     * @return the number of decoded bytes
+     */
+    public static long getDecodedBase64Length(String base64EncodedData) {
+        return base64EncodedData == null ? 0L : countBase64Characters(base64EncodedData) * 3 / 4;
+    }
+
+    /**
+     * Count the characters of the Base-64 alphabet, which each encode 6 bits
+     */
+    private static long countBase64Characters(String text) {
+        long characters = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != '=' && !Character.isWhitespace(c)) {
+                characters++;
+            }
+        }
+        return characters;
+    }
+
     public static String getXOPURIFromCipherValue(Element cipherValue) {
         if (cipherValue != null) {
             Element cipherValueChild =
@@ -25,6 +25,7 @@ import java.security.cert.X509Certificate;
 
 import javax.security.auth.Subject;
 
+import org.apache.wss4j.common.cache.VerifiedAssertionCache;
 import org.apache.wss4j.common.saml.SamlAssertionWrapper;
 import org.apache.wss4j.common.token.BinarySecurity;
 import org.apache.wss4j.dom.message.token.SecurityContextToken;
@@ -50,6 +51,7 @@ public class Credential {
     private byte[] secretKey;
     private Subject subject;
     private Object delegationCredential;
+    private VerifiedAssertionCache.CacheKey verifiedAssertionCacheKey;
 
     /**
      * Set a SecurityContextToken to be validated
@@ -236,4 +238,22 @@ public class Credential {
         this.delegationCredential = delegationCredential;
     }
 
+    /**
+     * Set the key of the SAML Assertion in the VerifiedAssertionCache, if it was already
+     * computed when the Assertion was processed
+     * @param verifiedAssertionCacheKey the key of the SAML Assertion in the VerifiedAssertionCache
+     */
+    public void setVerifiedAssertionCacheKey(VerifiedAssertionCache.CacheKey verifiedAssertionCacheKey) {
+        this.verifiedAssertionCacheKey = verifiedAssertionCacheKey;
+    }
+
+    /**
+     * Get the key of the SAML Assertion in the VerifiedAssertionCache
+     * @return the key of the SAML Assertion in the VerifiedAssertionCache, or null if it was not
+     * computed yet
+     */
+    public VerifiedAssertionCache.CacheKey getVerifiedAssertionCacheKey() {
+        return verifiedAssertionCacheKey;
+    }
+
 }
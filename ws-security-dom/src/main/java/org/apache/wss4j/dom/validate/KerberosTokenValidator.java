@@ -26,12 +26,11 @@ import java.util.Set;
 
 import javax.security.auth.Subject;
 import javax.security.auth.callback.CallbackHandler;
-import javax.security.auth.login.LoginContext;
-import javax.security.auth.login.LoginException;
 
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.ext.WSSecurityException.ErrorCode;
 import org.apache.wss4j.common.kerberos.KerberosServiceContext;
+import org.apache.wss4j.common.kerberos.KerberosServiceCredentialManager;
 import org.apache.wss4j.common.kerberos.KerberosServiceExceptionAction;
 import org.apache.wss4j.common.kerberos.KerberosTokenDecoder;
 import org.apache.wss4j.common.kerberos.KerberosTokenDecoderException;
@@ -52,6 +51,7 @@ public class KerberosTokenValidator implements Validator {
     private KerberosTokenDecoder kerberosTokenDecoder;
     private boolean isUsernameServiceNameForm;
     private boolean spnego;
+    private KerberosServiceCredentialManager serviceCredentialManager;
 
     /**
      * Get the JAAS Login context name to use.
@@ -121,6 +121,26 @@ public class KerberosTokenValidator implements Validator {
         this.kerberosTokenDecoder = kerberosTokenDecoder;
     }
 
+    /**
+     * Get the KerberosServiceCredentialManager used to share the Subject of the login to the
+     * JAAS Login context between validations.
+     * @return the KerberosServiceCredentialManager used to share the Subject of the login
+     */
+    public KerberosServiceCredentialManager getServiceCredentialManager() {
+        return serviceCredentialManager;
+    }
+
+    /**
+     * Set the KerberosServiceCredentialManager used to share the Subject of the login to the
+     * JAAS Login context between validations. The default is null, which logs in to the JAAS
+     * Login context for every validated token.
+     * @param serviceCredentialManager the KerberosServiceCredentialManager used to share the
+     * Subject of the login
+     */
+    public void setServiceCredentialManager(KerberosServiceCredentialManager serviceCredentialManager) {
+        this.serviceCredentialManager = serviceCredentialManager;
+    }
+
     /**
      * Validate the credential argument. It must contain a non-null BinarySecurityToken.
      *
@@ -149,63 +169,27 @@ public class KerberosTokenValidator implements Validator {
             }
         }
 
-        // Get a TGT from the KDC using JAAS
-        LoginContext loginContext = null;
-        try {
-            if (callbackHandler != null) {
-                loginContext = new LoginContext(getContextName(), callbackHandler);
-            } else if (data.getCallbackHandler() != null) {
-                loginContext = new LoginContext(getContextName(), data.getCallbackHandler());
-            } else {
-                loginContext = new LoginContext(getContextName());
-            }
-            loginContext.login();
-        } catch (LoginException ex) {
-            if (LOG.isDebugEnabled()) {
-                LOG.debug(ex.getMessage(), ex);
-            }
-            throw new WSSecurityException(
-                WSSecurityException.ErrorCode.FAILURE, ex,
-                "kerberosLoginError",
-                new Object[] {ex.getMessage()}
-            );
-        }
-        if (LOG.isDebugEnabled()) {
-            LOG.debug("Successfully authenticated to the TGT");
+        CallbackHandler loginCallbackHandler = callbackHandler;
+        if (loginCallbackHandler == null) {
+            loginCallbackHandler = data.getCallbackHandler();
         }
 
         byte[] token = binarySecurity.getToken();
 
-        // Get the service name to use - fall back on the principal
-        Subject subject = loginContext.getSubject();
-        String service = serviceName;
-        if (service == null) {
-            Set<Principal> principals = subject.getPrincipals();
-            if (principals.isEmpty()) {
-                throw new WSSecurityException(
-                    WSSecurityException.ErrorCode.FAILURE,
-                    "kerberosLoginError",
-                    new Object[] {"No Client principals found after login"});
-            }
-            service = principals.iterator().next().getName();
-        }
-
-        // Validate the ticket
-        KerberosServiceExceptionAction action =
-            new KerberosServiceExceptionAction(token, service,
-                                               isUsernameServiceNameForm(), spnego);
-        KerberosServiceContext krbServiceCtx = null;
+        // Get a TGT from the KDC using JAAS, or the Subject of a previous login
+        Subject subject = getSubject(loginCallbackHandler);
+        KerberosServiceContext krbServiceCtx;
         try {
-            krbServiceCtx = Subject.doAs(subject, action);
-        } catch (PrivilegedActionException e) {
-            Throwable cause = e.getCause();
-            if (cause instanceof WSSecurityException) {
-                throw (WSSecurityException) cause;
-            } else {
-                throw new WSSecurityException(
-                    ErrorCode.FAILURE, new Exception(cause), "kerberosTicketValidationError"
-                );
+            krbServiceCtx = validateTicket(token, subject);
+        } catch (WSSecurityException ex) {
+            // The shared service credentials may have been changed, so log in again and retry once
+            if (serviceCredentialManager == null
+                || !serviceCredentialManager.invalidate(getContextName(), subject)) {
+                throw ex;
             }
+            LOG.debug("Validating the ticket failed, logging in again to retry");
+            subject = getSubject(loginCallbackHandler);
+            krbServiceCtx = validateTicket(token, subject);
         }
 
         credential.setPrincipal(krbServiceCtx.getPrincipal());
@@ -251,6 +235,52 @@ public class KerberosTokenValidator implements Validator {
         return credential;
     }
 
+    private Subject getSubject(CallbackHandler loginCallbackHandler) throws WSSecurityException {
+        Subject subject;
+        if (serviceCredentialManager != null) {
+            subject = serviceCredentialManager.getSubject(getContextName(), loginCallbackHandler);
+        } else {
+            subject = KerberosServiceCredentialManager.login(getContextName(), loginCallbackHandler);
+        }
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Successfully authenticated to the TGT");
+        }
+        return subject;
+    }
+
+    private KerberosServiceContext validateTicket(byte[] token, Subject subject)
+        throws WSSecurityException {
+        // Get the service name to use - fall back on the principal
+        String service = serviceName;
+        if (service == null) {
+            Set<Principal> principals = subject.getPrincipals();
+            if (principals.isEmpty()) {
+                throw new WSSecurityException(
+                    WSSecurityException.ErrorCode.FAILURE,
+                    "kerberosLoginError",
+                    new Object[] {"No Client principals found after login"});
+            }
+            service = principals.iterator().next().getName();
+        }
+
+        // Validate the ticket
+        KerberosServiceExceptionAction action =
+            new KerberosServiceExceptionAction(token, service,
+                                               isUsernameServiceNameForm(), spnego);
+        try {
+            return Subject.doAs(subject, action);
+        } catch (PrivilegedActionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof WSSecurityException) {
+                throw (WSSecurityException) cause;
+            } else {
+                throw new WSSecurityException(
+                    ErrorCode.FAILURE, new Exception(cause), "kerberosTicketValidationError"
+                );
+            }
+        }
+    }
+
     /**
      * SPN can be configured to be in either <b>"hostbased"</b> or <b>"username"</b> form.<br/>
      *     - <b>"hostbased"</b> - specifies that the service principal name should be interpreted as a "host-based" name as specified in GSS API Rfc, section "4.1: Host-Based Service Name Form" - The service name, as it is specified in LDAP/AD, as it is listed in the KDC.<br/>
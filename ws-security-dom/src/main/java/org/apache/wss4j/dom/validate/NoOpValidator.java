@@ -20,12 +20,14 @@
 package org.apache.wss4j.dom.validate;
 
 
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.dom.handler.RequestData;
 
 /**
  * This class does not do any Validation at all.
  */
+@ThreadSafe
 public class NoOpValidator implements Validator {
 
     /**
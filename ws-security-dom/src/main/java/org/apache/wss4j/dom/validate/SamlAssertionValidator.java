@@ -23,7 +23,11 @@ import java.util.Date;
 import java.util.List;
 
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.VerifiedAssertionCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityOperation;
 import org.apache.wss4j.common.saml.OpenSAMLUtil;
 import org.apache.wss4j.common.saml.SAMLKeyInfo;
 import org.apache.wss4j.common.saml.SamlAssertionWrapper;
@@ -117,13 +121,41 @@ public class SamlAssertionValidator extends SignatureTrustValidator {
         // Validate the assertion against schemas/profiles
         validateAssertion(samlAssertion);
 
-        // Verify trust on the signature
+        // Verify trust on the signature, unless an identical Assertion has been trusted before
         if (samlAssertion.isSigned()) {
-            verifySignedAssertion(samlAssertion, data);
+            VerifiedAssertionCache verifiedAssertionCache = data.getVerifiedAssertionCache();
+            if (verifiedAssertionCache == null) {
+                verifySignedAssertion(samlAssertion, data);
+            } else {
+                // The Assertion is only digested once, the key may have been created by the processor
+                VerifiedAssertionCache.CacheKey cacheKey = credential.getVerifiedAssertionCacheKey();
+                if (cacheKey == null) {
+                    cacheKey = createVerifiedAssertionCacheKey(verifiedAssertionCache, samlAssertion, data);
+                }
+                if (verifiedAssertionCache.get(cacheKey) == null) {
+                    verifySignedAssertion(samlAssertion, data);
+                    verifiedAssertionCache.put(cacheKey, samlAssertion, samlAssertion.getSignatureKeyInfo());
+                }
+            }
         }
         return credential;
     }
 
+    /**
+     * Create the key of the given Assertion in the VerifiedAssertionCache, which covers the
+     * settings under which trust in the signing key is verified.
+     */
+    public static VerifiedAssertionCache.CacheKey createVerifiedAssertionCacheKey(
+        VerifiedAssertionCache verifiedAssertionCache,
+        SamlAssertionWrapper samlAssertion,
+        RequestData data
+    ) throws WSSecurityException {
+        return verifiedAssertionCache.createKey(
+            data.getSigVerCrypto(), samlAssertion, data.isRevocationEnabled(),
+            data.getSubjectCertConstraints(), data.getIssuerDNPatterns()
+        );
+    }
+
     /**
      * Check the Subject Confirmation method requirements
      */
@@ -252,24 +284,30 @@ public class SamlAssertionValidator extends SignatureTrustValidator {
             String identifier = samlAssertion.getId();
 
             ReplayCache replayCache = data.getSamlOneTimeUseReplayCache();
-            if (replayCache.contains(identifier)) {
+            DateTime expires = samlAssertion.getSaml2().getConditions().getNotOnOrAfter();
+            boolean added;
+            SecurityMetricsListener.Timer timer =
+                SecurityMetrics.start(SecurityOperation.REPLAY_CACHE, "SamlOneTimeUseReplayCache");
+            try {
+                if (expires != null) {
+                    Date rightNow = new Date();
+                    long currentTime = rightNow.getTime();
+                    long expiresTime = expires.getMillis();
+                    added = replayCache.addIfAbsent(identifier, 1L + (expiresTime - currentTime) / 1000L);
+                } else {
+                    added = replayCache.addIfAbsent(identifier);
+                }
+            } finally {
+                timer.stop();
+            }
+            SecurityMetrics.cacheAccess("SamlOneTimeUseReplayCache", !added);
+
+            if (!added) {
                 throw new WSSecurityException(
                     WSSecurityException.ErrorCode.INVALID_SECURITY,
                     "badSamlToken",
                     new Object[] {"A replay attack has been detected"});
             }
-
-            DateTime expires = samlAssertion.getSaml2().getConditions().getNotOnOrAfter();
-            if (expires != null) {
-                Date rightNow = new Date();
-                long currentTime = rightNow.getTime();
-                long expiresTime = expires.getMillis();
-                replayCache.add(identifier, 1L + (expiresTime - currentTime) / 1000L);
-            } else {
-                replayCache.add(identifier);
-            }
-
-            replayCache.add(identifier);
         }
     }
 
@@ -24,6 +24,7 @@ import java.security.cert.X509Certificate;
 import java.util.Collection;
 import java.util.regex.Pattern;
 
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.dom.handler.RequestData;
@@ -32,6 +33,7 @@ import org.apache.wss4j.dom.handler.RequestData;
  * This class verifies trust in a credential used to verify a signature, which is extracted
  * from the Credential passed to the validate method.
  */
+@ThreadSafe
 public class SignatureTrustValidator implements Validator {
 
     private static final org.slf4j.Logger LOG =
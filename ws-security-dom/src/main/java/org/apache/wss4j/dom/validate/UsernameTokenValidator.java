@@ -25,6 +25,7 @@ import java.util.Base64;
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.UnsupportedCallbackException;
 
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
@@ -35,6 +36,7 @@ import org.apache.wss4j.dom.message.token.UsernameToken;
  * This class validates a processed UsernameToken, extracted from the Credential passed to
  * the validate method.
  */
+@ThreadSafe
 public class UsernameTokenValidator implements Validator {
 
     private static final org.slf4j.Logger LOG =
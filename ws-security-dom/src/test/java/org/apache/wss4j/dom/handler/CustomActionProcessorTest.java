@@ -23,6 +23,7 @@ import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.common.CustomAction;
 import org.apache.wss4j.dom.common.CustomHandler;
 import org.apache.wss4j.dom.common.CustomProcessor;
+import org.apache.wss4j.dom.common.CustomSamlAssertionValidator;
 import org.apache.wss4j.dom.common.SOAPUtil;
 import org.apache.wss4j.dom.common.SecurityTestUtil;
 import org.apache.wss4j.dom.engine.WSSConfig;
@@ -266,4 +267,35 @@ public class CustomActionProcessorTest extends org.junit.Assert {
         }
     }
 
+    /**
+     * Test that the default (thread-safe) processors, validators and actions are shared, and
+     * that the custom ones are instantiated each time they are used.
+     */
+    @Test
+    public void
+    testThreadSafeInstancesAreShared() throws Exception {
+        WSSConfig cfg = WSSConfig.getNewInstance();
+        assertSame(cfg.getProcessor(WSConstants.SIGNATURE), cfg.getProcessor(WSConstants.SIGNATURE));
+        assertSame(cfg.getValidator(WSConstants.TIMESTAMP), cfg.getValidator(WSConstants.TIMESTAMP));
+        assertSame(cfg.getAction(WSConstants.SIGN), cfg.getAction(WSConstants.SIGN));
+        assertSame(
+            cfg.getProcessor(WSConstants.SIGNATURE),
+            WSSConfig.getNewInstance().getProcessor(WSConstants.SIGNATURE)
+        );
+        // The SamlAssertionValidator is configured through setters, so it is not shared
+        assertNotSame(cfg.getValidator(WSConstants.SAML2_TOKEN), cfg.getValidator(WSConstants.SAML2_TOKEN));
+
+        // The ThreadSafe annotation is not inherited
+        cfg.setProcessor(WSConstants.SIGNATURE, CustomProcessor.class);
+        cfg.setValidator(WSConstants.SAML2_TOKEN, CustomSamlAssertionValidator.class);
+        cfg.setAction(WSConstants.SIGN, CustomAction.class);
+        assertNotSame(cfg.getProcessor(WSConstants.SIGNATURE), cfg.getProcessor(WSConstants.SIGNATURE));
+        assertNotSame(cfg.getValidator(WSConstants.SAML2_TOKEN), cfg.getValidator(WSConstants.SAML2_TOKEN));
+        assertNotSame(cfg.getAction(WSConstants.SIGN), cfg.getAction(WSConstants.SIGN));
+
+        cfg.setShareThreadSafeInstances(false);
+        assertNotSame(cfg.getProcessor(WSConstants.TIMESTAMP), cfg.getProcessor(WSConstants.TIMESTAMP));
+        assertNotSame(cfg.getValidator(WSConstants.TIMESTAMP), cfg.getValidator(WSConstants.TIMESTAMP));
+    }
+
 }
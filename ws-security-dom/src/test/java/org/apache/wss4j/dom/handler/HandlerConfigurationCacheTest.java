@@ -0,0 +1,214 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.dom.handler;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import org.apache.wss4j.common.SignatureActionToken;
+import org.apache.wss4j.common.WSEncryptionPart;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.common.CustomAction;
+import org.apache.wss4j.dom.common.CustomHandler;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.junit.Test;
+
+/**
+ * Some tests for the parsed WSHandler configuration values.
+ */
+public class HandlerConfigurationCacheTest extends org.junit.Assert {
+
+    @Test
+    public void testParts() throws Exception {
+        HandlerConfigurationCache cache = new HandlerConfigurationCache();
+        String definition = "{Content}{}Body;{Element}{" + WSConstants.WSU_NS + "}Timestamp;{}Token";
+
+        List<WSEncryptionPart> parts = new ArrayList<>();
+        cache.addParts(definition, true, WSConstants.URI_SOAP11_ENV, parts);
+        assertEquals(3, parts.size());
+        assertEquals("Body", parts.get(0).getName());
+        assertEquals(WSConstants.URI_SOAP11_ENV, parts.get(0).getNamespace());
+        assertEquals("Content", parts.get(0).getEncModifier());
+        assertEquals(WSConstants.WSU_NS, parts.get(1).getNamespace());
+        assertEquals("Element", parts.get(1).getEncModifier());
+        assertEquals("Token", parts.get(2).getId());
+        for (WSEncryptionPart part : parts) {
+            assertTrue(part.isRequired());
+        }
+
+        // The parts are copied for every call
+        List<WSEncryptionPart> optionalParts = new ArrayList<>();
+        cache.addParts(definition, false, WSConstants.URI_SOAP11_ENV, optionalParts);
+        assertEquals(3, optionalParts.size());
+        for (int i = 0; i < parts.size(); i++) {
+            assertNotSame(parts.get(i), optionalParts.get(i));
+            assertFalse(optionalParts.get(i).isRequired());
+        }
+        assertTrue(parts.get(0).isRequired());
+
+        // The default namespace depends on the SOAP version of the message
+        List<WSEncryptionPart> soap12Parts = new ArrayList<>();
+        cache.addParts(definition, true, WSConstants.URI_SOAP12_ENV, soap12Parts);
+        assertEquals(WSConstants.URI_SOAP12_ENV, soap12Parts.get(0).getNamespace());
+    }
+
+    @Test(expected = WSSecurityException.class)
+    public void testInvalidParts() throws Exception {
+        HandlerConfigurationCache cache = new HandlerConfigurationCache();
+        cache.addParts("{Content}{}{}Body", true, WSConstants.URI_SOAP11_ENV, new ArrayList<>());
+    }
+
+    @Test
+    public void testPatterns() throws Exception {
+        HandlerConfigurationCache cache = new HandlerConfigurationCache();
+        List<Pattern> patterns = cache.getPatterns(".*CN=Colm.*, .*O=Apache.*");
+        assertEquals(2, patterns.size());
+        assertEquals(".*O=Apache.*", patterns.get(1).pattern());
+
+        // The caller gets its own (modifiable) list
+        patterns.clear();
+        List<Pattern> cachedPatterns = cache.getPatterns(".*CN=Colm.*, .*O=Apache.*");
+        assertEquals(2, cachedPatterns.size());
+    }
+
+    @Test
+    public void testInvalidPattern() throws Exception {
+        HandlerConfigurationCache cache = new HandlerConfigurationCache();
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.getPatterns(".*CN=Colm.*, *O=Apache[");
+                fail("Failure expected on an invalid pattern");
+            } catch (WSSecurityException ex) {
+                assertEquals(WSSecurityException.ErrorCode.FAILURE, ex.getErrorCode());
+            }
+        }
+    }
+
+    @Test
+    public void testDecodeAction() throws Exception {
+        HandlerConfigurationCache cache = new HandlerConfigurationCache();
+        String action = WSHandlerConstants.TIMESTAMP + " " + WSHandlerConstants.SIGNATURE;
+        List<Integer> actions = cache.getActions(action);
+        assertEquals(2, actions.size());
+        assertEquals(WSConstants.TS, actions.get(0).intValue());
+        assertEquals(WSConstants.SIGN, actions.get(1).intValue());
+
+        actions.clear();
+        assertEquals(2, cache.getActions(action).size());
+    }
+
+    @Test
+    public void testDecodeHandlerAction() throws Exception {
+        HandlerConfigurationCache cache = new HandlerConfigurationCache();
+        WSSConfig wssConfig = WSSConfig.getNewInstance();
+        String action = WSHandlerConstants.TIMESTAMP + " " + WSHandlerConstants.SIGNATURE;
+        List<HandlerAction> actions = cache.getHandlerActions(action, wssConfig);
+        assertEquals(2, actions.size());
+        assertEquals(WSConstants.TS, actions.get(0).getAction().intValue());
+
+        // New HandlerActions are created for every call
+        List<HandlerAction> cachedActions = cache.getHandlerActions(action, wssConfig);
+        assertEquals(WSConstants.SIGN, cachedActions.get(1).getAction().intValue());
+        assertNotSame(actions.get(1), cachedActions.get(1));
+
+        // A custom action is validated against the WSSConfig of every call
+        WSSConfig customConfig = WSSConfig.getNewInstance();
+        customConfig.setAction(999, CustomAction.class);
+        assertEquals(1, cache.getHandlerActions("999", customConfig).size());
+        try {
+            cache.getHandlerActions("999", wssConfig);
+            fail("Failure expected on an unknown action");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILURE, ex.getErrorCode());
+        }
+    }
+
+    @Test
+    public void testBooleansAndTimeToLive() throws Exception {
+        HandlerConfigurationCache cache = new HandlerConfigurationCache();
+        assertTrue(cache.getBoolean("true"));
+        assertTrue(cache.getBoolean("1"));
+        assertFalse(cache.getBoolean("false"));
+        assertFalse(cache.getBoolean("0"));
+        assertNull(cache.getBoolean("yes"));
+
+        assertEquals(600, cache.getTimeToLive("600"));
+        assertEquals(-1, cache.getTimeToLive("-10"));
+        assertEquals(-1, cache.getTimeToLive("abc"));
+    }
+
+    @Test
+    public void testDecodedValues() throws Exception {
+        HandlerConfigurationCache cache = new HandlerConfigurationCache();
+        final AtomicInteger decodeCount = new AtomicInteger();
+        HandlerConfigurationCache.Decoder<Object> decoder = () -> {
+            decodeCount.incrementAndGet();
+            return new Object();
+        };
+
+        Object decoded = cache.getDecodedValue("test", new String[] {"a", null}, decoder);
+        assertSame(decoded, cache.getDecodedValue("test", new String[] {"a", null}, decoder));
+        assertEquals(1, decodeCount.get());
+
+        // Other values, or another group of values, are decoded separately
+        assertNotSame(decoded, cache.getDecodedValue("test", new String[] {"a", "b"}, decoder));
+        assertNotSame(decoded, cache.getDecodedValue("other", new String[] {"a", null}, decoder));
+        assertEquals(3, decodeCount.get());
+    }
+
+    @Test
+    public void testSignatureParameters() throws Exception {
+        CustomHandler handler = new CustomHandler();
+        Map<String, Object> config = new HashMap<>();
+        config.put(WSHandlerConstants.SIG_KEY_ID, "DirectReference");
+        config.put(WSHandlerConstants.SIG_ALGO, WSConstants.RSA_SHA1);
+        config.put(WSHandlerConstants.SIGNATURE_PARTS, "{}{" + WSConstants.WSU_NS + "}Timestamp");
+        config.put(WSHandlerConstants.USE_SINGLE_CERTIFICATE, "false");
+
+        for (int i = 0; i < 2; i++) {
+            RequestData reqData = new RequestData();
+            reqData.setMsgContext(config);
+            reqData.setUsername("alice");
+            handler.decodeSignatureParameter(reqData);
+
+            SignatureActionToken actionToken = reqData.getSignatureToken();
+            assertEquals(WSConstants.BST_DIRECT_REFERENCE, actionToken.getKeyIdentifierId());
+            assertEquals(WSConstants.RSA_SHA1, actionToken.getSignatureAlgorithm());
+            assertEquals("alice", actionToken.getUser());
+            assertFalse(actionToken.isUseSingleCert());
+            assertEquals(1, actionToken.getParts().size());
+            assertEquals("Timestamp", actionToken.getParts().get(0).getName());
+        }
+
+        // A different configuration of the message is decoded separately
+        config.put(WSHandlerConstants.SIG_KEY_ID, "IssuerSerial");
+        RequestData reqData = new RequestData();
+        reqData.setMsgContext(config);
+        handler.decodeSignatureParameter(reqData);
+        assertEquals(WSConstants.ISSUER_SERIAL, reqData.getSignatureToken().getKeyIdentifierId());
+        assertFalse(reqData.getSignatureToken().isUseSingleCert());
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.dom.handler;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.crypto.Merlin;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+import org.apache.wss4j.common.metrics.SecurityOperation;
+import org.apache.wss4j.common.metrics.StatisticsSecurityMetricsListener;
+import org.apache.wss4j.common.metrics.StatisticsSecurityMetricsListener.OperationStatistics;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.action.EncryptionAction;
+import org.apache.wss4j.dom.action.SignatureAction;
+import org.apache.wss4j.dom.action.TimestampAction;
+import org.apache.wss4j.dom.common.CustomHandler;
+import org.apache.wss4j.dom.common.KeystoreCallbackHandler;
+import org.apache.wss4j.dom.common.SOAPUtil;
+import org.apache.wss4j.dom.common.SecurityTestUtil;
+import org.apache.wss4j.dom.engine.WSSecurityEngine;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.w3c.dom.Document;
+
+/**
+ * Some tests for the SecurityMetricsListener notifications of the DOM code.
+ */
+public class SecurityMetricsTest extends org.junit.Assert {
+
+    private static final String USER = "16c73ab6-b892-458f-abf5-2f875f74882e";
+
+    private StatisticsSecurityMetricsListener listener;
+
+    @org.junit.AfterClass
+    public static void cleanup() throws Exception {
+        SecurityTestUtil.cleanup();
+    }
+
+    @Before
+    public void setListener() {
+        listener = new StatisticsSecurityMetricsListener();
+        SecurityMetrics.setListener(listener);
+    }
+
+    @After
+    public void resetListener() {
+        SecurityMetrics.setListener(null);
+    }
+
+    @Test
+    public void testSendAndProcess() throws Exception {
+        final RequestData reqData = new RequestData();
+        java.util.Map<String, Object> msgContext = new java.util.TreeMap<String, Object>();
+        msgContext.put(WSHandlerConstants.SIG_PROP_FILE, "crypto.properties");
+        msgContext.put(WSHandlerConstants.ENC_PROP_FILE, "crypto.properties");
+        msgContext.put(WSHandlerConstants.ENCRYPTION_USER, USER);
+        msgContext.put("password", "security");
+        reqData.setMsgContext(msgContext);
+        reqData.setUsername(USER);
+
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        CustomHandler handler = new CustomHandler();
+        List<HandlerAction> actions = new ArrayList<>();
+        actions.add(new HandlerAction(WSConstants.TS));
+        actions.add(new HandlerAction(WSConstants.SIGN));
+        actions.add(new HandlerAction(WSConstants.ENCR));
+        handler.send(doc, reqData, actions, true);
+
+        assertCount(1, SecurityOperation.ACTION, TimestampAction.class.getName());
+        assertCount(1, SecurityOperation.ACTION, SignatureAction.class.getName());
+        assertCount(1, SecurityOperation.ACTION, EncryptionAction.class.getName());
+        assertCount(1, SecurityOperation.SIGN, WSConstants.RSA);
+        OperationStatistics encryption =
+            listener.getStatistics(SecurityOperation.ENCRYPT, WSConstants.AES_128);
+        assertEquals(1, encryption.getCount());
+        assertTrue(encryption.getBytes() > 0);
+        // The decoded cipher value is the IV followed by the padded CBC blocks
+        assertEquals(0, encryption.getBytes() % 16);
+
+        // The private key is only needed to sign
+        long getPrivateKey =
+            listener.getStatistics(SecurityOperation.GET_PRIVATE_KEY, Merlin.class.getName()).getCount();
+        assertTrue(getPrivateKey > 0);
+
+        listener.reset();
+
+        Crypto crypto = CryptoFactory.getInstance();
+        WSSecurityEngine secEngine = new WSSecurityEngine();
+        secEngine.processSecurityHeader(doc, null, new KeystoreCallbackHandler(), crypto);
+
+        assertCount(1, SecurityOperation.PROCESSOR, WSConstants.TIMESTAMP_TOKEN_LN);
+        assertCount(1, SecurityOperation.PROCESSOR, WSConstants.SIG_LN);
+        assertCount(1, SecurityOperation.PROCESSOR, WSConstants.ENC_KEY_LN);
+        assertCount(1, SecurityOperation.VERIFY, WSConstants.RSA);
+        assertCount(1, SecurityOperation.UNWRAP, WSConstants.KEYTRANSPORT_RSAOAEP);
+        assertCount(1, SecurityOperation.VERIFY_TRUST, Merlin.class.getName());
+        OperationStatistics decryption =
+            listener.getStatistics(SecurityOperation.DECRYPT, WSConstants.AES_128);
+        assertEquals(1, decryption.getCount());
+        assertEquals(encryption.getBytes(), decryption.getBytes());
+        assertTrue(decryption.getTotalTime() > 0);
+    }
+
+    @Test
+    public void testNoListener() throws Exception {
+        SecurityMetrics.setListener(null);
+        assertFalse(SecurityMetrics.isEnabled());
+
+        final RequestData reqData = new RequestData();
+        java.util.Map<String, Object> msgContext = new java.util.TreeMap<String, Object>();
+        reqData.setMsgContext(msgContext);
+
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        CustomHandler handler = new CustomHandler();
+        List<HandlerAction> actions = new ArrayList<>();
+        actions.add(new HandlerAction(WSConstants.TS));
+        handler.send(doc, reqData, actions, true);
+
+        assertTrue(listener.getStatistics(SecurityOperation.ACTION).isEmpty());
+    }
+
+    private void assertCount(long expected, SecurityOperation operation, String name) {
+        OperationStatistics statistics = listener.getStatistics(operation, name);
+        assertNotNull(operation + " " + name + " was not reported", statistics);
+        assertEquals(operation + " " + name, expected, statistics.getCount());
+    }
+}
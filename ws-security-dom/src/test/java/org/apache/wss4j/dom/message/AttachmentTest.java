@@ -31,6 +31,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
@@ -50,6 +55,7 @@ import org.apache.wss4j.dom.common.KeystoreCallbackHandler;
 import org.apache.wss4j.dom.common.SOAPUtil;
 import org.apache.wss4j.dom.engine.WSSConfig;
 import org.apache.wss4j.dom.engine.WSSecurityEngine;
+import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.handler.WSHandlerResult;
 import org.junit.Assert;
@@ -351,6 +357,171 @@ public class AttachmentTest extends Assert {
         Assert.assertEquals("text/plain", responseAttachment.getMimeType());
     }
 
+    @Test
+    public void testMultipleAttachmentCompleteSignatureConcurrently() throws Exception {
+        Attachment[] attachment = createAttachments(4);
+        Document signedDoc = signAttachments(attachment);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        final AtomicInteger tasks = new AtomicInteger();
+        Executor executor = command -> {
+            tasks.incrementAndGet();
+            executorService.execute(command);
+        };
+        try {
+            // The attachment CallbackHandler must be thread-safe
+            final AttachmentCallbackHandler attachmentCallbackHandler =
+                new AttachmentCallbackHandler(Arrays.asList(attachment));
+            verify(signedDoc, callbacks -> {
+                synchronized (attachmentCallbackHandler) {
+                    attachmentCallbackHandler.handle(callbacks);
+                }
+            }, executor);
+
+            Assert.assertEquals(attachment.length, tasks.get());
+            Assert.assertEquals(attachment.length, attachmentCallbackHandler.getResponseAttachments().size());
+            for (Attachment responseAttachment : attachmentCallbackHandler.getResponseAttachments()) {
+                byte[] attachmentBytes = readInputStream(responseAttachment.getSourceStream());
+                Assert.assertTrue(
+                    Arrays.equals(attachmentBytes, SOAPUtil.SAMPLE_SOAP_MSG.getBytes(StandardCharsets.UTF_8)));
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * The attachment references are verified on the calling thread if the Executor rejects them
+     * (e.g. as it is saturated or shut down).
+     */
+    @Test
+    public void testMultipleAttachmentCompleteSignatureRejectedExecution() throws Exception {
+        Attachment[] attachment = createAttachments(4);
+        Document signedDoc = signAttachments(attachment);
+
+        final AtomicInteger tasks = new AtomicInteger();
+        Executor executor = command -> {
+            tasks.incrementAndGet();
+            throw new RejectedExecutionException("Rejected");
+        };
+        AttachmentCallbackHandler attachmentCallbackHandler =
+            new AttachmentCallbackHandler(Arrays.asList(attachment));
+        WSHandlerResult results = verify(signedDoc, attachmentCallbackHandler, executor);
+
+        Assert.assertEquals(attachment.length, tasks.get());
+        WSSecurityEngineResult result = results.getActionResults().get(WSConstants.SIGN).get(0);
+        List<?> dataRefs = (List<?>)result.get(WSSecurityEngineResult.TAG_DATA_REF_URIS);
+        Assert.assertEquals(attachment.length + 1, dataRefs.size());
+        Assert.assertEquals(attachment.length, attachmentCallbackHandler.getResponseAttachments().size());
+
+        // A modified attachment is still detected
+        attachment = createAttachments(4);
+        signedDoc = signAttachments(attachment);
+        attachment[3].addHeader(AttachmentUtils.MIME_HEADER_CONTENT_DESCRIPTION, "Kaputt");
+        try {
+            verify(signedDoc, new AttachmentCallbackHandler(Arrays.asList(attachment)), executor);
+            Assert.fail("Failure expected on a modified attachment");
+        } catch (WSSecurityException e) {
+            Assert.assertEquals(e.getMessage(), "The signature or decryption was invalid");
+        }
+    }
+
+    @Test
+    public void testInvalidMultipleAttachmentCompleteSignatureConcurrently() throws Exception {
+        Attachment[] attachment = createAttachments(4);
+        Document signedDoc = signAttachments(attachment);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            attachment[2].addHeader(AttachmentUtils.MIME_HEADER_CONTENT_DESCRIPTION, "Kaputt");
+            final AttachmentCallbackHandler attachmentCallbackHandler =
+                new AttachmentCallbackHandler(Arrays.asList(attachment));
+            verify(signedDoc, callbacks -> {
+                synchronized (attachmentCallbackHandler) {
+                    attachmentCallbackHandler.handle(callbacks);
+                }
+            }, executorService);
+            Assert.fail("Failure expected on a modified attachment");
+        } catch (WSSecurityException e) {
+            Assert.assertEquals(e.getMessage(), "The signature or decryption was invalid");
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    /**
+     * Verify many attachment references on a pool of threads, with a modified attachment in
+     * every other message.
+     */
+    @Test
+    public void testManyAttachmentReferencesConcurrently() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            // Secure validation allows at most 30 references per Signature
+            for (int i = 0; i < 20; i++) {
+                Attachment[] attachment = createAttachments(24);
+                Document signedDoc = signAttachments(attachment);
+                boolean modified = i % 2 == 1;
+                if (modified) {
+                    attachment[i].addHeader(AttachmentUtils.MIME_HEADER_CONTENT_DESCRIPTION, "Kaputt");
+                }
+
+                final AttachmentCallbackHandler attachmentCallbackHandler =
+                    new AttachmentCallbackHandler(Arrays.asList(attachment));
+                try {
+                    WSHandlerResult results = verify(signedDoc, callbacks -> {
+                        synchronized (attachmentCallbackHandler) {
+                            attachmentCallbackHandler.handle(callbacks);
+                        }
+                    }, executorService);
+                    Assert.assertFalse("Failure expected on a modified attachment", modified);
+
+                    WSSecurityEngineResult result = results.getActionResults().get(WSConstants.SIGN).get(0);
+                    List<?> dataRefs = (List<?>)result.get(WSSecurityEngineResult.TAG_DATA_REF_URIS);
+                    Assert.assertEquals(attachment.length + 1, dataRefs.size());
+                    Assert.assertEquals(attachment.length, attachmentCallbackHandler.getResponseAttachments().size());
+                } catch (WSSecurityException e) {
+                    Assert.assertTrue(modified);
+                    Assert.assertEquals(e.getMessage(), "The signature or decryption was invalid");
+                }
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private Attachment[] createAttachments(int count) {
+        Attachment[] attachments = new Attachment[count];
+        for (int i = 0; i < count; i++) {
+            String attachmentId = UUID.randomUUID().toString();
+            attachments[i] = new Attachment();
+            attachments[i].setMimeType(i % 2 == 0 ? "text/xml" : "text/plain");
+            attachments[i].addHeaders(getHeaders(attachmentId));
+            attachments[i].setId(attachmentId);
+            attachments[i].setSourceStream(
+                new ByteArrayInputStream(SOAPUtil.SAMPLE_SOAP_MSG.getBytes(StandardCharsets.UTF_8)));
+        }
+        return attachments;
+    }
+
+    private Document signAttachments(Attachment[] attachments) throws Exception {
+        WSSecSignature builder = new WSSecSignature();
+        builder.setUserInfo("16c73ab6-b892-458f-abf5-2f875f74882e", "security");
+
+        builder.getParts().add(new WSEncryptionPart("Body", "http://schemas.xmlsoap.org/soap/envelope/", "Content"));
+        builder.getParts().add(new WSEncryptionPart("cid:Attachments", "Element"));
+        builder.setAttachmentCallbackHandler(new AttachmentCallbackHandler(Arrays.asList(attachments)));
+
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+        Document signedDoc = builder.build(doc, crypto, secHeader);
+
+        NodeList sigReferences = signedDoc.getElementsByTagNameNS(WSConstants.SIG_NS, "Reference");
+        Assert.assertEquals(attachments.length + 1, sigReferences.getLength());
+        return signedDoc;
+    }
+
     @Test
     public void testXMLAttachmentContentEncryption() throws Exception {
         Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
@@ -1148,7 +1319,14 @@ public class AttachmentTest extends Assert {
      * @throws java.lang.Exception Thrown when there is a problem in verification
      */
     private WSHandlerResult verify(Document doc, CallbackHandler attachmentCallbackHandler) throws Exception {
+        return verify(doc, attachmentCallbackHandler, null);
+    }
+
+    private WSHandlerResult verify(
+        Document doc, CallbackHandler attachmentCallbackHandler, Executor referenceDigestExecutor
+    ) throws Exception {
         RequestData requestData = new RequestData();
+        requestData.setReferenceDigestExecutor(referenceDigestExecutor);
         requestData.setAttachmentCallbackHandler(attachmentCallbackHandler);
         requestData.setSigVerCrypto(crypto);
         requestData.setDecCrypto(crypto);
@@ -43,6 +43,9 @@ import javax.security.auth.callback.CallbackHandler;
 import javax.xml.namespace.QName;
 
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * This is some unit tests for encryption using encryption using parts. Note that the "soapMsg" below
@@ -560,6 +563,119 @@ public class EncryptionPartsTest extends org.junit.Assert {
         assertTrue(outputString.contains("asf2"));
     }
 
+    /**
+     * Test encrypting the SOAP Body and a number of headers in parallel.
+     */
+    @Test
+    public void testParallelEncryption() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            encryptInParallel(executor);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // An Executor that never runs a task, so that the calling thread must encrypt everything
+        encryptInParallel(new Executor() {
+            public void execute(Runnable command) {
+                // complete
+            }
+        });
+    }
+
+    private void encryptInParallel(Executor executor) throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPMSG);
+        SOAPConstants soapConstants =
+            WSSecurityUtil.getSOAPConstants(doc.getDocumentElement());
+        WSSecEncrypt encrypt = new WSSecEncrypt();
+        encrypt.setUserInfo("16c73ab6-b892-458f-abf5-2f875f74882e", "security");
+        encrypt.setKeyIdentifierType(WSConstants.ISSUER_SERIAL);
+        encrypt.setEncryptionExecutor(executor);
+
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        List<WSEncryptionPart> parts = encrypt.getParts();
+        parts.add(new WSEncryptionPart(soapConstants.getBodyQName().getLocalPart(),
+                                       soapConstants.getEnvelopeURI(), "Content"));
+        parts.add(new WSEncryptionPart("bar1", "urn:foo.bar", "Element"));
+        parts.add(new WSEncryptionPart("foobar", "urn:foo.bar", "Header"));
+        parts.add(new WSEncryptionPart("bar2", "urn:foo.bar", "Content"));
+
+        Document encryptedDoc = encrypt.build(doc, crypto, secHeader);
+
+        String outputString =
+            XMLUtils.prettyDocumentToString(encryptedDoc);
+        if (LOG.isDebugEnabled()) {
+            LOG.debug(outputString);
+        }
+        assertFalse(outputString.contains("testMethod"));
+        assertFalse(outputString.contains("baz1"));
+        assertFalse(outputString.contains("baz2"));
+        assertFalse(outputString.contains("foo:foobar"));
+        assertTrue(outputString.contains("wsse11:EncryptedHeader"));
+        assertTrue(outputString.contains("foo:bar2"));
+
+        // The ReferenceList is in the order of the parts
+        List<Element> dataReferences =
+            XMLUtils.findElements(encryptedDoc.getDocumentElement(), "DataReference", WSConstants.ENC_NS);
+        assertEquals(parts.size(), dataReferences.size());
+        for (int i = 0; i < parts.size(); i++) {
+            assertEquals("#" + parts.get(i).getEncId(), dataReferences.get(i).getAttributeNS(null, "URI"));
+        }
+
+        WSHandlerResult results = verify(encryptedDoc);
+        WSSecurityEngineResult actionResult =
+            results.getActionResults().get(WSConstants.ENCR).get(0);
+        @SuppressWarnings("unchecked")
+        final List<WSDataRef> refs =
+            (List<WSDataRef>) actionResult.get(WSSecurityEngineResult.TAG_DATA_REF_URIS);
+        assertEquals(parts.size(), refs.size());
+
+        outputString = XMLUtils.prettyDocumentToString(encryptedDoc);
+        assertTrue(outputString.contains("testMethod"));
+        assertTrue(outputString.contains("baz1"));
+        assertTrue(outputString.contains("baz2"));
+    }
+
+    /**
+     * Test encrypting an element and the SOAP Body that contains it with an Executor. These
+     * are not independent, and so they are encrypted one after another.
+     */
+    @Test
+    public void testParallelEncryptionNestedParts() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Document doc = SOAPUtil.toSOAPPart(SOAPMSG);
+            WSSecEncrypt encrypt = new WSSecEncrypt();
+            encrypt.setUserInfo("16c73ab6-b892-458f-abf5-2f875f74882e", "security");
+            encrypt.setKeyIdentifierType(WSConstants.ISSUER_SERIAL);
+            encrypt.setEncryptionExecutor(executor);
+
+            WSSecHeader secHeader = new WSSecHeader(doc);
+            secHeader.insertSecurityHeader();
+
+            encrypt.getParts().add(new WSEncryptionPart("testMethod",
+                "http://axis/service/security/test6/LogTestService8", "Element"));
+            encrypt.getParts().add(new WSEncryptionPart("Body", WSConstants.URI_SOAP11_ENV, "Content"));
+
+            Document encryptedDoc = encrypt.build(doc, crypto, secHeader);
+            String outputString = XMLUtils.prettyDocumentToString(encryptedDoc);
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(outputString);
+            }
+            assertFalse(outputString.contains("testMethod"));
+
+            Element body = WSSecurityUtil.findBodyElement(encryptedDoc);
+            List<Element> encryptedData =
+                XMLUtils.findElements(body, "EncryptedData", WSConstants.ENC_NS);
+            assertEquals(1, encryptedData.size());
+            assertEquals(2,
+                XMLUtils.findElements(encryptedDoc.getDocumentElement(), "DataReference", WSConstants.ENC_NS).size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
 
     /**
      * Verifies the soap envelope
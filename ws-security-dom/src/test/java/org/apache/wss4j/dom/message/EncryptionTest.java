@@ -21,6 +21,7 @@ package org.apache.wss4j.dom.message;
 
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collections;
 
@@ -30,6 +31,8 @@ import javax.security.auth.callback.CallbackHandler;
 
 import org.apache.wss4j.common.WSEncryptionPart;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.DecryptedKeyCache;
+import org.apache.wss4j.common.cache.SessionKeyCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.crypto.CryptoType;
@@ -724,6 +727,96 @@ public class EncryptionTest extends org.junit.Assert {
         newEngine.processSecurityHeader(encryptedDoc, null, keystoreCallbackHandler, regexpCrypto);
     }
 
+    /**
+     * Test that a wrapped key that is received again is taken from the DecryptedKeyCache, per
+     * decryption Crypto.
+     */
+    @Test
+    public void testEncryptionDecryptionOAEPDecryptedKeyCache() throws Exception {
+        WSSecEncrypt builder = new WSSecEncrypt();
+        builder.setUserInfo("wss40");
+        builder.setKeyIdentifierType(WSConstants.X509_KEY_IDENTIFIER);
+        builder.setKeyEncAlgo(WSConstants.KEYTRANSPORT_RSAOAEP);
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+        Document encryptedDoc = builder.build(doc, crypto, secHeader);
+        String encryptedMessage = XMLUtils.prettyDocumentToString(encryptedDoc);
+
+        DecryptedKeyCache decryptedKeyCache = new DecryptedKeyCache();
+        byte[] decryptedKey = null;
+        for (int i = 0; i < 3; i++) {
+            WSSecurityEngineResult actionResult =
+                verifyWithDecryptedKeyCache(encryptedMessage, crypto, decryptedKeyCache);
+            byte[] secret = (byte[])actionResult.get(WSSecurityEngineResult.TAG_SECRET);
+            if (decryptedKey == null) {
+                decryptedKey = secret.clone();
+            } else {
+                assertArrayEquals(decryptedKey, secret);
+            }
+            // The cache hands out copies of the cached key
+            Arrays.fill(secret, (byte) 0);
+            assertEquals(1, decryptedKeyCache.size());
+        }
+
+        // Keys are cached per decryption Crypto
+        Crypto otherCrypto = CryptoFactory.getInstance("wss40.properties");
+        verifyWithDecryptedKeyCache(encryptedMessage, otherCrypto, decryptedKeyCache);
+        assertEquals(2, decryptedKeyCache.size());
+
+        decryptedKeyCache.close();
+        assertEquals(0, decryptedKeyCache.size());
+    }
+
+    /**
+     * Test that a SessionKeyCache reuses the session key, and the EncryptedKey that wraps it,
+     * for the following messages to the same recipient, until the session key is rotated.
+     */
+    @Test
+    public void testEncryptionSessionKeyCache() throws Exception {
+        SessionKeyCache sessionKeyCache = new SessionKeyCache(10, 60L, 2);
+        DecryptedKeyCache decryptedKeyCache = new DecryptedKeyCache();
+
+        java.util.List<String> cipherValues = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            WSSecEncrypt builder = new WSSecEncrypt();
+            builder.setUserInfo("wss40");
+            builder.setKeyIdentifierType(WSConstants.X509_KEY_IDENTIFIER);
+            builder.setKeyEncAlgo(WSConstants.KEYTRANSPORT_RSAOAEP);
+            builder.setSessionKeyCache(sessionKeyCache);
+            Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+            WSSecHeader secHeader = new WSSecHeader(doc);
+            secHeader.insertSecurityHeader();
+            Document encryptedDoc = builder.build(doc, crypto, secHeader);
+            // The CipherValue of the EncryptedKey in the security header
+            cipherValues.add(
+                encryptedDoc.getElementsByTagNameNS(WSConstants.ENC_NS, "CipherValue").item(0).getTextContent()
+            );
+
+            String encryptedMessage = XMLUtils.prettyDocumentToString(encryptedDoc);
+            verifyWithDecryptedKeyCache(encryptedMessage, crypto, decryptedKeyCache);
+        }
+
+        // The second message reuses the session key, which is then rotated for the third message
+        assertEquals(cipherValues.get(0), cipherValues.get(1));
+        assertNotEquals(cipherValues.get(1), cipherValues.get(2));
+        assertEquals(2, decryptedKeyCache.size());
+        assertEquals(1, sessionKeyCache.size());
+    }
+
+    private WSSecurityEngineResult verifyWithDecryptedKeyCache(
+        String encryptedMessage, Crypto decCrypto, DecryptedKeyCache decryptedKeyCache
+    ) throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(encryptedMessage);
+        RequestData data = new RequestData();
+        data.setCallbackHandler(keystoreCallbackHandler);
+        data.setDecCrypto(decCrypto);
+        data.setDecryptedKeyCache(decryptedKeyCache);
+        WSHandlerResult results = new WSSecurityEngine().processSecurityHeader(doc, data);
+        assertTrue(XMLUtils.prettyDocumentToString(doc).contains("counter_port_type"));
+        return results.getActionResults().get(WSConstants.ENCR).get(0);
+    }
+
     /**
      * Verifies the soap envelope <p/>
      *
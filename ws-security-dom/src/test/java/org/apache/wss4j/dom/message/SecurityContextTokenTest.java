@@ -27,10 +27,13 @@ import org.apache.wss4j.dom.common.SOAPUtil;
 import org.apache.wss4j.dom.common.SecurityTestUtil;
 import org.apache.wss4j.dom.engine.WSSecurityEngine;
 import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.handler.WSHandlerResult;
+import org.apache.wss4j.common.cache.SecurityContextTokenCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.derivedKey.ConversationConstants;
+import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.util.XMLUtils;
 import org.apache.wss4j.dom.message.token.SecurityContextToken;
 import org.apache.wss4j.dom.util.WSSecurityUtil;
@@ -189,6 +192,109 @@ public class SecurityContextTokenTest extends org.junit.Assert {
         }
     }
 
+    /**
+     * Test that the secret of a SecurityContextToken is taken from a SecurityContextTokenCache
+     * when the same message is received again.
+     */
+    @Test
+    public void testSCTKDKTSignSecurityContextTokenCache() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecSecurityContextToken sctBuilder = new WSSecSecurityContextToken();
+        sctBuilder.setWscVersion(ConversationConstants.VERSION_05_12);
+        sctBuilder.prepare(doc, crypto);
+
+        byte[] tempSecret = WSSecurityUtil.generateNonce(16);
+        SecretKeyCallbackHandler secretKeyCallbackHandler = new SecretKeyCallbackHandler();
+        secretKeyCallbackHandler.addSecretKey(sctBuilder.getIdentifier(), tempSecret);
+
+        WSSecDKSign sigBuilder = new WSSecDKSign();
+        sigBuilder.setExternalKey(tempSecret, sctBuilder.getSctId());
+        sigBuilder.setSignatureAlgorithm(WSConstants.HMAC_SHA1);
+        sigBuilder.build(doc, secHeader);
+
+        sctBuilder.prependSCTElementToHeader(doc, secHeader);
+
+        SecurityContextTokenCache securityContextTokenCache = new SecurityContextTokenCache();
+        RequestData requestData = new RequestData();
+        requestData.setCallbackHandler(secretKeyCallbackHandler);
+        requestData.setSigVerCrypto(crypto);
+        requestData.setSecurityContextTokenCache(securityContextTokenCache);
+        secEngine.processSecurityHeader(doc, requestData);
+
+        // The secret is cached
+        assertEquals(1, securityContextTokenCache.size());
+        assertArrayEquals(tempSecret, securityContextTokenCache.getSecret(sctBuilder.getIdentifier()));
+
+        // The CallbackHandler does not know the secret, so it must come from the cache
+        requestData = new RequestData();
+        requestData.setCallbackHandler(new SecretKeyCallbackHandler());
+        requestData.setSigVerCrypto(crypto);
+        requestData.setSecurityContextTokenCache(securityContextTokenCache);
+        WSHandlerResult results = secEngine.processSecurityHeader(doc, requestData);
+        WSSecurityEngineResult actionResult =
+            results.getActionResults().get(WSConstants.SCT).get(0);
+        assertArrayEquals(tempSecret, (byte[])actionResult.get(WSSecurityEngineResult.TAG_SECRET));
+        assertEquals(1, securityContextTokenCache.size());
+
+        securityContextTokenCache.close();
+    }
+
+    /**
+     * Test that a secret that is found for the wsu:Id of a SecurityContextToken is only cached
+     * under the wsu:Id, and that it is no longer used once it is removed from the cache.
+     */
+    @Test
+    public void testSCTCacheByIdAndRemoval() throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecSecurityContextToken sctBuilder = new WSSecSecurityContextToken();
+        sctBuilder.setWscVersion(ConversationConstants.VERSION_05_12);
+        sctBuilder.prepare(doc, crypto);
+
+        byte[] tempSecret = WSSecurityUtil.generateNonce(16);
+        SecretKeyCallbackHandler secretKeyCallbackHandler = new SecretKeyCallbackHandler();
+        secretKeyCallbackHandler.addSecretKey(sctBuilder.getSctId(), tempSecret);
+
+        WSSecDKSign sigBuilder = new WSSecDKSign();
+        sigBuilder.setExternalKey(tempSecret, sctBuilder.getSctId());
+        sigBuilder.setSignatureAlgorithm(WSConstants.HMAC_SHA1);
+        sigBuilder.build(doc, secHeader);
+
+        sctBuilder.prependSCTElementToHeader(doc, secHeader);
+
+        SecurityContextTokenCache securityContextTokenCache = new SecurityContextTokenCache();
+        RequestData requestData = new RequestData();
+        requestData.setCallbackHandler(secretKeyCallbackHandler);
+        requestData.setSigVerCrypto(crypto);
+        requestData.setSecurityContextTokenCache(securityContextTokenCache);
+        secEngine.processSecurityHeader(doc, requestData);
+
+        assertEquals(1, securityContextTokenCache.size());
+        assertNull(securityContextTokenCache.getSecret(sctBuilder.getIdentifier()));
+        assertArrayEquals(tempSecret, securityContextTokenCache.getSecret(sctBuilder.getSctId()));
+
+        // The SecurityContextToken is cancelled, and the CallbackHandler no longer knows the secret
+        securityContextTokenCache.removeSecret(sctBuilder.getSctId());
+        requestData = new RequestData();
+        requestData.setCallbackHandler(new SecretKeyCallbackHandler());
+        requestData.setSigVerCrypto(crypto);
+        requestData.setSecurityContextTokenCache(securityContextTokenCache);
+        try {
+            secEngine.processSecurityHeader(doc, requestData);
+            fail("Failure expected on a cancelled SecurityContextToken");
+        } catch (WSSecurityException ex) {
+            assertNotNull(ex.getErrorCode());
+        }
+        assertEquals(0, securityContextTokenCache.size());
+
+        securityContextTokenCache.close();
+    }
+
     /**
      * Test for WSS-217:
      * "Add ability to specify a reference to an absolute URI in the derived key functionality".
@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.misc;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.callback.DOMCallbackLookup;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Some tests for locating Elements by Id with the DOMCallbackLookup, with and without an index.
+ */
+public class DOMCallbackLookupTest extends org.junit.Assert {
+
+    private static final String MESSAGE =
+        "<soapenv:Envelope xmlns:soapenv=\"http://schemas.xmlsoap.org/soap/envelope/\" "
+        + "xmlns:wsu=\"" + WSConstants.WSU_NS + "\">"
+        + "<soapenv:Header>"
+        + "<saml2:Assertion xmlns:saml2=\"" + WSConstants.SAML2_NS + "\" ID=\"_assertion\"/>"
+        + "<header1 wsu:Id=\"header\"/>"
+        + "<duplicate Id=\"dup\"/>"
+        + "</soapenv:Header>"
+        + "<soapenv:Body wsu:Id=\"body\">"
+        + "<value Id=\"value\"><nested wsu:Id=\"nested\"/></value>"
+        + "<duplicate wsu:Id=\"dup\"/>"
+        + "</soapenv:Body>"
+        + "</soapenv:Envelope>";
+
+    @Test
+    public void testLookup() throws Exception {
+        for (boolean indexIds : new boolean[] {false, true}) {
+            Document doc = parse();
+            DOMCallbackLookup callbackLookup = new DOMCallbackLookup(doc, indexIds);
+
+            assertEquals("Body", callbackLookup.getElement("#body", null, true).getLocalName());
+            assertEquals("header1", callbackLookup.getElement("#header", null, true).getLocalName());
+            assertEquals("value", callbackLookup.getElement("value", null, true).getLocalName());
+            assertEquals("nested", callbackLookup.getElement("#nested", null, true).getLocalName());
+            assertEquals("Assertion", callbackLookup.getElement("_assertion", null, true).getLocalName());
+            assertNull(callbackLookup.getElement("_assertion", WSConstants.WSS_USERNAME_TOKEN_VALUE_TYPE, true));
+            assertNull(callbackLookup.getElement("#unknown", null, true));
+
+            // Multiple elements with the same Id
+            assertNull(callbackLookup.getElement("#dup", null, true));
+            Element duplicate = callbackLookup.getElement("#dup", null, false);
+            assertEquals(WSConstants.ELEM_HEADER, duplicate.getParentNode().getLocalName());
+        }
+    }
+
+    @Test
+    public void testDocumentModified() throws Exception {
+        for (boolean indexIds : new boolean[] {false, true}) {
+            Document doc = parse();
+            DOMCallbackLookup callbackLookup = new DOMCallbackLookup(doc, indexIds);
+            Element value = callbackLookup.getElement("#value", null, true);
+            assertNotNull(value);
+
+            // Remove an Element, e.g. an EncryptedData Element that is decrypted
+            Element body = callbackLookup.getSOAPBody();
+            body.removeChild(value);
+            assertNull(callbackLookup.getElement("#value", null, true));
+            assertNull(callbackLookup.getElement("#nested", null, true));
+
+            // Add an Element, e.g. the decrypted Element
+            Element added = doc.createElementNS(null, "added");
+            added.setAttributeNS(WSConstants.WSU_NS, "wsu:Id", "added");
+            Element nested = doc.createElementNS(null, "nested");
+            nested.setAttributeNS(null, "Id", "dup");
+            added.appendChild(nested);
+            body.appendChild(added);
+            callbackLookup.elementsAdded(added);
+            assertEquals(added, callbackLookup.getElement("#added", null, true));
+
+            // The added Element is a third Element with the "dup" Id
+            assertNull(callbackLookup.getElement("#dup", null, true));
+            header(doc).removeChild(callbackLookup.getElement("#dup", null, false));
+            body.removeChild(body.getElementsByTagNameNS(null, "duplicate").item(0));
+            assertEquals(nested, callbackLookup.getElement("#dup", null, true));
+        }
+    }
+
+    private static Element header(Document doc) {
+        return (Element) doc.getDocumentElement().getFirstChild();
+    }
+
+    private static Document parse() throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        return factory.newDocumentBuilder().parse(
+            new ByteArrayInputStream(MESSAGE.getBytes(StandardCharsets.UTF_8))
+        );
+    }
+}
@@ -0,0 +1,224 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.dom.saml;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import org.apache.wss4j.common.cache.MemoryReplayCache;
+import org.apache.wss4j.common.cache.VerifiedAssertionCache;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.saml.SAMLCallback;
+import org.apache.wss4j.common.saml.SAMLUtil;
+import org.apache.wss4j.common.saml.SamlAssertionWrapper;
+import org.apache.wss4j.common.saml.bean.ConditionsBean;
+import org.apache.wss4j.common.saml.builder.SAML2Constants;
+import org.apache.wss4j.common.util.XMLUtils;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.common.SAML2CallbackHandler;
+import org.apache.wss4j.dom.common.SOAPUtil;
+import org.apache.wss4j.dom.common.SecurityTestUtil;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.engine.WSSecurityEngine;
+import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.handler.WSHandlerResult;
+import org.apache.wss4j.dom.message.WSSecHeader;
+import org.apache.wss4j.dom.message.WSSecSAMLToken;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Some tests for processing signed SAML Assertions with a VerifiedAssertionCache.
+ */
+public class SamlVerifiedAssertionCacheTest extends org.junit.Assert {
+    private Crypto crypto;
+
+    @org.junit.AfterClass
+    public static void cleanup() throws Exception {
+        SecurityTestUtil.cleanup();
+    }
+
+    public SamlVerifiedAssertionCacheTest() throws Exception {
+        WSSConfig.init();
+        crypto = CryptoFactory.getInstance("crypto.properties");
+    }
+
+    /**
+     * The signature of an Assertion that is received again is not verified again
+     */
+    @Test
+    public void testSignedAssertionCached() throws Exception {
+        String message = createSignedMessage(null);
+        VerifiedAssertionCache verifiedAssertionCache = new VerifiedAssertionCache();
+
+        WSHandlerResult results = verify(message, verifiedAssertionCache, null);
+        assertEquals(1, verifiedAssertionCache.size());
+        SamlAssertionWrapper receivedAssertion = getAssertion(results);
+        assertNotNull(receivedAssertion.getSignatureKeyInfo());
+
+        results = verify(message, verifiedAssertionCache, null);
+        assertEquals(1, verifiedAssertionCache.size());
+        receivedAssertion = getAssertion(results);
+        assertTrue(receivedAssertion.isSigned());
+        assertNotNull(receivedAssertion.getSignatureKeyInfo());
+        assertNotNull(receivedAssertion.getSignatureKeyInfo().getCerts());
+
+        // A different signature verification Crypto does not use the cached Assertion
+        Crypto otherCrypto = CryptoFactory.getInstance("crypto.properties");
+        verify(message, verifiedAssertionCache, null, otherCrypto);
+        assertEquals(2, verifiedAssertionCache.size());
+    }
+
+    /**
+     * An Assertion that is modified after it was cached must still fail signature verification
+     */
+    @Test
+    public void testModifiedAssertionNotCached() throws Exception {
+        String message = createSignedMessage(null);
+        VerifiedAssertionCache verifiedAssertionCache = new VerifiedAssertionCache();
+        verify(message, verifiedAssertionCache, null);
+        assertEquals(1, verifiedAssertionCache.size());
+
+        Document doc = SOAPUtil.toSOAPPart(message);
+        Element assertionElement =
+            (Element)doc.getElementsByTagNameNS(WSConstants.SAML2_NS, "Assertion").item(0);
+        Element issuer =
+            (Element)assertionElement.getElementsByTagNameNS(WSConstants.SAML2_NS, "Issuer").item(0);
+        issuer.setTextContent("www.example.org");
+
+        try {
+            verify(XMLUtils.prettyDocumentToString(doc), verifiedAssertionCache, null);
+            fail("Failure expected on a modified SAML Assertion");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILURE, ex.getErrorCode());
+        }
+        assertEquals(1, verifiedAssertionCache.size());
+    }
+
+    /**
+     * The OneTimeUse Condition is still enforced for a cached Assertion
+     */
+    @Test
+    public void testOneTimeUseCachedAssertion() throws Exception {
+        ConditionsBean conditions = new ConditionsBean();
+        conditions.setTokenPeriodMinutes(5);
+        conditions.setOneTimeUse(true);
+        String message = createSignedMessage(conditions);
+
+        VerifiedAssertionCache verifiedAssertionCache = new VerifiedAssertionCache();
+        verify(message, verifiedAssertionCache, null);
+
+        MemoryReplayCache replayCache = new MemoryReplayCache();
+        verify(message, verifiedAssertionCache, replayCache);
+        try {
+            verify(message, verifiedAssertionCache, replayCache);
+            fail("Failure expected on a replayed SAML Assertion");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.INVALID_SECURITY, ex.getErrorCode());
+        }
+        replayCache.close();
+    }
+
+    /**
+     * An Assertion that was trusted without certificate constraints is not found in the cache
+     * by an endpoint with an issuer constraint that the signing certificate does not match
+     */
+    @Test
+    public void testCertConstraintsNotBypassed() throws Exception {
+        String message = createSignedMessage(null);
+        VerifiedAssertionCache verifiedAssertionCache = new VerifiedAssertionCache();
+        verify(message, verifiedAssertionCache, null);
+        assertEquals(1, verifiedAssertionCache.size());
+
+        try {
+            verify(
+                message, verifiedAssertionCache, null, crypto,
+                Collections.singletonList(Pattern.compile(".*CN=Nobody.*"))
+            );
+            fail("Failure expected on a certificate that does not match the issuer constraint");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, ex.getErrorCode());
+        }
+        assertEquals(1, verifiedAssertionCache.size());
+    }
+
+    private String createSignedMessage(ConditionsBean conditions) throws Exception {
+        SAML2CallbackHandler callbackHandler = new SAML2CallbackHandler();
+        callbackHandler.setStatement(SAML2CallbackHandler.Statement.AUTHN);
+        callbackHandler.setConfirmationMethod(SAML2Constants.CONF_BEARER);
+        callbackHandler.setIssuer("www.example.com");
+        if (conditions != null) {
+            callbackHandler.setConditions(conditions);
+        }
+
+        SAMLCallback samlCallback = new SAMLCallback();
+        SAMLUtil.doSAMLCallback(callbackHandler, samlCallback);
+        SamlAssertionWrapper samlAssertion = new SamlAssertionWrapper(samlCallback);
+        samlAssertion.signAssertion("16c73ab6-b892-458f-abf5-2f875f74882e", "security", crypto, false);
+
+        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecSAMLToken wsSign = new WSSecSAMLToken();
+        Document signedDoc = wsSign.build(doc, samlAssertion, secHeader);
+        return XMLUtils.prettyDocumentToString(signedDoc);
+    }
+
+    private WSHandlerResult verify(
+        String message, VerifiedAssertionCache verifiedAssertionCache, MemoryReplayCache replayCache
+    ) throws Exception {
+        return verify(message, verifiedAssertionCache, replayCache, crypto);
+    }
+
+    private WSHandlerResult verify(
+        String message, VerifiedAssertionCache verifiedAssertionCache, MemoryReplayCache replayCache,
+        Crypto sigVerCrypto
+    ) throws Exception {
+        return verify(message, verifiedAssertionCache, replayCache, sigVerCrypto, null);
+    }
+
+    private WSHandlerResult verify(
+        String message, VerifiedAssertionCache verifiedAssertionCache, MemoryReplayCache replayCache,
+        Crypto sigVerCrypto, Collection<Pattern> issuerCertConstraints
+    ) throws Exception {
+        Document doc = SOAPUtil.toSOAPPart(message);
+        RequestData data = new RequestData();
+        data.setSigVerCrypto(sigVerCrypto);
+        data.setIssuerDNPatterns(issuerCertConstraints);
+        data.setVerifiedAssertionCache(verifiedAssertionCache);
+        data.setSamlOneTimeUseReplayCache(replayCache);
+
+        WSSecurityEngine secEngine = new WSSecurityEngine();
+        return secEngine.processSecurityHeader(WSSecurityUtil.getSecurityHeader(doc, null), data);
+    }
+
+    private static SamlAssertionWrapper getAssertion(WSHandlerResult results) {
+        WSSecurityEngineResult actionResult =
+            results.getActionResults().get(WSConstants.ST_SIGNED).get(0);
+        return (SamlAssertionWrapper) actionResult.get(WSSecurityEngineResult.TAG_SAML_ASSERTION);
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.metrics.jfr;
+
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityOperation;
+
+/**
+ * A SecurityMetricsListener that records Java Flight Recorder events, so that the security
+ * operations can be profiled in production with a flight recording, without an agent. The
+ * events are in the "Apache WSS4J" category, and are disabled unless a recording enables them,
+ * for example with "-XX:StartFlightRecording:settings=profile". The operations are recorded as
+ * "org.apache.wss4j.SecurityOperation" events, which are subject to the threshold of the
+ * recording. The jdk.jfr API requires Java 11, and so this class is in the separate (optional)
+ * wss4j-ws-security-metrics-jfr module rather than in wss4j-ws-security-common.
+ */
+public class JfrSecurityMetricsListener implements SecurityMetricsListener {
+
+    private static final Timer NO_OP_TIMER = new Timer() {
+        @Override
+        public void stop() {
+            // complete
+        }
+    };
+
+    @Override
+    public Timer start(SecurityOperation operation, String name) {
+        SecurityOperationEvent event = new SecurityOperationEvent();
+        if (!event.isEnabled()) {
+            return NO_OP_TIMER;
+        }
+        event.begin();
+        return new EventTimer(event, operation, name);
+    }
+
+    @Override
+    public void cacheAccess(String cache, boolean hit) {
+        CacheAccessEvent event = new CacheAccessEvent();
+        if (event.shouldCommit()) {
+            event.cache = cache;
+            event.hit = hit;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void cacheRejection(String cache) {
+        CacheRejectionEvent event = new CacheRejectionEvent();
+        if (event.shouldCommit()) {
+            event.cache = cache;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void bytesProcessed(SecurityOperation operation, String name, long bytes) {
+        BytesProcessedEvent event = new BytesProcessedEvent();
+        if (event.shouldCommit()) {
+            event.operation = operation.name();
+            event.name = name;
+            event.bytes = bytes;
+            event.commit();
+        }
+    }
+
+    private static final class EventTimer implements Timer {
+
+        private final SecurityOperationEvent event;
+        private final SecurityOperation operation;
+        private final String name;
+
+        EventTimer(SecurityOperationEvent event, SecurityOperation operation, String name) {
+            this.event = event;
+            this.operation = operation;
+            this.name = name;
+        }
+
+        @Override
+        public void stop() {
+            event.end();
+            if (event.shouldCommit()) {
+                event.operation = operation.name();
+                event.name = name;
+                event.commit();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.metrics.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A Java Flight Recorder event for a (timed) SecurityOperation.
+ */
+@Name("org.apache.wss4j.SecurityOperation")
+@Label("WS-Security Operation")
+@Category({"Apache WSS4J"})
+@Description("A security operation, such as the processing of a security header element, "
+    + "the execution of an Action, or a signature or key transport operation")
+@StackTrace(false)
+class SecurityOperationEvent extends jdk.jfr.Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Name")
+    @Description("The type of the processor or action, the algorithm, or the Crypto implementation")
+    String name;
+
+}
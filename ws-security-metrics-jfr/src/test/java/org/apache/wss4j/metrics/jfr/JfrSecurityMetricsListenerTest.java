@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.metrics.jfr;
+
+import java.io.File;
+import java.util.List;
+
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityOperation;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * A test for the Java Flight Recorder events of the JfrSecurityMetricsListener. It is skipped if
+ * the JVM does not include Java Flight Recorder.
+ */
+public class JfrSecurityMetricsListenerTest extends Assert {
+
+    @Test
+    public void testEvents() throws Exception {
+        Assume.assumeTrue(isJfrAvailable());
+
+        JfrSecurityMetricsListener listener = new JfrSecurityMetricsListener();
+        File file = File.createTempFile("wss4j-metrics", ".jfr");
+        try {
+            try (Recording recording = new Recording()) {
+                recording.enable("org.apache.wss4j.SecurityOperation").withoutThreshold();
+                recording.enable("org.apache.wss4j.CacheAccess");
+                recording.enable("org.apache.wss4j.BytesProcessed");
+                recording.enable("org.apache.wss4j.CacheRejection");
+                recording.start();
+
+                listener.start(SecurityOperation.PROCESSOR, "Signature").stop();
+                listener.cacheAccess("DecryptedKeyCache", true);
+                listener.bytesProcessed(SecurityOperation.DECRYPT, "aes128-cbc", 64L);
+                listener.cacheRejection("ConcurrentReplayCache");
+
+                recording.stop();
+                recording.dump(file.toPath());
+            }
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file.toPath());
+            RecordedEvent operation = getEvent(events, "org.apache.wss4j.SecurityOperation");
+            assertEquals("PROCESSOR", operation.getString("operation"));
+            assertEquals("Signature", operation.getString("name"));
+            RecordedEvent cacheAccess = getEvent(events, "org.apache.wss4j.CacheAccess");
+            assertEquals("DecryptedKeyCache", cacheAccess.getString("cache"));
+            assertTrue(cacheAccess.getBoolean("hit"));
+            RecordedEvent bytesProcessed = getEvent(events, "org.apache.wss4j.BytesProcessed");
+            assertEquals(64L, bytesProcessed.getLong("bytes"));
+            RecordedEvent cacheRejection = getEvent(events, "org.apache.wss4j.CacheRejection");
+            assertEquals("ConcurrentReplayCache", cacheRejection.getString("cache"));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testNoRecording() throws Exception {
+        Assume.assumeTrue(isJfrAvailable());
+
+        // Nothing is recorded, and the timer is a no-op
+        JfrSecurityMetricsListener listener = new JfrSecurityMetricsListener();
+        SecurityMetricsListener.Timer timer = listener.start(SecurityOperation.ACTION, "Signature");
+        assertSame(timer, listener.start(SecurityOperation.ACTION, "Encrypt"));
+        timer.stop();
+    }
+
+    private static RecordedEvent getEvent(List<RecordedEvent> events, String name) {
+        for (RecordedEvent event : events) {
+            if (name.equals(event.getEventType().getName())) {
+                return event;
+            }
+        }
+        fail("No " + name + " event was recorded");
+        return null;
+    }
+
+    private static boolean isJfrAvailable() {
+        try {
+            Class.forName("jdk.jfr.FlightRecorder");
+            return jdk.jfr.FlightRecorder.isAvailable();
+        } catch (ClassNotFoundException | LinkageError ex) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.policy.stax;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+import javax.xml.namespace.QName;
+
+import org.apache.wss4j.policy.model.XPath;
+import org.apache.wss4j.stax.ext.WSSConstants;
+
+/**
+ * Matches an element path against a number of (policy) element paths, with the semantics of
+ * WSSUtils.pathMatches(path, elementPath, true, false): the paths must have the same length, and an
+ * element of a path in the SOAP 1.1 or SOAP 1.2 namespace matches any element with the same local
+ * name. The paths are compiled into a trie, so that an element path is matched against all of them
+ * in a single walk, rather than comparing it with every path in turn.
+ *
+ * An ElementPathMatcher is immutable, and so it can be compiled once for a policy and shared by the
+ * assertion states of all messages.
+ */
+public final class ElementPathMatcher {
+
+    private final List<List<QName>> paths;
+    private final Node root = new Node();
+
+    /**
+     * @param paths the paths to match. A path that is contained more than once is only matched
+     * (and indexed) once
+     */
+    public ElementPathMatcher(List<List<QName>> paths) {
+        Set<List<QName>> uniquePaths = new LinkedHashSet<>();
+        for (List<QName> path : paths) {
+            if (path == null) {
+                throw new IllegalArgumentException("Internal error");
+            }
+            uniquePaths.add(Collections.unmodifiableList(new ArrayList<>(path)));
+        }
+        this.paths = Collections.unmodifiableList(new ArrayList<>(uniquePaths));
+        for (int i = 0; i < this.paths.size(); i++) {
+            addPath(this.paths.get(i), i);
+        }
+    }
+
+    /**
+     * @param xPaths the XPaths of a (Signed|Encrypted|ContentEncrypted|Required)Elements assertion
+     * @return an ElementPathMatcher for the element paths of the given XPaths
+     */
+    public static ElementPathMatcher forXPaths(List<XPath> xPaths) {
+        List<List<QName>> paths = new ArrayList<>(xPaths.size());
+        for (XPath xPath : xPaths) {
+            paths.add(PolicyUtils.getElementPath(xPath));
+        }
+        return new ElementPathMatcher(paths);
+    }
+
+    /**
+     * @param path the path to add
+     * @return an ElementPathMatcher that also matches the given path, which gets the next index
+     * (or this ElementPathMatcher, if it already contains the path)
+     */
+    public ElementPathMatcher withPath(List<QName> path) {
+        if (paths.contains(path)) {
+            return this;
+        }
+        List<List<QName>> newPaths = new ArrayList<>(paths);
+        newPaths.add(path);
+        return new ElementPathMatcher(newPaths);
+    }
+
+    private void addPath(List<QName> path, int index) {
+        Node node = root;
+        for (QName qName : path) {
+            String namespaceURI = qName.getNamespaceURI();
+            if (WSSConstants.NS_SOAP11.equals(namespaceURI) || WSSConstants.NS_SOAP12.equals(namespaceURI)) {
+                node = node.getSoapChild(qName.getLocalPart());
+            } else {
+                node = node.getChild(qName);
+            }
+        }
+        if (node.index < 0) {
+            node.index = index;
+        }
+    }
+
+    /**
+     * @return the number of (distinct) paths
+     */
+    public int size() {
+        return paths.size();
+    }
+
+    /**
+     * @param index the index of a path
+     * @return the path with the given index
+     */
+    public List<QName> getPath(int index) {
+        return paths.get(index);
+    }
+
+    /**
+     * @param elementPath the element path to match
+     * @return whether the element path matches any of the paths
+     */
+    public boolean matches(List<QName> elementPath) {
+        return getFirstMatch(elementPath) >= 0;
+    }
+
+    /**
+     * @param elementPath the element path to match
+     * @return the (lowest) index of the path that matches the element path, or -1 if none matches
+     */
+    public int getFirstMatch(List<QName> elementPath) {
+        if (elementPath == null) {
+            return -1;
+        }
+        List<QName> path = elementPath;
+        if (!(path instanceof RandomAccess)) {
+            path = new ArrayList<>(elementPath);
+        }
+        return match(root, path, 0);
+    }
+
+    private static int match(Node node, List<QName> path, int depth) {
+        if (depth == path.size()) {
+            return node.index;
+        }
+        QName qName = path.get(depth);
+        int index = -1;
+        if (node.children != null) {
+            Node child = node.children.get(qName);
+            if (child != null) {
+                index = match(child, path, depth + 1);
+            }
+        }
+        if (node.soapChildren != null) {
+            Node child = node.soapChildren.get(qName.getLocalPart());
+            if (child != null) {
+                int soapIndex = match(child, path, depth + 1);
+                if (soapIndex >= 0 && (index < 0 || soapIndex < index)) {
+                    index = soapIndex;
+                }
+            }
+        }
+        return index;
+    }
+
+    private static final class Node {
+        private Map<QName, Node> children;
+        private Map<String, Node> soapChildren;
+        private int index = -1;
+
+        Node getChild(QName qName) {
+            if (children == null) {
+                children = new HashMap<>();
+            }
+            Node child = children.get(qName);
+            if (child == null) {
+                child = new Node();
+                children.put(qName, child);
+            }
+            return child;
+        }
+
+        Node getSoapChild(String localPart) {
+            if (soapChildren == null) {
+                soapChildren = new HashMap<>();
+            }
+            Node child = soapChildren.get(localPart);
+            if (child == null) {
+                child = new Node();
+                soapChildren.put(localPart, child);
+            }
+            return child;
+        }
+    }
+}
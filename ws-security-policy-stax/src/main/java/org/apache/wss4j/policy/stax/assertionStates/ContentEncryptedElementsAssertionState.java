@@ -22,42 +22,41 @@ import org.apache.wss4j.policy.AssertionState;
 import org.apache.wss4j.common.WSSPolicyException;
 import org.apache.wss4j.policy.model.AbstractSecurityAssertion;
 import org.apache.wss4j.policy.model.ContentEncryptedElements;
-import org.apache.wss4j.policy.model.XPath;
 import org.apache.xml.security.stax.securityEvent.ContentEncryptedElementSecurityEvent;
 import org.apache.xml.security.stax.securityEvent.SecurityEvent;
 import org.apache.xml.security.stax.securityEvent.SecurityEventConstants;
 import org.apache.wss4j.policy.stax.Assertable;
 import org.apache.wss4j.policy.stax.DummyPolicyAsserter;
+import org.apache.wss4j.policy.stax.ElementPathMatcher;
 import org.apache.wss4j.policy.stax.PolicyAsserter;
-import org.apache.wss4j.policy.stax.PolicyUtils;
 import org.apache.wss4j.stax.securityEvent.WSSecurityEventConstants;
 import org.apache.wss4j.stax.utils.WSSUtils;
 
-import javax.xml.namespace.QName;
-
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-
 /**
  * WSP1.3, 4.2.3 ContentEncryptedElements Assertion
  */
 public class ContentEncryptedElementsAssertionState extends AssertionState implements Assertable {
 
-    private final List<List<QName>> pathElements = new ArrayList<>();
+    private final ElementPathMatcher pathElements;
     private PolicyAsserter policyAsserter;
 
     public ContentEncryptedElementsAssertionState(AbstractSecurityAssertion assertion,
                                                   PolicyAsserter policyAsserter,
                                                   boolean asserted) {
+        this(assertion, policyAsserter, asserted,
+             ElementPathMatcher.forXPaths(((ContentEncryptedElements) assertion).getXPaths()));
+    }
+
+    /**
+     * @param pathElements the (shared) ElementPathMatcher of the element paths of the assertion
+     */
+    public ContentEncryptedElementsAssertionState(AbstractSecurityAssertion assertion,
+                                                  PolicyAsserter policyAsserter,
+                                                  boolean asserted,
+                                                  ElementPathMatcher pathElements) {
         super(assertion, asserted);
 
-        ContentEncryptedElements contentEncryptedElements = (ContentEncryptedElements) assertion;
-        for (int i = 0; i < contentEncryptedElements.getXPaths().size(); i++) {
-            XPath xPath = contentEncryptedElements.getXPaths().get(i);
-            List<QName> elements = PolicyUtils.getElementPath(xPath);
-            pathElements.add(elements);
-        }
+        this.pathElements = pathElements;
 
         this.policyAsserter = policyAsserter;
         if (this.policyAsserter == null) {
@@ -80,22 +79,18 @@ public class ContentEncryptedElementsAssertionState extends AssertionState imple
     public boolean assertEvent(SecurityEvent securityEvent) throws WSSPolicyException {
         ContentEncryptedElementSecurityEvent contentEncryptedElementSecurityEvent = (ContentEncryptedElementSecurityEvent) securityEvent;
 
-        Iterator<List<QName>> pathElementIterator = pathElements.iterator();
-        while (pathElementIterator.hasNext()) {
-            List<QName> pathElements = pathElementIterator.next();
-            if (WSSUtils.pathMatches(pathElements, contentEncryptedElementSecurityEvent.getElementPath(), true, false)) {
-                if (contentEncryptedElementSecurityEvent.isEncrypted()) {
-                    setAsserted(true);
-                    policyAsserter.assertPolicy(getAssertion());
-                    return true;
-                } else {
-                    //an element must be encrypted but isn't
-                    setAsserted(false);
-                    setErrorMessage("Content of element " + WSSUtils.pathAsString(contentEncryptedElementSecurityEvent.getElementPath()) 
-                        + " must be encrypted");
-                    policyAsserter.unassertPolicy(getAssertion(), getErrorMessage());
-                    return false;
-                }
+        if (pathElements.matches(contentEncryptedElementSecurityEvent.getElementPath())) {
+            if (contentEncryptedElementSecurityEvent.isEncrypted()) {
+                setAsserted(true);
+                policyAsserter.assertPolicy(getAssertion());
+                return true;
+            } else {
+                //an element must be encrypted but isn't
+                setAsserted(false);
+                setErrorMessage("Content of element " + WSSUtils.pathAsString(contentEncryptedElementSecurityEvent.getElementPath()) 
+                    + " must be encrypted");
+                policyAsserter.unassertPolicy(getAssertion(), getErrorMessage());
+                return false;
             }
         }
         //if we return false here other encrypted elements will trigger a PolicyViolationException
@@ -22,21 +22,19 @@ import org.apache.wss4j.policy.AssertionState;
 import org.apache.wss4j.common.WSSPolicyException;
 import org.apache.wss4j.policy.model.AbstractSecurityAssertion;
 import org.apache.wss4j.policy.model.SignedElements;
-import org.apache.wss4j.policy.model.XPath;
 import org.apache.xml.security.stax.securityEvent.AbstractSecuredElementSecurityEvent;
 import org.apache.xml.security.stax.securityEvent.SecurityEvent;
 import org.apache.xml.security.stax.securityEvent.SecurityEventConstants;
 import org.apache.wss4j.policy.stax.Assertable;
 import org.apache.wss4j.policy.stax.DummyPolicyAsserter;
+import org.apache.wss4j.policy.stax.ElementPathMatcher;
 import org.apache.wss4j.policy.stax.PolicyAsserter;
-import org.apache.wss4j.policy.stax.PolicyUtils;
 import org.apache.wss4j.stax.securityEvent.WSSecurityEventConstants;
 import org.apache.wss4j.stax.utils.WSSUtils;
 
 import javax.xml.namespace.QName;
 
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -44,22 +42,28 @@ import java.util.List;
  */
 public class SignedElementsAssertionState extends AssertionState implements Assertable {
 
-    private final List<List<QName>> pathElements = new ArrayList<>();
+    private ElementPathMatcher pathElements;
     private PolicyAsserter policyAsserter;
 
     public SignedElementsAssertionState(AbstractSecurityAssertion assertion,
                                         PolicyAsserter policyAsserter,
                                         boolean asserted) {
+        this(assertion, policyAsserter, asserted,
+             assertion instanceof SignedElements
+                 ? ElementPathMatcher.forXPaths(((SignedElements) assertion).getXPaths())
+                 : new ElementPathMatcher(Collections.<List<QName>>emptyList()));
+    }
+
+    /**
+     * @param pathElements the (shared) ElementPathMatcher of the element paths of the assertion
+     */
+    public SignedElementsAssertionState(AbstractSecurityAssertion assertion,
+                                        PolicyAsserter policyAsserter,
+                                        boolean asserted,
+                                        ElementPathMatcher pathElements) {
         super(assertion, asserted);
 
-        if (assertion instanceof SignedElements) {
-            SignedElements signedElements = (SignedElements) assertion;
-            for (int i = 0; i < signedElements.getXPaths().size(); i++) {
-                XPath xPath = signedElements.getXPaths().get(i);
-                List<QName> elements = PolicyUtils.getElementPath(xPath);
-                pathElements.add(elements);
-            }
-        }
+        this.pathElements = pathElements;
 
         this.policyAsserter = policyAsserter;
         if (this.policyAsserter == null) {
@@ -80,28 +84,24 @@ public class SignedElementsAssertionState extends AssertionState implements Asse
     }
 
     public void addElement(List<QName> pathElement) {
-        this.pathElements.add(pathElement);
+        this.pathElements = this.pathElements.withPath(pathElement);
     }
 
     @Override
     public boolean assertEvent(SecurityEvent securityEvent) throws WSSPolicyException {
         AbstractSecuredElementSecurityEvent signedSecurityEvent = (AbstractSecuredElementSecurityEvent) securityEvent;
 
-        Iterator<List<QName>> pathElementIterator = pathElements.iterator();
-        while (pathElementIterator.hasNext()) {
-            List<QName> pathElements = pathElementIterator.next();
-            if (WSSUtils.pathMatches(pathElements, signedSecurityEvent.getElementPath(), true, false)) {
-                if (signedSecurityEvent.isSigned()) {
-                    setAsserted(true);
-                    policyAsserter.assertPolicy(getAssertion());
-                    return true;
-                } else {
-                    //an element must be signed but isn't
-                    setAsserted(false);
-                    setErrorMessage("Element " + WSSUtils.pathAsString(signedSecurityEvent.getElementPath()) + " must be signed");
-                    policyAsserter.unassertPolicy(getAssertion(), getErrorMessage());
-                    return false;
-                }
+        if (pathElements.matches(signedSecurityEvent.getElementPath())) {
+            if (signedSecurityEvent.isSigned()) {
+                setAsserted(true);
+                policyAsserter.assertPolicy(getAssertion());
+                return true;
+            } else {
+                //an element must be signed but isn't
+                setAsserted(false);
+                setErrorMessage("Element " + WSSUtils.pathAsString(signedSecurityEvent.getElementPath()) + " must be signed");
+                policyAsserter.unassertPolicy(getAssertion(), getErrorMessage());
+                return false;
             }
         }
         //if we return false here other signed elements will trigger a PolicyViolationException
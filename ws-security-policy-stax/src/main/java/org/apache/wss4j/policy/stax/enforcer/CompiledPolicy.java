@@ -0,0 +1,218 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.wss4j.policy.stax.enforcer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.neethi.Assertion;
+import org.apache.neethi.Policy;
+import org.apache.wss4j.policy.model.AbstractSecurityAssertion;
+import org.apache.wss4j.policy.stax.Assertable;
+import org.apache.wss4j.policy.stax.ElementPathMatcher;
+import org.apache.xml.security.stax.securityEvent.SecurityEventConstants;
+
+/**
+ * The compiled form of a (normalized) Policy. For every policy alternative it records the
+ * assertions that the Assertable states are created for, and which of these states handle
+ * each type of SecurityEvent. A CompiledPolicy is immutable, and so it can be shared by all
+ * of the PolicyEnforcers of an operation. Each PolicyEnforcer then only has to create the
+ * (mutable) states themselves, instead of walking the policy tree again. The ElementPathMatchers of
+ * the (Signed|Encrypted|ContentEncrypted|Required)Elements assertions are compiled with the policy as
+ * well, and are shared by the states of all messages.
+ */
+final class CompiledPolicy {
+
+    private final Policy policy;
+    private final List<Alternative> alternatives;
+    private final Map<AbstractSecurityAssertion, ElementPathMatcher> elementPathMatchers;
+
+    CompiledPolicy(Policy policy, List<Alternative> alternatives,
+                   Map<AbstractSecurityAssertion, ElementPathMatcher> elementPathMatchers) {
+        this.policy = policy;
+        this.alternatives = Collections.unmodifiableList(alternatives);
+        this.elementPathMatchers = new IdentityHashMap<>(elementPathMatchers);
+    }
+
+    /**
+     * @return the Policy this CompiledPolicy was compiled from
+     */
+    Policy getPolicy() {
+        return policy;
+    }
+
+    List<Alternative> getAlternatives() {
+        return alternatives;
+    }
+
+    /**
+     * @return the ElementPathMatcher of the element paths of the given assertion, or null if none was
+     * compiled for it
+     */
+    ElementPathMatcher getElementPathMatcher(AbstractSecurityAssertion assertion) {
+        return elementPathMatchers.get(assertion);
+    }
+
+    /**
+     * The layout of the states of a single policy alternative. Every state has a slot, which is
+     * its index in the array of states of a PolicyEnforcer.
+     */
+    static final class Alternative {
+
+        private static final int[] NO_SLOTS = new int[0];
+
+        private final AbstractSecurityAssertion[] assertions;
+        private final int[] stateCounts;
+        private final Assertion[] slotAssertions;
+        private final Map<SecurityEventConstants.Event, int[]> eventSlots;
+        private final int[] allSlots;
+
+        private Alternative(
+            AbstractSecurityAssertion[] assertions, int[] stateCounts, Assertion[] slotAssertions,
+            Map<SecurityEventConstants.Event, int[]> eventSlots, int[] allSlots
+        ) {
+            this.assertions = assertions;
+            this.stateCounts = stateCounts;
+            this.slotAssertions = slotAssertions;
+            this.eventSlots = eventSlots;
+            this.allSlots = allSlots;
+        }
+
+        /**
+         * @return the assertions to create the states for, in the order of the policy tree
+         */
+        AbstractSecurityAssertion[] getAssertions() {
+            return assertions;
+        }
+
+        /**
+         * @return the number of states that are created for each of the assertions
+         */
+        int[] getStateCounts() {
+            return stateCounts;
+        }
+
+        int getStateCount() {
+            return slotAssertions.length;
+        }
+
+        /**
+         * @return the assertion that the state in the given slot was created for
+         */
+        Assertion getAssertion(int slot) {
+            return slotAssertions[slot];
+        }
+
+        /**
+         * @return the slots of the states that handle the given type of SecurityEvent
+         */
+        int[] getSlots(SecurityEventConstants.Event event) {
+            int[] slots = eventSlots.get(event);
+            return slots == null ? NO_SLOTS : slots;
+        }
+
+        /**
+         * @return the slots of the states of every type of SecurityEvent. A state that handles
+         * several types of SecurityEvent appears once for each of them
+         */
+        int[] getAllSlots() {
+            return allSlots;
+        }
+    }
+
+    /**
+     * Builds an Alternative from the states that are created for it by a PolicyEnforcer, in the
+     * order of the policy tree. The states are visited in the same order as they would be in a
+     * Map<Event, Map<Assertion, List<Assertable>>> populated in this order.
+     */
+    static final class AlternativeBuilder {
+
+        private final List<AbstractSecurityAssertion> assertions = new ArrayList<>();
+        private final List<Integer> stateCounts = new ArrayList<>();
+        private final List<Assertable> states = new ArrayList<>();
+        private final List<Assertion> slotAssertions = new ArrayList<>();
+        private final Map<SecurityEventConstants.Event, Map<Assertion, List<Integer>>> eventMap = new HashMap<>();
+
+        void add(AbstractSecurityAssertion assertion, List<Assertable> assertables) {
+            assertions.add(assertion);
+            stateCounts.add(assertables.size());
+            for (Assertable assertable : assertables) {
+                int slot = states.size();
+                states.add(assertable);
+                slotAssertions.add(assertion);
+                for (SecurityEventConstants.Event event : assertable.getSecurityEventType()) {
+                    Map<Assertion, List<Integer>> assertionSlots = eventMap.get(event);
+                    if (assertionSlots == null) {
+                        assertionSlots = new HashMap<>();
+                        eventMap.put(event, assertionSlots);
+                    }
+                    List<Integer> slots = assertionSlots.get(assertion);
+                    if (slots == null) {
+                        slots = new LinkedList<>();
+                        assertionSlots.put(assertion, slots);
+                    }
+                    slots.add(slot);
+                }
+            }
+        }
+
+        /**
+         * @return the states that were added, indexed by their slot
+         */
+        Assertable[] getStates() {
+            return states.toArray(new Assertable[states.size()]);
+        }
+
+        Alternative build() {
+            int[] counts = new int[stateCounts.size()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = stateCounts.get(i);
+            }
+
+            Map<SecurityEventConstants.Event, int[]> eventSlots = new HashMap<>();
+            List<Integer> allSlots = new ArrayList<>();
+            for (Map.Entry<SecurityEventConstants.Event, Map<Assertion, List<Integer>>> entry : eventMap.entrySet()) {
+                List<Integer> slots = new ArrayList<>();
+                for (List<Integer> assertionSlots : entry.getValue().values()) {
+                    slots.addAll(assertionSlots);
+                }
+                eventSlots.put(entry.getKey(), toArray(slots));
+                allSlots.addAll(slots);
+            }
+
+            return new Alternative(
+                assertions.toArray(new AbstractSecurityAssertion[assertions.size()]), counts,
+                slotAssertions.toArray(new Assertion[slotAssertions.size()]), eventSlots, toArray(allSlots)
+            );
+        }
+
+        private static int[] toArray(List<Integer> list) {
+            int[] array = new int[list.size()];
+            for (int i = 0; i < array.length; i++) {
+                array[i] = list.get(i);
+            }
+            return array;
+        }
+    }
+}
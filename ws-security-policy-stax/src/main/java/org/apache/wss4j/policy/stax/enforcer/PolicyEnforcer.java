@@ -19,16 +19,16 @@
 package org.apache.wss4j.policy.stax.enforcer;
 
 import java.util.Deque;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 import javax.xml.namespace.QName;
 
-import org.apache.neethi.Assertion;
 import org.apache.neethi.ExactlyOne;
 import org.apache.neethi.Policy;
 import org.apache.neethi.PolicyComponent;
@@ -70,6 +70,7 @@ import org.apache.wss4j.policy.model.X509Token;
 import org.apache.wss4j.policy.model.Wss11;
 import org.apache.wss4j.policy.stax.Assertable;
 import org.apache.wss4j.policy.stax.DummyPolicyAsserter;
+import org.apache.wss4j.policy.stax.ElementPathMatcher;
 import org.apache.wss4j.policy.stax.OperationPolicy;
 import org.apache.wss4j.policy.stax.PolicyAsserter;
 import org.apache.wss4j.policy.stax.PolicyViolationException;
@@ -130,10 +131,20 @@ public class PolicyEnforcer implements SecurityEventListener {
     private static final QName SOAP11_FAULT = new QName(WSSConstants.NS_SOAP11, "Fault");
     private static final QName SOAP12_FAULT = new QName(WSSConstants.NS_SOAP12, "Fault");
 
+    private static final ElementPathMatcher TIMESTAMP_PATH_MATCHER =
+        getSecurityHeaderPathMatcher(WSSConstants.TAG_WSU_TIMESTAMP);
+    private static final ElementPathMatcher SIGNATURE_CONFIRMATION_PATH_MATCHER =
+        getSecurityHeaderPathMatcher(WSSConstants.TAG_WSSE11_SIG_CONF);
+
     private final List<OperationPolicy> operationPolicies;
     private OperationPolicy effectivePolicy;
-    private final List<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> assertionStateMap;
-    private final List<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> failedAssertionStateMap;
+    private final List<AlternativeStates> assertionStates;
+    private final List<AlternativeStates> failedAssertionStates;
+    private final Map<OperationPolicy, CompiledPolicy> compiledPolicies;
+    // The CompiledPolicy that the states are currently created from, or else the ElementPathMatchers
+    // that are compiled for the policy that is currently compiled
+    private CompiledPolicy compiledPolicy;
+    private final Map<AbstractSecurityAssertion, ElementPathMatcher> elementPathMatchers = new IdentityHashMap<>();
 
     private final Deque<SecurityEvent> securityEventQueue = new LinkedList<>();
     private boolean operationSecurityEventOccured = false;
@@ -151,13 +162,25 @@ public class PolicyEnforcer implements SecurityEventListener {
 
     public PolicyEnforcer(List<OperationPolicy> operationPolicies, String soapAction, boolean initiator,
                           String actorOrRole, int attachmentCount, PolicyAsserter policyAsserter
+    ) throws WSSPolicyException {
+        this(operationPolicies, soapAction, initiator, actorOrRole, attachmentCount, policyAsserter, null);
+    }
+
+    /**
+     * @param compiledPolicies a cache of the compiled policies of the given operationPolicies, which
+     * must only be shared by PolicyEnforcers with the same initiator value. May be null.
+     */
+    PolicyEnforcer(List<OperationPolicy> operationPolicies, String soapAction, boolean initiator,
+                   String actorOrRole, int attachmentCount, PolicyAsserter policyAsserter,
+                   Map<OperationPolicy, CompiledPolicy> compiledPolicies
     ) throws WSSPolicyException {
         this.operationPolicies = operationPolicies;
         this.initiator = initiator;
         this.actorOrRole = actorOrRole;
         this.attachmentCount = attachmentCount;
-        assertionStateMap = new LinkedList<>();
-        failedAssertionStateMap = new LinkedList<>();
+        this.compiledPolicies = compiledPolicies;
+        assertionStates = new LinkedList<>();
+        failedAssertionStates = new LinkedList<>();
 
         if (policyAsserter == null) {
             this.policyAsserter = new DummyPolicyAsserter();
@@ -168,7 +191,7 @@ public class PolicyEnforcer implements SecurityEventListener {
         if (soapAction != null && !soapAction.isEmpty()) {
             effectivePolicy = findPolicyBySOAPAction(operationPolicies, soapAction);
             if (effectivePolicy != null) {
-                buildAssertionStateMap(effectivePolicy.getPolicy(), assertionStateMap);
+                buildAssertionStates(effectivePolicy, true);
             }
         }
     }
@@ -206,25 +229,85 @@ public class PolicyEnforcer implements SecurityEventListener {
     }
 
     /**
+     * Create the assertion states of the given OperationPolicy. The compiled form of the policy is
+     * taken from the cache if possible, so that only the states themselves have to be created.
+     */
+    private void buildAssertionStates(OperationPolicy operationPolicy, boolean cacheable) throws WSSPolicyException {
+        if (cacheable && compiledPolicies != null) {
+            CompiledPolicy compiledPolicy = compiledPolicies.get(operationPolicy);
+            if (compiledPolicy != null && compiledPolicy.getPolicy() == operationPolicy.getPolicy()) {
+                buildAssertionStates(compiledPolicy);
+            } else {
+                compiledPolicies.put(operationPolicy, compile(operationPolicy.getPolicy()));
+            }
+        } else {
+            compile(operationPolicy.getPolicy());
+        }
+    }
+
+    private void buildAssertionStates(CompiledPolicy compiledPolicy) throws WSSPolicyException {
+        this.compiledPolicy = compiledPolicy;
+        try {
+            buildAlternativeStates(compiledPolicy);
+        } finally {
+            this.compiledPolicy = null;
+        }
+    }
+
+    private void buildAlternativeStates(CompiledPolicy compiledPolicy) throws WSSPolicyException {
+        for (CompiledPolicy.Alternative alternative : compiledPolicy.getAlternatives()) {
+            Assertable[] states = new Assertable[alternative.getStateCount()];
+            AbstractSecurityAssertion[] assertions = alternative.getAssertions();
+            int[] stateCounts = alternative.getStateCounts();
+            int slot = 0;
+            for (int i = 0; i < assertions.length; i++) {
+                List<Assertable> assertableList = getAssertableForAssertion(assertions[i]);
+                if (assertableList.size() != stateCounts[i]) {
+                    throw new WSSPolicyException("The assertion states of " + assertions[i].getName()
+                                                 + " do not match the compiled policy");
+                }
+                for (Assertable assertable : assertableList) {
+                    states[slot++] = assertable;
+                }
+            }
+            assertionStates.add(new AlternativeStates(alternative, states));
+        }
+    }
+
+    /**
+     * Compile the given Policy, and create its assertion states.
      * Precondition: Policy _must_ be normalized!
      */
+    private CompiledPolicy compile(Policy policy) throws WSSPolicyException {
+        elementPathMatchers.clear();
+        List<CompiledPolicy.AlternativeBuilder> alternativeBuilders = new ArrayList<>();
+        buildAssertionStateMap(policy, alternativeBuilders);
+
+        List<CompiledPolicy.Alternative> alternatives = new ArrayList<>(alternativeBuilders.size());
+        for (CompiledPolicy.AlternativeBuilder alternativeBuilder : alternativeBuilders) {
+            CompiledPolicy.Alternative alternative = alternativeBuilder.build();
+            alternatives.add(alternative);
+            assertionStates.add(new AlternativeStates(alternative, alternativeBuilder.getStates()));
+        }
+        return new CompiledPolicy(policy, alternatives, elementPathMatchers);
+    }
+
     private void buildAssertionStateMap(
             PolicyComponent policyComponent,
-            List<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> assertionStateMap
+            List<CompiledPolicy.AlternativeBuilder> alternativeBuilders
     ) throws WSSPolicyException {
         if (policyComponent instanceof PolicyOperator) {
             PolicyOperator policyOperator = (PolicyOperator) policyComponent;
             List<PolicyComponent> policyComponents = policyOperator.getPolicyComponents();
-            int alternative = 0;
             Iterator<PolicyComponent> policyComponentIterator = policyComponents.iterator();
             while (policyComponentIterator.hasNext()) {
                 PolicyComponent curPolicyComponent = policyComponentIterator.next();
                 if (policyOperator instanceof ExactlyOne) {
-                    assertionStateMap.add(new HashMap<SecurityEventConstants.Event, 
-                                          Map<Assertion, List<Assertable>>>());
-                    buildAssertionStateMap(curPolicyComponent, assertionStateMap, alternative++);
+                    CompiledPolicy.AlternativeBuilder alternativeBuilder = new CompiledPolicy.AlternativeBuilder();
+                    alternativeBuilders.add(alternativeBuilder);
+                    buildAssertionStateMap(curPolicyComponent, alternativeBuilder);
                 } else {
-                    buildAssertionStateMap(curPolicyComponent, assertionStateMap);
+                    buildAssertionStateMap(curPolicyComponent, alternativeBuilders);
                 }
             }
         } else {
@@ -235,9 +318,7 @@ public class PolicyEnforcer implements SecurityEventListener {
 
     private void buildAssertionStateMap(
             PolicyComponent policyComponent,
-            List<Map<SecurityEventConstants.Event, 
-            Map<Assertion, List<Assertable>>>> assertionStateMap, 
-            int alternative
+            CompiledPolicy.AlternativeBuilder alternativeBuilder
     ) throws WSSPolicyException {
         if (policyComponent instanceof PolicyOperator) {
             PolicyOperator policyOperator = (PolicyOperator) policyComponent;
@@ -245,31 +326,16 @@ public class PolicyEnforcer implements SecurityEventListener {
             Iterator<PolicyComponent> policyComponentIterator = policyComponents.iterator();
             while (policyComponentIterator.hasNext()) {
                 PolicyComponent curPolicyComponent = policyComponentIterator.next();
-                buildAssertionStateMap(curPolicyComponent, assertionStateMap, alternative);
+                buildAssertionStateMap(curPolicyComponent, alternativeBuilder);
             }
         } else if (policyComponent instanceof AbstractSecurityAssertion) {
             AbstractSecurityAssertion abstractSecurityAssertion = (AbstractSecurityAssertion) policyComponent;
 
             List<Assertable> assertablesList = getAssertableForAssertion(abstractSecurityAssertion);
-            Iterator<Assertable> assertableIterator = assertablesList.iterator();
-            while (assertableIterator.hasNext()) {
-                Assertable assertable = assertableIterator.next();
-                final Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>> map = 
-                    assertionStateMap.get(alternative);
-                final SecurityEventConstants.Event[] securityEventType = assertable.getSecurityEventType();
-                for (int j = 0; j < securityEventType.length; j++) {
-                    SecurityEventConstants.Event event = securityEventType[j];
-                    Map<Assertion, List<Assertable>> assertables = map.get(event);
-                    if (assertables == null) {
-                        assertables = new HashMap<>();
-                        map.put(event, assertables);
-                    }
-                    addAssertionState(assertables, abstractSecurityAssertion, assertable);
-                }
-            }
+            alternativeBuilder.add(abstractSecurityAssertion, assertablesList);
             if (abstractSecurityAssertion instanceof PolicyContainingAssertion) {
                 buildAssertionStateMap(((PolicyContainingAssertion) abstractSecurityAssertion).getPolicy(), 
-                                       assertionStateMap, alternative);
+                                       alternativeBuilder);
             }
         } else if (!(policyComponent instanceof PrimitiveAssertion)) {
             throw new WSSPolicyException("Unsupported PolicyComponent: " + policyComponent 
@@ -277,17 +343,33 @@ public class PolicyEnforcer implements SecurityEventListener {
         }
     }
 
-    private void addAssertionState(Map<Assertion, List<Assertable>> assertables, 
-                                   Assertion keyAssertion, 
-                                   Assertable assertable) {
-        List<Assertable> assertableList = assertables.get(keyAssertion);
-        if (assertableList == null) {
-            assertableList = new LinkedList<>();
-            assertables.put(keyAssertion, assertableList);
+    private static ElementPathMatcher getSecurityHeaderPathMatcher(QName element) {
+        List<QName> elementPath = new ArrayList<>(WSSConstants.WSSE_SECURITY_HEADER_PATH);
+        elementPath.add(element);
+        return new ElementPathMatcher(Collections.singletonList(elementPath));
+    }
+
+    /**
+     * @return the ElementPathMatcher of the element paths of the given assertion. It is taken from the
+     * CompiledPolicy that the states are created from, or else compiled once for the policy that is
+     * being compiled
+     */
+    private ElementPathMatcher getElementPathMatcher(RequiredElements requiredElements) {
+        ElementPathMatcher elementPathMatcher;
+        if (compiledPolicy != null) {
+            elementPathMatcher = compiledPolicy.getElementPathMatcher(requiredElements);
+        } else {
+            elementPathMatcher = elementPathMatchers.get(requiredElements);
+        }
+        if (elementPathMatcher == null) {
+            elementPathMatcher = ElementPathMatcher.forXPaths(requiredElements.getXPaths());
+            if (compiledPolicy == null) {
+                elementPathMatchers.put(requiredElements, elementPathMatcher);
+            }
         }
-        assertableList.add(assertable);
+        return elementPathMatcher;
     }
-    
+
     // Don't return a Token that is not required
     private boolean isTokenRequired(AbstractToken token) {
         SPConstants.IncludeTokenType includeTokenType = token.getIncludeTokenType();
@@ -316,13 +398,15 @@ public class PolicyEnforcer implements SecurityEventListener {
             // therefore these element are also encrypted
             // the test if it is really encrypted is done via the PolicyInputProcessor which emits 
             // EncryptedElementEvents for unencrypted elements with the unencrypted flag
-            assertableList.add(new ContentEncryptedElementsAssertionState(abstractSecurityAssertion, policyAsserter, true));
+            assertableList.add(new ContentEncryptedElementsAssertionState(abstractSecurityAssertion, policyAsserter, true,
+                getElementPathMatcher((RequiredElements) abstractSecurityAssertion)));
         } else if (abstractSecurityAssertion instanceof EncryptedParts) {
             // initialized with asserted=true with the same reason as by the EncryptedParts above
             assertableList.add(new EncryptedPartsAssertionState(abstractSecurityAssertion, policyAsserter, true, attachmentCount));
         } else if (abstractSecurityAssertion instanceof EncryptedElements) {
             // initialized with asserted=true with the same reason as by the EncryptedParts above
-            assertableList.add(new EncryptedElementsAssertionState(abstractSecurityAssertion, policyAsserter, true));
+            assertableList.add(new EncryptedElementsAssertionState(abstractSecurityAssertion, policyAsserter, true,
+                getElementPathMatcher((RequiredElements) abstractSecurityAssertion)));
         } else if (abstractSecurityAssertion instanceof SignedParts) {
             // initialized with asserted=true because it could be that parent elements are signed and 
             // therefore these element are also signed
@@ -331,9 +415,11 @@ public class PolicyEnforcer implements SecurityEventListener {
             assertableList.add(new SignedPartsAssertionState(abstractSecurityAssertion, policyAsserter, true, attachmentCount));
         } else if (abstractSecurityAssertion instanceof SignedElements) {
             // initialized with asserted=true with the same reason as by the SignedParts above
-            assertableList.add(new SignedElementsAssertionState(abstractSecurityAssertion, policyAsserter, true));
+            assertableList.add(new SignedElementsAssertionState(abstractSecurityAssertion, policyAsserter, true,
+                getElementPathMatcher((RequiredElements) abstractSecurityAssertion)));
         } else if (abstractSecurityAssertion instanceof RequiredElements) {
-            assertableList.add(new RequiredElementsAssertionState(abstractSecurityAssertion, policyAsserter, false));
+            assertableList.add(new RequiredElementsAssertionState(abstractSecurityAssertion, policyAsserter, false,
+                getElementPathMatcher((RequiredElements) abstractSecurityAssertion)));
         } else if (abstractSecurityAssertion instanceof RequiredParts) {
             assertableList.add(new RequiredPartsAssertionState(abstractSecurityAssertion, policyAsserter, false));
         } else if (abstractSecurityAssertion instanceof UsernameToken) {
@@ -391,18 +477,10 @@ public class PolicyEnforcer implements SecurityEventListener {
             //WSP1.3, 6.2 Timestamp Property
             assertableList.add(new IncludeTimeStampAssertionState(abstractBinding, policyAsserter, true));
             if (abstractBinding.isIncludeTimestamp()) {
-                List<QName> timestampElementPath = new LinkedList<>();
-                timestampElementPath.addAll(WSSConstants.WSSE_SECURITY_HEADER_PATH);
-                timestampElementPath.add(WSSConstants.TAG_WSU_TIMESTAMP);
-                RequiredElementsAssertionState requiredElementsAssertionState =
-                    new RequiredElementsAssertionState(abstractBinding, policyAsserter, false);
-                requiredElementsAssertionState.addElement(timestampElementPath);
-                assertableList.add(requiredElementsAssertionState);
-
-                SignedElementsAssertionState signedElementsAssertionState =
-                    new SignedElementsAssertionState(abstractSecurityAssertion, policyAsserter, true);
-                signedElementsAssertionState.addElement(timestampElementPath);
-                assertableList.add(signedElementsAssertionState);
+                assertableList.add(new RequiredElementsAssertionState(abstractBinding, policyAsserter, false,
+                                                                      TIMESTAMP_PATH_MATCHER));
+                assertableList.add(new SignedElementsAssertionState(abstractSecurityAssertion, policyAsserter, true,
+                                                                    TIMESTAMP_PATH_MATCHER));
             }
         } else if (abstractSecurityAssertion instanceof Wss10) {
             Wss10 wss10 = (Wss10)abstractSecurityAssertion;
@@ -434,18 +512,10 @@ public class PolicyEnforcer implements SecurityEventListener {
                     assertableList.add(new SignatureConfirmationAssertionState(wss11, policyAsserter, true));
                     if (initiator) {
                         //9 WSS: SOAP Message Security Options [Signature Confirmation]
-                        List<QName> signatureConfirmationElementPath = new LinkedList<>();
-                        signatureConfirmationElementPath.addAll(WSSConstants.WSSE_SECURITY_HEADER_PATH);
-                        signatureConfirmationElementPath.add(WSSConstants.TAG_WSSE11_SIG_CONF);
-                        RequiredElementsAssertionState requiredElementsAssertionState =
-                            new RequiredElementsAssertionState(wss11, policyAsserter, false);
-                        requiredElementsAssertionState.addElement(signatureConfirmationElementPath);
-                        assertableList.add(requiredElementsAssertionState);
-
-                        SignedElementsAssertionState signedElementsAssertionState =
-                            new SignedElementsAssertionState(wss11, policyAsserter, true);
-                        signedElementsAssertionState.addElement(signatureConfirmationElementPath);
-                        assertableList.add(signedElementsAssertionState);
+                        assertableList.add(new RequiredElementsAssertionState(wss11, policyAsserter, false,
+                                                                              SIGNATURE_CONFIRMATION_PATH_MATCHER));
+                        assertableList.add(new SignedElementsAssertionState(wss11, policyAsserter, true,
+                                                                            SIGNATURE_CONFIRMATION_PATH_MATCHER));
                     }
                 }
             }
@@ -504,33 +574,19 @@ public class PolicyEnforcer implements SecurityEventListener {
      * @throws WSSPolicyException
      */
     private void verifyPolicy(SecurityEvent securityEvent) throws WSSPolicyException, XMLSecurityException {
+        SecurityEventConstants.Event securityEventType = securityEvent.getSecurityEventType();
         // We have to check the failed assertions for logging purposes firstly...
-        if (!this.failedAssertionStateMap.isEmpty()) {
-            Iterator<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> assertionStateMapIterator = 
-                this.failedAssertionStateMap.iterator();
+        if (!this.failedAssertionStates.isEmpty()) {
+            Iterator<AlternativeStates> assertionStatesIterator = this.failedAssertionStates.iterator();
             alternative:
-                while (assertionStateMapIterator.hasNext()) {
-                    Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>> map = 
-                        assertionStateMapIterator.next();
+                while (assertionStatesIterator.hasNext()) {
+                    AlternativeStates alternativeStates = assertionStatesIterator.next();
                     // every list entry counts as an alternative...
-                    Map<Assertion, List<Assertable>> assertionListMap = map.get(securityEvent.getSecurityEventType());
-                    if (assertionListMap != null && assertionListMap.size() > 0) {
-                        Iterator<Map.Entry<Assertion, List<Assertable>>> assertionStateIterator = 
-                            assertionListMap.entrySet().iterator();
-                        while (assertionStateIterator.hasNext()) {
-                            Map.Entry<Assertion, List<Assertable>> assertionStateEntry = 
-                                assertionStateIterator.next();
-                            List<Assertable> assertionStates = assertionStateEntry.getValue();
-                            Iterator<Assertable> assertableIterator = assertionStates.iterator();
-                            while (assertableIterator.hasNext()) {
-                                Assertable assertable = assertableIterator.next();
-                                boolean asserted = assertable.assertEvent(securityEvent);
-                                // ...so if one fails, continue with the next map entry and 
-                                // increment the notAssertedCount
-                                if (!asserted) {
-                                    continue alternative;
-                                }
-                            }
+                    for (int slot : alternativeStates.alternative.getSlots(securityEventType)) {
+                        boolean asserted = alternativeStates.states[slot].assertEvent(securityEvent);
+                        // ...so if one fails, continue with the next alternative
+                        if (!asserted) {
+                            continue alternative;
                         }
                     }
                 }
@@ -538,38 +594,26 @@ public class PolicyEnforcer implements SecurityEventListener {
 
         String assertionMessage = null;
         //...and then check the remaining alternatives
-        Iterator<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> assertionStateMapIterator = 
-            this.assertionStateMap.iterator();
-        //every map entry counts as an alternative...
+        Iterator<AlternativeStates> assertionStatesIterator = this.assertionStates.iterator();
+        //every list entry counts as an alternative...
         alternative:
-            while (assertionStateMapIterator.hasNext()) {
-                Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>> map = 
-                    assertionStateMapIterator.next();
-                Map<Assertion, List<Assertable>> assertionListMap = map.get(securityEvent.getSecurityEventType());
-                if (assertionListMap != null && assertionListMap.size() > 0) {
-                    Iterator<Map.Entry<Assertion, List<Assertable>>> assertionStateIterator = 
-                        assertionListMap.entrySet().iterator();
-                    while (assertionStateIterator.hasNext()) {
-                        Map.Entry<Assertion, List<Assertable>> assertionStateEntry = assertionStateIterator.next();
-                        List<Assertable> assertionStates = assertionStateEntry.getValue();
-                        Iterator<Assertable> assertableIterator = assertionStates.iterator();
-                        while (assertableIterator.hasNext()) {
-                            Assertable assertable = assertableIterator.next();
-                            boolean asserted = assertable.assertEvent(securityEvent);
-                            //...so if one fails, continue with the next map entry and increment the notAssertedCount
-                            if (!asserted) {
-                                assertionMessage = assertable.getErrorMessage();
-                                failedAssertionStateMap.add(map);
-                                assertionStateMapIterator.remove();
-                                continue alternative;
-                            }
-                        }
+            while (assertionStatesIterator.hasNext()) {
+                AlternativeStates alternativeStates = assertionStatesIterator.next();
+                for (int slot : alternativeStates.alternative.getSlots(securityEventType)) {
+                    Assertable assertable = alternativeStates.states[slot];
+                    boolean asserted = assertable.assertEvent(securityEvent);
+                    //...so if one fails, continue with the next alternative
+                    if (!asserted) {
+                        assertionMessage = assertable.getErrorMessage();
+                        failedAssertionStates.add(alternativeStates);
+                        assertionStatesIterator.remove();
+                        continue alternative;
                     }
                 }
             }
-        //if the assertionStateMap is empty (the size of the list is equal to the alternatives)
+        //if the assertionStates list is empty (the size of the list is equal to the alternatives)
         //then we could not satisfy any alternative
-        if (assertionStateMap.isEmpty() && !(faultOccurred && noSecurityHeader && initiator)) {
+        if (assertionStates.isEmpty() && !(faultOccurred && noSecurityHeader && initiator)) {
             logFailedAssertions();
             throw new PolicyViolationException(assertionMessage);
         }
@@ -583,36 +627,21 @@ public class PolicyEnforcer implements SecurityEventListener {
      */
     private void verifyPolicy() throws WSSPolicyException {
         String assertionMessage = null;
-        Iterator<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> assertionStateMapIterator = 
-            this.assertionStateMap.iterator();
+        Iterator<AlternativeStates> assertionStatesIterator = this.assertionStates.iterator();
         alternative:
-        while (assertionStateMapIterator.hasNext()) {
-            Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>> map = 
-                assertionStateMapIterator.next();
-            Iterator<Map.Entry<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> iterator = 
-                map.entrySet().iterator();
-            while (iterator.hasNext()) {
-                Map.Entry<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>> mapEntry = 
-                    iterator.next();
-                Iterator<Map.Entry<Assertion, List<Assertable>>> assertionStateIterator = 
-                    mapEntry.getValue().entrySet().iterator();
-                while (assertionStateIterator.hasNext()) {
-                    Map.Entry<Assertion, List<Assertable>> assertionListEntry = assertionStateIterator.next();
-                    List<Assertable> assertableList = assertionListEntry.getValue();
-                    Iterator<Assertable> assertableIterator = assertableList.iterator();
-                    while (assertableIterator.hasNext()) {
-                        Assertable assertable = assertableIterator.next();
-                        if (!assertable.isAsserted()) {
-                            assertionMessage = assertable.getErrorMessage();
-                            failedAssertionStateMap.add(map);
-                            assertionStateMapIterator.remove();
-                            continue alternative;
-                        }
-                    }
+        while (assertionStatesIterator.hasNext()) {
+            AlternativeStates alternativeStates = assertionStatesIterator.next();
+            for (int slot : alternativeStates.alternative.getAllSlots()) {
+                Assertable assertable = alternativeStates.states[slot];
+                if (!assertable.isAsserted()) {
+                    assertionMessage = assertable.getErrorMessage();
+                    failedAssertionStates.add(alternativeStates);
+                    assertionStatesIterator.remove();
+                    continue alternative;
                 }
             }
         }
-        if (assertionStateMap.isEmpty() && !(faultOccurred && noSecurityHeader && initiator)) {
+        if (assertionStates.isEmpty() && !(faultOccurred && noSecurityHeader && initiator)) {
             logFailedAssertions();
             throw new WSSPolicyException(assertionMessage);
         }
@@ -627,94 +656,63 @@ public class PolicyEnforcer implements SecurityEventListener {
      */
     private void verifyPolicyAfterOperationSecurityEvent() throws WSSPolicyException {
         String assertionMessage = null;
-        Iterator<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> assertionStateMapIterator = 
-            this.assertionStateMap.iterator();
+        Iterator<AlternativeStates> assertionStatesIterator = this.assertionStates.iterator();
         alternative:
-        while (assertionStateMapIterator.hasNext()) {
-            Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>> map = 
-                assertionStateMapIterator.next();
-            Iterator<Map.Entry<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> iterator = 
-                map.entrySet().iterator();
-            while (iterator.hasNext()) {
-                Map.Entry<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>> mapEntry = 
-                    iterator.next();
-                Iterator<Map.Entry<Assertion, List<Assertable>>> assertionStateIterator = 
-                    mapEntry.getValue().entrySet().iterator();
-                while (assertionStateIterator.hasNext()) {
-                    Map.Entry<Assertion, List<Assertable>> assertionListEntry = assertionStateIterator.next();
-                    List<Assertable> assertableList = assertionListEntry.getValue();
-                    Iterator<Assertable> assertableIterator = assertableList.iterator();
-                    while (assertableIterator.hasNext()) {
-                        Assertable assertable = assertableIterator.next();
-
-                        boolean doAssert = false;
-                        if (assertable instanceof TokenAssertionState) {
-                            TokenAssertionState tokenAssertionState = (TokenAssertionState) assertable;
-                            AbstractToken abstractToken = (AbstractToken) tokenAssertionState.getAssertion();
-                            AbstractSecurityAssertion assertion = abstractToken.getParentAssertion();
-                            //Other tokens may not be resolved yet fully therefore we skip it here
-                            if (assertion instanceof SupportingTokens 
-                                || assertable instanceof HttpsTokenAssertionState 
-                                || assertable instanceof RelTokenAssertionState 
-                                || assertable instanceof SecurityContextTokenAssertionState 
-                                || assertable instanceof SpnegoContextTokenAssertionState 
-                                || assertable instanceof UsernameTokenAssertionState) {
-                                doAssert = true;
-                            }
-                        } else if (assertable instanceof TokenProtectionAssertionState
-                            || assertable instanceof SignatureConfirmationAssertionState 
-                            || assertable instanceof IncludeTimeStampAssertionState
-                            || assertable instanceof RequiredPartsAssertionState 
-                            || assertable instanceof SignatureProtectionAssertionState) {
-                            doAssert = true;
-                        }
-
-                        if ((doAssert || assertable.isHardFailure()) && !assertable.isAsserted()) {
-                            assertionMessage = assertable.getErrorMessage();
-                            failedAssertionStateMap.add(map);
-                            assertionStateMapIterator.remove();
-                            continue alternative;
-                        }
+        while (assertionStatesIterator.hasNext()) {
+            AlternativeStates alternativeStates = assertionStatesIterator.next();
+            for (int slot : alternativeStates.alternative.getAllSlots()) {
+                Assertable assertable = alternativeStates.states[slot];
+
+                boolean doAssert = false;
+                if (assertable instanceof TokenAssertionState) {
+                    TokenAssertionState tokenAssertionState = (TokenAssertionState) assertable;
+                    AbstractToken abstractToken = (AbstractToken) tokenAssertionState.getAssertion();
+                    AbstractSecurityAssertion assertion = abstractToken.getParentAssertion();
+                    //Other tokens may not be resolved yet fully therefore we skip it here
+                    if (assertion instanceof SupportingTokens 
+                        || assertable instanceof HttpsTokenAssertionState 
+                        || assertable instanceof RelTokenAssertionState 
+                        || assertable instanceof SecurityContextTokenAssertionState 
+                        || assertable instanceof SpnegoContextTokenAssertionState 
+                        || assertable instanceof UsernameTokenAssertionState) {
+                        doAssert = true;
                     }
+                } else if (assertable instanceof TokenProtectionAssertionState
+                    || assertable instanceof SignatureConfirmationAssertionState 
+                    || assertable instanceof IncludeTimeStampAssertionState
+                    || assertable instanceof RequiredPartsAssertionState 
+                    || assertable instanceof SignatureProtectionAssertionState) {
+                    doAssert = true;
+                }
+
+                if ((doAssert || assertable.isHardFailure()) && !assertable.isAsserted()) {
+                    assertionMessage = assertable.getErrorMessage();
+                    failedAssertionStates.add(alternativeStates);
+                    assertionStatesIterator.remove();
+                    continue alternative;
                 }
             }
         }
-        if (assertionStateMap.isEmpty() && !(faultOccurred && noSecurityHeader && initiator)) {
+        if (assertionStates.isEmpty() && !(faultOccurred && noSecurityHeader && initiator)) {
             logFailedAssertions();
             throw new WSSPolicyException(assertionMessage);
         }
     }
 
     private void logFailedAssertions() {
-        if (this.failedAssertionStateMap.isEmpty()) {
+        if (this.failedAssertionStates.isEmpty()) {
             return;
         }
 
-        Iterator<Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> assertionStateMapIterator = 
-            this.failedAssertionStateMap.iterator();
-        while (assertionStateMapIterator.hasNext()) {
-            Map<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>> map = 
-                assertionStateMapIterator.next();
-            Set<Map.Entry<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> entrySet = map.entrySet();
-            Iterator<Map.Entry<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>>> entryIterator = 
-                entrySet.iterator();
-            while (entryIterator.hasNext()) {
-                Map.Entry<SecurityEventConstants.Event, Map<Assertion, List<Assertable>>> eventCollectionEntry = 
-                    entryIterator.next();
-                Map<Assertion, List<Assertable>> assertionListMap = eventCollectionEntry.getValue();
-                Iterator<Map.Entry<Assertion, List<Assertable>>> assertionStateEntryIterator = 
-                    assertionListMap.entrySet().iterator();
-                while (assertionStateEntryIterator.hasNext()) {
-                    Map.Entry<Assertion, List<Assertable>> entry = assertionStateEntryIterator.next();
-                    List<Assertable> assertionStates = entry.getValue();
-                    Iterator<Assertable> assertableIterator = assertionStates.iterator();
-                    while (assertableIterator.hasNext()) {
-                        Assertable assertable = assertableIterator.next();
-                        if (!assertable.isAsserted() && !assertable.isLogged()) {
-                            LOG.error(entry.getKey().getName() + " not satisfied: " + assertable.getErrorMessage());
-                            assertable.setLogged(true);
-                        }
-                    }
+        Iterator<AlternativeStates> assertionStatesIterator = this.failedAssertionStates.iterator();
+        while (assertionStatesIterator.hasNext()) {
+            AlternativeStates alternativeStates = assertionStatesIterator.next();
+            for (int slot : alternativeStates.alternative.getAllSlots()) {
+                Assertable assertable = alternativeStates.states[slot];
+                if (!assertable.isAsserted() && !assertable.isLogged()) {
+                    LOG.error(alternativeStates.alternative.getAssertion(slot).getName() + " not satisfied: " 
+                        + assertable.getErrorMessage());
+                    assertable.setLogged(true);
                 }
             }
         }
@@ -747,13 +745,14 @@ public class PolicyEnforcer implements SecurityEventListener {
             if (effectivePolicy == null) {
                 effectivePolicy = findPolicyBySOAPOperationName(operationPolicies, 
                                                                 operationSecurityEvent.getOperation());
+                boolean operationPolicyFound = effectivePolicy != null;
                 if (effectivePolicy == null) {
                     //no policy to the operation given
                     effectivePolicy = new OperationPolicy(new QName(null, "NoPolicyFoundForOperation"));
                     effectivePolicy.setPolicy(new Policy());
                 }
                 try {
-                    buildAssertionStateMap(effectivePolicy.getPolicy(), assertionStateMap);
+                    buildAssertionStates(effectivePolicy, operationPolicyFound);
                 } catch (WSSPolicyException e) {
                     throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY, e);
                 }
@@ -787,4 +786,18 @@ public class PolicyEnforcer implements SecurityEventListener {
     public void doFinal() throws WSSPolicyException {
         verifyPolicy();
     }
+
+    /**
+     * The assertion states of a policy alternative, laid out as described by the compiled policy
+     */
+    private static final class AlternativeStates {
+
+        private final CompiledPolicy.Alternative alternative;
+        private final Assertable[] states;
+
+        AlternativeStates(CompiledPolicy.Alternative alternative, Assertable[] states) {
+            this.alternative = alternative;
+            this.states = states;
+        }
+    }
 }
@@ -24,6 +24,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.wsdl.Binding;
 import javax.wsdl.BindingOperation;
@@ -94,7 +95,7 @@ import org.w3c.dom.NodeList;
 
 /**
  * PolicyEnforcerFactory builds a map of all the possible effective Policies
- * and caches them for reuse
+ * and caches them, and their compiled form, for reuse
  */
 public class PolicyEnforcerFactory {
 
@@ -106,6 +107,8 @@ public class PolicyEnforcerFactory {
     private Definition wsdlDefinition;
     private List<OperationPolicy> operationPolicies;
     private final Map<Element, Policy> elementPolicyCache;
+    private final Map<OperationPolicy, CompiledPolicy> initiatorCompiledPolicies = new ConcurrentHashMap<>();
+    private final Map<OperationPolicy, CompiledPolicy> recipientCompiledPolicies = new ConcurrentHashMap<>();
 
     protected PolicyEnforcerFactory(List<AssertionBuilder<Element>> customAssertionBuilders) {
         elementPolicyCache = new HashMap<>();
@@ -436,6 +439,9 @@ public class PolicyEnforcerFactory {
      */
     public PolicyEnforcer newPolicyEnforcer(String soapAction, boolean initiator,
                                             String roleOrActor, int attachmentCount) throws WSSPolicyException {
-        return new PolicyEnforcer(this.operationPolicies, soapAction, initiator, roleOrActor, attachmentCount);
+        // The compiled form of the policy of an operation is cached, so that only the assertion states
+        // are created for every message
+        return new PolicyEnforcer(this.operationPolicies, soapAction, initiator, roleOrActor, attachmentCount,
+                                  null, initiator ? initiatorCompiledPolicies : recipientCompiledPolicies);
     }
 }
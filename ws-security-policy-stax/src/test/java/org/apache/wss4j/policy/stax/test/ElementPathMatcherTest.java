@@ -0,0 +1,110 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package org.apache.wss4j.policy.stax.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.apache.wss4j.policy.stax.ElementPathMatcher;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.utils.WSSUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ElementPathMatcherTest {
+
+    private static final QName ELEMENT_A = new QName("urn:a", "a");
+    private static final QName ELEMENT_B = new QName("urn:b", "b");
+
+    @Test
+    public void testMatches() throws Exception {
+        List<List<QName>> paths = new ArrayList<>();
+        paths.add(Arrays.asList(WSSConstants.TAG_SOAP11_ENVELOPE, WSSConstants.TAG_SOAP11_BODY, ELEMENT_A));
+        paths.add(Arrays.asList(WSSConstants.TAG_SOAP11_ENVELOPE, WSSConstants.TAG_SOAP11_HEADER, ELEMENT_B));
+        paths.add(Arrays.asList(ELEMENT_A, ELEMENT_B));
+        paths.add(Arrays.asList(ELEMENT_A));
+        paths.add(new LinkedList<>(Arrays.asList(WSSConstants.TAG_SOAP12_ENVELOPE, WSSConstants.TAG_SOAP12_HEADER)));
+
+        ElementPathMatcher elementPathMatcher = new ElementPathMatcher(paths);
+        Assert.assertEquals(paths.size(), elementPathMatcher.size());
+        for (int i = 0; i < paths.size(); i++) {
+            Assert.assertEquals(paths.get(i), elementPathMatcher.getPath(i));
+        }
+
+        List<List<QName>> elementPaths = new ArrayList<>(paths);
+        elementPaths.add(Arrays.asList(WSSConstants.TAG_SOAP12_ENVELOPE, WSSConstants.TAG_SOAP12_BODY, ELEMENT_A));
+        elementPaths.add(Arrays.asList(WSSConstants.TAG_SOAP11_ENVELOPE, WSSConstants.TAG_SOAP11_HEADER));
+        elementPaths.add(Arrays.asList(WSSConstants.TAG_SOAP11_ENVELOPE, WSSConstants.TAG_SOAP11_BODY, ELEMENT_B));
+        elementPaths.add(Arrays.asList(new QName("urn:other", "Envelope"), new QName("urn:other", "Body"), ELEMENT_A));
+        elementPaths.add(Arrays.asList(ELEMENT_B, ELEMENT_A));
+        elementPaths.add(Arrays.asList(ELEMENT_A, ELEMENT_B, ELEMENT_A));
+        elementPaths.add(new ArrayList<QName>());
+
+        // The same result as matching every path in turn
+        for (List<QName> elementPath : elementPaths) {
+            int expected = -1;
+            for (int i = 0; i < paths.size() && expected < 0; i++) {
+                if (WSSUtils.pathMatches(paths.get(i), elementPath, true, false)) {
+                    expected = i;
+                }
+            }
+            Assert.assertEquals(WSSUtils.pathAsString(elementPath), expected, elementPathMatcher.getFirstMatch(elementPath));
+            Assert.assertEquals(expected >= 0, elementPathMatcher.matches(elementPath));
+        }
+        Assert.assertFalse(elementPathMatcher.matches(null));
+    }
+
+    @Test
+    public void testFirstMatch() throws Exception {
+        ElementPathMatcher elementPathMatcher = new ElementPathMatcher(Arrays.asList(
+            Arrays.asList(WSSConstants.TAG_SOAP12_ENVELOPE, ELEMENT_A),
+            Arrays.asList(WSSConstants.TAG_SOAP11_ENVELOPE, ELEMENT_A),
+            Arrays.asList(new QName("urn:other", "Envelope"), ELEMENT_A)
+        ));
+
+        Assert.assertEquals(0,
+            elementPathMatcher.getFirstMatch(Arrays.asList(new QName("urn:other", "Envelope"), ELEMENT_A)));
+        Assert.assertEquals(0,
+            elementPathMatcher.getFirstMatch(Arrays.asList(WSSConstants.TAG_SOAP11_ENVELOPE, ELEMENT_A)));
+    }
+
+    @Test
+    public void testWithPath() throws Exception {
+        List<QName> pathA = Arrays.asList(ELEMENT_A);
+        List<QName> pathB = Arrays.asList(ELEMENT_A, ELEMENT_B);
+
+        // duplicate paths are only indexed once
+        ElementPathMatcher elementPathMatcher = new ElementPathMatcher(Arrays.asList(pathA, pathA));
+        Assert.assertEquals(1, elementPathMatcher.size());
+        Assert.assertSame(elementPathMatcher, elementPathMatcher.withPath(new ArrayList<>(pathA)));
+
+        // the matcher is immutable, adding a path creates a new one
+        ElementPathMatcher newElementPathMatcher = elementPathMatcher.withPath(pathB);
+        Assert.assertEquals(2, newElementPathMatcher.size());
+        Assert.assertEquals(1, newElementPathMatcher.getFirstMatch(pathB));
+        Assert.assertEquals(1, elementPathMatcher.size());
+        Assert.assertFalse(elementPathMatcher.matches(pathB));
+    }
+}
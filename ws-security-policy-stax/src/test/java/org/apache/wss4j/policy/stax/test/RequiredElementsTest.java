@@ -25,6 +25,7 @@ import javax.xml.namespace.QName;
 
 import org.apache.wss4j.common.WSSPolicyException;
 import org.apache.wss4j.policy.stax.enforcer.PolicyEnforcer;
+import org.apache.wss4j.policy.stax.enforcer.PolicyEnforcerFactory;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.securityEvent.OperationSecurityEvent;
 import org.apache.wss4j.stax.securityEvent.RequiredElementSecurityEvent;
@@ -82,4 +83,43 @@ public class RequiredElementsTest extends AbstractPolicyTestBase {
             Assert.assertEquals(e.getMessage(), "Element /{http://example.org}a must be present");
         }
     }
+
+    @Test
+    public void testPolicyCompiledPolicyReused() throws Exception {
+        String policyString =
+                "<sp:RequiredElements xmlns:sp=\"http://docs.oasis-open.org/ws-sx/ws-securitypolicy/200702\" xmlns:sp3=\"http://docs.oasis-open.org/ws-sx/ws-securitypolicy/200802\">\n" +
+                        "<sp:XPath xmlns:b=\"http://example.org\">/b:a</sp:XPath>\n" +
+                        "</sp:RequiredElements>";
+        PolicyEnforcerFactory policyEnforcerFactory = buildPolicyEnforcerFactory(policyString, false, null);
+
+        List<QName> headerPath = new ArrayList<>();
+        headerPath.add(new QName("http://example.org", "a"));
+
+        // the first PolicyEnforcer compiles the policy, the following ones reuse the compiled form
+        for (int i = 0; i < 3; i++) {
+            PolicyEnforcer policyEnforcer = policyEnforcerFactory.newPolicyEnforcer("", false, null, 0);
+
+            OperationSecurityEvent operationSecurityEvent = new OperationSecurityEvent();
+            operationSecurityEvent.setOperation(new QName("definitions"));
+            policyEnforcer.registerSecurityEvent(operationSecurityEvent);
+
+            RequiredElementSecurityEvent requiredElementSecurityEvent = new RequiredElementSecurityEvent();
+            requiredElementSecurityEvent.setElementPath(headerPath);
+            policyEnforcer.registerSecurityEvent(requiredElementSecurityEvent);
+            policyEnforcer.doFinal();
+
+            // the states of one message must not leak into the next one
+            policyEnforcer = policyEnforcerFactory.newPolicyEnforcer("", false, null, 0);
+            policyEnforcer.registerSecurityEvent(operationSecurityEvent);
+            requiredElementSecurityEvent = new RequiredElementSecurityEvent();
+            requiredElementSecurityEvent.setElementPath(WSSConstants.SOAP_11_BODY_PATH);
+            policyEnforcer.registerSecurityEvent(requiredElementSecurityEvent);
+            try {
+                policyEnforcer.doFinal();
+                Assert.fail("Exception expected");
+            } catch (WSSPolicyException e) {
+                Assert.assertEquals(e.getMessage(), "Element /{http://example.org}a must be present");
+            }
+        }
+    }
 }
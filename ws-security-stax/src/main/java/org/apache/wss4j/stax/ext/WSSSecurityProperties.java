@@ -38,7 +38,11 @@ import javax.security.auth.callback.CallbackHandler;
 import javax.xml.namespace.QName;
 
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.DecryptedKeyCache;
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.SecurityContextTokenCache;
+import org.apache.wss4j.common.cache.SessionKeyCache;
+import org.apache.wss4j.common.cache.VerifiedAssertionCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.Merlin;
 import org.apache.wss4j.common.crypto.PasswordEncryptor;
@@ -108,6 +112,10 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
     private ReplayCache timestampReplayCache;
     private ReplayCache nonceReplayCache;
     private ReplayCache samlOneTimeUseReplayCache;
+    private DecryptedKeyCache decryptedKeyCache;
+    private SessionKeyCache sessionKeyCache;
+    private VerifiedAssertionCache verifiedAssertionCache;
+    private SecurityContextTokenCache securityContextTokenCache;
     private boolean validateSamlSubjectConfirmation = true;
     private Collection<Pattern> subjectDNPatterns = new ArrayList<>();
     private Collection<Pattern> issuerDNPatterns = new ArrayList<>();
@@ -162,6 +170,10 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         this.timestampReplayCache = wssSecurityProperties.timestampReplayCache;
         this.nonceReplayCache = wssSecurityProperties.nonceReplayCache;
         this.samlOneTimeUseReplayCache = wssSecurityProperties.samlOneTimeUseReplayCache;
+        this.decryptedKeyCache = wssSecurityProperties.decryptedKeyCache;
+        this.sessionKeyCache = wssSecurityProperties.sessionKeyCache;
+        this.verifiedAssertionCache = wssSecurityProperties.verifiedAssertionCache;
+        this.securityContextTokenCache = wssSecurityProperties.securityContextTokenCache;
         this.allowRSA15KeyTransportAlgorithm = wssSecurityProperties.allowRSA15KeyTransportAlgorithm;
         this.derivedKeyIterations = wssSecurityProperties.derivedKeyIterations;
         this.useDerivedKeyForMAC = wssSecurityProperties.useDerivedKeyForMAC;
@@ -760,6 +772,70 @@ public class WSSSecurityProperties extends XMLSecurityProperties {
         return samlOneTimeUseReplayCache;
     }
 
+    /**
+     * Set the cache of the symmetric keys unwrapped from received EncryptedKeys. A key is cached
+     * per decryption Crypto, and is found again by the SHA-1 digest of the wrapped key. The
+     * default is null, which unwraps every EncryptedKey with the private key.
+     */
+    public void setDecryptedKeyCache(DecryptedKeyCache decryptedKeyCache) {
+        this.decryptedKeyCache = decryptedKeyCache;
+    }
+
+    /**
+     * Get the cache of the symmetric keys unwrapped from received EncryptedKeys
+     */
+    public DecryptedKeyCache getDecryptedKeyCache() {
+        return decryptedKeyCache;
+    }
+
+    /**
+     * Set the cache of the session keys generated for a recipient. A cached session key, and the
+     * EncryptedKey that wraps it, are reused for the following messages to the same recipient,
+     * until the key is rotated. The default is null, which generates a new key for every message.
+     */
+    public void setSessionKeyCache(SessionKeyCache sessionKeyCache) {
+        this.sessionKeyCache = sessionKeyCache;
+    }
+
+    /**
+     * Get the cache of the session keys generated for a recipient
+     */
+    public SessionKeyCache getSessionKeyCache() {
+        return sessionKeyCache;
+    }
+
+    /**
+     * Set the cache of the signed SAML Assertions whose signature has been verified, and whose
+     * signing key has been trusted. The signature and trust verification is skipped for an
+     * Assertion that is received again. The default is null, which verifies every Assertion.
+     */
+    public void setVerifiedAssertionCache(VerifiedAssertionCache verifiedAssertionCache) {
+        this.verifiedAssertionCache = verifiedAssertionCache;
+    }
+
+    /**
+     * Get the cache of the verified signed SAML Assertions
+     */
+    public VerifiedAssertionCache getVerifiedAssertionCache() {
+        return verifiedAssertionCache;
+    }
+
+    /**
+     * Set the cache of the secrets of the SecurityContextTokens. The secret is requested from the
+     * CallbackHandler once for a conversation, until the cached secret expires. The default is
+     * null, which requests the secret for every message.
+     */
+    public void setSecurityContextTokenCache(SecurityContextTokenCache securityContextTokenCache) {
+        this.securityContextTokenCache = securityContextTokenCache;
+    }
+
+    /**
+     * Get the cache of the SecurityContextToken secrets
+     */
+    public SecurityContextTokenCache getSecurityContextTokenCache() {
+        return securityContextTokenCache;
+    }
+
     public boolean isDisableBSPEnforcement() {
         return disableBSPEnforcement;
     }
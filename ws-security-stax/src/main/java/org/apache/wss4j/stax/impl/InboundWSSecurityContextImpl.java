@@ -22,8 +22,11 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Deque;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import javax.xml.namespace.QName;
 
@@ -56,6 +59,13 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
     private static final org.slf4j.Logger LOG =
             org.slf4j.LoggerFactory.getLogger(InboundWSSecurityContextImpl.class);
 
+    private static final List<QName> SIGNATURE_ELEMENT_PATH = createSecurityHeaderPath(WSSConstants.TAG_dsig_Signature);
+    private static final List<QName> SIGNATURE_CONFIRMATION_ELEMENT_PATH =
+            createSecurityHeaderPath(WSSConstants.TAG_WSSE11_SIG_CONF);
+    private static final List<QName> TIMESTAMP_ELEMENT_PATH = createSecurityHeaderPath(WSSConstants.TAG_WSU_TIMESTAMP);
+    private static final List<QName> USERNAME_TOKEN_ELEMENT_PATH =
+            createSecurityHeaderPath(WSSConstants.TAG_WSSE_USERNAME_TOKEN);
+
     private final Deque<SecurityEvent> securityEventQueue = new ArrayDeque<SecurityEvent>();
     private boolean operationSecurityEventOccured = false;
     private boolean messageEncryptionTokenOccured = false;
@@ -64,6 +74,13 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
 
     private List<BSPRule> ignoredBSPRules = Collections.emptyList();
 
+    private static List<QName> createSecurityHeaderPath(QName elementName) {
+        List<QName> elementPath = new ArrayList<>(WSSConstants.WSSE_SECURITY_HEADER_PATH.size() + 1);
+        elementPath.addAll(WSSConstants.WSSE_SECURITY_HEADER_PATH);
+        elementPath.add(elementName);
+        return Collections.unmodifiableList(elementPath);
+    }
+
     @Override
     public synchronized void registerSecurityEvent(SecurityEvent securityEvent) throws XMLSecurityException {
 
@@ -174,24 +191,36 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
         }
 
         //search the root tokens and create new TokenSecurityEvents if not already there...
+        Set<String> supportingTokenIds = new HashSet<>();
+        Set<SecurityEvent> replacedSecurityEvents =
+                Collections.newSetFromMap(new IdentityHashMap<SecurityEvent, Boolean>());
+        List<SecurityEvent> rootTokenSecurityEvents = new ArrayList<>();
         for (int i = 0; i < tokenSecurityEvents.size(); i++) {
             TokenSecurityEvent<? extends InboundSecurityToken> tokenSecurityEvent = tokenSecurityEvents.get(i);
             InboundSecurityToken securityToken = WSSUtils.getRootToken(tokenSecurityEvent.getSecurityToken());
 
-            if (!containsSecurityToken(messageTokens.supportingTokens, securityToken)) {
+            if (securityToken == null || supportingTokenIds.add(securityToken.getId())) {
                 TokenSecurityEvent<? extends InboundSecurityToken> newTokenSecurityEvent =
                         WSSUtils.createTokenSecurityEvent(securityToken, tokenSecurityEvent.getCorrelationID());
                 messageTokens.supportingTokens = addTokenSecurityEvent(newTokenSecurityEvent, messageTokens.supportingTokens);
-                securityEventDeque.offer(newTokenSecurityEvent);
+                rootTokenSecurityEvents.add(newTokenSecurityEvent);
+            }
+            replacedSecurityEvents.add(tokenSecurityEvent);
+        }
+        //remove old TokenSecurityEvents so that only root tokens are in the queue
+        for (Iterator<SecurityEvent> iterator = securityEventDeque.iterator(); iterator.hasNext();) {
+            if (replacedSecurityEvents.contains(iterator.next())) {
+                iterator.remove();
             }
-            //remove old TokenSecurityEvent so that only root tokens are in the queue
-            securityEventDeque.remove(tokenSecurityEvent);
         }
+        securityEventDeque.addAll(rootTokenSecurityEvents);
 
-        parseSupportingTokens(messageTokens, httpsTokenSecurityEvent, securityEventDeque);
+        SecurityEventIndex securityEventIndex = new SecurityEventIndex(securityEventDeque);
+
+        parseSupportingTokens(messageTokens, httpsTokenSecurityEvent, securityEventIndex);
 
         if (messageTokens.messageSignatureTokens.isEmpty()) {
-            InboundSecurityToken messageSignatureToken = getSupportingTokenSigningToken(messageTokens, securityEventDeque);
+            InboundSecurityToken messageSignatureToken = getSupportingTokenSigningToken(messageTokens, securityEventIndex);
 
             TokenSecurityEvent<? extends InboundSecurityToken> tokenSecurityEvent =
                     getTokenSecurityEvent(messageSignatureToken, tokenSecurityEvents);
@@ -255,41 +284,30 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
     }
     
     private void parseSupportingTokens(MessageTokens messageTokens, HttpsTokenSecurityEvent httpsTokenSecurityEvent,
-                                       Deque<SecurityEvent> securityEventDeque) throws XMLSecurityException {
+                                       SecurityEventIndex securityEventIndex) throws XMLSecurityException {
         Iterator<TokenSecurityEvent<? extends InboundSecurityToken>> supportingTokensIterator = messageTokens.supportingTokens.iterator();
         while (supportingTokensIterator.hasNext()) {
             TokenSecurityEvent<? extends InboundSecurityToken> tokenSecurityEvent = supportingTokensIterator.next();
             List<InboundSecurityToken> signingSecurityTokens = 
-                isSignedToken(tokenSecurityEvent, securityEventDeque, httpsTokenSecurityEvent);
+                isSignedToken(tokenSecurityEvent, securityEventIndex, httpsTokenSecurityEvent);
 
-            List<QName> signatureElementPath = new ArrayList<>(4);
-            signatureElementPath.addAll(WSSConstants.WSSE_SECURITY_HEADER_PATH);
-            signatureElementPath.add(WSSConstants.TAG_dsig_Signature);
-            boolean signsSignature = signsElement(tokenSecurityEvent, signatureElementPath, securityEventDeque);
-            boolean encryptsSignature = encryptsElement(tokenSecurityEvent, signatureElementPath, securityEventDeque);
+            boolean signsSignature = signsElement(tokenSecurityEvent, SIGNATURE_ELEMENT_PATH, securityEventIndex);
+            boolean encryptsSignature = encryptsElement(tokenSecurityEvent, SIGNATURE_ELEMENT_PATH, securityEventIndex);
 
-            List<QName> signatureConfirmationElementPath = new ArrayList<>(4);
-            signatureConfirmationElementPath.addAll(WSSConstants.WSSE_SECURITY_HEADER_PATH);
-            signatureConfirmationElementPath.add(WSSConstants.TAG_WSSE11_SIG_CONF);
             boolean signsSignatureConfirmation = 
-                signsElement(tokenSecurityEvent, signatureConfirmationElementPath, securityEventDeque);
+                signsElement(tokenSecurityEvent, SIGNATURE_CONFIRMATION_ELEMENT_PATH, securityEventIndex);
             boolean encryptsSignatureConfirmation = 
-                encryptsElement(tokenSecurityEvent, signatureConfirmationElementPath, securityEventDeque);
+                encryptsElement(tokenSecurityEvent, SIGNATURE_CONFIRMATION_ELEMENT_PATH, securityEventIndex);
 
-            List<QName> timestampElementPath = new ArrayList<>(4);
-            timestampElementPath.addAll(WSSConstants.WSSE_SECURITY_HEADER_PATH);
-            timestampElementPath.add(WSSConstants.TAG_WSU_TIMESTAMP);
-            boolean signsTimestamp = signsElement(tokenSecurityEvent, timestampElementPath, securityEventDeque);
+            boolean signsTimestamp = signsElement(tokenSecurityEvent, TIMESTAMP_ELEMENT_PATH, securityEventIndex);
 
-            List<QName> usernameTokenElementPath = new ArrayList<>(4);
-            usernameTokenElementPath.addAll(WSSConstants.WSSE_SECURITY_HEADER_PATH);
-            usernameTokenElementPath.add(WSSConstants.TAG_WSSE_USERNAME_TOKEN);
-            boolean encryptsUsernameToken = encryptsElement(tokenSecurityEvent, usernameTokenElementPath, securityEventDeque);
+            boolean encryptsUsernameToken = 
+                encryptsElement(tokenSecurityEvent, USERNAME_TOKEN_ELEMENT_PATH, securityEventIndex);
 
             boolean transportSecurityActive = Boolean.TRUE == get(WSSConstants.TRANSPORT_SECURITY_ACTIVE);
 
             List<InboundSecurityToken> encryptingSecurityTokens = 
-                isEncryptedToken(tokenSecurityEvent, securityEventDeque, httpsTokenSecurityEvent);
+                isEncryptedToken(tokenSecurityEvent, securityEventIndex, httpsTokenSecurityEvent);
 
             boolean signatureUsage = 
                 tokenSecurityEvent.getSecurityToken().getTokenUsages().contains(WSSecurityTokenConstants.TokenUsage_Signature);
@@ -387,19 +405,6 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
         return tokenSecurityEventList;
     }
 
-    private boolean containsSecurityToken(List<TokenSecurityEvent<? extends InboundSecurityToken>> supportingTokens, 
-                                          SecurityToken securityToken) {
-        if (securityToken != null) {
-            for (int i = 0; i < supportingTokens.size(); i++) {
-                TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent = supportingTokens.get(i);
-                if (tokenSecurityEvent.getSecurityToken().getId().equals(securityToken.getId())) {
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-
     private TokenSecurityEvent<? extends InboundSecurityToken> getTokenSecurityEvent(
             InboundSecurityToken securityToken,
             List<TokenSecurityEvent<? extends InboundSecurityToken>> tokenSecurityEvents) throws XMLSecurityException {
@@ -416,34 +421,34 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
 
     private InboundSecurityToken getSupportingTokenSigningToken(
             MessageTokens messageTokens,
-            Deque<SecurityEvent> securityEventDeque
+            SecurityEventIndex securityEventIndex
     ) throws XMLSecurityException {
 
         //todo we have to check if the signingTokens also cover the other supporting tokens!
         for (int i = 0; i < messageTokens.signedSupportingTokens.size(); i++) {
             TokenSecurityEvent<? extends InboundSecurityToken> tokenSecurityEvent = messageTokens.signedSupportingTokens.get(i);
-            List<? extends InboundSecurityToken> signingSecurityTokens = getSigningToken(tokenSecurityEvent, securityEventDeque);
+            List<? extends InboundSecurityToken> signingSecurityTokens = getSigningToken(tokenSecurityEvent, securityEventIndex);
             if (signingSecurityTokens.size() == 1) {
                 return signingSecurityTokens.get(0);
             }
         }
         for (int i = 0; i < messageTokens.signedEndorsingSupportingTokens.size(); i++) {
             TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent = messageTokens.signedEndorsingSupportingTokens.get(i);
-            List<InboundSecurityToken> signingSecurityTokens = getSigningToken(tokenSecurityEvent, securityEventDeque);
+            List<InboundSecurityToken> signingSecurityTokens = getSigningToken(tokenSecurityEvent, securityEventIndex);
             if (signingSecurityTokens.size() == 1) {
                 return signingSecurityTokens.get(0);
             }
         }
         for (int i = 0; i < messageTokens.signedEncryptedSupportingTokens.size(); i++) {
             TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent = messageTokens.signedEncryptedSupportingTokens.get(i);
-            List<InboundSecurityToken> signingSecurityTokens = getSigningToken(tokenSecurityEvent, securityEventDeque);
+            List<InboundSecurityToken> signingSecurityTokens = getSigningToken(tokenSecurityEvent, securityEventIndex);
             if (signingSecurityTokens.size() == 1) {
                 return signingSecurityTokens.get(0);
             }
         }
         for (int i = 0; i < messageTokens.signedEndorsingEncryptedSupportingTokens.size(); i++) {
             TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent = messageTokens.signedEndorsingEncryptedSupportingTokens.get(i);
-            List<InboundSecurityToken> signingSecurityTokens = getSigningToken(tokenSecurityEvent, securityEventDeque);
+            List<InboundSecurityToken> signingSecurityTokens = getSigningToken(tokenSecurityEvent, securityEventIndex);
             if (signingSecurityTokens.size() == 1) {
                 return signingSecurityTokens.get(0);
             }
@@ -452,20 +457,16 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
     }
 
     private List<InboundSecurityToken> getSigningToken(TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent, 
-                                                       Deque<SecurityEvent> securityEventDeque) throws XMLSecurityException {
+                                                       SecurityEventIndex securityEventIndex) throws XMLSecurityException {
         List<InboundSecurityToken> signingSecurityTokens = new ArrayList<>();
 
-        for (Iterator<SecurityEvent> iterator = securityEventDeque.iterator(); iterator.hasNext();) {
-            SecurityEvent securityEvent = iterator.next();
-            if (WSSecurityEventConstants.SignedElement.equals(securityEvent.getSecurityEventType())) {
-                SignedElementSecurityEvent signedElementSecurityEvent = (SignedElementSecurityEvent) securityEvent;
-                if (signedElementSecurityEvent.isSigned()
-                        && WSSUtils.pathMatches(
-                        signedElementSecurityEvent.getElementPath(),
-                        ((InboundSecurityToken)tokenSecurityEvent.getSecurityToken()).getElementPath(), true, false)
-                        ) {
-                    signingSecurityTokens.add((InboundSecurityToken)signedElementSecurityEvent.getSecurityToken());
-                }
+        List<QName> tokenElementPath = ((InboundSecurityToken)tokenSecurityEvent.getSecurityToken()).getElementPath();
+        List<SignedElementSecurityEvent> signedElementSecurityEvents = securityEventIndex.getSignedElements(tokenElementPath);
+        for (int i = 0; i < signedElementSecurityEvents.size(); i++) {
+            SignedElementSecurityEvent signedElementSecurityEvent = signedElementSecurityEvents.get(i);
+            if (signedElementSecurityEvent.isSigned()
+                    && WSSUtils.pathMatches(signedElementSecurityEvent.getElementPath(), tokenElementPath, true, false)) {
+                signingSecurityTokens.add((InboundSecurityToken)signedElementSecurityEvent.getSecurityToken());
             }
         }
         return signingSecurityTokens;
@@ -488,32 +489,30 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
     }
 
     private List<InboundSecurityToken> isSignedToken(TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent,
-                                              Deque<SecurityEvent> securityEventDeque,
+                                              SecurityEventIndex securityEventIndex,
                                               HttpsTokenSecurityEvent httpsTokenSecurityEvent) throws XMLSecurityException {
         List<InboundSecurityToken> securityTokenList = new ArrayList<>();
         if (httpsTokenSecurityEvent != null) {
             securityTokenList.add(httpsTokenSecurityEvent.getSecurityToken());
             return securityTokenList;
         }
-        for (Iterator<SecurityEvent> iterator = securityEventDeque.iterator(); iterator.hasNext();) {
-            SecurityEvent securityEvent = iterator.next();
-            if (WSSecurityEventConstants.SignedElement.equals(securityEvent.getSecurityEventType())) {
-                SignedElementSecurityEvent signedElementSecurityEvent = (SignedElementSecurityEvent) securityEvent;
-                if (signedElementSecurityEvent.isSigned()
-                        && tokenSecurityEvent.getSecurityToken() != null
-                        && signedElementSecurityEvent.getXmlSecEvent() != null
-                        && signedElementSecurityEvent.getXmlSecEvent() 
-                            == ((InboundSecurityToken)tokenSecurityEvent.getSecurityToken()).getXMLSecEvent()
-                        && !securityTokenList.contains((InboundSecurityToken)signedElementSecurityEvent.getSecurityToken())) {
-                    securityTokenList.add((InboundSecurityToken)signedElementSecurityEvent.getSecurityToken());
-                }
+        if (tokenSecurityEvent.getSecurityToken() == null) {
+            return securityTokenList;
+        }
+        List<SignedElementSecurityEvent> signedElementSecurityEvents =
+            securityEventIndex.getSignedElements(((InboundSecurityToken)tokenSecurityEvent.getSecurityToken()).getXMLSecEvent());
+        for (int i = 0; i < signedElementSecurityEvents.size(); i++) {
+            SignedElementSecurityEvent signedElementSecurityEvent = signedElementSecurityEvents.get(i);
+            if (signedElementSecurityEvent.isSigned()
+                    && !securityTokenList.contains((InboundSecurityToken)signedElementSecurityEvent.getSecurityToken())) {
+                securityTokenList.add((InboundSecurityToken)signedElementSecurityEvent.getSecurityToken());
             }
         }
         return securityTokenList;
     }
 
     private List<InboundSecurityToken> isEncryptedToken(TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent,
-                                                 Deque<SecurityEvent> securityEventDeque,
+                                                 SecurityEventIndex securityEventIndex,
                                                  HttpsTokenSecurityEvent httpsTokenSecurityEvent) throws XMLSecurityException {
 
         List<InboundSecurityToken> securityTokenList = new ArrayList<>();
@@ -521,36 +520,33 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
             securityTokenList.add(httpsTokenSecurityEvent.getSecurityToken());
             return securityTokenList;
         }
-        for (Iterator<SecurityEvent> iterator = securityEventDeque.iterator(); iterator.hasNext();) {
-            SecurityEvent securityEvent = iterator.next();
-            if (WSSecurityEventConstants.EncryptedElement.equals(securityEvent.getSecurityEventType())) {
-                EncryptedElementSecurityEvent encryptedElementSecurityEvent = (EncryptedElementSecurityEvent) securityEvent;
-                if (encryptedElementSecurityEvent.isEncrypted()
-                        && tokenSecurityEvent.getSecurityToken() != null
-                        && encryptedElementSecurityEvent.getXmlSecEvent() != null
-                        && encryptedElementSecurityEvent.getXmlSecEvent() 
-                            == ((InboundSecurityToken)tokenSecurityEvent.getSecurityToken()).getXMLSecEvent()
-                        && !securityTokenList.contains((InboundSecurityToken)encryptedElementSecurityEvent.getSecurityToken())) {
-                    securityTokenList.add((InboundSecurityToken)encryptedElementSecurityEvent.getSecurityToken());
-                }
+        if (tokenSecurityEvent.getSecurityToken() == null) {
+            return securityTokenList;
+        }
+        List<EncryptedElementSecurityEvent> encryptedElementSecurityEvents =
+            securityEventIndex.getEncryptedElements(
+                ((InboundSecurityToken)tokenSecurityEvent.getSecurityToken()).getXMLSecEvent());
+        for (int i = 0; i < encryptedElementSecurityEvents.size(); i++) {
+            EncryptedElementSecurityEvent encryptedElementSecurityEvent = encryptedElementSecurityEvents.get(i);
+            if (encryptedElementSecurityEvent.isEncrypted()
+                    && !securityTokenList.contains((InboundSecurityToken)encryptedElementSecurityEvent.getSecurityToken())) {
+                securityTokenList.add((InboundSecurityToken)encryptedElementSecurityEvent.getSecurityToken());
             }
         }
         return securityTokenList;
     }
 
     private boolean signsElement(TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent, List<QName> elementPath,
-                                 Deque<SecurityEvent> securityEventDeque) throws XMLSecurityException {
-        for (Iterator<SecurityEvent> iterator = securityEventDeque.iterator(); iterator.hasNext();) {
-            SecurityEvent securityEvent = iterator.next();
-            if (WSSecurityEventConstants.SignedElement.equals(securityEvent.getSecurityEventType())) {
-                SignedElementSecurityEvent signedElementSecurityEvent = (SignedElementSecurityEvent) securityEvent;
-                if (signedElementSecurityEvent.isSigned()
-                        && matchesTokenOrWrappedTokenId(tokenSecurityEvent.getSecurityToken(),
-                        signedElementSecurityEvent.getSecurityToken().getId(),
-                        SecurityTokenConstants.TokenUsage_Signature)
-                        && WSSUtils.pathMatches(elementPath, signedElementSecurityEvent.getElementPath(), true, false)) {
-                    return true;
-                }
+                                 SecurityEventIndex securityEventIndex) throws XMLSecurityException {
+        List<SignedElementSecurityEvent> signedElementSecurityEvents = securityEventIndex.getSignedElements(elementPath);
+        for (int i = 0; i < signedElementSecurityEvents.size(); i++) {
+            SignedElementSecurityEvent signedElementSecurityEvent = signedElementSecurityEvents.get(i);
+            if (signedElementSecurityEvent.isSigned()
+                    && matchesTokenOrWrappedTokenId(tokenSecurityEvent.getSecurityToken(),
+                    signedElementSecurityEvent.getSecurityToken().getId(),
+                    SecurityTokenConstants.TokenUsage_Signature)
+                    && WSSUtils.pathMatches(elementPath, signedElementSecurityEvent.getElementPath(), true, false)) {
+                return true;
             }
         }
         return false;
@@ -573,27 +569,29 @@ public class InboundWSSecurityContextImpl extends InboundSecurityContextImpl imp
     }
 
     private boolean encryptsElement(TokenSecurityEvent<? extends SecurityToken> tokenSecurityEvent, List<QName> elementPath,
-                                    Deque<SecurityEvent> securityEventDeque) throws XMLSecurityException {
-        for (Iterator<SecurityEvent> iterator = securityEventDeque.iterator(); iterator.hasNext();) {
-            SecurityEvent securityEvent = iterator.next();
-            if (WSSecurityEventConstants.EncryptedElement.equals(securityEvent.getSecurityEventType())) {
-                EncryptedElementSecurityEvent encryptedElementSecurityEvent = (EncryptedElementSecurityEvent) securityEvent;
-                if (encryptedElementSecurityEvent.isEncrypted()
-                        && encryptedElementSecurityEvent.getSecurityToken().getId().equals(tokenSecurityEvent.getSecurityToken().getId())
-                        && WSSUtils.pathMatches(elementPath, encryptedElementSecurityEvent.getElementPath(), true, false)) {
-                    return true;
-                }
-            } else if (WSSecurityEventConstants.ContentEncrypted.equals(securityEvent.getSecurityEventType())) {
-                ContentEncryptedElementSecurityEvent contentEncryptedElementSecurityEvent = 
-                    (ContentEncryptedElementSecurityEvent) securityEvent;
-                String tokenId = tokenSecurityEvent.getSecurityToken().getId();
-                if (contentEncryptedElementSecurityEvent.isEncrypted()
-                        && contentEncryptedElementSecurityEvent.getSecurityToken().getId().equals(tokenId)
-                        && contentEncryptedElementSecurityEvent.getXmlSecEvent() 
-                            == ((InboundSecurityToken)tokenSecurityEvent.getSecurityToken()).getXMLSecEvent()
-                        && WSSUtils.pathMatches(elementPath, contentEncryptedElementSecurityEvent.getElementPath(), true, false)) {
-                    return true;
-                }
+                                    SecurityEventIndex securityEventIndex) throws XMLSecurityException {
+        String tokenId = tokenSecurityEvent.getSecurityToken().getId();
+        List<EncryptedElementSecurityEvent> encryptedElementSecurityEvents =
+            securityEventIndex.getEncryptedElements(elementPath);
+        for (int i = 0; i < encryptedElementSecurityEvents.size(); i++) {
+            EncryptedElementSecurityEvent encryptedElementSecurityEvent = encryptedElementSecurityEvents.get(i);
+            if (encryptedElementSecurityEvent.isEncrypted()
+                    && encryptedElementSecurityEvent.getSecurityToken().getId().equals(tokenId)
+                    && WSSUtils.pathMatches(elementPath, encryptedElementSecurityEvent.getElementPath(), true, false)) {
+                return true;
+            }
+        }
+        List<ContentEncryptedElementSecurityEvent> contentEncryptedElementSecurityEvents =
+            securityEventIndex.getContentEncryptedElements(elementPath);
+        for (int i = 0; i < contentEncryptedElementSecurityEvents.size(); i++) {
+            ContentEncryptedElementSecurityEvent contentEncryptedElementSecurityEvent =
+                contentEncryptedElementSecurityEvents.get(i);
+            if (contentEncryptedElementSecurityEvent.isEncrypted()
+                    && contentEncryptedElementSecurityEvent.getSecurityToken().getId().equals(tokenId)
+                    && contentEncryptedElementSecurityEvent.getXmlSecEvent() 
+                        == ((InboundSecurityToken)tokenSecurityEvent.getSecurityToken()).getXMLSecEvent()
+                    && WSSUtils.pathMatches(elementPath, contentEncryptedElementSecurityEvent.getElementPath(), true, false)) {
+                return true;
             }
         }
         return false;
@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.stax.impl;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+
+import org.apache.wss4j.stax.securityEvent.WSSecurityEventConstants;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.securityEvent.AbstractSecuredElementSecurityEvent;
+import org.apache.xml.security.stax.securityEvent.ContentEncryptedElementSecurityEvent;
+import org.apache.xml.security.stax.securityEvent.EncryptedElementSecurityEvent;
+import org.apache.xml.security.stax.securityEvent.SecurityEvent;
+import org.apache.xml.security.stax.securityEvent.SignedElementSecurityEvent;
+
+/**
+ * An index of the SignedElement, EncryptedElement and ContentEncrypted SecurityEvents of a message,
+ * which is built with a single pass over the SecurityEvents. The events are indexed by the local
+ * names of their element path, and by the XMLSecEvent of the secured element, so that the tokens
+ * of a message can be classified without iterating over all of the SecurityEvents for every token.
+ *
+ * A lookup by element path returns the candidate events, which have the same local names as the
+ * given path. The caller must still check them with WSSUtils.pathMatches, which compares the
+ * namespaces (and any SOAP namespace) of the path.
+ */
+final class SecurityEventIndex {
+
+    private final Map<List<String>, List<SignedElementSecurityEvent>> signedElementsByPath = new HashMap<>();
+    private final Map<XMLSecEvent, List<SignedElementSecurityEvent>> signedElementsByEvent =
+        new IdentityHashMap<>();
+    private final Map<List<String>, List<EncryptedElementSecurityEvent>> encryptedElementsByPath = new HashMap<>();
+    private final Map<XMLSecEvent, List<EncryptedElementSecurityEvent>> encryptedElementsByEvent =
+        new IdentityHashMap<>();
+    private final Map<List<String>, List<ContentEncryptedElementSecurityEvent>> contentEncryptedElementsByPath =
+        new HashMap<>();
+
+    SecurityEventIndex(Collection<SecurityEvent> securityEvents) {
+        for (SecurityEvent securityEvent : securityEvents) {
+            if (WSSecurityEventConstants.SignedElement.equals(securityEvent.getSecurityEventType())) {
+                SignedElementSecurityEvent signedElementSecurityEvent = (SignedElementSecurityEvent) securityEvent;
+                add(signedElementsByPath, signedElementsByEvent, signedElementSecurityEvent);
+            } else if (WSSecurityEventConstants.EncryptedElement.equals(securityEvent.getSecurityEventType())) {
+                EncryptedElementSecurityEvent encryptedElementSecurityEvent =
+                    (EncryptedElementSecurityEvent) securityEvent;
+                add(encryptedElementsByPath, encryptedElementsByEvent, encryptedElementSecurityEvent);
+            } else if (WSSecurityEventConstants.ContentEncrypted.equals(securityEvent.getSecurityEventType())) {
+                ContentEncryptedElementSecurityEvent contentEncryptedElementSecurityEvent =
+                    (ContentEncryptedElementSecurityEvent) securityEvent;
+                add(contentEncryptedElementsByPath, null, contentEncryptedElementSecurityEvent);
+            }
+        }
+    }
+
+    private static <T extends AbstractSecuredElementSecurityEvent> void add(
+        Map<List<String>, List<T>> byPath, Map<XMLSecEvent, List<T>> byEvent, T securityEvent
+    ) {
+        List<QName> elementPath = securityEvent.getElementPath();
+        if (elementPath != null) {
+            addToList(byPath, getKey(elementPath), securityEvent);
+        }
+        if (byEvent != null && securityEvent.getXmlSecEvent() != null) {
+            addToList(byEvent, securityEvent.getXmlSecEvent(), securityEvent);
+        }
+    }
+
+    private static <K, T> void addToList(Map<K, List<T>> map, K key, T securityEvent) {
+        List<T> securityEvents = map.get(key);
+        if (securityEvents == null) {
+            securityEvents = new ArrayList<>(1);
+            map.put(key, securityEvents);
+        }
+        securityEvents.add(securityEvent);
+    }
+
+    private static List<String> getKey(List<QName> elementPath) {
+        List<String> key = new ArrayList<>(elementPath.size());
+        for (int i = 0; i < elementPath.size(); i++) {
+            key.add(elementPath.get(i).getLocalPart());
+        }
+        return key;
+    }
+
+    private static <K, T> List<T> get(Map<K, List<T>> map, K key) {
+        List<T> securityEvents = map.get(key);
+        if (securityEvents == null) {
+            return Collections.emptyList();
+        }
+        return securityEvents;
+    }
+
+    /**
+     * @return the SignedElement SecurityEvents, the element path of which might match the given path
+     */
+    List<SignedElementSecurityEvent> getSignedElements(List<QName> elementPath) {
+        if (elementPath == null) {
+            return Collections.emptyList();
+        }
+        return get(signedElementsByPath, getKey(elementPath));
+    }
+
+    /**
+     * @return the SignedElement SecurityEvents of the given XMLSecEvent
+     */
+    List<SignedElementSecurityEvent> getSignedElements(XMLSecEvent xmlSecEvent) {
+        return get(signedElementsByEvent, xmlSecEvent);
+    }
+
+    /**
+     * @return the EncryptedElement SecurityEvents, the element path of which might match the given path
+     */
+    List<EncryptedElementSecurityEvent> getEncryptedElements(List<QName> elementPath) {
+        return get(encryptedElementsByPath, getKey(elementPath));
+    }
+
+    /**
+     * @return the EncryptedElement SecurityEvents of the given XMLSecEvent
+     */
+    List<EncryptedElementSecurityEvent> getEncryptedElements(XMLSecEvent xmlSecEvent) {
+        return get(encryptedElementsByEvent, xmlSecEvent);
+    }
+
+    /**
+     * @return the ContentEncrypted SecurityEvents, the element path of which might match the given path
+     */
+    List<ContentEncryptedElementSecurityEvent> getContentEncryptedElements(List<QName> elementPath) {
+        return get(contentEncryptedElementsByPath, getKey(elementPath));
+    }
+}
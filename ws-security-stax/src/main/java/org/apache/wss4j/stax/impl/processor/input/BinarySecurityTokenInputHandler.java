@@ -25,6 +25,7 @@ import javax.xml.bind.JAXBElement;
 import javax.xml.namespace.QName;
 
 import org.apache.wss4j.binding.wss10.BinarySecurityTokenType;
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
@@ -51,6 +52,7 @@ import org.apache.xml.security.stax.securityToken.SecurityTokenProvider;
 /**
  * Processor for the BinarySecurityToken XML Structure
  */
+@ThreadSafe
 public class BinarySecurityTokenInputHandler extends AbstractInputSecurityHeaderHandler {
 
     @Override
@@ -27,6 +27,7 @@ import javax.xml.bind.JAXBElement;
 import javax.xml.namespace.QName;
 
 import org.apache.wss4j.binding.wssc.AbstractDerivedKeyTokenType;
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.derivedKey.DerivedKeyUtils;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
@@ -52,6 +53,7 @@ import org.apache.xml.security.stax.securityToken.SecurityTokenProvider;
 /**
  * Processor for the SecurityContextToken XML Structure
  */
+@ThreadSafe
 public class DerivedKeyTokenInputHandler extends AbstractInputSecurityHeaderHandler {
 
     @Override
@@ -23,6 +23,7 @@ import java.util.Deque;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.events.Attribute;
 
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSConstants;
@@ -44,6 +45,7 @@ import org.apache.xml.security.stax.ext.stax.XMLSecStartElement;
  * Note, this handler is special in respect to when it is called: it is triggered by the
  * EncryptedData StartElement and not when the EndElement occurs. @see comments in SecurityHeaderInputProcessort
  */
+@ThreadSafe
 public class EncryptedDataInputHandler extends AbstractInputSecurityHeaderHandler {
 
     @Override
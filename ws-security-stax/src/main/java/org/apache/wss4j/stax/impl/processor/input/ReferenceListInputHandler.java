@@ -18,6 +18,7 @@
  */
 package org.apache.wss4j.stax.impl.processor.input;
 
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.xml.security.binding.xmlenc.ReferenceList;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
@@ -32,6 +33,7 @@ import java.util.Deque;
 /**
  * Processor for the ReferenceList XML Structure
  */
+@ThreadSafe
 public class ReferenceListInputHandler extends AbstractInputSecurityHeaderHandler {
 
     @Override
@@ -32,7 +32,7 @@ import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Unmarshaller;
 import javax.xml.namespace.QName;
-import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
@@ -43,8 +43,12 @@ import javax.xml.stream.events.ProcessingInstruction;
 import org.apache.commons.codec.binary.Base64;
 import org.apache.wss4j.binding.wss10.ObjectFactory;
 import org.apache.wss4j.binding.wss10.SecurityTokenReferenceType;
+import org.apache.wss4j.common.ThreadSafe;
+import org.apache.wss4j.common.cache.VerifiedAssertionCache;
+import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.common.saml.OpenSAMLUtil;
+import org.apache.wss4j.common.saml.SAMLKeyInfo;
 import org.apache.wss4j.common.saml.SamlAssertionWrapper;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSConstants;
@@ -84,6 +88,7 @@ import org.apache.xml.security.stax.securityToken.SecurityToken;
 import org.apache.xml.security.stax.securityToken.SecurityTokenConstants.TokenUsage;
 import org.apache.xml.security.stax.securityToken.SecurityTokenFactory;
 import org.apache.xml.security.stax.securityToken.SecurityTokenProvider;
+import org.apache.xml.security.utils.XMLUtils;
 import org.opensaml.security.credential.BasicCredential;
 import org.opensaml.security.x509.BasicX509Credential;
 import org.opensaml.xmlsec.signature.Signature;
@@ -97,15 +102,16 @@ import org.w3c.dom.Node;
 /**
  * Processor for the SAML Assertion XML Structure
  */
+@ThreadSafe
 public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
 
-    private static final DocumentBuilderFactory DOC_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
+    private static final transient org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(SAMLTokenInputHandler.class);
 
     private static final List<QName> SAML1_TOKEN_PATH = new ArrayList<>(WSSConstants.WSSE_SECURITY_HEADER_PATH);
     private static final List<QName> SAML2_TOKEN_PATH = new ArrayList<>(WSSConstants.WSSE_SECURITY_HEADER_PATH);
 
     static {
-        DOC_BUILDER_FACTORY.setNamespaceAware(true);
         SAML1_TOKEN_PATH.add(WSSConstants.TAG_SAML_ASSERTION);
         SAML2_TOKEN_PATH.add(WSSConstants.TAG_SAML2_ASSERTION);
     }
@@ -127,8 +133,27 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
             samlTokenValidator = new SamlTokenValidatorImpl();
         }
 
+        // An identical Assertion has been verified (and trusted) before
+        final VerifiedAssertionCache verifiedAssertionCache = wssSecurityProperties.getVerifiedAssertionCache();
+        final Crypto signatureVerificationCrypto = wssSecurityProperties.getSignatureVerificationCrypto();
+        VerifiedAssertionCache.CacheKey cacheKey = null;
+        if (verifiedAssertionCache != null && samlAssertionWrapper.isSigned()) {
+            cacheKey =
+                verifiedAssertionCache.createKey(
+                    signatureVerificationCrypto, samlAssertionWrapper,
+                    wssSecurityProperties.isEnableRevocation(),
+                    wssSecurityProperties.getSubjectCertConstraints(),
+                    wssSecurityProperties.getIssuerDNConstraints()
+                );
+        }
+        boolean verified = false;
+        if (cacheKey != null && verifiedAssertionCache.get(cacheKey) != null) {
+            LOG.debug("Skipping the signature verification of a cached SAML Assertion");
+            verified = true;
+        }
+
         //important: check the signature before we do other processing...
-        if (samlAssertionWrapper.isSigned()) {
+        if (samlAssertionWrapper.isSigned() && !verified) {
             Signature signature = samlAssertionWrapper.getSignature();
             if (signature == null) {
                 throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY_TOKEN,
@@ -164,6 +189,16 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
                 throw new WSSecurityException(WSSecurityException.ErrorCode.FAILURE,
                         ex, "empty", new Object[] {"SAML signature validation failed"});
             }
+
+            if (cacheKey != null) {
+                SAMLKeyInfo samlKeyInfo;
+                if (sigSecurityToken.getX509Certificates() != null) {
+                    samlKeyInfo = new SAMLKeyInfo(sigSecurityToken.getX509Certificates());
+                } else {
+                    samlKeyInfo = new SAMLKeyInfo(sigSecurityToken.getPublicKey());
+                }
+                verifiedAssertionCache.put(cacheKey, samlAssertionWrapper, samlKeyInfo);
+            }
         }
 
         final InboundSecurityToken subjectSecurityToken;
@@ -410,11 +445,19 @@ public class SAMLTokenInputHandler extends AbstractInputSecurityHeaderHandler {
     @Override
     protected <T> T parseStructure(Deque<XMLSecEvent> eventDeque, int index, XMLSecurityProperties securityProperties)
             throws XMLSecurityException {
+        // The DocumentBuilder is only needed to create the (empty) Document, so take a pooled
+        // one rather than creating a new DocumentBuilder for every Assertion
         Document document;
+        DocumentBuilder documentBuilder = null;
         try {
-            document = DOC_BUILDER_FACTORY.newDocumentBuilder().newDocument();
+            documentBuilder = XMLUtils.createDocumentBuilder(false);
+            document = documentBuilder.newDocument();
         } catch (ParserConfigurationException e) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY_TOKEN, e);
+        } finally {
+            if (documentBuilder != null) {
+                XMLUtils.repoolDocumentBuilder(documentBuilder);
+            }
         }
 
         Iterator<XMLSecEvent> xmlSecEventIterator = eventDeque.descendingIterator();
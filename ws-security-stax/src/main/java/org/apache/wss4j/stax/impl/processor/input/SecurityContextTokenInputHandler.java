@@ -18,6 +18,7 @@
  */
 package org.apache.wss4j.stax.impl.processor.input;
 
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.binding.wssc.AbstractSecurityContextTokenType;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSConstants;
@@ -41,6 +42,7 @@ import java.util.List;
 /**
  * Processor for the SecurityContextToken XML Structure
  */
+@ThreadSafe
 public class SecurityContextTokenInputHandler extends AbstractInputSecurityHeaderHandler {
 
     @Override
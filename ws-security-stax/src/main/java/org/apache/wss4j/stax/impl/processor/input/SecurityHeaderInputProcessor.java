@@ -25,8 +25,12 @@ import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityOperation;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
@@ -53,6 +57,26 @@ public class SecurityHeaderInputProcessor extends AbstractInputProcessor {
     protected static final org.slf4j.Logger LOG =
         org.slf4j.LoggerFactory.getLogger(SecurityHeaderInputProcessor.class);
 
+    // A single instance of each handler that is annotated with ThreadSafe is shared by all
+    // messages. Any other (custom) handler is instantiated for every element.
+    private static final ClassValue<XMLSecurityHeaderHandler> THREAD_SAFE_HANDLERS =
+        new ClassValue<XMLSecurityHeaderHandler>() {
+            @Override
+            protected XMLSecurityHeaderHandler computeValue(Class<?> type) {
+                if (!type.isAnnotationPresent(ThreadSafe.class)) {
+                    return null;
+                }
+                try {
+                    return (XMLSecurityHeaderHandler)type.newInstance();
+                } catch (InstantiationException | IllegalAccessException ex) {
+                    throw new IllegalStateException(ex);
+                }
+            }
+        };
+
+    // The complete XMLSecEvents of the header are buffered: they are handed to the handlers as
+    // the Deque of the XMLSecurityHeaderHandler API and are replayed to the downstream processors
+    // afterwards (e.g. to verify a signature over a header element).
     private final ArrayDeque<XMLSecEvent> xmlSecEventList = new ArrayDeque<XMLSecEvent>();
     private int startIndexForProcessor = 0;
 
@@ -213,8 +237,10 @@ public class SecurityHeaderInputProcessor extends AbstractInputProcessor {
             LOG.warn("No matching handler found for " + elementName);
             return;
         }
+        SecurityMetricsListener.Timer timer =
+            SecurityMetrics.start(SecurityOperation.PROCESSOR, elementName.getLocalPart());
         try {
-            XMLSecurityHeaderHandler xmlSecurityHeaderHandler = clazz.newInstance();
+            XMLSecurityHeaderHandler xmlSecurityHeaderHandler = getSecurityHeaderHandler(clazz);
             xmlSecurityHeaderHandler.handle(inputProcessorChain, securityProperties, eventQueue, index);
         } catch (InstantiationException | IllegalAccessException e) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY, e);
@@ -222,7 +248,18 @@ public class SecurityHeaderInputProcessor extends AbstractInputProcessor {
             throw e;
         } catch (XMLSecurityException e) {
             throw new WSSecurityException(WSSecurityException.ErrorCode.INVALID_SECURITY, e);
+        } finally {
+            timer.stop();
+        }
+    }
+
+    private static XMLSecurityHeaderHandler getSecurityHeaderHandler(Class<XMLSecurityHeaderHandler> clazz)
+        throws InstantiationException, IllegalAccessException {
+        XMLSecurityHeaderHandler xmlSecurityHeaderHandler = THREAD_SAFE_HANDLERS.get(clazz);
+        if (xmlSecurityHeaderHandler != null) {
+            return xmlSecurityHeaderHandler;
         }
+        return clazz.newInstance();
     }
 
     /**
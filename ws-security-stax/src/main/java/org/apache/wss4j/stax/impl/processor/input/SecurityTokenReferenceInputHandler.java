@@ -31,6 +31,7 @@ import javax.xml.stream.events.Attribute;
 import org.apache.wss4j.binding.wss10.KeyIdentifierType;
 import org.apache.wss4j.binding.wss10.ReferenceType;
 import org.apache.wss4j.binding.wss10.SecurityTokenReferenceType;
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSConstants;
@@ -53,6 +54,7 @@ import org.apache.xml.security.stax.securityToken.SecurityTokenProvider;
 /**
  * Processor for the SecurityTokenReference XML Structure
  */
+@ThreadSafe
 public class SecurityTokenReferenceInputHandler extends AbstractInputSecurityHeaderHandler {
 
     @Override
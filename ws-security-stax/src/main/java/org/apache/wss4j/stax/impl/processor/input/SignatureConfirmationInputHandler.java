@@ -19,6 +19,7 @@
 package org.apache.wss4j.stax.impl.processor.input;
 
 import org.apache.wss4j.binding.wss11.SignatureConfirmationType;
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
@@ -35,6 +36,7 @@ import java.util.Deque;
 /**
  * Processor for the SignatureConfirmation XML Structure
  */
+@ThreadSafe
 public class SignatureConfirmationInputHandler extends AbstractInputSecurityHeaderHandler {
 
     @Override
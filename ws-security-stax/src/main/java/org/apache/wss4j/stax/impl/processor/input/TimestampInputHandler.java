@@ -19,6 +19,7 @@
 package org.apache.wss4j.stax.impl.processor.input;
 
 import org.apache.wss4j.binding.wsu10.TimestampType;
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
@@ -45,6 +46,7 @@ import javax.xml.stream.XMLStreamConstants;
 import java.util.Deque;
 import java.util.List;
 
+@ThreadSafe
 public class TimestampInputHandler extends AbstractInputSecurityHeaderHandler {
 
     @Override
@@ -22,9 +22,13 @@ import org.apache.wss4j.binding.wss10.EncodedString;
 import org.apache.wss4j.binding.wss10.PasswordString;
 import org.apache.wss4j.binding.wss10.UsernameTokenType;
 import org.apache.wss4j.binding.wsu10.AttributedDateTime;
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.bsp.BSPRule;
 import org.apache.wss4j.common.cache.ReplayCache;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityOperation;
 import org.apache.wss4j.common.util.DateUtil;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSConstants;
@@ -53,6 +57,7 @@ import java.util.List;
 /**
  * Processor for the UsernameToken XML Structure
  */
+@ThreadSafe
 public class UsernameTokenInputHandler extends AbstractInputSecurityHeaderHandler {
 
     @Override
@@ -81,18 +86,26 @@ public class UsernameTokenInputHandler extends AbstractInputSecurityHeaderHandle
         if (encodedNonce != null && replayCache != null) {
             // Check for replay attacks
             String nonce = encodedNonce.getValue();
-            if (replayCache.contains(nonce)) {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
-            }
 
             // If no Created, then just cache for the default time
             // Otherwise, cache for the configured TTL of the UsernameToken Created time, as any
             // older token will just get rejected anyway
             int utTTL = wssSecurityProperties.getUtTTL();
-            if (createdDate == null || utTTL <= 0) {
-                replayCache.add(nonce);
-            } else {
-                replayCache.add(nonce, utTTL + 1L);
+            boolean added;
+            SecurityMetricsListener.Timer timer =
+                SecurityMetrics.start(SecurityOperation.REPLAY_CACHE, "NonceReplayCache");
+            try {
+                if (createdDate == null || utTTL <= 0) {
+                    added = replayCache.addIfAbsent(nonce);
+                } else {
+                    added = replayCache.addIfAbsent(nonce, utTTL + 1L);
+                }
+            } finally {
+                timer.stop();
+            }
+            SecurityMetrics.cacheAccess("NonceReplayCache", !added);
+            if (!added) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
             }
         }
 
@@ -21,23 +21,33 @@ package org.apache.wss4j.stax.impl.processor.input;
 import org.apache.wss4j.binding.wss10.ObjectFactory;
 import org.apache.wss4j.binding.wss10.ReferenceType;
 import org.apache.wss4j.binding.wss10.SecurityTokenReferenceType;
+import org.apache.wss4j.common.ThreadSafe;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.DecryptedKeyCache;
+import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
+import org.apache.wss4j.stax.impl.securityToken.EncryptedKeySecurityTokenImpl;
 import org.apache.xml.security.binding.xmldsig.KeyInfoType;
 import org.apache.xml.security.binding.xmlenc.EncryptedKeyType;
 import org.apache.xml.security.binding.xmlenc.EncryptionMethodType;
 import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.stax.ext.InboundSecurityContext;
 import org.apache.xml.security.stax.ext.InputProcessorChain;
 import org.apache.xml.security.stax.ext.XMLSecurityProperties;
 import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
 import org.apache.xml.security.stax.impl.processor.input.XMLEncryptedKeyInputHandler;
+import org.apache.xml.security.stax.impl.util.IDGenerator;
+import org.apache.xml.security.stax.securityEvent.EncryptedKeyTokenSecurityEvent;
+import org.apache.xml.security.stax.securityToken.InboundSecurityToken;
+import org.apache.xml.security.stax.securityToken.SecurityTokenProvider;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
 
 /**
  * Processor for the EncryptedKey XML Structure
  */
+@ThreadSafe
 public class WSSEncryptedKeyInputHandler extends XMLEncryptedKeyInputHandler {
 
     private static final transient org.slf4j.Logger LOG =
@@ -62,7 +72,68 @@ public class WSSEncryptedKeyInputHandler extends XMLEncryptedKeyInputHandler {
             }
         }
 
-        super.handle(inputProcessorChain, encryptedKeyType, responsibleXMLSecStartXMLEvent, securityProperties);
+        DecryptedKeyCache decryptedKeyCache = ((WSSSecurityProperties) securityProperties).getDecryptedKeyCache();
+        if (decryptedKeyCache == null) {
+            super.handle(inputProcessorChain, encryptedKeyType, responsibleXMLSecStartXMLEvent, securityProperties);
+        } else {
+            handleWithDecryptedKeyCache(inputProcessorChain, encryptedKeyType, responsibleXMLSecStartXMLEvent,
+                                        (WSSSecurityProperties) securityProperties, decryptedKeyCache);
+        }
+    }
+
+    // The same as XMLEncryptedKeyInputHandler, except that the SecurityToken consults the cache of
+    // unwrapped keys before unwrapping the key
+    private void handleWithDecryptedKeyCache(
+            InputProcessorChain inputProcessorChain, final EncryptedKeyType encryptedKeyType,
+            final XMLSecEvent responsibleXMLSecStartXMLEvent, final WSSSecurityProperties securityProperties,
+            final DecryptedKeyCache decryptedKeyCache) throws XMLSecurityException {
+        if (encryptedKeyType.getEncryptionMethod() == null) {
+            throw new XMLSecurityException("stax.encryption.noEncAlgo");
+        }
+        if (encryptedKeyType.getId() == null) {
+            encryptedKeyType.setId(IDGenerator.generateID(null));
+        }
+
+        final InboundSecurityContext inboundSecurityContext = inputProcessorChain.getSecurityContext();
+        final Crypto decryptionCrypto = securityProperties.getDecryptionCrypto();
+
+        final SecurityTokenProvider<InboundSecurityToken> securityTokenProvider =
+                new SecurityTokenProvider<InboundSecurityToken>() {
+
+            private EncryptedKeySecurityTokenImpl securityToken;
+
+            @Override
+            public InboundSecurityToken getSecurityToken() throws XMLSecurityException {
+                if (this.securityToken != null) {
+                    return this.securityToken;
+                }
+                this.securityToken = new EncryptedKeySecurityTokenImpl(
+                        inboundSecurityContext, encryptedKeyType, securityProperties,
+                        decryptionCrypto, decryptedKeyCache);
+                this.securityToken.setElementPath(responsibleXMLSecStartXMLEvent.getElementPath());
+                this.securityToken.setXMLSecEvent(responsibleXMLSecStartXMLEvent);
+                return this.securityToken;
+            }
+
+            @Override
+            public String getId() {
+                return encryptedKeyType.getId();
+            }
+        };
+
+        //register the key token for decryption:
+        inboundSecurityContext.registerSecurityTokenProvider(encryptedKeyType.getId(), securityTokenProvider);
+
+        //fire a tokenSecurityEvent
+        EncryptedKeyTokenSecurityEvent tokenSecurityEvent = new EncryptedKeyTokenSecurityEvent();
+        tokenSecurityEvent.setSecurityToken(securityTokenProvider.getSecurityToken());
+        tokenSecurityEvent.setCorrelationID(encryptedKeyType.getId());
+        inboundSecurityContext.registerSecurityEvent(tokenSecurityEvent);
+
+        //if this EncryptedKey structure contains a reference list, delegate it to a subclass
+        if (encryptedKeyType.getReferenceList() != null) {
+            handleReferenceList(inputProcessorChain, encryptedKeyType, securityProperties);
+        }
     }
 
     //if this EncryptedKey structure contains a reference list, instantiate a new DecryptInputProcessor
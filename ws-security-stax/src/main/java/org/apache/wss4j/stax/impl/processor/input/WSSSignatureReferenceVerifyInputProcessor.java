@@ -42,6 +42,9 @@ import org.apache.wss4j.common.ext.Attachment;
 import org.apache.wss4j.common.ext.AttachmentRequestCallback;
 import org.apache.wss4j.common.ext.AttachmentResultCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityOperation;
 import org.apache.wss4j.stax.ext.WSInboundSecurityContext;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
@@ -315,19 +318,27 @@ public class WSSSignatureReferenceVerifyInputProcessor extends AbstractSignature
             final String cacheKey =
                     timestampSecurityEvent.getCreated().getTimeInMillis() 
                     + "" + Arrays.hashCode(getSignatureType().getSignatureValue().getValue());
-            if (replayCache.contains(cacheKey)) {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.MESSAGE_EXPIRED);
-            }
 
             // Store the Timestamp/SignatureValue combination in the cache
             Calendar expiresCal = timestampSecurityEvent.getExpires();
-            if (expiresCal != null) {
-                Date rightNow = new Date();
-                long currentTime = rightNow.getTime();
-                long expiresTime = expiresCal.getTimeInMillis();
-                replayCache.add(cacheKey, 1L + (expiresTime - currentTime) / 1000L);
-            } else {
-                replayCache.add(cacheKey);
+            boolean added;
+            SecurityMetricsListener.Timer timer =
+                SecurityMetrics.start(SecurityOperation.REPLAY_CACHE, "TimestampReplayCache");
+            try {
+                if (expiresCal != null) {
+                    Date rightNow = new Date();
+                    long currentTime = rightNow.getTime();
+                    long expiresTime = expiresCal.getTimeInMillis();
+                    added = replayCache.addIfAbsent(cacheKey, 1L + (expiresTime - currentTime) / 1000L);
+                } else {
+                    added = replayCache.addIfAbsent(cacheKey);
+                }
+            } finally {
+                timer.stop();
+            }
+            SecurityMetrics.cacheAccess("TimestampReplayCache", !added);
+            if (!added) {
+                throw new WSSecurityException(WSSecurityException.ErrorCode.MESSAGE_EXPIRED);
             }
         }
     }
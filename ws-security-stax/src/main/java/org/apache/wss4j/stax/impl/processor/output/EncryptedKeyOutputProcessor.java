@@ -41,6 +41,7 @@ import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamException;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.wss4j.common.cache.SessionKeyCache;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.stax.ext.WSSConstants;
@@ -275,48 +276,28 @@ public class EncryptedKeyOutputProcessor extends AbstractOutputProcessor {
                 createStartElementAndOutputAsEvent(subOutputProcessorChain, WSSConstants.TAG_xenc_CipherValue, false, null);
 
                 try {
-                    //encrypt the symmetric session key with the public key from the receiver:
-                    String jceid = JCEAlgorithmMapper.translateURItoJCEID(encryptionKeyTransportAlgorithm);
-                    Cipher cipher = Cipher.getInstance(jceid);
-
-                    AlgorithmParameterSpec algorithmParameterSpec = null;
-                    if (XMLSecurityConstants.NS_XENC11_RSAOAEP.equals(encryptionKeyTransportAlgorithm) 
-                        || XMLSecurityConstants.NS_XENC_RSAOAEPMGF1P.equals(encryptionKeyTransportAlgorithm)) {
-
-                        String jceDigestAlgorithm = "SHA-1";
-                        String encryptionKeyTransportDigestAlgorithm = 
-                            getSecurityProperties().getEncryptionKeyTransportDigestAlgorithm();
-                        if (encryptionKeyTransportDigestAlgorithm != null) {
-                            jceDigestAlgorithm = JCEAlgorithmMapper.translateURItoJCEID(encryptionKeyTransportDigestAlgorithm);
-                        }
-
-                        PSource.PSpecified pSource = PSource.PSpecified.DEFAULT;
-                        byte[] oaepParams = getSecurityProperties().getEncryptionKeyTransportOAEPParams();
-                        if (oaepParams != null) {
-                            pSource = new PSource.PSpecified(oaepParams);
-                        }
-
-                        MGF1ParameterSpec mgfParameterSpec = new MGF1ParameterSpec("SHA-1");
-                        if (encryptionKeyTransportMGFAlgorithm != null) {
-                            String jceMGFAlgorithm = JCEAlgorithmMapper.translateURItoJCEID(encryptionKeyTransportMGFAlgorithm);
-                            mgfParameterSpec = new MGF1ParameterSpec(jceMGFAlgorithm);
-                        }
-                        algorithmParameterSpec = new OAEPParameterSpec(jceDigestAlgorithm, "MGF1", mgfParameterSpec, pSource);
+                    SessionKeyCache sessionKeyCache = ((WSSSecurityProperties)getSecurityProperties()).getSessionKeyCache();
+                    boolean reuseSessionKey = sessionKeyCache != null && securityToken.getId().equals(
+                        outputProcessorChain.getSecurityContext().get(WSSConstants.PROP_SESSION_KEY_TOKEN_ID));
+                    SessionKeyCache.SessionKey sessionKey = null;
+                    if (reuseSessionKey) {
+                        sessionKey = outputProcessorChain.getSecurityContext().get(WSSConstants.PROP_SESSION_KEY);
                     }
 
-                    cipher.init(Cipher.WRAP_MODE, publicKey, algorithmParameterSpec);
-
-                    Key secretKey = securityToken.getSecretKey("");
-
-                    int blockSize = cipher.getBlockSize();
-                    if (blockSize > 0 && blockSize < secretKey.getEncoded().length) {
-                        throw new WSSecurityException(
-                                WSSecurityException.ErrorCode.FAILURE,
-                                "unsupportedKeyTransp",
-                                new Object[] {"public key algorithm too weak to encrypt symmetric key"}
-                        );
+                    byte[] encryptedEphemeralKey;
+                    if (sessionKey != null) {
+                        // The session key is reused, and so is the session key that is wrapped for the receiver
+                        encryptedEphemeralKey = sessionKey.getEncryptedKey();
+                    } else {
+                        encryptedEphemeralKey = wrapSessionKey(publicKey);
+                        if (reuseSessionKey) {
+                            sessionKeyCache.put(
+                                publicKey, WSSUtils.getKeyTransportParameters(getSecurityProperties()),
+                                getSecurityProperties().getEncryptionSymAlgorithm(),
+                                securityToken.getSecretKey("").getEncoded(), encryptedEphemeralKey
+                            );
+                        }
                     }
-                    byte[] encryptedEphemeralKey = cipher.wrap(secretKey);
 
                     if (((WSSSecurityProperties)getSecurityProperties()).getCallbackHandler() != null) {
                         // Store the Encrypted Key in the CallbackHandler for processing on the inbound side
@@ -330,7 +311,7 @@ public class EncryptedKeyOutputProcessor extends AbstractOutputProcessor {
                         }
                     }
 
-                    createCharactersAndOutputAsEvent(subOutputProcessorChain, 
+                    createCharactersAndOutputAsEvent(subOutputProcessorChain,
                                                      new Base64(76, new byte[]{'\n'}).encodeToString(encryptedEphemeralKey));
 
                 } catch (NoSuchPaddingException | NoSuchAlgorithmException
@@ -350,6 +331,56 @@ public class EncryptedKeyOutputProcessor extends AbstractOutputProcessor {
             }
         }
 
+        private byte[] wrapSessionKey(PublicKey publicKey)
+            throws XMLSecurityException, NoSuchPaddingException, NoSuchAlgorithmException,
+            InvalidKeyException, IllegalBlockSizeException, InvalidAlgorithmParameterException {
+            final String encryptionKeyTransportAlgorithm = getSecurityProperties().getEncryptionKeyTransportAlgorithm();
+            final String encryptionKeyTransportMGFAlgorithm = getSecurityProperties().getEncryptionKeyTransportMGFAlgorithm();
+
+            //encrypt the symmetric session key with the public key from the receiver:
+            String jceid = JCEAlgorithmMapper.translateURItoJCEID(encryptionKeyTransportAlgorithm);
+            Cipher cipher = Cipher.getInstance(jceid);
+
+            AlgorithmParameterSpec algorithmParameterSpec = null;
+            if (XMLSecurityConstants.NS_XENC11_RSAOAEP.equals(encryptionKeyTransportAlgorithm) 
+                || XMLSecurityConstants.NS_XENC_RSAOAEPMGF1P.equals(encryptionKeyTransportAlgorithm)) {
+
+                String jceDigestAlgorithm = "SHA-1";
+                String encryptionKeyTransportDigestAlgorithm = 
+                    getSecurityProperties().getEncryptionKeyTransportDigestAlgorithm();
+                if (encryptionKeyTransportDigestAlgorithm != null) {
+                    jceDigestAlgorithm = JCEAlgorithmMapper.translateURItoJCEID(encryptionKeyTransportDigestAlgorithm);
+                }
+
+                PSource.PSpecified pSource = PSource.PSpecified.DEFAULT;
+                byte[] oaepParams = getSecurityProperties().getEncryptionKeyTransportOAEPParams();
+                if (oaepParams != null) {
+                    pSource = new PSource.PSpecified(oaepParams);
+                }
+
+                MGF1ParameterSpec mgfParameterSpec = new MGF1ParameterSpec("SHA-1");
+                if (encryptionKeyTransportMGFAlgorithm != null) {
+                    String jceMGFAlgorithm = JCEAlgorithmMapper.translateURItoJCEID(encryptionKeyTransportMGFAlgorithm);
+                    mgfParameterSpec = new MGF1ParameterSpec(jceMGFAlgorithm);
+                }
+                algorithmParameterSpec = new OAEPParameterSpec(jceDigestAlgorithm, "MGF1", mgfParameterSpec, pSource);
+            }
+
+            cipher.init(Cipher.WRAP_MODE, publicKey, algorithmParameterSpec);
+
+            Key secretKey = securityToken.getSecretKey("");
+
+            int blockSize = cipher.getBlockSize();
+            if (blockSize > 0 && blockSize < secretKey.getEncoded().length) {
+                throw new WSSecurityException(
+                        WSSecurityException.ErrorCode.FAILURE,
+                        "unsupportedKeyTransp",
+                        new Object[] {"public key algorithm too weak to encrypt symmetric key"}
+                );
+            }
+            return cipher.wrap(secretKey);
+        }
+
         protected void createSecurityTokenReferenceStructureForEncryptedKey(
                 OutputProcessorChain outputProcessorChain,
                 OutboundSecurityToken securityToken,
@@ -19,6 +19,9 @@
 package org.apache.wss4j.stax.impl.processor.output;
 
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityOperation;
 import org.apache.wss4j.stax.ext.WSSConstants;
 import org.apache.wss4j.stax.ext.WSSSecurityProperties;
 import org.apache.wss4j.stax.impl.SecurityHeaderOrder;
@@ -74,7 +77,13 @@ public class WSSSignatureEndingOutputProcessor extends AbstractSignatureEndingOu
 
     @Override
     public void processHeaderEvent(OutputProcessorChain outputProcessorChain) throws XMLStreamException, XMLSecurityException {
-        super.processHeaderEvent(outputProcessorChain);
+        SecurityMetricsListener.Timer timer =
+            SecurityMetrics.start(SecurityOperation.SIGN, getSecurityProperties().getSignatureAlgorithm());
+        try {
+            super.processHeaderEvent(outputProcessorChain);
+        } finally {
+            timer.stop();
+        }
 
         SignatureValueSecurityEvent signatureValueSecurityEvent = new SignatureValueSecurityEvent();
         signatureValueSecurityEvent.setSignatureValue(this.signedInfoProcessor.getSignatureValue());
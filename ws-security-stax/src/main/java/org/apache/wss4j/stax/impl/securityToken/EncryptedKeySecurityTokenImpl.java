@@ -0,0 +1,254 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.stax.impl.securityToken;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.PublicKey;
+import java.security.spec.MGF1ParameterSpec;
+import java.util.Base64;
+
+import javax.crypto.Cipher;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.spec.OAEPParameterSpec;
+import javax.crypto.spec.PSource;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.wss4j.common.cache.DecryptedKeyCache;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityOperation;
+import org.apache.wss4j.common.util.KeyUtils;
+import org.apache.xml.security.binding.xmldsig.DigestMethodType;
+import org.apache.xml.security.binding.xmlenc.EncryptedKeyType;
+import org.apache.xml.security.binding.xmlenc11.MGFType;
+import org.apache.xml.security.exceptions.XMLSecurityException;
+import org.apache.xml.security.stax.config.JCEAlgorithmMapper;
+import org.apache.xml.security.stax.ext.InboundSecurityContext;
+import org.apache.xml.security.stax.ext.XMLSecurityConstants;
+import org.apache.xml.security.stax.ext.XMLSecurityProperties;
+import org.apache.xml.security.stax.ext.XMLSecurityUtils;
+import org.apache.xml.security.stax.impl.securityToken.AbstractInboundSecurityToken;
+import org.apache.xml.security.stax.securityEvent.AlgorithmSuiteSecurityEvent;
+import org.apache.xml.security.stax.securityToken.InboundSecurityToken;
+import org.apache.xml.security.stax.securityToken.SecurityTokenConstants;
+import org.apache.xml.security.stax.securityToken.SecurityTokenFactory;
+
+/**
+ * The SecurityToken of a received EncryptedKey, which consults a DecryptedKeyCache before
+ * unwrapping the key. The wrapping token is still resolved, and asked for its (private) key, for
+ * every message, so the same security events are fired whether or not the unwrapped key is found
+ * in the cache. Only the unwrapping itself is skipped.
+ */
+public class EncryptedKeySecurityTokenImpl extends AbstractInboundSecurityToken {
+
+    private static final transient org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(EncryptedKeySecurityTokenImpl.class);
+
+    private final InboundSecurityContext securityContext;
+    private final EncryptedKeyType encryptedKeyType;
+    private final XMLSecurityProperties securityProperties;
+    private final Crypto decryptionCrypto;
+    private final DecryptedKeyCache decryptedKeyCache;
+    private byte[] decryptedKey;
+    private InboundSecurityToken wrappingSecurityToken;
+
+    public EncryptedKeySecurityTokenImpl(
+            InboundSecurityContext inboundSecurityContext, EncryptedKeyType encryptedKeyType,
+            XMLSecurityProperties securityProperties, Crypto decryptionCrypto,
+            DecryptedKeyCache decryptedKeyCache) {
+        super(inboundSecurityContext, encryptedKeyType.getId(),
+              SecurityTokenConstants.KeyIdentifier_EncryptedKey, true);
+        this.securityContext = inboundSecurityContext;
+        this.encryptedKeyType = encryptedKeyType;
+        this.securityProperties = securityProperties;
+        this.decryptionCrypto = decryptionCrypto;
+        this.decryptedKeyCache = decryptedKeyCache;
+    }
+
+    @Override
+    public Key getKey(String algorithmURI, XMLSecurityConstants.AlgorithmUsage algorithmUsage,
+                      String correlationID) throws XMLSecurityException {
+        Key key = getSecretKey().get(algorithmURI);
+        if (key != null) {
+            return key;
+        }
+
+        String algoFamily = JCEAlgorithmMapper.getJCEKeyAlgorithmFromURI(algorithmURI);
+        key = new SecretKeySpec(getSecret(correlationID, algorithmURI), algoFamily);
+        setSecretKey(algorithmURI, key);
+        return key;
+    }
+
+    @Override
+    public InboundSecurityToken getKeyWrappingToken() throws XMLSecurityException {
+        return getWrappingSecurityToken();
+    }
+
+    @Override
+    public SecurityTokenConstants.TokenType getTokenType() {
+        return SecurityTokenConstants.EncryptedKeyToken;
+    }
+
+    private InboundSecurityToken getWrappingSecurityToken() throws XMLSecurityException {
+        if (wrappingSecurityToken != null) {
+            return wrappingSecurityToken;
+        }
+        wrappingSecurityToken = SecurityTokenFactory.getInstance().getSecurityToken(
+                encryptedKeyType.getKeyInfo(),
+                SecurityTokenConstants.KeyUsage_Decryption,
+                securityProperties,
+                securityContext
+        );
+        wrappingSecurityToken.addWrappedToken(this);
+        return wrappingSecurityToken;
+    }
+
+    private byte[] getSecret(String correlationID, String symmetricAlgorithmURI) throws XMLSecurityException {
+        if (decryptedKey != null) {
+            return decryptedKey;
+        }
+
+        String algorithmURI = encryptedKeyType.getEncryptionMethod().getAlgorithm();
+        if (algorithmURI == null) {
+            throw new XMLSecurityException("stax.encryption.noEncAlgo");
+        }
+        String jceName = JCEAlgorithmMapper.translateURItoJCEID(algorithmURI);
+        String jceProvider = JCEAlgorithmMapper.getJCEProviderFromURI(algorithmURI);
+        if (jceName == null) {
+            throw new XMLSecurityException("algorithms.NoSuchMap",
+                                           new Object[] {algorithmURI});
+        }
+
+        final InboundSecurityToken wrappingToken = getWrappingSecurityToken();
+        Cipher cipher;
+        String digestAlgorithm = null;
+        String mgfAlgorithm = null;
+        byte[] oaepParams = null;
+        try {
+            XMLSecurityConstants.AlgorithmUsage algorithmUsage;
+            if (wrappingToken.isAsymmetric()) {
+                algorithmUsage = XMLSecurityConstants.Asym_Key_Wrap;
+            } else {
+                algorithmUsage = XMLSecurityConstants.Sym_Key_Wrap;
+            }
+
+            if (jceProvider == null) {
+                cipher = Cipher.getInstance(jceName);
+            } else {
+                cipher = Cipher.getInstance(jceName, jceProvider);
+            }
+
+            if (XMLSecurityConstants.NS_XENC11_RSAOAEP.equals(algorithmURI)
+                || XMLSecurityConstants.NS_XENC_RSAOAEPMGF1P.equals(algorithmURI)) {
+
+                final DigestMethodType digestMethodType =
+                    XMLSecurityUtils.getQNameType(encryptedKeyType.getEncryptionMethod().getContent(),
+                                                  XMLSecurityConstants.TAG_dsig_DigestMethod);
+                String jceDigestAlgorithm = "SHA-1";
+                if (digestMethodType != null) {
+                    AlgorithmSuiteSecurityEvent algorithmSuiteSecurityEvent = new AlgorithmSuiteSecurityEvent();
+                    algorithmSuiteSecurityEvent.setAlgorithmURI(digestMethodType.getAlgorithm());
+                    algorithmSuiteSecurityEvent.setAlgorithmUsage(XMLSecurityConstants.EncDig);
+                    algorithmSuiteSecurityEvent.setCorrelationID(correlationID);
+                    securityContext.registerSecurityEvent(algorithmSuiteSecurityEvent);
+
+                    jceDigestAlgorithm = JCEAlgorithmMapper.translateURItoJCEID(digestMethodType.getAlgorithm());
+                    digestAlgorithm = digestMethodType.getAlgorithm();
+                }
+
+                PSource.PSpecified pSource = PSource.PSpecified.DEFAULT;
+                oaepParams =
+                    XMLSecurityUtils.getQNameType(encryptedKeyType.getEncryptionMethod().getContent(),
+                                                  XMLSecurityConstants.TAG_xenc_OAEPparams);
+                if (oaepParams != null) {
+                    pSource = new PSource.PSpecified(oaepParams);
+                }
+
+                MGF1ParameterSpec mgfParameterSpec = new MGF1ParameterSpec("SHA-1");
+                MGFType mgfType =
+                    XMLSecurityUtils.getQNameType(encryptedKeyType.getEncryptionMethod().getContent(),
+                                                  XMLSecurityConstants.TAG_xenc11_MGF);
+                if (mgfType != null) {
+                    String jceMGFAlgorithm = JCEAlgorithmMapper.translateURItoJCEID(mgfType.getAlgorithm());
+                    mgfParameterSpec = new MGF1ParameterSpec(jceMGFAlgorithm);
+                    mgfAlgorithm = mgfType.getAlgorithm();
+                }
+                OAEPParameterSpec oaepParameterSpec =
+                    new OAEPParameterSpec(jceDigestAlgorithm, "MGF1", mgfParameterSpec, pSource);
+                cipher.init(Cipher.UNWRAP_MODE,
+                            wrappingToken.getSecretKey(algorithmURI, algorithmUsage, correlationID),
+                            oaepParameterSpec);
+            } else {
+                cipher.init(Cipher.UNWRAP_MODE,
+                            wrappingToken.getSecretKey(algorithmURI, algorithmUsage, correlationID));
+            }
+            if (encryptedKeyType.getCipherData() == null
+                || encryptedKeyType.getCipherData().getCipherValue() == null) {
+                throw new XMLSecurityException("stax.encryption.noCipherValue");
+            }
+        } catch (NoSuchPaddingException | NoSuchAlgorithmException | InvalidAlgorithmParameterException
+            | InvalidKeyException | NoSuchProviderException e) {
+            throw new XMLSecurityException(e);
+        }
+
+        byte[] cipherValue = encryptedKeyType.getCipherData().getCipherValue();
+        String sha1Identifier = Base64.getEncoder().encodeToString(KeyUtils.generateDigest(cipherValue));
+        setSha1Identifier(sha1Identifier);
+
+        // The wrapping key is identified by its public key. Symmetrically wrapped keys are not cached
+        PublicKey wrappingKey = wrappingToken.getPublicKey();
+        boolean cacheable = decryptedKeyCache != null && decryptionCrypto != null && wrappingKey != null;
+        String keyTransportParameters =
+            DecryptedKeyCache.getKeyTransportParameters(algorithmURI, digestAlgorithm, mgfAlgorithm, oaepParams);
+        if (cacheable) {
+            decryptedKey = decryptedKeyCache.get(decryptionCrypto, sha1Identifier, wrappingKey, keyTransportParameters);
+            if (decryptedKey != null) {
+                LOG.debug("Found the unwrapped key in the cache");
+                return decryptedKey;
+            }
+        }
+
+        SecurityMetricsListener.Timer timer = SecurityMetrics.start(SecurityOperation.UNWRAP, algorithmURI);
+        try {
+            Key key = cipher.unwrap(cipherValue, jceName, Cipher.SECRET_KEY);
+            decryptedKey = key.getEncoded();
+            if (cacheable) {
+                decryptedKeyCache.put(decryptionCrypto, sha1Identifier, wrappingKey, keyTransportParameters, decryptedKey);
+            }
+            return decryptedKey;
+        } catch (IllegalStateException e) {
+            throw new XMLSecurityException(e);
+        } catch (Exception e) {
+            LOG.warn("Unwrapping of the encrypted key failed with error: " + e.getMessage() + ". "
+                    + "Generating a faked one to mitigate timing attacks.");
+
+            int keyLength = JCEAlgorithmMapper.getKeyLengthFromURI(symmetricAlgorithmURI);
+            decryptedKey = XMLSecurityConstants.generateBytes(keyLength / 8);
+            return decryptedKey;
+        } finally {
+            timer.stop();
+        }
+    }
+}
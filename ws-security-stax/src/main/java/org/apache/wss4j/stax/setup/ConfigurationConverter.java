@@ -30,7 +30,11 @@ import javax.security.auth.callback.CallbackHandler;
 import javax.xml.namespace.QName;
 
 import org.apache.wss4j.common.ConfigurationConstants;
+import org.apache.wss4j.common.cache.DecryptedKeyCache;
 import org.apache.wss4j.common.cache.ReplayCache;
+import org.apache.wss4j.common.cache.SecurityContextTokenCache;
+import org.apache.wss4j.common.cache.SessionKeyCache;
+import org.apache.wss4j.common.cache.VerifiedAssertionCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.crypto.JasyptPasswordEncryptor;
@@ -600,6 +604,30 @@ public final class ConfigurationConverter {
             properties.setSamlOneTimeUseReplayCache(samlOneTimeUseCache);
         }
 
+        DecryptedKeyCache decryptedKeyCache =
+            (DecryptedKeyCache)config.get(ConfigurationConstants.DECRYPTED_KEY_CACHE_INSTANCE);
+        if (decryptedKeyCache != null) {
+            properties.setDecryptedKeyCache(decryptedKeyCache);
+        }
+
+        SessionKeyCache sessionKeyCache =
+            (SessionKeyCache)config.get(ConfigurationConstants.SESSION_KEY_CACHE_INSTANCE);
+        if (sessionKeyCache != null) {
+            properties.setSessionKeyCache(sessionKeyCache);
+        }
+
+        VerifiedAssertionCache verifiedAssertionCache =
+            (VerifiedAssertionCache)config.get(ConfigurationConstants.VERIFIED_ASSERTION_CACHE_INSTANCE);
+        if (verifiedAssertionCache != null) {
+            properties.setVerifiedAssertionCache(verifiedAssertionCache);
+        }
+
+        SecurityContextTokenCache securityContextTokenCache =
+            (SecurityContextTokenCache)config.get(ConfigurationConstants.SECURITY_CONTEXT_TOKEN_CACHE_INSTANCE);
+        if (securityContextTokenCache != null) {
+            properties.setSecurityContextTokenCache(securityContextTokenCache);
+        }
+
         String derivedSignatureKeyLength = getString(ConfigurationConstants.DERIVED_SIGNATURE_KEY_LENGTH, config);
         if (derivedSignatureKeyLength != null) {
             int sigLength = Integer.parseInt(derivedSignatureKeyLength);
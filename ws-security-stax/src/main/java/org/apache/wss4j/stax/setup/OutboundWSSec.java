@@ -29,6 +29,7 @@ import javax.crypto.KeyGenerator;
 import javax.crypto.spec.SecretKeySpec;
 import javax.xml.stream.XMLStreamWriter;
 
+import org.apache.wss4j.common.cache.SessionKeyCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoType;
 import org.apache.wss4j.common.ext.WSPasswordCallback;
@@ -329,9 +330,10 @@ public class OutboundWSSec {
         // First check to see if a Symmetric key is available
         GenericOutboundSecurityToken securityToken =
             getOutboundSecurityToken(outputProcessorChain, WSSConstants.PROP_USE_THIS_TOKEN_ID_FOR_ENCRYPTION);
+        String keyAlgorithm = null;
         if (securityToken == null || securityToken.getSecretKey(symmetricEncryptionAlgorithm) == null) {
             //prepare the symmetric session key for all encryption parts
-            String keyAlgorithm = JCEAlgorithmMapper.getJCEKeyAlgorithmFromURI(securityProperties.getEncryptionSymAlgorithm());
+            keyAlgorithm = JCEAlgorithmMapper.getJCEKeyAlgorithmFromURI(securityProperties.getEncryptionSymAlgorithm());
             KeyGenerator keyGen;
             try {
                 keyGen = KeyGenerator.getInstance(keyAlgorithm);
@@ -408,6 +410,20 @@ public class OutboundWSSec {
             crypto.verifyTrust(x509Certificates, true, null);
         }
 
+        // Reuse a cached session key for the recipient, if the session key was generated above
+        SessionKeyCache sessionKeyCache = securityProperties.getSessionKeyCache();
+        if (sessionKeyCache != null && keyAlgorithm != null) {
+            PublicKey recipientKey = x509Certificates != null ? x509Certificates[0].getPublicKey() : publicKey;
+            SessionKeyCache.SessionKey sessionKey =
+                sessionKeyCache.get(recipientKey, WSSUtils.getKeyTransportParameters(securityProperties),
+                                    symmetricEncryptionAlgorithm);
+            if (sessionKey != null) {
+                securityToken.setSecretKey("", new SecretKeySpec(sessionKey.getKey(), keyAlgorithm));
+                outputProcessorChain.getSecurityContext().put(WSSConstants.PROP_SESSION_KEY, sessionKey);
+            }
+            outputProcessorChain.getSecurityContext().put(WSSConstants.PROP_SESSION_KEY_TOKEN_ID, securityToken.getId());
+        }
+
         // Create a new outbound EncryptedKey token for the cert
         final String id = IDGenerator.generateID(null);
         final GenericOutboundSecurityToken encryptedKeyToken =
@@ -60,6 +60,7 @@ import org.apache.xml.security.stax.ext.AbstractOutputProcessor;
 import org.apache.xml.security.stax.ext.OutputProcessorChain;
 import org.apache.xml.security.stax.ext.SecurePart;
 import org.apache.xml.security.stax.ext.XMLSecurityConstants;
+import org.apache.xml.security.stax.ext.XMLSecurityProperties;
 import org.apache.xml.security.stax.ext.XMLSecurityUtils;
 import org.apache.xml.security.stax.ext.stax.XMLSecAttribute;
 import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
@@ -676,4 +677,20 @@ public class WSSUtils extends XMLSecurityUtils {
         return tmp;
     }
 
+    /**
+     * Get a String identifying the key transport algorithm, and its parameters, that wrap the
+     * session key of an outbound EncryptedKey. It is part of the key of a SessionKeyCache.
+     */
+    public static String getKeyTransportParameters(XMLSecurityProperties securityProperties) {
+        StringBuilder stringBuilder = new StringBuilder();
+        stringBuilder.append(securityProperties.getEncryptionKeyTransportAlgorithm());
+        stringBuilder.append(':').append(securityProperties.getEncryptionKeyTransportDigestAlgorithm());
+        stringBuilder.append(':').append(securityProperties.getEncryptionKeyTransportMGFAlgorithm());
+        byte[] oaepParams = securityProperties.getEncryptionKeyTransportOAEPParams();
+        if (oaepParams != null) {
+            stringBuilder.append(':').append(Base64.encodeBase64String(oaepParams));
+        }
+        return stringBuilder.toString();
+    }
+
 }
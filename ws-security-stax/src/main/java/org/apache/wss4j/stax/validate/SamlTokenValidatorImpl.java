@@ -24,6 +24,9 @@ import java.util.List;
 import org.apache.wss4j.common.cache.ReplayCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.common.metrics.SecurityMetrics;
+import org.apache.wss4j.common.metrics.SecurityMetricsListener;
+import org.apache.wss4j.common.metrics.SecurityOperation;
 import org.apache.wss4j.common.saml.OpenSAMLUtil;
 import org.apache.wss4j.common.saml.SamlAssertionWrapper;
 import org.apache.wss4j.common.saml.builder.SAML1Constants;
@@ -250,22 +253,30 @@ public class SamlTokenValidatorImpl extends SignatureTokenValidatorImpl implemen
             && samlAssertion.getSaml2().getConditions().getOneTimeUse() != null) {
             String identifier = samlAssertion.getId();
 
-            if (replayCache.contains(identifier)) {
+            DateTime expires = samlAssertion.getSaml2().getConditions().getNotOnOrAfter();
+            boolean added;
+            SecurityMetricsListener.Timer timer =
+                SecurityMetrics.start(SecurityOperation.REPLAY_CACHE, "SamlOneTimeUseReplayCache");
+            try {
+                if (expires != null) {
+                    Date rightNow = new Date();
+                    long currentTime = rightNow.getTime();
+                    long expiresTime = expires.getMillis();
+                    added = replayCache.addIfAbsent(identifier, 1L + (expiresTime - currentTime) / 1000L);
+                } else {
+                    added = replayCache.addIfAbsent(identifier);
+                }
+            } finally {
+                timer.stop();
+            }
+            SecurityMetrics.cacheAccess("SamlOneTimeUseReplayCache", !added);
+
+            if (!added) {
                 throw new WSSecurityException(
                     WSSecurityException.ErrorCode.INVALID_SECURITY,
                     "badSamlToken",
                     new Object[] {"A replay attack has been detected"});
             }
-
-            DateTime expires = samlAssertion.getSaml2().getConditions().getNotOnOrAfter();
-            if (expires != null) {
-                Date rightNow = new Date();
-                long currentTime = rightNow.getTime();
-                long expiresTime = expires.getMillis();
-                replayCache.add(identifier, 1L + (expiresTime - currentTime) / 1000L);
-            } else {
-                replayCache.add(identifier);
-            }
         }
     }
 
@@ -0,0 +1,123 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.wss4j.stax.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.namespace.QName;
+
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.utils.WSSUtils;
+import org.apache.xml.security.stax.ext.XMLSecurityConstants;
+import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import org.apache.xml.security.stax.ext.stax.XMLSecEventFactory;
+import org.apache.xml.security.stax.securityEvent.ContentEncryptedElementSecurityEvent;
+import org.apache.xml.security.stax.securityEvent.EncryptedElementSecurityEvent;
+import org.apache.xml.security.stax.securityEvent.SecurityEvent;
+import org.apache.xml.security.stax.securityEvent.SignedElementSecurityEvent;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SecurityEventIndexTest {
+
+    private static final List<XMLSecurityConstants.ContentType> PROTECTION_ORDER =
+        Collections.singletonList(XMLSecurityConstants.ContentType.SIGNATURE);
+
+    @Test
+    public void testSoap11And12PathLookup() throws Exception {
+        List<QName> soap11Path =
+            Arrays.asList(WSSConstants.TAG_SOAP11_ENVELOPE, WSSConstants.TAG_SOAP11_HEADER,
+                          WSSConstants.TAG_WSSE_SECURITY, WSSConstants.TAG_WSSE_USERNAME_TOKEN);
+        List<QName> soap12Path =
+            Arrays.asList(WSSConstants.TAG_SOAP12_ENVELOPE, WSSConstants.TAG_SOAP12_HEADER,
+                          WSSConstants.TAG_WSSE_SECURITY, WSSConstants.TAG_WSSE_USERNAME_TOKEN);
+
+        SignedElementSecurityEvent signedElementSecurityEvent = new SignedElementSecurityEvent(null, true, PROTECTION_ORDER);
+        signedElementSecurityEvent.setElementPath(soap11Path);
+        EncryptedElementSecurityEvent encryptedElementSecurityEvent =
+            new EncryptedElementSecurityEvent(null, true, PROTECTION_ORDER);
+        encryptedElementSecurityEvent.setElementPath(soap11Path);
+        ContentEncryptedElementSecurityEvent contentEncryptedElementSecurityEvent =
+            new ContentEncryptedElementSecurityEvent(null, true, PROTECTION_ORDER);
+        contentEncryptedElementSecurityEvent.setElementPath(soap11Path);
+
+        List<SecurityEvent> securityEvents = new ArrayList<>();
+        securityEvents.add(signedElementSecurityEvent);
+        securityEvents.add(encryptedElementSecurityEvent);
+        securityEvents.add(contentEncryptedElementSecurityEvent);
+        SecurityEventIndex securityEventIndex = new SecurityEventIndex(securityEvents);
+
+        // A SOAP 1.2 path has the same local names, and so returns the SOAP 1.1 candidates
+        for (List<QName> path : Arrays.asList(soap11Path, soap12Path)) {
+            List<SignedElementSecurityEvent> signedElements = securityEventIndex.getSignedElements(path);
+            Assert.assertEquals(Collections.singletonList(signedElementSecurityEvent), signedElements);
+            Assert.assertTrue(WSSUtils.pathMatches(signedElements.get(0).getElementPath(), path, true, false));
+            Assert.assertEquals(Collections.singletonList(encryptedElementSecurityEvent),
+                                securityEventIndex.getEncryptedElements(path));
+            Assert.assertEquals(Collections.singletonList(contentEncryptedElementSecurityEvent),
+                                securityEventIndex.getContentEncryptedElements(path));
+        }
+        // The namespaces are compared by the caller
+        Assert.assertFalse(WSSUtils.pathMatches(soap11Path, soap12Path, false, false));
+
+        List<QName> otherPath =
+            Arrays.asList(WSSConstants.TAG_SOAP11_ENVELOPE, WSSConstants.TAG_SOAP11_HEADER,
+                          WSSConstants.TAG_WSSE_SECURITY, WSSConstants.TAG_WSU_TIMESTAMP);
+        Assert.assertTrue(securityEventIndex.getSignedElements(otherPath).isEmpty());
+        Assert.assertTrue(securityEventIndex.getEncryptedElements(otherPath).isEmpty());
+        Assert.assertTrue(securityEventIndex.getContentEncryptedElements(otherPath).isEmpty());
+        Assert.assertTrue(securityEventIndex.getSignedElements(soap11Path.subList(0, 3)).isEmpty());
+        Assert.assertTrue(securityEventIndex.getSignedElements((List<QName>) null).isEmpty());
+    }
+
+    @Test
+    public void testXMLSecEventLookup() throws Exception {
+        XMLSecEvent xmlSecEvent =
+            XMLSecEventFactory.createXmlSecStartElement(WSSConstants.TAG_WSSE_USERNAME_TOKEN, null, null);
+        XMLSecEvent otherXmlSecEvent =
+            XMLSecEventFactory.createXmlSecStartElement(WSSConstants.TAG_WSSE_USERNAME_TOKEN, null, null);
+
+        SignedElementSecurityEvent signedElementSecurityEvent = new SignedElementSecurityEvent(null, true, PROTECTION_ORDER);
+        signedElementSecurityEvent.setXmlSecEvent(xmlSecEvent);
+        SignedElementSecurityEvent otherSignedElementSecurityEvent =
+            new SignedElementSecurityEvent(null, true, PROTECTION_ORDER);
+        otherSignedElementSecurityEvent.setXmlSecEvent(xmlSecEvent);
+        EncryptedElementSecurityEvent encryptedElementSecurityEvent =
+            new EncryptedElementSecurityEvent(null, true, PROTECTION_ORDER);
+        encryptedElementSecurityEvent.setXmlSecEvent(otherXmlSecEvent);
+
+        List<SecurityEvent> securityEvents = new ArrayList<>();
+        securityEvents.add(signedElementSecurityEvent);
+        securityEvents.add(encryptedElementSecurityEvent);
+        securityEvents.add(otherSignedElementSecurityEvent);
+        SecurityEventIndex securityEventIndex = new SecurityEventIndex(securityEvents);
+
+        // The events are looked up by the identity of the XMLSecEvent, in their original order
+        Assert.assertEquals(Arrays.asList(signedElementSecurityEvent, otherSignedElementSecurityEvent),
+                            securityEventIndex.getSignedElements(xmlSecEvent));
+        Assert.assertTrue(securityEventIndex.getSignedElements(otherXmlSecEvent).isEmpty());
+        Assert.assertEquals(Collections.singletonList(encryptedElementSecurityEvent),
+                            securityEventIndex.getEncryptedElements(otherXmlSecEvent));
+        Assert.assertTrue(securityEventIndex.getEncryptedElements(xmlSecEvent).isEmpty());
+    }
+}
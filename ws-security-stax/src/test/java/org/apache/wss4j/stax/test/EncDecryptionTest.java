@@ -52,6 +52,8 @@ import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
 import org.apache.wss4j.common.ConfigurationConstants;
 import org.apache.wss4j.common.WSEncryptionPart;
 import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.cache.DecryptedKeyCache;
+import org.apache.wss4j.common.cache.SessionKeyCache;
 import org.apache.wss4j.common.crypto.Crypto;
 import org.apache.wss4j.common.crypto.CryptoFactory;
 import org.apache.wss4j.common.ext.WSSecurityException;
@@ -231,6 +233,85 @@ public class EncDecryptionTest extends AbstractTestBase {
         }
     }
 
+    @Test
+    public void testEncDecryptionDecryptedKeyCacheInbound() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+        {
+            InputStream sourceDocument = this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml");
+            String action = WSHandlerConstants.ENCRYPT;
+            Document securedDocument = doOutboundSecurityWithWSS4J(sourceDocument, action, new Properties());
+
+            Transformer transformer = TRANSFORMER_FACTORY.newTransformer();
+            transformer.transform(new DOMSource(securedDocument), new StreamResult(baos));
+        }
+        //test streaming decryption, where the unwrapped key is taken from the cache after the first message
+        {
+            DecryptedKeyCache decryptedKeyCache = new DecryptedKeyCache();
+            WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+            securityProperties.loadDecryptionKeystore(this.getClass().getClassLoader().getResource("receiver.jks"), "default".toCharArray());
+            securityProperties.setCallbackHandler(new CallbackHandlerImpl());
+            securityProperties.setDecryptedKeyCache(decryptedKeyCache);
+
+            for (int i = 0; i < 3; i++) {
+                WSSecurityEventConstants.Event[] expectedSecurityEvents = new WSSecurityEventConstants.Event[]{
+                        WSSecurityEventConstants.AlgorithmSuite,
+                        WSSecurityEventConstants.AlgorithmSuite,
+                        WSSecurityEventConstants.X509Token,
+                        WSSecurityEventConstants.ENCRYPTED_PART,
+                        WSSecurityEventConstants.OPERATION,
+                };
+                final TestSecurityEventListener securityEventListener = new TestSecurityEventListener(expectedSecurityEvents);
+
+                Document document = doInboundSecurity(securityProperties, xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(baos.toByteArray())), securityEventListener);
+
+                //no encrypted content
+                NodeList nodeList = document.getElementsByTagNameNS(WSSConstants.TAG_xenc_EncryptedData.getNamespaceURI(), WSSConstants.TAG_xenc_EncryptedData.getLocalPart());
+                Assert.assertEquals(nodeList.getLength(), 0);
+                nodeList = document.getElementsByTagNameNS("http://www.w3.org/1999/XMLSchema", "complexType");
+                Assert.assertTrue(nodeList.getLength() > 0);
+
+                securityEventListener.compare();
+                Assert.assertEquals(1, decryptedKeyCache.size());
+            }
+        }
+    }
+
+    @Test
+    public void testEncDecryptionSessionKeyCacheOutbound() throws Exception {
+
+        SessionKeyCache sessionKeyCache = new SessionKeyCache(10, 60L, 2);
+        WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+        List<WSSConstants.Action> actions = new ArrayList<WSSConstants.Action>();
+        actions.add(WSSConstants.ENCRYPT);
+        securityProperties.setActions(actions);
+        securityProperties.loadEncryptionKeystore(this.getClass().getClassLoader().getResource("transmitter.jks"), "default".toCharArray());
+        securityProperties.setEncryptionUser("receiver");
+        securityProperties.setSessionKeyCache(sessionKeyCache);
+
+        List<String> cipherValues = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            InputStream sourceDocument = this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml");
+            ByteArrayOutputStream baos = doOutboundSecurity(securityProperties, sourceDocument);
+
+            Document document = documentBuilderFactory.newDocumentBuilder().parse(new ByteArrayInputStream(baos.toByteArray()));
+            XPathExpression xPathExpression = getXPath("/soap:Envelope/soap:Header/wsse:Security/xenc:EncryptedKey/xenc:CipherData/xenc:CipherValue");
+            Node node = (Node) xPathExpression.evaluate(document, XPathConstants.NODE);
+            Assert.assertNotNull(node);
+            cipherValues.add(node.getTextContent());
+
+            //the reused session key must decrypt the message:
+            String action = WSHandlerConstants.ENCRYPT;
+            doInboundSecurityWithWSS4J(document, action);
+        }
+
+        //the second message reuses the session key, which is then rotated for the third message
+        Assert.assertEquals(cipherValues.get(0), cipherValues.get(1));
+        Assert.assertNotEquals(cipherValues.get(1), cipherValues.get(2));
+        Assert.assertEquals(1, sessionKeyCache.size());
+    }
+
     @Test
     public void testEncDecryptionCryptoPropertiesOutbound() throws Exception {
 
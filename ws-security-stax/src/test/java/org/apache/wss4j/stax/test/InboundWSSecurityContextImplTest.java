@@ -22,6 +22,7 @@ import java.io.InputStream;
 import java.security.KeyStore;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
@@ -40,6 +41,7 @@ import org.apache.wss4j.stax.impl.securityToken.HttpsSecurityTokenImpl;
 import org.apache.wss4j.stax.impl.securityToken.SamlSecurityTokenImpl;
 import org.apache.wss4j.stax.impl.securityToken.UsernameSecurityTokenImpl;
 import org.apache.wss4j.stax.impl.securityToken.X509SecurityTokenImpl;
+import org.apache.wss4j.stax.securityEvent.EncryptedKeyTokenSecurityEvent;
 import org.apache.wss4j.stax.securityEvent.EncryptedPartSecurityEvent;
 import org.apache.wss4j.stax.securityEvent.HttpsTokenSecurityEvent;
 import org.apache.wss4j.stax.securityEvent.OperationSecurityEvent;
@@ -57,12 +59,16 @@ import org.apache.xml.security.stax.config.Init;
 import org.apache.xml.security.stax.ext.XMLSecurityConstants;
 import org.apache.xml.security.stax.ext.stax.XMLSecEvent;
 import org.apache.xml.security.stax.ext.stax.XMLSecEventFactory;
+import org.apache.xml.security.stax.impl.securityToken.AbstractInboundSecurityToken;
 import org.apache.xml.security.stax.impl.util.IDGenerator;
 import org.apache.xml.security.stax.securityEvent.EncryptedElementSecurityEvent;
 import org.apache.xml.security.stax.securityEvent.SecurityEvent;
 import org.apache.xml.security.stax.securityEvent.SecurityEventListener;
 import org.apache.xml.security.stax.securityEvent.SignatureValueSecurityEvent;
 import org.apache.xml.security.stax.securityEvent.SignedElementSecurityEvent;
+import org.apache.xml.security.stax.securityEvent.TokenSecurityEvent;
+import org.apache.xml.security.stax.securityToken.SecurityToken;
+import org.apache.xml.security.stax.securityToken.SecurityTokenConstants;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -721,6 +727,59 @@ public class InboundWSSecurityContextImplTest {
         return securityEventList;
     }
 
+    @Test
+    public void testRootTokenReplacement() throws Exception {
+        final List<SecurityEvent> securityEventList = new LinkedList<SecurityEvent>();
+
+        SecurityEventListener securityEventListener = new SecurityEventListener() {
+            @Override
+            public void registerSecurityEvent(SecurityEvent securityEvent) throws WSSecurityException {
+                securityEventList.add(securityEvent);
+            }
+        };
+
+        InboundWSSecurityContextImpl inboundWSSecurityContext = new InboundWSSecurityContextImpl();
+        inboundWSSecurityContext.addSecurityEventListener(securityEventListener);
+
+        X509SecurityTokenImpl rootToken1 = getX509Token(WSSecurityTokenConstants.X509V3Token);
+        X509SecurityTokenImpl rootToken2 = getX509Token(WSSecurityTokenConstants.X509V3Token);
+        List<EncryptedKeyTokenSecurityEvent> encryptedKeyTokenSecurityEvents = new LinkedList<>();
+        for (X509SecurityTokenImpl rootToken : Arrays.asList(rootToken1, rootToken2, rootToken1)) {
+            AbstractInboundSecurityToken ekSecurityToken = new AbstractInboundSecurityToken(
+                    null, IDGenerator.generateID(null),
+                    SecurityTokenConstants.KeyIdentifier_EncryptedKey, true) {
+                @Override
+                public SecurityTokenConstants.TokenType getTokenType() {
+                    return SecurityTokenConstants.EncryptedKeyToken;
+                }
+            };
+            ekSecurityToken.setKeyWrappingToken(rootToken);
+            rootToken.addWrappedToken(ekSecurityToken);
+
+            EncryptedKeyTokenSecurityEvent encryptedKeyTokenSecurityEvent = new EncryptedKeyTokenSecurityEvent();
+            encryptedKeyTokenSecurityEvent.setSecurityToken(ekSecurityToken);
+            inboundWSSecurityContext.registerSecurityEvent(encryptedKeyTokenSecurityEvent);
+            encryptedKeyTokenSecurityEvents.add(encryptedKeyTokenSecurityEvent);
+        }
+
+        OperationSecurityEvent operationSecurityEvent = new OperationSecurityEvent();
+        operationSecurityEvent.setOperation(new QName("definitions"));
+        inboundWSSecurityContext.registerSecurityEvent(operationSecurityEvent);
+
+        // The EncryptedKey tokens are replaced by one TokenSecurityEvent per root token. They are
+        // appended to the queue in the order of the (most recent first) replaced events, and the
+        // queue is forwarded in reverse order
+        List<SecurityToken> forwardedTokens = new LinkedList<>();
+        for (SecurityEvent securityEvent : securityEventList) {
+            Assert.assertFalse(encryptedKeyTokenSecurityEvents.contains(securityEvent));
+            if (securityEvent instanceof TokenSecurityEvent) {
+                forwardedTokens.add(((TokenSecurityEvent<?>) securityEvent).getSecurityToken());
+            }
+        }
+        Assert.assertEquals(Arrays.asList(rootToken2, rootToken1), forwardedTokens);
+        Assert.assertSame(operationSecurityEvent, securityEventList.get(securityEventList.size() - 1));
+    }
+
     private X509SecurityTokenImpl getX509Token(WSSecurityTokenConstants.TokenType tokenType) throws Exception {
 
         final KeyStore keyStore = KeyStore.getInstance("jks");
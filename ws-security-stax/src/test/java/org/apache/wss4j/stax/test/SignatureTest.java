@@ -29,6 +29,11 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
@@ -1663,6 +1668,62 @@ public class SignatureTest extends AbstractTestBase {
         }
     }
 
+    @Test
+    public void testSignatureConcurrentInbound() throws Exception {
+
+        // The thread-safe security header handlers are shared by all messages, so two
+        // differently secured messages are processed concurrently by the same InboundWSSec
+        final byte[][] messages = new byte[2][];
+        String[] actions = {
+            WSHandlerConstants.SIGNATURE,
+            WSHandlerConstants.TIMESTAMP + " " + WSHandlerConstants.SIGNATURE,
+        };
+        for (int i = 0; i < messages.length; i++) {
+            InputStream sourceDocument = this.getClass().getClassLoader().getResourceAsStream("testdata/plain-soap-1.1.xml");
+            Document securedDocument = doOutboundSecurityWithWSS4J(sourceDocument, actions[i], new Properties());
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            javax.xml.transform.Transformer transformer = TRANSFORMER_FACTORY.newTransformer();
+            transformer.transform(new DOMSource(securedDocument), new StreamResult(baos));
+            messages[i] = baos.toByteArray();
+        }
+
+        WSSSecurityProperties securityProperties = new WSSSecurityProperties();
+        securityProperties.loadSignatureVerificationKeystore(this.getClass().getClassLoader().getResource("receiver.jks"), "default".toCharArray());
+        final InboundWSSec wsSecIn = WSSec.getInboundWSSec(securityProperties);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(messages.length);
+        try {
+            final CyclicBarrier barrier = new CyclicBarrier(messages.length);
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (final byte[] message : messages) {
+                futures.add(executorService.submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() throws Exception {
+                        barrier.await();
+                        int timestamps = 0;
+                        for (int i = 0; i < 20; i++) {
+                            XMLStreamReader xmlStreamReader =
+                                wsSecIn.processInMessage(xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(message)));
+                            Document document = StAX2DOM.readDoc(documentBuilderFactory.newDocumentBuilder(), xmlStreamReader);
+
+                            NodeList nodeList = document.getElementsByTagNameNS(WSSConstants.TAG_dsig_Signature.getNamespaceURI(),
+                                                                                WSSConstants.TAG_dsig_Signature.getLocalPart());
+                            Assert.assertEquals(nodeList.getLength(), 1);
+                            timestamps += document.getElementsByTagNameNS(WSSConstants.TAG_WSU_TIMESTAMP.getNamespaceURI(),
+                                                                          WSSConstants.TAG_WSU_TIMESTAMP.getLocalPart()).getLength();
+                        }
+                        return timestamps;
+                    }
+                }));
+            }
+            Assert.assertEquals(0, futures.get(0).get().intValue());
+            Assert.assertEquals(20, futures.get(1).get().intValue());
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
     @Test
     public void testElementToSignNotFound() throws Exception {
 